@@ -0,0 +1,67 @@
+package de.unibi.agbi.biodwh2.procedures.model;
+
+/**
+ * Holds the distance-based metrics of a single source node derived from one breadth-first search.
+ */
+public class DistanceMetrics {
+
+    /**
+     * Number of nodes reachable from the source (excluding the source itself)
+     */
+    private final long reached;
+    /**
+     * Sum of all shortest path lengths to reachable nodes
+     */
+    private final long distanceSum;
+    /**
+     * Sum of the reciprocals of all shortest path lengths to reachable nodes
+     */
+    private final double harmonicSum;
+    /**
+     * Largest shortest path length to a reachable node
+     */
+    private final long maxDistance;
+
+    public DistanceMetrics(final long reached, final long distanceSum, final double harmonicSum,
+                           final long maxDistance) {
+        this.reached = reached;
+        this.distanceSum = distanceSum;
+        this.harmonicSum = harmonicSum;
+        this.maxDistance = maxDistance;
+    }
+
+    public long getReached() {
+        return reached;
+    }
+
+    public long getDistanceSum() {
+        return distanceSum;
+    }
+
+    public long getMaxDistance() {
+        return maxDistance;
+    }
+
+    /**
+     * Closeness restricted to the reachable nodes, i.e. the number of reached nodes divided by the sum of their
+     * distances. On connected graphs this equals (n - 1) / sum of distances.
+     */
+    public double getCloseness() {
+        return distanceSum == 0 ? 0 : (double) reached / distanceSum;
+    }
+
+    /**
+     * Harmonic centrality, i.e. the sum of reciprocal distances. Unreachable nodes contribute 0, so the value is well
+     * defined on disconnected graphs.
+     */
+    public double getHarmonic() {
+        return harmonicSum;
+    }
+
+    /**
+     * Eccentricity as reciprocal of the longest shortest path (0, if no other node is reachable).
+     */
+    public double getEccentricity() {
+        return maxDistance == 0 ? 0 : 1.0 / maxDistance;
+    }
+}
@@ -0,0 +1,95 @@
+package de.unibi.agbi.biodwh2.procedures.model;
+
+import de.unibi.agbi.biodwh2.procedures.utils.UnionFind;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lightweight in-memory subgraph induced by the open neighborhood of a node. Nodes are addressed by local indices,
+ * edges are stored as parallel arrays of local endpoints and original edge ids.
+ */
+public class NeighborhoodSubgraph {
+
+    /**
+     * Original node ids by local index
+     */
+    private final long[] nodeIds;
+    /**
+     * Local source index for each edge
+     */
+    private final int[] edgeFrom;
+    /**
+     * Local target index for each edge
+     */
+    private final int[] edgeTo;
+    /**
+     * Original edge ids
+     */
+    private final long[] edgeIds;
+
+    public NeighborhoodSubgraph(final long[] nodeIds, final int[] edgeFrom, final int[] edgeTo, final long[] edgeIds) {
+        this.nodeIds = nodeIds;
+        this.edgeFrom = edgeFrom;
+        this.edgeTo = edgeTo;
+        this.edgeIds = edgeIds;
+    }
+
+    public int getNumberOfNodes() {
+        return nodeIds.length;
+    }
+
+    public int getNumberOfEdges() {
+        return edgeIds.length;
+    }
+
+    public long[] getNodeIds() {
+        return nodeIds;
+    }
+
+    public long[] getEdgeIds() {
+        return edgeIds;
+    }
+
+    /**
+     * Finds all undirected connected components of the subgraph using union-find.
+     * @return List of all components containing the node IDs and edge IDs of each component
+     */
+    public List<BFSResult> findComponents() {
+        final UnionFind unionFind = new UnionFind(nodeIds.length);
+        for (int i = 0; i < edgeIds.length; i++)
+            unionFind.union(edgeFrom[i], edgeTo[i]);
+
+        // assign a dense component index to each root
+        final int[] componentIndex = new int[nodeIds.length];
+        final List<BFSResult> components = new ArrayList<>();
+        for (int i = 0; i < nodeIds.length; i++) {
+            final int root = unionFind.find(i);
+            if (root == i) {
+                componentIndex[i] = components.size();
+                components.add(new BFSResult(new ArrayList<>(), new ArrayList<>()));
+            }
+        }
+        for (int i = 0; i < nodeIds.length; i++)
+            components.get(componentIndex[unionFind.find(i)]).getNodeIds().add(nodeIds[i]);
+        for (int i = 0; i < edgeIds.length; i++)
+            components.get(componentIndex[unionFind.find(edgeFrom[i])]).getEdgePathIds().add(edgeIds[i]);
+        return components;
+    }
+
+    /**
+     * Finds the connected component with the most nodes. Ties are broken by the number of edges.
+     * @return Largest component or null, if the subgraph is empty
+     */
+    public BFSResult getMaximumComponent() {
+        BFSResult largest = null;
+        for (final BFSResult component : findComponents()) {
+            if (largest == null || component.getNodeIds().size() > largest.getNodeIds().size() ||
+                (component.getNodeIds().size() == largest.getNodeIds().size() &&
+                 component.getEdgePathIds().size() > largest.getEdgePathIds().size())) {
+                largest = component;
+            }
+        }
+        return largest;
+    }
+}
@@ -9,11 +9,11 @@ import de.unibi.agbi.biodwh2.procedures.ResultRow;
 import de.unibi.agbi.biodwh2.procedures.ResultSet;
 import de.unibi.agbi.biodwh2.procedures.model.BFSResult;
 import de.unibi.agbi.biodwh2.procedures.model.DijkstraResult;
+import de.unibi.agbi.biodwh2.procedures.model.DistanceMetrics;
 import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
 import de.unibi.agbi.biodwh2.procedures.model.IdPair;
 import de.unibi.agbi.biodwh2.procedures.utils.*;
 
-import java.io.IOException;
 import java.util.*;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -71,6 +71,79 @@ public final class GraphCentralityProcedures implements RegistryContainer {
         return result;
     }
 
+    /**
+     * Calculates the in, out and total degree of all nodes with a single scan over the graph's edges.
+     * @param graph Graph object
+     * @param parallel Determines whether the edge scan is split across threads
+     * @return Result set containing each node's id, its degree, in degree and out degree
+     */
+    @Procedure(name = "analysis.network.centrality.degree.all", description = "Calculates the degree of all graph nodes")
+    public static ResultSet degreeAll(final BaseGraph graph, final boolean parallel) {
+        final DegreeCounter counter = new DegreeCounter(graph, parallel);
+        final String[] columns = new String[]{"id", "degree", "in degree", "out degree"};
+        final ResultSet result = new ResultSet(columns);
+        for (int i = 0; i < counter.getNumberOfNodes(); i++) {
+            result.addRow(new ResultRow(columns, new Object[]{counter.getNodeId(i), counter.getDegree(i), counter.getInDegree(i), counter.getOutDegree(i)}));
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the in degree of all nodes with a single scan over the graph's edges.
+     * @param graph Graph object
+     * @param parallel Determines whether the edge scan is split across threads
+     * @return Result set containing each node's id and its in degree
+     */
+    @Procedure(name = "analysis.network.centrality.degree.in.all", description = "Calculates the in degree of all graph nodes")
+    public static ResultSet degreeInAll(final BaseGraph graph, final boolean parallel) {
+        final DegreeCounter counter = new DegreeCounter(graph, parallel);
+        final ResultSet result = new ResultSet("id", "in degree");
+        for (int i = 0; i < counter.getNumberOfNodes(); i++) {
+            result.addRow(new ResultRow(new String[]{"id", "in degree"}, new Object[]{counter.getNodeId(i), counter.getInDegree(i)}));
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the out degree of all nodes with a single scan over the graph's edges.
+     * @param graph Graph object
+     * @param parallel Determines whether the edge scan is split across threads
+     * @return Result set containing each node's id and its out degree
+     */
+    @Procedure(name = "analysis.network.centrality.degree.out.all", description = "Calculates the out degree of all graph nodes")
+    public static ResultSet degreeOutAll(final BaseGraph graph, final boolean parallel) {
+        final DegreeCounter counter = new DegreeCounter(graph, parallel);
+        final ResultSet result = new ResultSet("id", "out degree");
+        for (int i = 0; i < counter.getNumberOfNodes(); i++) {
+            result.addRow(new ResultRow(new String[]{"id", "out degree"}, new Object[]{counter.getNodeId(i), counter.getOutDegree(i)}));
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the degree distribution of a graph, i.e. the number of nodes for each total, in and out degree value.
+     * @param graph Graph object
+     * @param parallel Determines whether the edge scan is split across threads
+     * @return Result set containing one row per degree value with the number of nodes having this degree, in degree
+     * and out degree
+     */
+    @Procedure(name = "analysis.network.centrality.degree.histogram", description = "Calculates the degree distribution of a graph")
+    public static ResultSet degreeHistogram(final BaseGraph graph, final boolean parallel) {
+        final DegreeCounter counter = new DegreeCounter(graph, parallel);
+        final long[] histogram = DegreeCounter.histogram(counter.getDegrees());
+        final long[] histogramIn = DegreeCounter.histogram(counter.getInDegrees());
+        final long[] histogramOut = DegreeCounter.histogram(counter.getOutDegrees());
+        final String[] columns = new String[]{"degree", "nodes", "nodes in", "nodes out"};
+        final ResultSet result = new ResultSet(columns);
+        for (int degree = 0; degree < histogram.length; degree++) {
+            final long nodesIn = degree < histogramIn.length ? histogramIn[degree] : 0;
+            final long nodesOut = degree < histogramOut.length ? histogramOut[degree] : 0;
+            if (histogram[degree] > 0 || nodesIn > 0 || nodesOut > 0)
+                result.addRow(new ResultRow(columns, new Object[]{(long) degree, histogram[degree], nodesIn, nodesOut}));
+        }
+        return result;
+    }
+
     /**
      * Calculates the closeness of a node, i.e. the reciprocal of the sum of all shortest paths between the node
      * in question and all other nodes in the graph.
@@ -95,6 +168,69 @@ public final class GraphCentralityProcedures implements RegistryContainer {
         return result;
     }
 
+    /**
+     * Calculates closeness and harmonic centrality for all nodes using a bit-parallel multi-source breadth-first
+     * search, in which 64 sources share one traversal and batches of sources are processed in parallel. Closeness
+     * only considers reachable nodes, harmonic centrality is the sum of reciprocal distances.
+     * @param graph The graph to be analyzed
+     * @param mode Orientation of the graph
+     * @param view Name of a registered subgraph view to analyze instead of the whole graph, null or empty for the whole graph
+     * @return Result set containing each node's id, its closeness and its harmonic centrality
+     */
+    @Procedure(name = "analysis.network.centrality.closeness.all", description = "Calculates closeness and harmonic centrality of all nodes")
+    public static ResultSet closenessAll(final BaseGraph graph, final GraphMode mode, final String view) {
+        final CSRGraph adjacency = CSRGraph.build(graph, mode, view);
+        final DistanceMetrics[] allMetrics = new MultiSourceBFS(adjacency).computeAll();
+        ResultSet result = new ResultSet("id", "closeness", "harmonic");
+        for (int i = 0; i < allMetrics.length; i++) {
+            result.addRow(new ResultRow(new String[]{"id", "closeness", "harmonic"}, new Object[]{adjacency.getNodeId(i), allMetrics[i].getCloseness(), allMetrics[i].getHarmonic()}));
+        }
+        return result;
+    }
+
+    /**
+     * Finds the k nodes with the highest closeness. Breadth-first searches are cut as soon as an upper bound of the
+     * source's closeness cannot beat the current k-th best value, so most searches terminate early. Closeness is
+     * normalized after Wasserman and Faust, r / (n - 1) * r / (sum of distances) for a node reaching r other nodes,
+     * which equals the closeness of a single node on connected graphs.
+     * @param graph The graph to be analyzed
+     * @param mode Orientation of the graph
+     * @param k Number of nodes to return
+     * @param view Name of a registered subgraph view to analyze instead of the whole graph, null or empty for the whole graph
+     * @return Result set containing the rank, id and closeness of the top-k nodes
+     */
+    @Procedure(name = "analysis.network.centrality.closeness.topk", description = "Finds the k nodes with the highest closeness")
+    public static ResultSet closenessTopK(final BaseGraph graph, final GraphMode mode, final int k, final String view) {
+        final CSRGraph adjacency = CSRGraph.build(graph, mode, view);
+        final TopKClosenessFinder finder = new TopKClosenessFinder(adjacency, k);
+        ResultSet result = new ResultSet("rank", "id", "closeness");
+        for (int i = 0; i < finder.getTopNodes().length; i++) {
+            result.addRow(new ResultRow(new String[]{"rank", "id", "closeness"}, new Object[]{i + 1, adjacency.getNodeId(finder.getTopNodes()[i]), finder.getTopCloseness()[i]}));
+        }
+        return result;
+    }
+
+    /**
+     * Estimates the closeness of all nodes from breadth-first searches of ln(n) / epsilon^2 random pivots (Eppstein and
+     * Wang), which is sufficient for exploratory analyses on very large graphs.
+     * @param graph The graph to be analyzed
+     * @param mode Orientation of the graph
+     * @param epsilon Error bound of the estimated average distance relative to the graph's diameter
+     * @param seed Seed for the pivot selection to obtain deterministic results, negative values select random pivots
+     * @param view Name of a registered subgraph view to analyze instead of the whole graph, null or empty for the whole graph
+     * @return Result set containing each node's id, its estimated closeness and the number of pivots used
+     */
+    @Procedure(name = "analysis.network.centrality.closeness.approx", description = "Estimates the closeness of all nodes by sampling")
+    public static ResultSet closenessApproximate(final BaseGraph graph, final GraphMode mode, final double epsilon, final long seed, final String view) {
+        final CSRGraph adjacency = mode == GraphMode.DIRECTED ? CSRGraph.buildIncoming(graph, view) : CSRGraph.build(graph, mode, view);
+        final ClosenessEstimator estimator = new ClosenessEstimator(adjacency, epsilon, seed);
+        ResultSet result = new ResultSet("id", "closeness", "samples");
+        for (int i = 0; i < adjacency.getNumberOfNodes(); i++) {
+            result.addRow(new ResultRow(new String[]{"id", "closeness", "samples"}, new Object[]{adjacency.getNodeId(i), estimator.getCloseness(i), estimator.getSampleSize()}));
+        }
+        return result;
+    }
+
     /**
      * Calculates the eccentricity of a node by estimating the longest shortest path from a node to all other nodes in the graph.
      * @param graph The graph in which the node resides
@@ -112,6 +248,132 @@ public final class GraphCentralityProcedures implements RegistryContainer {
         return result;
     }
 
+    /**
+     * Calculates closeness, harmonic centrality, eccentricity and the number of reachable nodes for a node with a single
+     * breadth-first search. Closeness only considers reachable nodes, harmonic centrality is the sum of reciprocal
+     * distances and therefore also meaningful on disconnected graphs.
+     * @param graph The graph in which the node resides
+     * @param node Source node
+     * @param mode Orientation of the graph
+     * @return Result set containing the node's id, closeness, harmonic centrality, eccentricity and reach count
+     */
+    @Procedure(name = "analysis.network.centrality.distance", description = "Calculates closeness, harmonic centrality, eccentricity and reach of a node in one traversal")
+    public static ResultSet distanceMetrics(final BaseGraph graph, final Node node, final GraphMode mode) {
+        final DistanceMetrics metrics = DistanceMetricsFinder.compute(graph, node.getId(), mode);
+        final String[] columns = new String[]{"id", "closeness", "harmonic", "eccentricity", "reach"};
+        ResultSet result = new ResultSet(columns);
+        result.addRow(new ResultRow(columns, new Object[]{node.getId(), metrics.getCloseness(), metrics.getHarmonic(), metrics.getEccentricity(), metrics.getReached()}));
+        return result;
+    }
+
+    /**
+     * Calculates closeness, harmonic centrality, eccentricity and the number of reachable nodes for all nodes, using
+     * one breadth-first search per node over a shared adjacency snapshot in parallel.
+     * @param graph The graph to be analyzed
+     * @param mode Orientation of the graph
+     * @param view Name of a registered subgraph view to analyze instead of the whole graph, null or empty for the whole graph
+     * @return Result set containing each node's id, closeness, harmonic centrality, eccentricity and reach count
+     */
+    @Procedure(name = "analysis.network.centrality.distance.all", description = "Calculates closeness, harmonic centrality, eccentricity and reach of all nodes")
+    public static ResultSet distanceMetricsAll(final BaseGraph graph, final GraphMode mode, final String view) {
+        final CSRGraph adjacency = CSRGraph.build(graph, mode, view);
+        final DistanceMetrics[] allMetrics = new DistanceMetricsFinder(adjacency).computeAll();
+        final String[] columns = new String[]{"id", "closeness", "harmonic", "eccentricity", "reach"};
+        ResultSet result = new ResultSet(columns);
+        for (int i = 0; i < allMetrics.length; i++) {
+            final DistanceMetrics metrics = allMetrics[i];
+            result.addRow(new ResultRow(columns, new Object[]{adjacency.getNodeId(i), metrics.getCloseness(), metrics.getHarmonic(), metrics.getEccentricity(), metrics.getReached()}));
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the eccentricity of all nodes. In undirected mode bound propagation (Takes and Kosters) typically needs
+     * only a handful of breadth-first searches, in directed mode the bounds do not hold and each node is searched once
+     * along its outgoing edges. As for the single-node procedure, the eccentricity is reported as the reciprocal of the
+     * longest shortest path to a node reached from the node.
+     * @param graph The graph to be analyzed
+     * @param mode Orientation of the graph
+     * @param view Name of a registered subgraph view to analyze instead of the whole graph, null or empty for the whole graph
+     * @return Result set containing each node's id, its eccentricity value and the longest shortest path
+     */
+    @Procedure(name = "analysis.network.centrality.eccentricity.all", description = "Calculates the eccentricity of all nodes")
+    public static ResultSet eccentricityAll(final BaseGraph graph, final GraphMode mode, final String view) {
+        final CSRGraph adjacency = CSRGraph.build(graph, mode, view);
+        final EccentricityFinder finder = new EccentricityFinder(adjacency);
+        ResultSet result = new ResultSet("id", "eccentricity", "distance");
+        for (int i = 0; i < adjacency.getNumberOfNodes(); i++) {
+            final int distance = finder.getEccentricity(i);
+            final double eccentricity = distance == 0 ? 0 : 1.0 / distance;
+            result.addRow(new ResultRow(new String[]{"id", "eccentricity", "distance"}, new Object[]{adjacency.getNodeId(i), eccentricity, distance}));
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the exact diameter of the graph, i.e. the longest shortest path between any node and a node it
+     * reaches, from the eccentricities of all nodes (see {@code analysis.network.centrality.eccentricity.all}).
+     * @param graph The graph to be analyzed
+     * @param mode Orientation of the graph
+     * @param view Name of a registered subgraph view to analyze instead of the whole graph, null or empty for the whole graph
+     * @return Result set containing the diameter and the number of breadth-first searches that were needed
+     */
+    @Procedure(name = "analysis.network.diameter", description = "Calculates the exact diameter of a graph")
+    public static ResultSet diameter(final BaseGraph graph, final GraphMode mode, final String view) {
+        final EccentricityFinder finder = new EccentricityFinder(CSRGraph.build(graph, mode, view));
+        ResultSet result = new ResultSet("diameter", "searches");
+        result.addRow(new ResultRow(new String[]{"diameter", "searches"}, new Object[]{finder.getDiameter(), finder.getSearches()}));
+        return result;
+    }
+
+    /**
+     * Calculates the PageRank of all nodes by parallel power iteration over the incoming edges of each node.
+     * @param graph The graph to be analyzed
+     * @param mode Orientation of the graph
+     * @param damping Probability of following an edge instead of jumping to a random node, typically 0.85
+     * @param tolerance Iteration stops once the summed change of all scores falls below this value
+     * @param maxIterations Maximum number of iterations
+     * @param weightProperty Numeric edge property used as edge weight, null or empty for an unweighted graph
+     * @param view Name of a registered subgraph view to analyze instead of the whole graph, null or empty for the whole graph
+     * @return Result set containing each node's id, its PageRank and the number of iterations
+     */
+    @Procedure(name = "analysis.network.centrality.pagerank", description = "Calculates the PageRank of all nodes")
+    public static ResultSet pageRank(final BaseGraph graph, final GraphMode mode, final double damping, final double tolerance,
+                                     final int maxIterations, final String weightProperty, final String view) {
+        final CSRGraph adjacency = mode == GraphMode.DIRECTED ? CSRGraph.buildIncoming(graph, view) : CSRGraph.build(graph, mode, view);
+        final SpectralCentrality centrality = new SpectralCentrality(adjacency, SpectralCentrality.loadWeights(graph, adjacency, weightProperty));
+        final double[] scores = centrality.computePageRank(damping, tolerance, maxIterations);
+        return createSpectralResult(adjacency, centrality, scores, "pagerank");
+    }
+
+    /**
+     * Calculates the eigenvector centrality of all nodes by parallel power iteration over the incoming edges of each node.
+     * @param graph The graph to be analyzed
+     * @param mode Orientation of the graph
+     * @param tolerance Iteration stops once the average change per score falls below this value
+     * @param maxIterations Maximum number of iterations
+     * @param weightProperty Numeric edge property used as edge weight, null or empty for an unweighted graph
+     * @param view Name of a registered subgraph view to analyze instead of the whole graph, null or empty for the whole graph
+     * @return Result set containing each node's id, its eigenvector centrality and the number of iterations
+     */
+    @Procedure(name = "analysis.network.centrality.eigenvector", description = "Calculates the eigenvector centrality of all nodes")
+    public static ResultSet eigenvector(final BaseGraph graph, final GraphMode mode, final double tolerance, final int maxIterations,
+                                        final String weightProperty, final String view) {
+        final CSRGraph adjacency = mode == GraphMode.DIRECTED ? CSRGraph.buildIncoming(graph, view) : CSRGraph.build(graph, mode, view);
+        final SpectralCentrality centrality = new SpectralCentrality(adjacency, SpectralCentrality.loadWeights(graph, adjacency, weightProperty));
+        final double[] scores = centrality.computeEigenvector(tolerance, maxIterations);
+        return createSpectralResult(adjacency, centrality, scores, "eigenvector");
+    }
+
+    private static ResultSet createSpectralResult(final CSRGraph adjacency, final SpectralCentrality centrality, final double[] scores,
+                                                  final String column) {
+        ResultSet result = new ResultSet("id", column, "iterations", "converged");
+        for (int i = 0; i < scores.length; i++) {
+            result.addRow(new ResultRow(new String[]{"id", column, "iterations", "converged"}, new Object[]{adjacency.getNodeId(i), scores[i], centrality.getIterations(), centrality.isConverged()}));
+        }
+        return result;
+    }
+
     /**
      * Calculates betweenness centrality for a given node. For each node pair in the graph, the ratio between the total number of
      * shortest paths and the number of shortest paths that have the target node on them is computed. All ratios are then summed
@@ -151,6 +413,25 @@ public final class GraphCentralityProcedures implements RegistryContainer {
         return result;
     }
 
+    /**
+     * Calculates closeness and betweenness of all nodes and keeps the all-pairs distances registered for the graph, so
+     * that later calls after adding edges only recompute the sources affected by the new edges. Any other change of
+     * the graph leads to a full recalculation. Limited to {@link DynamicCentrality#MAX_NODES} nodes.
+     * @param graph The graph to be analyzed
+     * @param mode Orientation of the graph
+     * @return Result set containing each node's id, its closeness and its betweenness
+     */
+    @Procedure(name = "analysis.network.centrality.dynamic", description = "Maintains closeness and betweenness of all nodes incrementally under edge insertions")
+    public static ResultSet dynamicCentrality(final BaseGraph graph, final GraphMode mode) {
+        final DynamicCentrality centrality = DynamicCentrality.update(graph, mode);
+        final CSRGraph adjacency = centrality.getAdjacency();
+        ResultSet result = new ResultSet("id", "closeness", "betweenness");
+        for (int i = 0; i < adjacency.getNumberOfNodes(); i++) {
+            result.addRow(new ResultRow(new String[]{"id", "closeness", "betweenness"}, new Object[]{adjacency.getNodeId(i), centrality.getCloseness(i), centrality.getBetweenness(i)}));
+        }
+        return result;
+    }
+
     /**
      * Calculates the maximum neighborhood component of a node, i.e. the size of the maximum connected component
      * of the source node's neighborhood.
@@ -160,10 +441,11 @@ public final class GraphCentralityProcedures implements RegistryContainer {
      * @return Result row containing the size of the maximum connected component
      */
     @Procedure(name = "analysis.network.centrality.mnc", description = "Calculates the maximum neighborhood component for a node")
-    public static ResultSet maximumNeighborhoodComponent(final BaseGraph graph, final Node node, final GraphMode mode) throws IOException {
+    public static ResultSet maximumNeighborhoodComponent(final BaseGraph graph, final Node node, final GraphMode mode) {
         BFSResult maximumConnectedComponent = GraphProcedureUtils.getMaximumConnectedComponent(graph, node.getId(), mode);
+        int mnc = maximumConnectedComponent != null ? maximumConnectedComponent.getNodeIds().size() : 0;
         ResultSet result = new ResultSet("id", "mnc");
-        result.addRow(new ResultRow(new String[]{"id", "mnc"}, new Object[]{node.getId(), maximumConnectedComponent.getNodeIds().size()}));
+        result.addRow(new ResultRow(new String[]{"id", "mnc"}, new Object[]{node.getId(), mnc}));
         return result;
     }
 
@@ -176,30 +458,159 @@ public final class GraphCentralityProcedures implements RegistryContainer {
      * @return Result containing the node's id and the corresponding density of maximum neighborhood component
      */
     @Procedure(name = "analysis.network.centrality.dmnc", description = "Calculates the density of the maximum neighborhood component for a node")
-    public static ResultSet densityOfMaximumNeighborhoodComponent(final BaseGraph graph, final Node node, final GraphMode mode, final double epsilon) throws IOException {
+    public static ResultSet densityOfMaximumNeighborhoodComponent(final BaseGraph graph, final Node node, final GraphMode mode, final double epsilon) {
         BFSResult maximumConnectedComponent = GraphProcedureUtils.getMaximumConnectedComponent(graph, node.getId(), mode);
-        double density = maximumConnectedComponent.getEdgePathIds().size() / Math.pow(maximumConnectedComponent.getNodeIds().size(), epsilon);
+        double density = 0;
+        if (maximumConnectedComponent != null)
+            density = maximumConnectedComponent.getEdgePathIds().size() / Math.pow(maximumConnectedComponent.getNodeIds().size(), epsilon);
         ResultSet result = new ResultSet("id", "dmnc");
         result.addRow(new ResultRow(new String[]{"id", "dmnc"}, new Object[]{node.getId(), density}));
         return result;
     }
 
     /**
-     * Calculates the maximal clique centrality for a given node.
+     * Calculates the maximum neighborhood component and its density for all nodes of a graph in one parallel sweep over
+     * a shared adjacency snapshot.
+     * @param graph The graph to be analyzed
+     * @param mode Orientation of the graph
+     * @param epsilon Exponent applied to the component size for the density
+     * @param view Name of a registered subgraph view to analyze instead of the whole graph, null or empty for the whole graph
+     * @return Result set containing each node's id, its MNC and its DMNC score
+     */
+    @Procedure(name = "analysis.network.centrality.mnc.all", description = "Calculates the maximum neighborhood component and its density for all nodes")
+    @Procedure(name = "analysis.network.centrality.dmnc.all", description = "Calculates the maximum neighborhood component and its density for all nodes")
+    public static ResultSet neighborhoodComponentsAll(final BaseGraph graph, final GraphMode mode, final double epsilon, final String view) {
+        final CSRGraph adjacency = CSRGraph.build(graph, mode, view);
+        final NeighborhoodComponentFinder finder = new NeighborhoodComponentFinder(adjacency);
+        ResultSet result = new ResultSet("id", "mnc", "dmnc");
+        for (int i = 0; i < adjacency.getNumberOfNodes(); i++) {
+            result.addRow(new ResultRow(new String[]{"id", "mnc", "dmnc"}, new Object[]{adjacency.getNodeId(i), finder.getComponentSize(i), finder.getDensity(i, epsilon)}));
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the local clustering coefficient of a node, i.e. the fraction of neighbor pairs that are connected
+     * by an edge. In directed mode, ordered pairs of out-neighbors are considered.
+     * @param graph The graph in which the node resides
+     * @param node Source node
+     * @param mode Orientation of the graph
+     * @return Result set containing the node's id and its clustering coefficient
+     */
+    @Procedure(name = "analysis.network.centrality.clustering", description = "Calculates the local clustering coefficient of a node")
+    public static ResultSet clustering(final BaseGraph graph, final Node node, final GraphMode mode) {
+        final Set<Long> neighbors = new HashSet<>(GraphProcedureUtils.getNeighbors(graph, node.getId(), mode));
+        neighbors.remove(node.getId());
+        // count ordered neighbor pairs (u, w) with an edge from u to w (undirected edges are seen from both sides)
+        long links = 0;
+        for (final Long neighborId : neighbors) {
+            for (final Long otherId : new HashSet<>(GraphProcedureUtils.getNeighbors(graph, neighborId, mode))) {
+                if (!otherId.equals(neighborId) && neighbors.contains(otherId))
+                    links++;
+            }
+        }
+        final long degree = neighbors.size();
+        final double clustering = degree < 2 ? 0 : (double) links / (degree * (degree - 1));
+        ResultSet result = new ResultSet("id", "clustering");
+        result.addRow(new ResultRow(new String[]{"id", "clustering"}, new Object[]{node.getId(), clustering}));
+        return result;
+    }
+
+    /**
+     * Calculates the triangle count and local clustering coefficient for all nodes of a graph in parallel.
+     * @param graph The graph to be analyzed
+     * @param mode Orientation of the graph
+     * @param view Name of a registered subgraph view to analyze instead of the whole graph, null or empty for the whole graph
+     * @return Result set containing each node's id, its number of triangles and its clustering coefficient
+     */
+    @Procedure(name = "analysis.network.centrality.clustering.all", description = "Calculates the local clustering coefficient for all nodes")
+    public static ResultSet clusteringAll(final BaseGraph graph, final GraphMode mode, final String view) {
+        final CSRGraph adjacency = CSRGraph.build(graph, mode, view);
+        final TriangleCounter counter = new TriangleCounter(adjacency);
+        ResultSet result = new ResultSet("id", "triangles", "clustering");
+        for (int i = 0; i < adjacency.getNumberOfNodes(); i++) {
+            result.addRow(new ResultRow(new String[]{"id", "triangles", "clustering"}, new Object[]{adjacency.getNodeId(i), counter.getTriangles(i), counter.getClustering(i)}));
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the global clustering of a graph, i.e. the average local clustering coefficient and the transitivity
+     * (ratio of closed to all connected triplets).
+     * @param graph The graph to be analyzed
+     * @param mode Orientation of the graph
+     * @param view Name of a registered subgraph view to analyze instead of the whole graph, null or empty for the whole graph
+     * @return Result set containing the average clustering coefficient and the transitivity
+     */
+    @Procedure(name = "analysis.network.centrality.clustering.global", description = "Calculates the average clustering coefficient and the transitivity of a graph")
+    public static ResultSet clusteringGlobal(final BaseGraph graph, final GraphMode mode, final String view) {
+        final TriangleCounter counter = new TriangleCounter(CSRGraph.build(graph, mode, view));
+        ResultSet result = new ResultSet("clustering", "transitivity");
+        result.addRow(new ResultRow(new String[]{"clustering", "transitivity"}, new Object[]{counter.getAverageClustering(), counter.getTransitivity()}));
+        return result;
+    }
+
+    /**
+     * Counts all triangles of a graph. In directed mode, transitive triangles (u -> v, u -> w, v -> w) are counted.
+     * @param graph The graph to be analyzed
+     * @param mode Orientation of the graph
+     * @param view Name of a registered subgraph view to analyze instead of the whole graph, null or empty for the whole graph
+     * @return Result set containing the number of triangles
+     */
+    @Procedure(name = "analysis.network.triangles", description = "Counts all triangles of a graph")
+    public static ResultSet triangles(final BaseGraph graph, final GraphMode mode, final String view) {
+        final TriangleCounter counter = new TriangleCounter(CSRGraph.build(graph, mode, view));
+        ResultSet result = new ResultSet("triangles");
+        result.addRow(new ResultRow(new String[]{"triangles"}, new Object[]{counter.getTotalTriangles()}));
+        return result;
+    }
+
+    /**
+     * Calculates the core number (coreness) of all nodes, i.e. the largest k such that the node belongs to the k-core
+     * of the undirected graph.
+     * @param graph The graph to be analyzed
+     * @param parallel Determines whether the nodes of each core level are peeled in parallel instead of using the
+     *                 sequential bucket algorithm
+     * @param view Name of a registered subgraph view to analyze instead of the whole graph, null or empty for the whole graph
+     * @return Result set containing each node's id and its core number
+     */
+    @Procedure(name = "analysis.network.centrality.kcore", description = "Calculates the core number of all nodes")
+    public static ResultSet kCore(final BaseGraph graph, final boolean parallel, final String view) {
+        final CSRGraph adjacency = CSRGraph.build(graph, GraphMode.UNDIRECTED, view);
+        final CoreDecomposition decomposition = new CoreDecomposition(adjacency, parallel);
+        ResultSet result = new ResultSet("id", "core");
+        for (int i = 0; i < adjacency.getNumberOfNodes(); i++) {
+            result.addRow(new ResultRow(new String[]{"id", "core"}, new Object[]{adjacency.getNodeId(i), decomposition.getCore(i)}));
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the degeneracy of the undirected graph, i.e. the maximum core number of all nodes.
+     * @param graph The graph to be analyzed
+     * @param parallel Determines whether the nodes of each core level are peeled in parallel
+     * @param view Name of a registered subgraph view to analyze instead of the whole graph, null or empty for the whole graph
+     * @return Result set containing the degeneracy
+     */
+    @Procedure(name = "analysis.network.centrality.kcore.degeneracy", description = "Calculates the degeneracy of a graph")
+    public static ResultSet degeneracy(final BaseGraph graph, final boolean parallel, final String view) {
+        final CoreDecomposition decomposition = new CoreDecomposition(CSRGraph.build(graph, GraphMode.UNDIRECTED, view), parallel);
+        ResultSet result = new ResultSet("degeneracy");
+        result.addRow(new ResultRow(new String[]{"degeneracy"}, new Object[]{decomposition.getDegeneracy()}));
+        return result;
+    }
+
+    /**
+     * Calculates the maximal clique centrality for a given node. Only the maximal cliques inside the node's closed
+     * neighborhood are enumerated, so the cost depends on the local degree rather than on the whole graph.
      * @param graph Graph in which the node resides
      * @param node Target node
      * @return Result set containing the node's and its MCC score
      */
     @Procedure(name = "analysis.network.centrality.mcc", description = "Calculates the maximal clique centrality of a given node")
     public static ResultSet maximalCliqueCentrality(final BaseGraph graph, final Node node) {
-        // find cliques in graph
-        GraphCliqueFinder graphCliqueFinder = new GraphCliqueFinder(graph);
-        //ArrayList<Node> nodes = new ArrayList<>();
-        //graph.getNodes().forEach(n -> nodes.add(n));
-
-        // obtain all cliques containing target node
-        final List<List<Long>> cliquesForNode = graphCliqueFinder.getCliquesForNodeId(node.getId());
-        System.out.println("cliques containing node: " + cliquesForNode.size());
+        // obtain all maximal cliques containing target node
+        final List<List<Long>> cliquesForNode = GraphCliqueFinder.findCliquesForNodeId(graph, node.getId());
 
         // calculate score
         int mcc = 0;
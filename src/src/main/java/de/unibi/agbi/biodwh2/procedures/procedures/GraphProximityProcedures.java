@@ -8,11 +8,17 @@ import de.unibi.agbi.biodwh2.procedures.ResultRow;
 import de.unibi.agbi.biodwh2.procedures.ResultSet;
 import de.unibi.agbi.biodwh2.procedures.model.DijkstraResult;
 import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import de.unibi.agbi.biodwh2.procedures.utils.CSRGraph;
+import de.unibi.agbi.biodwh2.procedures.utils.DistanceMatrix;
+import de.unibi.agbi.biodwh2.procedures.utils.HeatKernel;
+import de.unibi.agbi.biodwh2.procedures.utils.LandmarkSketch;
+import de.unibi.agbi.biodwh2.procedures.utils.PersonalizedPageRank;
+import de.unibi.agbi.biodwh2.procedures.utils.PrunedLandmarkLabeling;
 import de.unibi.agbi.biodwh2.procedures.utils.ShortestPathFinder;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.*;
 
 /**
  * Contains procedures for network proximity analysis.
@@ -35,10 +41,28 @@ public final class GraphProximityProcedures implements RegistryContainer {
     @Procedure(name = "analysis.network.proximity.closest", description = "Calculates the Closest measure for a drug target set and a disease protein set")
     public static ResultSet closest(final BaseGraph graph, final String labelTarget, final String labelDiseaseProteins,
                                     final GraphMode mode, final boolean isModified) {
+        return closest(graph, labelTarget, labelDiseaseProteins, mode, isModified, new String[0]);
+    }
+
+    /**
+     * Calculates the Closest measure following only edges with certain labels, e.g. protein-protein interactions, so
+     * that paths through unrelated edges such as annotation or publication links are not counted.
+     *
+     * @param graph                Merged graph containing both drug targets and disease proteins
+     * @param labelTarget          Label describing the drug target nodes
+     * @param labelDiseaseProteins Label describing the disease protein nodes
+     * @param mode                 Graph mode, i.e. directed or undirected
+     * @param isModified           Determines whether the distance from a node to itself is ignored
+     * @param edgeLabels           Labels of the edges that may be traversed
+     * @return Result set with proximity measure for drug-disease pair
+     */
+    @Procedure(name = "analysis.network.proximity.closest.restricted", description = "Calculates the Closest measure for a drug target set and a disease protein set along edges with certain labels")
+    public static ResultSet closest(final BaseGraph graph, final String labelTarget, final String labelDiseaseProteins,
+                                    final GraphMode mode, final boolean isModified, final String... edgeLabels) {
         float sum = 0;
+        final ShortestPathFinder shortestPathFinder = new ShortestPathFinder(graph, mode, edgeLabels);
         for (final Node targetNode : graph.getNodes(labelTarget)) {
             // retrieve distances to all protein nodes and add minimum to accumulated sum
-            final ShortestPathFinder shortestPathFinder = new ShortestPathFinder(graph, mode);
             final DijkstraResult dijkstraResult = shortestPathFinder.dijkstra(targetNode.getId(), isModified,
                                                                labelDiseaseProteins);
             sum += Collections.min(dijkstraResult.getDistances().values());
@@ -61,11 +85,27 @@ public final class GraphProximityProcedures implements RegistryContainer {
     @Procedure(name = "analysis.network.proximity.shortest", description = "Calculates the Shortest measure for a drug target set and a disease protein set")
     public static ResultSet shortest(final BaseGraph graph, final String labelTarget, final String labelDiseaseProteins,
                                      final GraphMode mode) {
+        return shortest(graph, labelTarget, labelDiseaseProteins, mode, new String[0]);
+    }
+
+    /**
+     * Calculates the Shortest measure following only edges with certain labels.
+     *
+     * @param graph                Merged graph containing both drug targets and disease proteins
+     * @param labelTarget          Label describing the drug target nodes
+     * @param labelDiseaseProteins Label describing the disease protein nodes
+     * @param mode                 Graph mode, i.e. directed or undirected
+     * @param edgeLabels           Labels of the edges that may be traversed
+     * @return Result set with proximity measure for drug-disease pair
+     */
+    @Procedure(name = "analysis.network.proximity.shortest.restricted", description = "Calculates the Shortest measure for a drug target set and a disease protein set along edges with certain labels")
+    public static ResultSet shortest(final BaseGraph graph, final String labelTarget, final String labelDiseaseProteins,
+                                     final GraphMode mode, final String... edgeLabels) {
         float sum = 0;
+        final ShortestPathFinder shortestPathFinder = new ShortestPathFinder(graph, mode, edgeLabels);
         for (Node targetNode : graph.getNodes(labelTarget)) {
             // calculate all shortest paths to all disease proteins and add them up ...
             float sumShortestPaths = 0;
-            final ShortestPathFinder shortestPathFinder = new ShortestPathFinder(graph, mode);
             final DijkstraResult dijkstraResult = shortestPathFinder.dijkstra(targetNode.getId(), false,
                                                                           labelDiseaseProteins);
             for (Long distance : dijkstraResult.getDistances().values()) {
@@ -80,6 +120,104 @@ public final class GraphProximityProcedures implements RegistryContainer {
         return result;
     }
 
+    /**
+     * Approximates the Closest measure with a landmark distance sketch instead of one Dijkstra run per drug target.
+     * Besides the estimate, the measure is also calculated from the lower and upper distance bounds of the sketch, so
+     * the exact value lies between both. Pairs without a common landmark have no upper bound and are resolved with one
+     * exact breadth-first search from the drug target, their number is reported. Unreachable pairs have an infinite
+     * distance. The sketch is built once per graph and mode and reused by later calls with the same number of
+     * landmarks.
+     *
+     * @param graph                Merged graph containing both drug targets and disease proteins
+     * @param labelTarget          Label describing the drug target nodes
+     * @param labelDiseaseProteins Label describing the disease protein nodes
+     * @param mode                 Graph mode, i.e. directed or undirected
+     * @param isModified           Determines whether the distance from a node to itself is ignored
+     * @param landmarks            Number of landmarks of the sketch, more landmarks tighten the bounds
+     * @return Result set with the estimated proximity measure, its lower and upper bound and the number of pairs
+     * resolved exactly
+     */
+    @Procedure(name = "analysis.network.proximity.closest.approx", description = "Approximates the Closest measure for a drug target set and a disease protein set with landmark distance bounds")
+    public static ResultSet closestApproximate(final BaseGraph graph, final String labelTarget, final String labelDiseaseProteins,
+                                               final GraphMode mode, final boolean isModified, final int landmarks) {
+        final LandmarkSketch sketch = LandmarkSketch.get(graph, mode, landmarks);
+        final long[] proteins = getNodeIds(graph, labelDiseaseProteins);
+        final double[] sums = new double[3];
+        long resolved = 0;
+        final long[] targets = getNodeIds(graph, labelTarget);
+        for (final long target : targets) {
+            final double[] minimum = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+            final LandmarkSketch.Bounds[] proteinBounds = sketch.queryAll(target, proteins);
+            for (int i = 0; i < proteins.length; i++) {
+                if (isModified && proteins[i] == target)
+                    continue;
+                final LandmarkSketch.Bounds bounds = proteinBounds[i];
+                if (bounds.isResolved())
+                    resolved++;
+                minimum[0] = Math.min(minimum[0], toDistance(bounds.getEstimate()));
+                minimum[1] = Math.min(minimum[1], toDistance(bounds.getLower()));
+                minimum[2] = Math.min(minimum[2], toDistance(bounds.getUpper()));
+            }
+            for (int i = 0; i < sums.length; i++)
+                sums[i] += minimum[i] / targets.length;
+        }
+        final String[] columns = new String[]{"d_c", "d_c_lower", "d_c_upper", "resolved_pairs"};
+        final ResultSet result = new ResultSet(columns);
+        result.addRow(new ResultRow(columns, new Object[]{sums[0], sums[1], sums[2], resolved}));
+        return result;
+    }
+
+    /**
+     * Approximates the Shortest measure with a landmark distance sketch instead of one Dijkstra run per drug target.
+     * Besides the estimate, the measure is also calculated from the lower and upper distance bounds of the sketch, so
+     * the exact value lies between both. Pairs without a common landmark have no upper bound and are resolved with one
+     * exact breadth-first search from the drug target, their number is reported. Unreachable pairs have an infinite
+     * distance. The sketch is built once per graph and mode and reused by later calls with the same number of
+     * landmarks.
+     *
+     * @param graph                Merged graph containing both drug targets and disease proteins
+     * @param labelTarget          Label describing the drug target nodes
+     * @param labelDiseaseProteins Label describing the disease protein nodes
+     * @param mode                 Graph mode, i.e. directed or undirected
+     * @param landmarks            Number of landmarks of the sketch, more landmarks tighten the bounds
+     * @return Result set with the estimated proximity measure, its lower and upper bound and the number of pairs
+     * resolved exactly
+     */
+    @Procedure(name = "analysis.network.proximity.shortest.approx", description = "Approximates the Shortest measure for a drug target set and a disease protein set with landmark distance bounds")
+    public static ResultSet shortestApproximate(final BaseGraph graph, final String labelTarget, final String labelDiseaseProteins,
+                                                final GraphMode mode, final int landmarks) {
+        final LandmarkSketch sketch = LandmarkSketch.get(graph, mode, landmarks);
+        final long[] proteins = getNodeIds(graph, labelDiseaseProteins);
+        final long[] targets = getNodeIds(graph, labelTarget);
+        final double weight = 1.0 / ((double) targets.length * proteins.length);
+        final double[] sums = new double[3];
+        long resolved = 0;
+        for (final long target : targets) {
+            for (final LandmarkSketch.Bounds bounds : sketch.queryAll(target, proteins)) {
+                if (bounds.isResolved())
+                    resolved++;
+                sums[0] += toDistance(bounds.getEstimate()) * weight;
+                sums[1] += toDistance(bounds.getLower()) * weight;
+                sums[2] += toDistance(bounds.getUpper()) * weight;
+            }
+        }
+        final String[] columns = new String[]{"d_s", "d_s_lower", "d_s_upper", "resolved_pairs"};
+        final ResultSet result = new ResultSet(columns);
+        result.addRow(new ResultRow(columns, new Object[]{sums[0], sums[1], sums[2], resolved}));
+        return result;
+    }
+
+    private static long[] getNodeIds(final BaseGraph graph, final String label) {
+        final List<Long> ids = new ArrayList<>();
+        for (final Node node : graph.getNodes(label))
+            ids.add(node.getId());
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static double toDistance(final long distance) {
+        return distance == Long.MAX_VALUE ? Double.POSITIVE_INFINITY : distance;
+    }
+
     /**
      * Calculates the Kernel proximity measure by weighting longer shortest paths with a penalty.
      *
@@ -185,4 +323,230 @@ public final class GraphProximityProcedures implements RegistryContainer {
         return result;
     }
 
-}
\ No newline at end of file
+
+    /**
+     * Calculates a random walk with restart (personalized PageRank) from all nodes with the seed label, e.g. the targets
+     * of a drug. Scores are approximated locally with forward push, so only the neighborhood reached by the walk is
+     * visited.
+     *
+     * @param graph       Graph to be analyzed
+     * @param labelSeeds  Label describing the seed nodes
+     * @param labelResult Label of the nodes to be returned, null or empty to return nodes with any label
+     * @param mode        Graph mode, i.e. directed or undirected
+     * @param restart     Probability of restarting at the seeds in each step, typically 0.15
+     * @param epsilon     Residual tolerance, the error of each score is at most epsilon times the node's degree
+     * @param k           Number of rows to return, non-positive values return all reached nodes
+     * @return Result set with rank, node id and score of the highest scoring nodes
+     */
+    @Procedure(name = "analysis.network.proximity.rwr", description = "Calculates a random walk with restart from a seed node set")
+    public static ResultSet randomWalkWithRestart(final BaseGraph graph, final String labelSeeds, final String labelResult,
+                                                  final GraphMode mode, final double restart, final double epsilon,
+                                                  final int k) {
+        final List<Long> seedIds = new ArrayList<>();
+        for (final Node node : graph.getNodes(labelSeeds))
+            seedIds.add(node.getId());
+        return randomWalkWithRestart(graph, seedIds, labelResult, mode, restart, epsilon, k);
+    }
+
+    /**
+     * Calculates the heat kernel proximity between drug targets T and disease proteins P. One unit of heat is placed
+     * uniformly on the drug targets and diffused along the undirected edges for time t, i.e. exp(-tL) is applied with
+     * the graph Laplacian L. The measure is the share of heat arriving at the disease proteins, so unlike the distance
+     * based measures larger values indicate closer sets. Diffusion is defined by the symmetric Laplacian, so unlike the
+     * other proximity measures this one takes no mode and always treats the graph as undirected.
+     *
+     * @param merged               Merged graph containing both drug targets and disease proteins
+     * @param labelTargets         Label describing the drug target nodes
+     * @param labelDiseaseProteins Label describing the disease protein nodes
+     * @param time                 Diffusion time t, larger values spread the heat further
+     * @param tolerance            Tolerance of the matrix exponential relative to the total heat, e.g. 1e-8
+     * @return Result set with heat kernel measure for drug-disease pair
+     */
+    @Procedure(name = "analysis.network.proximity.heat", description = "Calculates the heat kernel diffusion measure for a drug target set and a disease protein set")
+    public static ResultSet heat(final BaseGraph merged, final String labelTargets, final String labelDiseaseProteins,
+                                 final double time, final double tolerance) {
+        final CSRGraph adjacency = CSRGraph.build(merged, GraphMode.UNDIRECTED);
+        final List<Integer> targets = new ArrayList<>();
+        for (final Node node : merged.getNodes(labelTargets))
+            targets.add(adjacency.getIndex(node.getId()));
+        final double[] initial = new double[adjacency.getNumberOfNodes()];
+        for (final int index : targets)
+            initial[index] += 1.0 / targets.size();
+        final double[] heat = new HeatKernel(adjacency).apply(initial, time, tolerance);
+        double sum = 0;
+        for (final Node node : merged.getNodes(labelDiseaseProteins))
+            sum += heat[adjacency.getIndex(node.getId())];
+        final ResultSet result = new ResultSet("d_h");
+        result.addRow(new ResultRow(new String[]{"d_h"}, new Object[]{sum}));
+        return result;
+    }
+
+    /**
+     * Calculates a random walk with restart (personalized PageRank) from a single seed node.
+     *
+     * @param graph       Graph to be analyzed
+     * @param seed        Seed node
+     * @param labelResult Label of the nodes to be returned, null or empty to return nodes with any label
+     * @param mode        Graph mode, i.e. directed or undirected
+     * @param restart     Probability of restarting at the seed in each step, typically 0.15
+     * @param epsilon     Residual tolerance, the error of each score is at most epsilon times the node's degree
+     * @param k           Number of rows to return, non-positive values return all reached nodes
+     * @return Result set with rank, node id and score of the highest scoring nodes
+     */
+    @Procedure(name = "analysis.network.proximity.rwr.node", description = "Calculates a random walk with restart from a seed node")
+    public static ResultSet randomWalkWithRestart(final BaseGraph graph, final Node seed, final String labelResult,
+                                                  final GraphMode mode, final double restart, final double epsilon,
+                                                  final int k) {
+        return randomWalkWithRestart(graph, Collections.singletonList(seed.getId()), labelResult, mode, restart,
+                                     epsilon, k);
+    }
+
+    /**
+     * Calculates a random walk with restart (personalized PageRank) from an arbitrary set of seed nodes, e.g. a drug's
+     * targets that share no label. The walk restarts uniformly at the seeds.
+     *
+     * @param graph       Graph to be analyzed
+     * @param seeds       Seed nodes
+     * @param labelResult Label of the nodes to be returned, null or empty to return nodes with any label
+     * @param mode        Graph mode, i.e. directed or undirected
+     * @param restart     Probability of restarting at the seeds in each step, typically 0.15
+     * @param epsilon     Residual tolerance, the error of each score is at most epsilon times the node's degree
+     * @param k           Number of rows to return, non-positive values return all reached nodes
+     * @return Result set with rank, node id and score of the highest scoring nodes
+     */
+    @Procedure(name = "analysis.network.proximity.rwr.nodes", description = "Calculates a random walk with restart from a set of seed nodes")
+    public static ResultSet randomWalkWithRestart(final BaseGraph graph, final Node[] seeds, final String labelResult,
+                                                  final GraphMode mode, final double restart, final double epsilon,
+                                                  final int k) {
+        final List<Long> seedIds = new ArrayList<>();
+        for (final Node node : seeds)
+            seedIds.add(node.getId());
+        return randomWalkWithRestart(graph, seedIds, labelResult, mode, restart, epsilon, k);
+    }
+
+    /**
+     * Calculates a random walk with restart (personalized PageRank) from a set of seed node ids, ids of nodes that are
+     * not part of the graph are ignored.
+     *
+     * @param graph       Graph to be analyzed
+     * @param seedIds     Ids of the seed nodes
+     * @param labelResult Label of the nodes to be returned, null or empty to return nodes with any label
+     * @param mode        Graph mode, i.e. directed or undirected
+     * @param restart     Probability of restarting at the seeds in each step, typically 0.15
+     * @param epsilon     Residual tolerance, the error of each score is at most epsilon times the node's degree
+     * @param k           Number of rows to return, non-positive values return all reached nodes
+     * @return Result set with rank, node id and score of the highest scoring nodes
+     */
+    public static ResultSet randomWalkWithRestart(final BaseGraph graph, final Collection<Long> seedIds,
+                                                  final String labelResult, final GraphMode mode, final double restart,
+                                                  final double epsilon, final int k) {
+        // the walk is local, so the snapshot is cached for further queries instead of rebuilt for each one
+        final CSRGraph adjacency = CSRGraph.buildCached(graph, mode);
+        final int[] seeds = seedIds.stream().mapToInt(adjacency::getIndex).filter(index -> index >= 0).toArray();
+        final PersonalizedPageRank pageRank = new PersonalizedPageRank(adjacency, seeds, restart, epsilon);
+        Set<Long> allowedIds = null;
+        if (labelResult != null && !labelResult.isEmpty()) {
+            allowedIds = new HashSet<>();
+            for (final Node node : graph.getNodes(labelResult))
+                allowedIds.add(node.getId());
+        }
+        final ResultSet result = new ResultSet("rank", "id", "score");
+        int rank = 0;
+        for (final int index : pageRank.getRankedNodes()) {
+            if (k > 0 && rank == k)
+                break;
+            final long nodeId = adjacency.getNodeId(index);
+            if (allowedIds != null && !allowedIds.contains(nodeId))
+                continue;
+            rank++;
+            result.addRow(new ResultRow(new String[]{"rank", "id", "score"}, new Object[]{rank, nodeId, pageRank.getScore(index)}));
+        }
+        return result;
+    }
+
+    /**
+     * Builds a pruned landmark labeling distance index for the graph and registers it, so that all proximity measures
+     * in the given mode answer their distance queries from the index instead of running Dijkstra's algorithm.
+     *
+     * @param graph Graph to be indexed
+     * @param mode  Graph mode, i.e. directed or undirected
+     * @param path  File the index is written to, null or empty to keep it in memory only
+     * @return Result set with the mode, the number of indexed nodes and the total number of label entries
+     */
+    @Procedure(name = "analysis.network.proximity.index.build", description = "Builds and registers an exact distance index for the proximity measures")
+    public static ResultSet buildDistanceIndex(final BaseGraph graph, final GraphMode mode, final String path) throws IOException {
+        final PrunedLandmarkLabeling index = PrunedLandmarkLabeling.build(graph, mode);
+        if (path != null && !path.isEmpty())
+            index.write(Paths.get(path));
+        PrunedLandmarkLabeling.register(graph, index);
+        return createDistanceIndexResult(index);
+    }
+
+    /**
+     * Loads a pruned landmark labeling distance index written by {@link #buildDistanceIndex(BaseGraph, GraphMode,
+     * String)} and registers it for the graph.
+     *
+     * @param graph Graph the index was built for
+     * @param path  Index file
+     * @return Result set with the mode, the number of indexed nodes and the total number of label entries
+     */
+    @Procedure(name = "analysis.network.proximity.index.load", description = "Loads and registers an exact distance index for the proximity measures")
+    public static ResultSet loadDistanceIndex(final BaseGraph graph, final String path) throws IOException {
+        final PrunedLandmarkLabeling index = PrunedLandmarkLabeling.read(Paths.get(path));
+        if (!index.isCompatible(graph))
+            throw new IllegalArgumentException("The distance index " + path + " was built for a different graph");
+        PrunedLandmarkLabeling.register(graph, index);
+        return createDistanceIndexResult(index);
+    }
+
+    private static ResultSet createDistanceIndexResult(final PrunedLandmarkLabeling index) {
+        final ResultSet result = new ResultSet("mode", "nodes", "entries");
+        result.addRow(new ResultRow(new String[]{"mode", "nodes", "entries"}, new Object[]{index.getMode().name(), index.getNumberOfNodes(), index.getNumberOfEntries()}));
+        return result;
+    }
+
+    /**
+     * Computes the distances from all nodes with the given labels, e.g. drug targets and disease proteins, to all nodes
+     * of the graph and writes them to a memory-mapped file with one byte per entry. The matrix is registered, so that
+     * all proximity measures in the given mode read the distances of these nodes from the file.
+     *
+     * @param graph  Graph to be analyzed
+     * @param mode   Graph mode, i.e. directed or undirected
+     * @param path   Matrix file, typically placed next to the graph file
+     * @param labels Labels of the source nodes
+     * @return Result set with the mode, the number of source nodes and the number of nodes per row
+     */
+    @Procedure(name = "analysis.network.proximity.matrix.build", description = "Computes and registers a memory-mapped distance matrix from a node subset to all nodes")
+    public static ResultSet buildDistanceMatrix(final BaseGraph graph, final GraphMode mode, final String path,
+                                                final String... labels) throws IOException {
+        final List<Long> sourceIds = new ArrayList<>();
+        for (final String label : labels)
+            for (final long nodeId : getNodeIds(graph, label))
+                sourceIds.add(nodeId);
+        final DistanceMatrix matrix = DistanceMatrix.compute(graph, mode, sourceIds.stream().mapToLong(Long::longValue).toArray(),
+                                                             Paths.get(path));
+        DistanceMatrix.register(graph, matrix);
+        return createDistanceMatrixResult(matrix);
+    }
+
+    /**
+     * Opens a distance matrix file written by {@link #buildDistanceMatrix(BaseGraph, GraphMode, String, String...)}
+     * and registers it for the graph. Files computed for a different version of the graph are rejected.
+     *
+     * @param graph Graph the matrix was computed for
+     * @param path  Matrix file
+     * @return Result set with the mode, the number of source nodes and the number of nodes per row
+     */
+    @Procedure(name = "analysis.network.proximity.matrix.load", description = "Opens and registers a memory-mapped distance matrix")
+    public static ResultSet loadDistanceMatrix(final BaseGraph graph, final String path) throws IOException {
+        final DistanceMatrix matrix = DistanceMatrix.open(graph, Paths.get(path));
+        DistanceMatrix.register(graph, matrix);
+        return createDistanceMatrixResult(matrix);
+    }
+
+    private static ResultSet createDistanceMatrixResult(final DistanceMatrix matrix) {
+        final ResultSet result = new ResultSet("mode", "sources", "nodes");
+        result.addRow(new ResultRow(new String[]{"mode", "sources", "nodes"}, new Object[]{matrix.getMode().name(), matrix.getSourceIds().length, matrix.getNumberOfNodes()}));
+        return result;
+    }
+}
@@ -1,13 +1,26 @@
 package de.unibi.agbi.biodwh2.procedures.procedures;
 
 import de.unibi.agbi.biodwh2.core.model.graph.BaseGraph;
+import de.unibi.agbi.biodwh2.core.model.graph.Node;
 import de.unibi.agbi.biodwh2.procedures.Procedure;
 import de.unibi.agbi.biodwh2.procedures.RegistryContainer;
 import de.unibi.agbi.biodwh2.procedures.ResultRow;
 import de.unibi.agbi.biodwh2.procedures.ResultSet;
 import de.unibi.agbi.biodwh2.procedures.model.BFSResult;
+import de.unibi.agbi.biodwh2.procedures.model.DijkstraResult;
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import de.unibi.agbi.biodwh2.procedures.utils.CSRGraph;
+import de.unibi.agbi.biodwh2.procedures.utils.CSRGraphSnapshot;
+import de.unibi.agbi.biodwh2.procedures.utils.CompressedGraph;
 import de.unibi.agbi.biodwh2.procedures.utils.GraphProcedureUtils;
+import de.unibi.agbi.biodwh2.procedures.utils.HyperANF;
+import de.unibi.agbi.biodwh2.procedures.utils.ShortestPathFinder;
+import de.unibi.agbi.biodwh2.procedures.utils.SubgraphView;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -30,4 +43,148 @@ public class GraphTraversalProcedures implements RegistryContainer {
         return result;
     }
 
+    /**
+     * Approximates the neighbourhood function of a graph with HyperANF, i.e. for each number of hops t the number of
+     * node pairs (x, y) with d(x, y) &lt;= t, including the pairs (x, x).
+     * @param graph Graph to be analyzed
+     * @param mode Orientation of the graph
+     * @param log2m Base-2 logarithm of the number of HyperLogLog registers per node (4 to 16)
+     * @param maxHops Maximum number of hops, non-positive values iterate until the function is stable
+     * @param view Name of a registered subgraph view to analyze instead of the whole graph, null or empty for the whole graph
+     * @return Result containing the estimated number of pairs within each number of hops
+     */
+    @Procedure(name = "analysis.network.traversal.neighbourhood", description = "Approximates the neighbourhood function of a graph with HyperANF")
+    public static ResultSet neighbourhoodFunction(final BaseGraph graph, final GraphMode mode, final int log2m, final int maxHops, final String view) {
+        final HyperANF hyperANF = new HyperANF(CSRGraph.build(graph, mode, view), log2m, maxHops, 0);
+        final double[] neighbourhoodFunction = hyperANF.getNeighbourhoodFunction();
+        ResultSet result = new ResultSet("hops", "pairs");
+        for(int hops = 0; hops < neighbourhoodFunction.length; hops++) {
+            result.addRow(new ResultRow(new String[]{"hops", "pairs"}, new Object[]{hops, neighbourhoodFunction[hops]}));
+        }
+        return result;
+    }
+
+    /**
+     * Estimates distance statistics of a graph from its HyperANF neighbourhood function.
+     * @param graph Graph to be analyzed
+     * @param mode Orientation of the graph
+     * @param log2m Base-2 logarithm of the number of HyperLogLog registers per node (4 to 16)
+     * @param view Name of a registered subgraph view to analyze instead of the whole graph, null or empty for the whole graph
+     * @return Result containing the estimated number of reachable pairs of distinct nodes, the average distance, the
+     * effective diameter (90th percentile) and the number of hops until the neighbourhood function was stable
+     */
+    @Procedure(name = "analysis.network.traversal.distances", description = "Estimates average distance and effective diameter of a graph with HyperANF")
+    public static ResultSet distanceStatistics(final BaseGraph graph, final GraphMode mode, final int log2m, final String view) {
+        final HyperANF hyperANF = new HyperANF(CSRGraph.build(graph, mode, view), log2m, 0, 0);
+        final double[] neighbourhoodFunction = hyperANF.getNeighbourhoodFunction();
+        final String[] columns = new String[]{"pairs", "average distance", "effective diameter", "hops"};
+        ResultSet result = new ResultSet(columns);
+        result.addRow(new ResultRow(columns, new Object[]{neighbourhoodFunction[neighbourhoodFunction.length - 1] - neighbourhoodFunction[0], hyperANF.getAverageDistance(), hyperANF.getEffectiveDiameter(0.9), neighbourhoodFunction.length - 1}));
+        return result;
+    }
+
+    /**
+     * Loads the adjacency snapshot of a graph from a file, or builds and writes it if the file is missing or stale, and
+     * registers it so that all snapshot based procedures skip scanning the graph's edges.
+     * @param graph Graph to snapshot
+     * @param mode Orientation of the graph
+     * @param incoming Whether to load the snapshot of incoming edges used by some directed procedures
+     * @param path Snapshot file, typically placed next to the graph file
+     * @param graphFile Graph file used to detect stale snapshots, null or empty to only compare the graph's fingerprint
+     * @return Result containing the number of nodes and adjacency entries of the snapshot
+     */
+    @Procedure(name = "analysis.network.snapshot", description = "Loads or builds a persistent adjacency snapshot of a graph")
+    public static ResultSet snapshot(final BaseGraph graph, final GraphMode mode, final boolean incoming, final String path,
+                                     final String graphFile) throws IOException {
+        final Path graphFilePath = graphFile == null || graphFile.isEmpty() ? null : Paths.get(graphFile);
+        final CSRGraph snapshot = CSRGraphSnapshot.loadOrBuild(graph, mode, incoming, Paths.get(path), graphFilePath);
+        CSRGraphSnapshot.register(graph, snapshot, incoming, graphFilePath);
+        ResultSet result = new ResultSet("nodes", "entries");
+        result.addRow(new ResultRow(new String[]{"nodes", "entries"}, new Object[]{snapshot.getNumberOfNodes(), snapshot.getNumberOfEntries()}));
+        return result;
+    }
+
+    /**
+     * Builds a compressed adjacency snapshot of a graph and registers it, so that breadth-first searches and shortest
+     * path queries decode its neighbor lists instead of looking up the graph's edges.
+     * @param graph Graph to compress
+     * @param mode Orientation of the graph
+     * @return Result containing the number of nodes and adjacency entries, the size of the compressed lists in bytes
+     * and the average number of bits per entry
+     */
+    @Procedure(name = "analysis.network.compress", description = "Builds and registers a compressed adjacency snapshot of a graph")
+    public static ResultSet compress(final BaseGraph graph, final GraphMode mode) {
+        final CompressedGraph compressed = CompressedGraph.build(graph, mode);
+        CompressedGraph.register(graph, compressed);
+        final String[] columns = new String[]{"nodes", "entries", "bytes", "bits per entry"};
+        ResultSet result = new ResultSet(columns);
+        result.addRow(new ResultRow(columns, new Object[]{compressed.getNumberOfNodes(), compressed.getNumberOfEntries(), compressed.getNumberOfBytes(), compressed.getNumberOfEntries() > 0 ? 8.0 * compressed.getNumberOfBytes() / compressed.getNumberOfEntries() : 0.0}));
+        return result;
+    }
+
+    /**
+     * Registers a named view of a graph restricted to the nodes and edges with certain labels, e.g. to analyze only
+     * protein-protein interactions of a merged graph. The view filters the graph's adjacency snapshots with bitsets and
+     * no subgraph is copied. Every procedure with a {@code view} parameter analyzes the view instead of the whole graph
+     * when given its name, until {@code analysis.network.subgraph.clear} is called. The view is recreated once the
+     * graph changes.
+     * @param graph Graph to be filtered
+     * @param name Name of the view
+     * @param nodeLabels Allowed node labels, empty to keep all nodes
+     * @param edgeLabels Allowed edge labels, empty to keep all edges
+     * @return Result containing the number of nodes and directed edges of the view
+     */
+    @Procedure(name = "analysis.network.subgraph", description = "Registers a named label-filtered subgraph view of a graph")
+    public static ResultSet subgraph(final BaseGraph graph, final String name, final String[] nodeLabels, final String[] edgeLabels) {
+        SubgraphView.register(graph, name, nodeLabels, edgeLabels);
+        final SubgraphView view = SubgraphView.get(graph, name, GraphMode.DIRECTED);
+        ResultSet result = new ResultSet("nodes", "edges");
+        result.addRow(new ResultRow(new String[]{"nodes", "edges"}, new Object[]{view.getNumberOfNodes(), view.getNumberOfEntries()}));
+        return result;
+    }
+
+    /**
+     * Removes all registered subgraph views of a graph. Adjacency snapshots of the graph are kept.
+     * @param graph Graph whose views are to be removed
+     * @return Empty result set
+     */
+    @Procedure(name = "analysis.network.subgraph.clear", description = "Removes registered subgraph views of a graph")
+    public static ResultSet clearSubgraph(final BaseGraph graph) {
+        SubgraphView.unregister(graph);
+        return new ResultSet();
+    }
+
+    /**
+     * Finds a shortest path between two nodes that only follows edges with certain labels, so that e.g. annotation or
+     * publication links of a merged graph cannot be used as shortcuts. Only the adjacency partitions of the allowed
+     * labels are traversed.
+     * @param graph Graph in which the nodes reside
+     * @param source Source node
+     * @param target Target node
+     * @param mode Orientation of the graph
+     * @param view Name of a registered subgraph view to search instead of the whole graph, null or empty for the whole
+     * graph
+     * @param edgeLabels Labels of the edges that may be traversed, all edges are followed if empty, must be empty if a
+     * view is given
+     * @return Result containing the path length and the node ids on the path, the length is null if the target is not
+     * reachable
+     */
+    @Procedure(name = "analysis.network.traversal.path", description = "Finds a shortest path between two nodes along edges with certain labels")
+    public static ResultSet shortestPath(final BaseGraph graph, final Node source, final Node target, final GraphMode mode, final String view,
+                                         final String... edgeLabels) {
+        final DijkstraResult dijkstraResult = createPathFinder(graph, mode, view, edgeLabels).dijkstra(source.getId(), target.getId());
+        final Long distance = dijkstraResult.getDistances().get(target.getId());
+        final boolean reachable = distance != null && distance != Long.MAX_VALUE;
+        ResultSet result = new ResultSet("distance", "path");
+        result.addRow(new ResultRow(new String[]{"distance", "path"}, new Object[]{reachable ? distance : null, reachable ? dijkstraResult.getPath() : new ArrayList<Long>()}));
+        return result;
+    }
+
+    private static ShortestPathFinder createPathFinder(final BaseGraph graph, final GraphMode mode, final String view, final String... edgeLabels) {
+        if (view == null || view.isEmpty())
+            return new ShortestPathFinder(graph, mode, edgeLabels);
+        if (edgeLabels.length > 0)
+            throw new IllegalArgumentException("Edge labels cannot be combined with a subgraph view, register the view with the edge labels instead");
+        return ShortestPathFinder.forView(graph, mode, view);
+    }
 }
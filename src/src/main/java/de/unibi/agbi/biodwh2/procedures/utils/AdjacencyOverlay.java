@@ -0,0 +1,355 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.BaseGraph;
+import de.unibi.agbi.biodwh2.core.model.graph.Edge;
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Mutable adjacency view consisting of an immutable {@link CSRGraph} base snapshot and a small hash-based delta of
+ * added and removed edges, which is merged into the neighbor lists on read. Once the delta holds more changes than the
+ * compaction threshold, a new base snapshot containing all changes is built on a background thread and swapped in
+ * atomically; changes made in the meantime stay in the delta. Readers and writers may run concurrently, compactions
+ * (in the background or by {@link #compact()} and {@link #getView()}) are serialized.
+ * <p>
+ * {@link #getNeighbors(long)} is the merged read path and never rebuilds anything, whereas {@link #getView()} has to
+ * compact a non-empty delta to return a plain snapshot.
+ * <p>
+ * Nodes are identified by their ids, edges added for nodes outside the base snapshot create these nodes.
+ * <p>
+ * {@link CSRGraph#buildCached} uses an overlay to {@link #refresh} a stale cached snapshot: the changed edges are
+ * applied to the stale snapshot and compacted, instead of building a new snapshot from scratch.
+ */
+public class AdjacencyOverlay {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdjacencyOverlay.class);
+    /**
+     * A stale snapshot is refreshed if at most one in this many entries changed, otherwise it is rebuilt
+     */
+    private static final int REFRESH_FRACTION = 8;
+    private static final int MIN_REFRESH_CHANGES = 16;
+    private static final ExecutorService COMPACTION_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "adjacency-overlay-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final GraphMode mode;
+    private final int compactionThreshold;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * Held while a compaction builds and swaps in a new base snapshot
+     */
+    private final Object compactionLock = new Object();
+    private CSRGraph base;
+    /**
+     * Added edges by node id as (neighbor id, edge id, sequence number) triples
+     */
+    private final Map<Long, List<long[]>> added = new HashMap<>();
+    /**
+     * Sequence numbers of removed edges by edge id, applied to the base snapshot
+     */
+    private final Map<Long, Long> removed = new HashMap<>();
+    /**
+     * Number of the last change, compactions only drop the changes up to the number they started with
+     */
+    private long sequence;
+    private int deltaSize;
+    private Future<?> compaction;
+
+    /**
+     * @param base                Initial base snapshot
+     * @param compactionThreshold Number of delta changes triggering a background compaction, non-positive values
+     *                            disable automatic compaction
+     */
+    public AdjacencyOverlay(final CSRGraph base, final int compactionThreshold) {
+        this.base = base;
+        this.mode = base.getMode();
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * @param graph               Graph to snapshot
+     * @param mode                Orientation of the graph
+     * @param compactionThreshold Number of delta changes triggering a background compaction
+     */
+    public AdjacencyOverlay(final BaseGraph graph, final GraphMode mode, final int compactionThreshold) {
+        this(CSRGraph.build(graph, mode), compactionThreshold);
+    }
+
+    /**
+     * Adds an edge, e.g. after it was added to the underlying graph.
+     */
+    public void addEdge(final long edgeId, final long fromId, final long toId) {
+        lock.writeLock().lock();
+        try {
+            sequence++;
+            added.computeIfAbsent(fromId, key -> new ArrayList<>()).add(new long[]{toId, edgeId, sequence});
+            if (mode == GraphMode.UNDIRECTED && fromId != toId)
+                added.computeIfAbsent(toId, key -> new ArrayList<>()).add(new long[]{fromId, edgeId, sequence});
+            deltaSize++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        scheduleCompactionIfNeeded();
+    }
+
+    /**
+     * Removes an edge, regardless of whether it is part of the base snapshot or was added later. The edge id may be
+     * added again afterwards, e.g. for an edge whose end points changed.
+     */
+    public void removeEdge(final long edgeId) {
+        lock.writeLock().lock();
+        try {
+            sequence++;
+            for (final List<long[]> entries : added.values())
+                entries.removeIf(entry -> entry[1] == edgeId);
+            added.values().removeIf(List::isEmpty);
+            removed.put(edgeId, sequence);
+            deltaSize++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        scheduleCompactionIfNeeded();
+    }
+
+    /**
+     * Returns the ids of all neighbors of a node in the merged view, parallel edges yield duplicate ids.
+     */
+    public long[] getNeighbors(final long nodeId) {
+        lock.readLock().lock();
+        try {
+            final List<long[]> delta = added.getOrDefault(nodeId, Collections.emptyList());
+            final int index = base.getIndex(nodeId);
+            final int baseDegree = index >= 0 ? base.getDegree(index) : 0;
+            final long[] neighbors = new long[baseDegree + delta.size()];
+            int count = 0;
+            if (index >= 0) {
+                for (int position = base.getStart(index); position < base.getEnd(index); position++)
+                    if (removed.isEmpty() || !removed.containsKey(base.getEdgeId(position)))
+                        neighbors[count++] = base.getNodeId(base.getTarget(position));
+            }
+            for (final long[] entry : delta)
+                neighbors[count++] = entry[0];
+            return count == neighbors.length ? neighbors : Arrays.copyOf(neighbors, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the merged view. If the delta is not empty, it is compacted first, which takes time linear
+     * in the size of the graph. A running compaction is awaited instead of starting a second one, use
+     * {@link #getNeighbors(long)} for reads that do not need a snapshot.
+     */
+    public CSRGraph getView() {
+        lock.readLock().lock();
+        try {
+            if (deltaSize == 0)
+                return base;
+        } finally {
+            lock.readLock().unlock();
+        }
+        return compact();
+    }
+
+    /**
+     * Returns the number of changes currently held in the delta.
+     */
+    public int getDeltaSize() {
+        lock.readLock().lock();
+        try {
+            return deltaSize;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void scheduleCompactionIfNeeded() {
+        synchronized (this) {
+            if (compactionThreshold <= 0 || getDeltaSize() < compactionThreshold ||
+                compaction != null && !compaction.isDone())
+                return;
+            compaction = COMPACTION_EXECUTOR.submit(this::compact);
+        }
+    }
+
+    /**
+     * Waits until a running background compaction has finished.
+     */
+    public void awaitCompaction() throws InterruptedException {
+        final Future<?> current;
+        synchronized (this) {
+            current = compaction;
+        }
+        if (current == null)
+            return;
+        try {
+            current.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Compaction failed", e.getCause());
+        }
+    }
+
+    /**
+     * Merges the current delta into a new base snapshot. Changes made while the snapshot is built remain in the delta.
+     * Only one compaction runs at a time, a caller arriving during a compaction waits for it and only compacts the
+     * changes made in the meantime, if there are any.
+     * @return New base snapshot
+     */
+    public CSRGraph compact() {
+        synchronized (compactionLock) {
+            final CSRGraph snapshotBase;
+            final Map<Long, List<long[]>> snapshotAdded = new HashMap<>();
+            final Set<Long> snapshotRemoved;
+            final long snapshotSequence;
+            lock.readLock().lock();
+            try {
+                if (deltaSize == 0)
+                    return base;
+                snapshotBase = base;
+                for (final Map.Entry<Long, List<long[]>> entry : added.entrySet())
+                    snapshotAdded.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+                snapshotRemoved = new HashSet<>(removed.keySet());
+                snapshotSequence = sequence;
+            } finally {
+                lock.readLock().unlock();
+            }
+            final CSRGraph compacted = merge(snapshotBase, snapshotAdded, snapshotRemoved);
+            swap(snapshotBase, compacted, snapshotSequence);
+            LOGGER.info("Compacted adjacency overlay into " + compacted.getNumberOfEntries() + " entries");
+            return compacted;
+        }
+    }
+
+    /**
+     * Replaces the base snapshot the compaction started from and removes the compacted changes, i.e. all changes up to
+     * the sequence number the compaction started with, from the delta. Removals made during the compaction stay in the
+     * delta and apply to the new base snapshot, even if the edge was removed before as well.
+     */
+    private void swap(final CSRGraph snapshotBase, final CSRGraph compacted, final long snapshotSequence) {
+        lock.writeLock().lock();
+        try {
+            if (base != snapshotBase)
+                throw new IllegalStateException("The base snapshot was replaced during the compaction");
+            base = compacted;
+            for (final List<long[]> entries : added.values())
+                entries.removeIf(entry -> entry[2] <= snapshotSequence);
+            added.values().removeIf(List::isEmpty);
+            removed.values().removeIf(removedSequence -> removedSequence <= snapshotSequence);
+            deltaSize = removed.size();
+            for (final List<long[]> entries : added.values())
+                deltaSize += entries.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Builds a snapshot from the base without removed edges plus all added edges. Removing an edge drops its added
+     * entries, so added entries of a removed edge id were added again afterwards and are kept.
+     */
+    private CSRGraph merge(final CSRGraph snapshotBase, final Map<Long, List<long[]>> snapshotAdded,
+                           final Set<Long> snapshotRemoved) {
+        final Set<Long> nodeIdSet = new HashSet<>();
+        for (final long nodeId : snapshotBase.getNodeIds())
+            nodeIdSet.add(nodeId);
+        for (final Map.Entry<Long, List<long[]>> entry : snapshotAdded.entrySet()) {
+            nodeIdSet.add(entry.getKey());
+            for (final long[] neighbor : entry.getValue())
+                nodeIdSet.add(neighbor[0]);
+        }
+        final long[] nodeIds = nodeIdSet.stream().mapToLong(Long::longValue).sorted().toArray();
+        final int capacity = snapshotBase.getNumberOfEntries() +
+                             snapshotAdded.values().stream().mapToInt(List::size).sum();
+        final int[] from = new int[capacity];
+        final int[] to = new int[capacity];
+        final long[] ids = new long[capacity];
+        int edgeCount = 0;
+        // the entries are already stored per direction, so they are inserted as directed edges
+        for (int u = 0; u < snapshotBase.getNumberOfNodes(); u++) {
+            final int fromIndex = Arrays.binarySearch(nodeIds, snapshotBase.getNodeId(u));
+            for (int position = snapshotBase.getStart(u); position < snapshotBase.getEnd(u); position++) {
+                if (snapshotRemoved.contains(snapshotBase.getEdgeId(position)))
+                    continue;
+                from[edgeCount] = fromIndex;
+                to[edgeCount] = Arrays.binarySearch(nodeIds, snapshotBase.getNodeId(snapshotBase.getTarget(position)));
+                ids[edgeCount++] = snapshotBase.getEdgeId(position);
+            }
+        }
+        for (final Map.Entry<Long, List<long[]>> entry : snapshotAdded.entrySet()) {
+            final int fromIndex = Arrays.binarySearch(nodeIds, entry.getKey());
+            for (final long[] neighbor : entry.getValue()) {
+                from[edgeCount] = fromIndex;
+                to[edgeCount] = Arrays.binarySearch(nodeIds, neighbor[0]);
+                ids[edgeCount++] = neighbor[1];
+            }
+        }
+        final CSRGraph directed = CSRGraph.fromEdges(GraphMode.DIRECTED, nodeIds, from, to, ids, edgeCount);
+        return new CSRGraph(mode, directed.getNodeIds(), directed.getOffsets(), directed.getTargets(),
+                            directed.getEdgeIds());
+    }
+
+    public GraphMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Brings a stale snapshot up to date with the graph. One pass over the graph's edges marks the entries of the
+     * snapshot that are still present, the missing and unmarked edges are applied as an overlay delta and compacted.
+     * Edges whose end points changed are removed and added again.
+     * @param stale   Snapshot built from an earlier state of the graph
+     * @param graph   Graph the snapshot was built from
+     * @param reverse Whether the snapshot follows incoming edges
+     * @return Updated snapshot or null, if the node set changed or the delta exceeds the fraction of the snapshot
+     * above which a rebuild is cheaper
+     */
+    static CSRGraph refresh(final CSRGraph stale, final BaseGraph graph, final boolean reverse) {
+        if (!Arrays.equals(stale.getNodeIds(), CSRGraph.collectNodeIds(graph)))
+            return null;
+        final int maxChanges = Math.max(MIN_REFRESH_CHANGES, stale.getNumberOfEntries() / REFRESH_FRACTION);
+        final boolean undirected = stale.getMode() == GraphMode.UNDIRECTED;
+        final BitSet present = new BitSet(stale.getNumberOfEntries());
+        final List<long[]> addedEdges = new ArrayList<>();
+        for (final Edge edge : graph.getEdges()) {
+            final int from = stale.getIndex(reverse ? edge.getToId() : edge.getFromId());
+            final int to = stale.getIndex(reverse ? edge.getFromId() : edge.getToId());
+            if (from < 0 || to < 0)
+                continue;
+            final int position = stale.findEntry(from, to, edge.getId());
+            if (position >= 0) {
+                present.set(position);
+                if (undirected && from != to)
+                    present.set(stale.findEntry(to, from, edge.getId()));
+            } else {
+                if (addedEdges.size() == maxChanges)
+                    return null;
+                addedEdges.add(new long[]{edge.getId(), stale.getNodeId(from), stale.getNodeId(to)});
+            }
+        }
+        final AdjacencyOverlay overlay = new AdjacencyOverlay(stale, 0);
+        // removals first, so that edges with changed end points are added again afterwards
+        final Set<Long> removedEdges = new HashSet<>();
+        for (int position = present.nextClearBit(0); position < stale.getNumberOfEntries();
+             position = present.nextClearBit(position + 1)) {
+            if (removedEdges.add(stale.getEdgeId(position))) {
+                if (addedEdges.size() + removedEdges.size() > maxChanges)
+                    return null;
+                overlay.removeEdge(stale.getEdgeId(position));
+            }
+        }
+        for (final long[] edge : addedEdges)
+            overlay.addEdge(edge[0], edge[1], edge[2]);
+        LOGGER.info("Refreshing a stale adjacency snapshot with " + removedEdges.size() + " removed and " +
+                    addedEdges.size() + " added edge(s)");
+        return overlay.compact();
+    }
+}
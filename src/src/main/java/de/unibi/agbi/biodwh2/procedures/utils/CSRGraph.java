@@ -0,0 +1,417 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.BaseGraph;
+import de.unibi.agbi.biodwh2.core.model.graph.Edge;
+import de.unibi.agbi.biodwh2.core.model.graph.Node;
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+
+import java.util.Arrays;
+
+/**
+ * Immutable in-memory adjacency snapshot of a graph in compressed sparse row (CSR) format. Nodes are mapped to dense
+ * indices in ascending id order, the neighbors of node i are stored in {@code targets[offsets[i]..offsets[i + 1])}
+ * sorted by index, together with the id of the edge they were reached by.
+ * <p>
+ * In {@link GraphMode#DIRECTED} mode only outgoing edges are followed, in {@link GraphMode#UNDIRECTED} mode every edge
+ * is stored in both directions (self loops only once). Parallel edges are kept.
+ * <p>
+ * Algorithms should access the snapshot through {@link #getStart}, {@link #getEnd}, {@link #getTarget} and the other
+ * accessors: snapshots loaded by {@link CSRGraphSnapshot#read} are backed by the mapped file instead of heap arrays,
+ * and their array getters return copies.
+ */
+public class CSRGraph {
+
+    private final GraphMode mode;
+    /**
+     * Original node ids by index (ascending)
+     */
+    private final long[] nodeIds;
+    /**
+     * Start of each node's neighbor range, length n + 1
+     */
+    private final int[] offsets;
+    /**
+     * Neighbor indices
+     */
+    private final int[] targets;
+    /**
+     * Edge id for each neighbor entry
+     */
+    private final long[] edgeIds;
+
+    public CSRGraph(final GraphMode mode, final long[] nodeIds, final int[] offsets, final int[] targets,
+                    final long[] edgeIds) {
+        this.mode = mode;
+        this.nodeIds = nodeIds;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.edgeIds = edgeIds;
+    }
+
+    /**
+     * Constructor for snapshots that are not backed by heap arrays and override all accessors.
+     */
+    protected CSRGraph(final GraphMode mode) {
+        this(mode, null, null, null, null);
+    }
+
+    /**
+     * Creates an adjacency snapshot with a single pass over all nodes and edges of the graph. A snapshot registered
+     * with {@link CSRGraphSnapshot#register} or cached by {@link #buildCached} is returned instead, if present.
+     * @param graph Graph to snapshot
+     * @param mode  Orientation of the graph, determines which edge directions are followed
+     * @return Adjacency snapshot
+     */
+    public static CSRGraph build(final BaseGraph graph, final GraphMode mode) {
+        CSRGraph registered = CSRGraphSnapshot.getRegistered(graph, mode, false);
+        if (registered == null)
+            registered = GraphIndexRegistry.get(graph, cacheKey(mode, false));
+        return registered != null ? registered : buildFromGraph(graph, mode, false);
+    }
+
+    /**
+     * Creates a snapshot of the incoming edges of each node, i.e. the transposed directed adjacency.
+     * @param graph Graph to snapshot
+     * @return Adjacency snapshot following edges from target to source
+     */
+    public static CSRGraph buildIncoming(final BaseGraph graph) {
+        CSRGraph registered = CSRGraphSnapshot.getRegistered(graph, GraphMode.DIRECTED, true);
+        if (registered == null)
+            registered = GraphIndexRegistry.get(graph, cacheKey(GraphMode.DIRECTED, true));
+        return registered != null ? registered : buildFromGraph(graph, GraphMode.DIRECTED, true);
+    }
+
+    /**
+     * Returns the {@link SubgraphView} registered for the graph under a name or, if no name is given, the snapshot of
+     * the whole graph (see {@link #build(BaseGraph, GraphMode)}).
+     * @param graph Graph to snapshot
+     * @param mode  Orientation of the graph
+     * @param view  Name of a registered view, null or empty for the whole graph
+     * @return Adjacency snapshot of the view or the graph
+     * @throws IllegalArgumentException if no view is registered under the name
+     */
+    public static CSRGraph build(final BaseGraph graph, final GraphMode mode, final String view) {
+        return view == null || view.isEmpty() ? build(graph, mode) : SubgraphView.get(graph, view, mode);
+    }
+
+    /**
+     * Returns the {@link SubgraphView} of incoming edges registered for the graph under a name or, if no name is given,
+     * the snapshot of the incoming edges of the whole graph (see {@link #buildIncoming(BaseGraph)}).
+     * @throws IllegalArgumentException if no view is registered under the name
+     */
+    public static CSRGraph buildIncoming(final BaseGraph graph, final String view) {
+        return view == null || view.isEmpty() ? buildIncoming(graph) : SubgraphView.getIncoming(graph, view);
+    }
+
+    /**
+     * Returns the snapshot registered for the graph or builds one and registers it, so that repeated local queries on
+     * an unchanged graph (e.g. random walks from a few seeds) share one snapshot instead of scanning the graph each
+     * time. Once the cached snapshot is stale, it is refreshed with the changed edges or rebuilt, if many edges
+     * changed. A snapshot registered with {@link CSRGraphSnapshot#register} is returned instead, if present and still
+     * matching the graph and graph file.
+     * @param graph Graph to snapshot
+     * @param mode  Orientation of the graph
+     * @return Registered adjacency snapshot
+     */
+    public static CSRGraph buildCached(final BaseGraph graph, final GraphMode mode) {
+        final CSRGraph registered = CSRGraphSnapshot.getRegistered(graph, mode, false);
+        if (registered != null)
+            return registered;
+        return GraphIndexRegistry.getOrUpdate(graph, cacheKey(mode, false),
+                                              (target, stale) -> refreshOrBuild(graph, mode, false, stale));
+    }
+
+    /**
+     * Brings a stale cached snapshot up to date through an {@link AdjacencyOverlay}, if only a small part of the graph
+     * changed, or builds a new snapshot.
+     */
+    private static CSRGraph refreshOrBuild(final BaseGraph graph, final GraphMode mode, final boolean reverse,
+                                           final CSRGraph stale) {
+        final CSRGraph refreshed = stale != null ? AdjacencyOverlay.refresh(stale, graph, reverse) : null;
+        return refreshed != null ? refreshed : buildFromGraph(graph, mode, reverse);
+    }
+
+    private static GraphIndexRegistry.Key<CSRGraph> cacheKey(final GraphMode mode, final boolean incoming) {
+        return GraphIndexRegistry.Key.of(CSRGraph.class, mode, incoming);
+    }
+
+    /**
+     * Collects the ids of all nodes of a graph in ascending order, i.e. the dense node index mapping of a snapshot.
+     */
+    static long[] collectNodeIds(final BaseGraph graph) {
+        long[] nodeIds = new long[(int) Math.max(graph.getNumberOfNodes(), 0)];
+        int nodeCount = 0;
+        for (final Node node : graph.getNodes()) {
+            if (nodeCount == nodeIds.length)
+                nodeIds = Arrays.copyOf(nodeIds, Math.max(16, nodeCount * 2));
+            nodeIds[nodeCount++] = node.getId();
+        }
+        nodeIds = Arrays.copyOf(nodeIds, nodeCount);
+        Arrays.sort(nodeIds);
+        return nodeIds;
+    }
+
+    /**
+     * Returns the snapshot of incoming edges registered for the graph or builds one and registers it, see
+     * {@link #buildCached(BaseGraph, GraphMode)}.
+     * @param graph Graph to snapshot
+     * @return Registered snapshot following edges from target to source
+     */
+    public static CSRGraph buildIncomingCached(final BaseGraph graph) {
+        final CSRGraph registered = CSRGraphSnapshot.getRegistered(graph, GraphMode.DIRECTED, true);
+        if (registered != null)
+            return registered;
+        return GraphIndexRegistry.getOrUpdate(graph, cacheKey(GraphMode.DIRECTED, true),
+                                              (target, stale) -> refreshOrBuild(graph, GraphMode.DIRECTED, true,
+                                                                                stale));
+    }
+
+    static CSRGraph buildFromGraph(final BaseGraph graph, final GraphMode mode, final boolean reverse) {
+        final long[] nodeIds = collectNodeIds(graph);
+
+        // collect all edges as index pairs
+        int[] from = new int[(int) Math.max(graph.getNumberOfEdges(), 0)];
+        int[] to = new int[from.length];
+        long[] ids = new long[from.length];
+        int edgeCount = 0;
+        for (final Edge edge : graph.getEdges()) {
+            final int fromIndex = Arrays.binarySearch(nodeIds, edge.getFromId());
+            final int toIndex = Arrays.binarySearch(nodeIds, edge.getToId());
+            if (fromIndex < 0 || toIndex < 0)
+                continue;
+            if (edgeCount == ids.length) {
+                final int capacity = Math.max(16, edgeCount * 2);
+                from = Arrays.copyOf(from, capacity);
+                to = Arrays.copyOf(to, capacity);
+                ids = Arrays.copyOf(ids, capacity);
+            }
+            from[edgeCount] = reverse ? toIndex : fromIndex;
+            to[edgeCount] = reverse ? fromIndex : toIndex;
+            ids[edgeCount] = edge.getId();
+            edgeCount++;
+        }
+        return fromEdges(mode, nodeIds, from, to, ids, edgeCount);
+    }
+
+    /**
+     * Creates an adjacency snapshot from edge arrays over dense node indices.
+     * @param mode      Orientation, in undirected mode each edge is inserted in both directions
+     * @param nodeIds   Original node ids by index (ascending)
+     * @param from      Source index of each edge
+     * @param to        Target index of each edge
+     * @param ids       Edge ids
+     * @param edgeCount Number of valid entries in the edge arrays
+     * @return Adjacency snapshot with sorted neighbor ranges
+     */
+    public static CSRGraph fromEdges(final GraphMode mode, final long[] nodeIds, final int[] from, final int[] to,
+                                     final long[] ids, final int edgeCount) {
+        final boolean undirected = mode == GraphMode.UNDIRECTED;
+        final int n = nodeIds.length;
+        // count degrees
+        final int[] offsets = new int[n + 1];
+        for (int i = 0; i < edgeCount; i++) {
+            offsets[from[i] + 1]++;
+            if (undirected && from[i] != to[i])
+                offsets[to[i] + 1]++;
+        }
+        for (int i = 0; i < n; i++)
+            offsets[i + 1] += offsets[i];
+        // fill neighbor ranges
+        final int[] targets = new int[offsets[n]];
+        final long[] edgeIds = new long[offsets[n]];
+        final int[] positions = Arrays.copyOf(offsets, n);
+        for (int i = 0; i < edgeCount; i++) {
+            int position = positions[from[i]]++;
+            targets[position] = to[i];
+            edgeIds[position] = ids[i];
+            if (undirected && from[i] != to[i]) {
+                position = positions[to[i]]++;
+                targets[position] = from[i];
+                edgeIds[position] = ids[i];
+            }
+        }
+        for (int i = 0; i < n; i++)
+            sortRange(targets, edgeIds, offsets[i], offsets[i + 1]);
+        return new CSRGraph(mode, nodeIds, offsets, targets, edgeIds);
+    }
+
+    /**
+     * Sorts a neighbor range by target index and permutes the edge ids accordingly (insertion sort for short ranges,
+     * packed long sort otherwise).
+     */
+    private static void sortRange(final int[] targets, final long[] edgeIds, final int start, final int end) {
+        final int length = end - start;
+        if (length < 2)
+            return;
+        if (length <= 16) {
+            for (int i = start + 1; i < end; i++) {
+                final int target = targets[i];
+                final long edgeId = edgeIds[i];
+                int j = i - 1;
+                while (j >= start && targets[j] > target) {
+                    targets[j + 1] = targets[j];
+                    edgeIds[j + 1] = edgeIds[j];
+                    j--;
+                }
+                targets[j + 1] = target;
+                edgeIds[j + 1] = edgeId;
+            }
+            return;
+        }
+        // sort (target, position) pairs packed into longs, then apply the permutation
+        final long[] packed = new long[length];
+        for (int i = 0; i < length; i++)
+            packed[i] = ((long) targets[start + i] << 32) | i;
+        Arrays.sort(packed);
+        final long[] sortedEdgeIds = new long[length];
+        for (int i = 0; i < length; i++) {
+            targets[start + i] = (int) (packed[i] >>> 32);
+            sortedEdgeIds[i] = edgeIds[start + (int) packed[i]];
+        }
+        System.arraycopy(sortedEdgeIds, 0, edgeIds, start, length);
+    }
+
+    public GraphMode getMode() {
+        return mode;
+    }
+
+    public int getNumberOfNodes() {
+        return nodeIds.length;
+    }
+
+    /**
+     * Returns the number of adjacency entries (edges are counted twice in undirected mode, except self loops).
+     */
+    public int getNumberOfEntries() {
+        return targets.length;
+    }
+
+    /**
+     * Finds the dense index for a node id.
+     * @return Index of the node or -1, if the node is not part of the snapshot
+     */
+    public int getIndex(final long nodeId) {
+        return GraphIndexRegistry.indexOf(nodeIds, nodeId);
+    }
+
+    public long getNodeId(final int index) {
+        return nodeIds[index];
+    }
+
+    public int getDegree(final int index) {
+        return offsets[index + 1] - offsets[index];
+    }
+
+    public int getStart(final int index) {
+        return offsets[index];
+    }
+
+    public int getEnd(final int index) {
+        return offsets[index + 1];
+    }
+
+    public int getTarget(final int position) {
+        return targets[position];
+    }
+
+    public long getEdgeId(final int position) {
+        return edgeIds[position];
+    }
+
+    /**
+     * Calculates the hop distances from a source node.
+     * @param source  Index of the source node
+     * @param parents Optional array of length n receiving the predecessor of each reached node (-1 for the source)
+     * @param target  Index of a node at which the search stops, -1 to search all reachable nodes
+     * @return Distance by node index, -1 for nodes that were not reached
+     */
+    public int[] breadthFirstSearch(final int source, final int[] parents, final int target) {
+        final int n = getNumberOfNodes();
+        final int[] distances = new int[n];
+        Arrays.fill(distances, -1);
+        final int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        distances[source] = 0;
+        if (parents != null)
+            parents[source] = -1;
+        while (head < tail && (target < 0 || distances[target] < 0)) {
+            final int u = queue[head++];
+            final int end = getEnd(u);
+            for (int position = getStart(u); position < end; position++) {
+                final int v = getTarget(position);
+                if (distances[v] < 0) {
+                    distances[v] = distances[u] + 1;
+                    if (parents != null)
+                        parents[v] = u;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Finds a shortest path between two nodes with a breadth-first search.
+     * @return Node indices from source to target or null, if the target is not reachable
+     */
+    public int[] findShortestPath(final int source, final int target) {
+        final int[] parents = new int[getNumberOfNodes()];
+        final int[] distances = breadthFirstSearch(source, parents, target);
+        if (distances[target] < 0)
+            return null;
+        final int[] path = new int[distances[target] + 1];
+        for (int i = path.length - 1, node = target; i >= 0; i--, node = parents[node])
+            path[i] = node;
+        return path;
+    }
+
+    /**
+     * Finds the entry of an edge with a binary search in the neighbor range of a node, which is sorted by target index.
+     * @return Position of the entry or -1, if the snapshot does not contain the edge between the nodes
+     */
+    int findEntry(final int from, final int to, final long edgeId) {
+        int low = getStart(from);
+        int high = getEnd(from);
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (getTarget(middle) < to)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        for (int position = low; position < getEnd(from) && getTarget(position) == to; position++)
+            if (getEdgeId(position) == edgeId)
+                return position;
+        return -1;
+    }
+
+    /**
+     * Returns the node ids by index, a copy for snapshots not backed by heap arrays.
+     */
+    public long[] getNodeIds() {
+        return nodeIds;
+    }
+
+    /**
+     * Returns the start of each node's neighbor range (length n + 1), a copy for snapshots not backed by heap arrays.
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * Returns the neighbor indices, a copy for snapshots not backed by heap arrays.
+     */
+    public int[] getTargets() {
+        return targets;
+    }
+
+    /**
+     * Returns the edge id of each neighbor entry, a copy for snapshots not backed by heap arrays.
+     */
+    public long[] getEdgeIds() {
+        return edgeIds;
+    }
+}
@@ -0,0 +1,241 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.BaseGraph;
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Persists {@link CSRGraph} snapshots, including the id to index mapping, in a versioned binary file. Loading only
+ * maps the file into memory: the loaded snapshot reads its arrays through buffer views of the mapping instead of
+ * copying them onto the heap, so even snapshots larger than the heap can be loaded in constant time.
+ * <p>
+ * The header stores the {@link GraphStamp fingerprint} of the graph as well as size and modification time of the
+ * graph file at build time. A snapshot is stale if any of them differs, {@link #loadOrBuild} then rebuilds and
+ * rewrites it. The file is checked first, as it is cheaper than the fingerprint. Loaded snapshots may be registered
+ * for a graph, {@link CSRGraph#build(BaseGraph, GraphMode)}, {@link CSRGraph#buildIncoming(BaseGraph)} and the cached
+ * variants then return them instead of scanning the graph. Registered snapshots are checked against the graph file
+ * and the graph's fingerprint on every lookup.
+ */
+public final class CSRGraphSnapshot {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CSRGraphSnapshot.class);
+    private static final int MAGIC = 0x43535258;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 4 * Integer.BYTES + GraphStamp.BYTES + 2 * Long.BYTES + 2 * Integer.BYTES;
+    /**
+     * Maximum number of bytes mapped at once
+     */
+    private static final int CHUNK_SIZE = 1 << 30;
+
+    /**
+     * Registered snapshot with the size and modification time of the graph file at registration time
+     */
+    private static final class Registered {
+        final CSRGraph snapshot;
+        final Path graphFile;
+        final long graphFileSize;
+        final long graphFileModified;
+
+        Registered(final CSRGraph snapshot, final Path graphFile) throws IOException {
+            this.snapshot = snapshot;
+            this.graphFile = graphFile;
+            graphFileSize = graphFile != null ? Files.size(graphFile) : -1;
+            graphFileModified = graphFile != null ? Files.getLastModifiedTime(graphFile).toMillis() : -1;
+        }
+
+        boolean matchesGraphFile() {
+            try {
+                return graphFile == null || graphFileSize == Files.size(graphFile) &&
+                                            graphFileModified == Files.getLastModifiedTime(graphFile).toMillis();
+            } catch (IOException ignored) {
+                return false;
+            }
+        }
+    }
+
+    private CSRGraphSnapshot() {
+    }
+
+    /**
+     * Loads a snapshot from a file or, if the file is missing or stale, builds the snapshot and writes it to the file.
+     * @param graph     Graph to snapshot
+     * @param mode      Orientation of the graph
+     * @param incoming  Whether the snapshot follows incoming instead of outgoing edges (directed mode only)
+     * @param path      Snapshot file
+     * @param graphFile File of the graph used for the staleness check, null to only compare the graph's fingerprint
+     * @return Adjacency snapshot
+     */
+    public static CSRGraph loadOrBuild(final BaseGraph graph, final GraphMode mode, final boolean incoming,
+                                       final Path path, final Path graphFile) throws IOException {
+        if (Files.exists(path)) {
+            final CSRGraph snapshot = read(path, graph, mode, incoming, graphFile);
+            if (snapshot != null)
+                return snapshot;
+            LOGGER.info("Snapshot " + path + " is stale, rebuilding ...");
+        }
+        final GraphStamp graphStamp = GraphStamp.of(graph);
+        final CSRGraph snapshot = incoming ? CSRGraph.buildFromGraph(graph, GraphMode.DIRECTED, true) :
+                                  CSRGraph.buildFromGraph(graph, mode, false);
+        write(snapshot, incoming, path, graphStamp, graphFile);
+        return snapshot;
+    }
+
+    /**
+     * Writes a snapshot to a file.
+     * @param snapshot  Adjacency snapshot
+     * @param incoming  Whether the snapshot follows incoming edges
+     * @param path      Target file, an existing file is replaced without invalidating snapshots loaded from it
+     * @param graph     Graph the snapshot was built from, it must not have changed since
+     * @param graphFile File of the graph used for the staleness check, may be null
+     */
+    public static void write(final CSRGraph snapshot, final boolean incoming, final Path path, final BaseGraph graph,
+                             final Path graphFile) throws IOException {
+        write(snapshot, incoming, path, GraphStamp.of(graph), graphFile);
+    }
+
+    private static void write(final CSRGraph snapshot, final boolean incoming, final Path path,
+                              final GraphStamp graphStamp, final Path graphFile) throws IOException {
+        final int n = snapshot.getNumberOfNodes();
+        final int entries = snapshot.getNumberOfEntries();
+        // write to a temporary file that replaces the target, as the target may still be mapped by a loaded snapshot
+        final Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (final FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                          StandardOpenOption.WRITE,
+                                                          StandardOpenOption.TRUNCATE_EXISTING)) {
+            final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(snapshot.getMode().ordinal());
+            header.putInt(incoming ? 1 : 0);
+            graphStamp.write(header);
+            header.putLong(graphFile != null ? Files.size(graphFile) : -1);
+            header.putLong(graphFile != null ? Files.getLastModifiedTime(graphFile).toMillis() : -1);
+            header.putInt(n);
+            header.putInt(entries);
+            long position = HEADER_SIZE;
+            position = writeLongs(channel, position, snapshot.getNodeIds());
+            position = writeInts(channel, position, snapshot.getOffsets());
+            position = writeInts(channel, position, snapshot.getTargets());
+            writeLongs(channel, position, snapshot.getEdgeIds());
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a snapshot, if it matches the graph. The returned snapshot is backed by the mapped file, which must not be
+     * modified while the snapshot is in use.
+     * @return Adjacency snapshot or null, if the file is stale or was written for a different mode
+     */
+    public static CSRGraph read(final Path path, final BaseGraph graph, final GraphMode mode, final boolean incoming,
+                                final Path graphFile) throws IOException {
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE)
+                return null;
+            final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION)
+                return null;
+            final GraphMode storedMode = GraphMode.values()[header.getInt()];
+            final boolean storedIncoming = header.getInt() == 1;
+            if (storedIncoming != incoming || !incoming && storedMode != mode)
+                return null;
+            final GraphStamp graphStamp = GraphStamp.read(header);
+            final long graphFileSize = header.getLong();
+            final long graphFileModified = header.getLong();
+            if (graphFile != null && (graphFileSize != Files.size(graphFile) ||
+                                      graphFileModified != Files.getLastModifiedTime(graphFile).toMillis()))
+                return null;
+            if (!graphStamp.matches(graph))
+                return null;
+            final int n = header.getInt();
+            final int entries = header.getInt();
+            final long expectedSize = HEADER_SIZE + (long) n * Long.BYTES + (long) (n + 1) * Integer.BYTES +
+                                      (long) entries * (Integer.BYTES + Long.BYTES);
+            if (channel.size() != expectedSize)
+                return null;
+            return new MappedCSRGraph(channel, HEADER_SIZE, storedMode, n, entries);
+        }
+    }
+
+    private static long writeInts(final FileChannel channel, long position, final int[] values) throws IOException {
+        final int chunk = CHUNK_SIZE / Integer.BYTES;
+        for (int start = 0; start < values.length; start += chunk) {
+            final int length = Math.min(chunk, values.length - start);
+            channel.map(FileChannel.MapMode.READ_WRITE, position, (long) length * Integer.BYTES).asIntBuffer().put(
+                    values, start, length);
+            position += (long) length * Integer.BYTES;
+        }
+        return position;
+    }
+
+    private static long writeLongs(final FileChannel channel, long position, final long[] values) throws IOException {
+        final int chunk = CHUNK_SIZE / Long.BYTES;
+        for (int start = 0; start < values.length; start += chunk) {
+            final int length = Math.min(chunk, values.length - start);
+            channel.map(FileChannel.MapMode.READ_WRITE, position, (long) length * Long.BYTES).asLongBuffer().put(
+                    values, start, length);
+            position += (long) length * Long.BYTES;
+        }
+        return position;
+    }
+
+    /**
+     * Key of the registered snapshots, separate from the snapshots cached by {@link CSRGraph#buildCached}
+     */
+    private static GraphIndexRegistry.Key<Registered> key(final GraphMode mode, final boolean incoming) {
+        return GraphIndexRegistry.Key.of(Registered.class, incoming ? GraphMode.DIRECTED : mode, incoming);
+    }
+
+    /**
+     * Registers a snapshot for a graph, so that building a snapshot of the same orientation returns it.
+     * @param graph    Graph the snapshot was built from, it must not have changed since
+     * @param snapshot Adjacency snapshot
+     * @param incoming Whether the snapshot follows incoming edges
+     */
+    public static void register(final BaseGraph graph, final CSRGraph snapshot, final boolean incoming) {
+        try {
+            register(graph, snapshot, incoming, null);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Registers a snapshot for a graph, so that building a snapshot of the same orientation returns it until the graph
+     * or the graph file changes.
+     * @param graph     Graph the snapshot was built from, it must not have changed since
+     * @param snapshot  Adjacency snapshot
+     * @param incoming  Whether the snapshot follows incoming edges
+     * @param graphFile File of the graph checked on each lookup, null to only compare the graph's fingerprint
+     */
+    public static void register(final BaseGraph graph, final CSRGraph snapshot, final boolean incoming,
+                                final Path graphFile) throws IOException {
+        GraphIndexRegistry.register(graph, key(snapshot.getMode(), incoming), new Registered(snapshot, graphFile));
+    }
+
+    /**
+     * Removes all snapshots registered or cached for a graph.
+     */
+    public static void unregister(final BaseGraph graph) {
+        GraphIndexRegistry.unregister(graph, Registered.class);
+        GraphIndexRegistry.unregister(graph, CSRGraph.class);
+    }
+
+    /**
+     * Returns the snapshot registered for a graph and orientation.
+     * @return Registered snapshot or null, if there is none or it is stale
+     */
+    public static CSRGraph getRegistered(final BaseGraph graph, final GraphMode mode, final boolean incoming) {
+        final Registered registered = GraphIndexRegistry.get(graph, key(mode, incoming));
+        return registered != null && registered.matchesGraphFile() ? registered.snapshot : null;
+    }
+}
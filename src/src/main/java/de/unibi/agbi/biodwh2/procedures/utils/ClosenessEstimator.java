@@ -0,0 +1,91 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Estimates the closeness of all nodes by sampling in the style of Eppstein and Wang. Breadth-first searches are run
+ * from k random pivots, and the average distance of each node is estimated from its distances to the pivots reaching
+ * it. With k = ln(n) / epsilon^2 pivots the estimated average distance is within epsilon times the diameter of the
+ * exact value with high probability.
+ * <p>
+ * In {@link GraphMode#DIRECTED} mode the searches follow incoming edges, so the pivot distances are distances from
+ * each node to the pivots, matching the outgoing direction used by the exact closeness.
+ */
+public class ClosenessEstimator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClosenessEstimator.class);
+
+    private final int numberOfNodes;
+    private final int[] pivots;
+    private final long[] distanceSums;
+    private final long[] counts;
+
+    /**
+     * @param adjacency Adjacency snapshot to sample on (incoming edges in directed mode, see class description)
+     * @param epsilon   Error bound relative to the diameter
+     * @param seed      Seed of the pivot selection, negative values select pivots non-deterministically
+     */
+    public ClosenessEstimator(final CSRGraph adjacency, final double epsilon, final long seed) {
+        numberOfNodes = adjacency.getNumberOfNodes();
+        pivots = selectPivots(getSampleSize(numberOfNodes, epsilon), seed);
+        LOGGER.info("Estimating closeness with " + pivots.length + " pivot(s) ...");
+        final AtomicLongArray sums = new AtomicLongArray(numberOfNodes);
+        final AtomicLongArray reached = new AtomicLongArray(numberOfNodes);
+        new MultiSourceBFS(adjacency).accumulateTargets(pivots, sums, reached);
+        distanceSums = new long[numberOfNodes];
+        counts = new long[numberOfNodes];
+        for (int i = 0; i < numberOfNodes; i++) {
+            distanceSums[i] = sums.get(i);
+            counts[i] = reached.get(i);
+        }
+    }
+
+    /**
+     * Calculates the number of pivots required for an error bound, i.e. ceil(ln(n) / epsilon^2), at most n.
+     */
+    public static int getSampleSize(final int numberOfNodes, final double epsilon) {
+        if (numberOfNodes <= 1)
+            return numberOfNodes;
+        final double samples = Math.ceil(Math.log(numberOfNodes) / (epsilon * epsilon));
+        return (int) Math.max(1, Math.min(numberOfNodes, samples));
+    }
+
+    /**
+     * Draws distinct pivots with a partial Fisher-Yates shuffle.
+     */
+    private int[] selectPivots(final int sampleSize, final long seed) {
+        final Random random = seed < 0 ? new Random() : new Random(seed);
+        final int[] permutation = new int[numberOfNodes];
+        for (int i = 0; i < numberOfNodes; i++)
+            permutation[i] = i;
+        final int[] selected = new int[sampleSize];
+        for (int i = 0; i < sampleSize; i++) {
+            final int j = i + random.nextInt(numberOfNodes - i);
+            final int swap = permutation[i];
+            permutation[i] = permutation[j];
+            permutation[j] = swap;
+            selected[i] = permutation[i];
+        }
+        return selected;
+    }
+
+    /**
+     * Returns the number of pivots used for the estimation.
+     */
+    public int getSampleSize() {
+        return pivots.length;
+    }
+
+    /**
+     * Returns the estimated closeness for a node index, i.e. the reciprocal of the estimated average distance to the
+     * nodes it reaches (0, if none of the pivots is reached).
+     */
+    public double getCloseness(final int index) {
+        return distanceSums[index] == 0 ? 0 : (double) counts[index] / distanceSums[index];
+    }
+}
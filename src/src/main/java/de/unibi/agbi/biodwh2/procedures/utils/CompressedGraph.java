@@ -0,0 +1,414 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.BaseGraph;
+import de.unibi.agbi.biodwh2.core.model.graph.Edge;
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+
+/**
+ * Compressed adjacency snapshot in the style of WebGraph. The sorted neighbor list of each node is stored as a byte
+ * sequence of variable-length integers (7 bits per byte): the first neighbor as zig-zag encoded difference to the node
+ * itself, every further neighbor as gap to its predecessor, each followed by the zig-zag encoded difference of its edge
+ * id to the previous edge id of the list. A long offset per node gives random access to each list, the data is split
+ * into pages of 1 GiB so graphs with more than 2 GiB of adjacency data are supported.
+ * <p>
+ * Real-world graphs have small gaps between neighbor indices and locally clustered edge ids, so most entries need two
+ * to four bytes instead of the twelve bytes of a {@link CSRGraph} entry. Lists are decoded sequentially with a
+ * {@link NeighborCursor} while traversing.
+ * <p>
+ * Compressed snapshots may be registered for a graph, {@link ShortestPathFinder} and
+ * {@link GraphProcedureUtils#breadthFirstSearch} then traverse them instead of the graph.
+ */
+public class CompressedGraph {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompressedGraph.class);
+    private static final int PAGE_BITS = 30;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final GraphMode mode;
+    private final long[] nodeIds;
+    /**
+     * Start of each node's list in the data, length n + 1
+     */
+    private final long[] offsets;
+    private final byte[][] pages;
+    private final int entries;
+
+    private CompressedGraph(final GraphMode mode, final long[] nodeIds, final long[] offsets, final byte[][] pages,
+                            final int entries) {
+        this.mode = mode;
+        this.nodeIds = nodeIds;
+        this.offsets = offsets;
+        this.pages = pages;
+        this.entries = entries;
+    }
+
+    /**
+     * Compresses the adjacency of a graph. The neighbor list of each node is collected with the graph's edge lookups by
+     * source (and target in undirected mode), sorted and encoded right away, so no uncompressed snapshot of the whole
+     * graph is materialized. A registered {@link CSRGraph} snapshot is compressed instead, if present.
+     * @param graph Graph to snapshot
+     * @param mode  Orientation of the graph
+     * @return Compressed adjacency snapshot
+     */
+    public static CompressedGraph build(final BaseGraph graph, final GraphMode mode) {
+        final CSRGraph registered = CSRGraphSnapshot.getRegistered(graph, mode, false);
+        if (registered != null)
+            return build(registered);
+        final long[] nodeIds = CSRGraph.collectNodeIds(graph);
+        final int n = nodeIds.length;
+        final long[] offsets = new long[n + 1];
+        final PageWriter writer = new PageWriter();
+        final NeighborList neighbors = new NeighborList();
+        int entries = 0;
+        for (int u = 0; u < n; u++) {
+            final long nodeId = nodeIds[u];
+            neighbors.clear();
+            for (final Edge edge : graph.findEdges(Edge.FROM_ID_FIELD, nodeId))
+                neighbors.add(GraphIndexRegistry.indexOf(nodeIds, edge.getToId()), edge.getId());
+            // self loops are only stored once in undirected mode, they were already found as outgoing edges
+            if (mode == GraphMode.UNDIRECTED)
+                for (final Edge edge : graph.findEdges(Edge.TO_ID_FIELD, nodeId))
+                    if (edge.getFromId() != nodeId)
+                        neighbors.add(GraphIndexRegistry.indexOf(nodeIds, edge.getFromId()), edge.getId());
+            neighbors.sort();
+            offsets[u] = writer.position;
+            writer.writeList(u, nodeId, neighbors);
+            entries += neighbors.size;
+        }
+        offsets[n] = writer.position;
+        LOGGER.info("Compressed " + entries + " adjacency entries into " + offsets[n] + " bytes");
+        return new CompressedGraph(mode, nodeIds, offsets, writer.getPages(), entries);
+    }
+
+    /**
+     * Compresses an adjacency snapshot.
+     * @param adjacency Adjacency snapshot with sorted neighbor ranges
+     * @return Compressed adjacency snapshot
+     */
+    public static CompressedGraph build(final CSRGraph adjacency) {
+        final int n = adjacency.getNumberOfNodes();
+        final long[] offsets = new long[n + 1];
+        final PageWriter writer = new PageWriter();
+        final NeighborList neighbors = new NeighborList();
+        for (int u = 0; u < n; u++) {
+            neighbors.clear();
+            for (int position = adjacency.getStart(u); position < adjacency.getEnd(u); position++)
+                neighbors.add(adjacency.getTarget(position), adjacency.getEdgeId(position));
+            offsets[u] = writer.position;
+            writer.writeList(u, adjacency.getNodeId(u), neighbors);
+        }
+        offsets[n] = writer.position;
+        final CompressedGraph compressed = new CompressedGraph(adjacency.getMode(), adjacency.getNodeIds(), offsets,
+                                                               writer.getPages(), adjacency.getNumberOfEntries());
+        LOGGER.info("Compressed " + adjacency.getNumberOfEntries() + " adjacency entries into " + offsets[n] +
+                    " bytes");
+        return compressed;
+    }
+
+    /**
+     * Reusable buffer for the neighbor list of a single node
+     */
+    private static final class NeighborList {
+        int[] targets = new int[16];
+        long[] edgeIds = new long[16];
+        int size;
+
+        void clear() {
+            size = 0;
+        }
+
+        /**
+         * Appends a neighbor, neighbors that are not part of the snapshot (index -1) are skipped.
+         */
+        void add(final int target, final long edgeId) {
+            if (target < 0)
+                return;
+            if (size == targets.length) {
+                targets = Arrays.copyOf(targets, size * 2);
+                edgeIds = Arrays.copyOf(edgeIds, size * 2);
+            }
+            targets[size] = target;
+            edgeIds[size++] = edgeId;
+        }
+
+        /**
+         * Sorts the neighbors by target index and parallel edges by edge id.
+         */
+        void sort() {
+            // sort (target, position) pairs packed into longs, then apply the permutation
+            final long[] packed = new long[size];
+            for (int i = 0; i < size; i++)
+                packed[i] = ((long) targets[i] << 32) | i;
+            Arrays.sort(packed);
+            final long[] sortedEdgeIds = new long[size];
+            for (int i = 0; i < size; i++) {
+                targets[i] = (int) (packed[i] >>> 32);
+                sortedEdgeIds[i] = edgeIds[(int) packed[i]];
+            }
+            System.arraycopy(sortedEdgeIds, 0, edgeIds, 0, size);
+            for (int start = 0, end; start < size; start = end) {
+                end = start + 1;
+                while (end < size && targets[end] == targets[start])
+                    end++;
+                if (end - start > 1)
+                    Arrays.sort(edgeIds, start, end);
+            }
+        }
+    }
+
+    private static long zigZag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Appends bytes to a list of pages
+     */
+    private static final class PageWriter {
+        byte[][] pages = new byte[1][];
+        byte[] page = new byte[1024];
+        int index;
+        long position;
+
+        /**
+         * Encodes the sorted neighbor list of a node.
+         */
+        void writeList(final int node, final long nodeId, final NeighborList neighbors) {
+            long previousTarget = node;
+            long previousEdgeId = nodeId;
+            for (int i = 0; i < neighbors.size; i++) {
+                final int target = neighbors.targets[i];
+                final long edgeId = neighbors.edgeIds[i];
+                writeVarLong(i == 0 ? zigZag(target - previousTarget) : target - previousTarget);
+                writeVarLong(zigZag(edgeId - previousEdgeId));
+                previousTarget = target;
+                previousEdgeId = edgeId;
+            }
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((byte) value);
+        }
+
+        private void write(final byte value) {
+            if (index == page.length) {
+                if (page.length < PAGE_SIZE)
+                    page = Arrays.copyOf(page, (int) Math.min(PAGE_SIZE, page.length * 2L));
+                else {
+                    pages[pages.length - 1] = page;
+                    pages = Arrays.copyOf(pages, pages.length + 1);
+                    page = new byte[1024];
+                    index = 0;
+                }
+            }
+            page[index++] = value;
+            position++;
+        }
+
+        byte[][] getPages() {
+            pages[pages.length - 1] = index == page.length ? page : Arrays.copyOf(page, index);
+            return pages;
+        }
+    }
+
+    /**
+     * Sequentially decodes the neighbor list of a node. Cursors are not thread-safe, but any number of cursors may
+     * read the same graph concurrently.
+     */
+    public final class NeighborCursor {
+        private byte[] page;
+        private int index;
+        private long position;
+        private long end;
+        private boolean first;
+        private int target;
+        private long edgeId;
+
+        /**
+         * Positions the cursor before the first neighbor of a node.
+         */
+        public NeighborCursor reset(final int node) {
+            position = offsets[node];
+            end = offsets[node + 1];
+            page = null;
+            first = true;
+            target = node;
+            edgeId = nodeIds[node];
+            return this;
+        }
+
+        /**
+         * Advances to the next neighbor.
+         * @return False, if all neighbors were read
+         */
+        public boolean next() {
+            if (position >= end)
+                return false;
+            final long gap = readVarLong();
+            target += first ? (int) unZigZag(gap) : (int) gap;
+            first = false;
+            edgeId += unZigZag(readVarLong());
+            return true;
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                if (page == null || index == PAGE_SIZE) {
+                    page = pages[(int) (position >>> PAGE_BITS)];
+                    index = (int) (position & PAGE_MASK);
+                }
+                final byte b = page[index++];
+                position++;
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0)
+                    return value;
+            }
+        }
+
+        /**
+         * Returns the index of the current neighbor.
+         */
+        public int getTarget() {
+            return target;
+        }
+
+        /**
+         * Returns the id of the edge to the current neighbor.
+         */
+        public long getEdgeId() {
+            return edgeId;
+        }
+    }
+
+    /**
+     * Creates a cursor for decoding neighbor lists.
+     */
+    public NeighborCursor cursor() {
+        return new NeighborCursor();
+    }
+
+    /**
+     * Calculates the hop distances from a source node with a breadth-first search.
+     * @param source  Index of the source node
+     * @param parents Optional array of length n receiving the predecessor of each reached node (-1 for the source)
+     * @param target  Index of a node at which the search stops, -1 to search all reachable nodes
+     * @return Distance by node index, -1 for nodes that were not reached
+     */
+    public int[] breadthFirstSearch(final int source, final int[] parents, final int target) {
+        final int n = nodeIds.length;
+        final int[] distances = new int[n];
+        Arrays.fill(distances, -1);
+        final int[] queue = new int[n];
+        final NeighborCursor cursor = cursor();
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        distances[source] = 0;
+        if (parents != null)
+            parents[source] = -1;
+        while (head < tail) {
+            if (target >= 0 && distances[target] >= 0)
+                break;
+            final int u = queue[head++];
+            cursor.reset(u);
+            while (cursor.next()) {
+                final int v = cursor.getTarget();
+                if (distances[v] < 0) {
+                    distances[v] = distances[u] + 1;
+                    if (parents != null)
+                        parents[v] = u;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Finds a shortest path between two nodes.
+     * @return Node indices from source to target or null, if the target is not reachable
+     */
+    public int[] findShortestPath(final int source, final int target) {
+        final int[] parents = new int[nodeIds.length];
+        final int[] distances = breadthFirstSearch(source, parents, target);
+        if (distances[target] < 0)
+            return null;
+        final int[] path = new int[distances[target] + 1];
+        for (int i = path.length - 1, node = target; i >= 0; i--, node = parents[node])
+            path[i] = node;
+        return path;
+    }
+
+    public GraphMode getMode() {
+        return mode;
+    }
+
+    public int getNumberOfNodes() {
+        return nodeIds.length;
+    }
+
+    /**
+     * Finds the dense index for a node id.
+     * @return Index of the node or -1, if the node is not part of the snapshot
+     */
+    public int getIndex(final long nodeId) {
+        return GraphIndexRegistry.indexOf(nodeIds, nodeId);
+    }
+
+    public long getNodeId(final int index) {
+        return nodeIds[index];
+    }
+
+    /**
+     * Returns the number of adjacency entries (edges are counted twice in undirected mode, except self loops).
+     */
+    public int getNumberOfEntries() {
+        return entries;
+    }
+
+    /**
+     * Returns the size of the encoded neighbor lists in bytes.
+     */
+    public long getNumberOfBytes() {
+        return offsets[nodeIds.length];
+    }
+
+    private static GraphIndexRegistry.Key<CompressedGraph> key(final GraphMode mode) {
+        return GraphIndexRegistry.Key.of(CompressedGraph.class, mode);
+    }
+
+    /**
+     * Registers a compressed snapshot of the current state of a graph.
+     */
+    public static void register(final BaseGraph graph, final CompressedGraph compressed) {
+        GraphIndexRegistry.register(graph, key(compressed.getMode()), compressed);
+    }
+
+    /**
+     * Removes all compressed snapshots registered for a graph.
+     */
+    public static void unregister(final BaseGraph graph) {
+        GraphIndexRegistry.unregister(graph, CompressedGraph.class);
+    }
+
+    /**
+     * Returns the compressed snapshot registered for a graph and mode.
+     * @return Registered snapshot or null, if there is none or it is stale
+     */
+    public static CompressedGraph getRegistered(final BaseGraph graph, final GraphMode mode) {
+        return GraphIndexRegistry.get(graph, key(mode));
+    }
+}
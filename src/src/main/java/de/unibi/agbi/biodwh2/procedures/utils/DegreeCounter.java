@@ -0,0 +1,120 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.BaseGraph;
+import de.unibi.agbi.biodwh2.core.model.graph.Edge;
+import de.unibi.agbi.biodwh2.core.model.graph.Node;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.StreamSupport;
+
+/**
+ * Computes in, out and total degrees of all nodes with a single scan over the edges of a graph. In parallel mode the
+ * edge scan is split across threads and the per-node counters are updated atomically.
+ */
+public class DegreeCounter {
+
+    /**
+     * Original node ids by index (ascending)
+     */
+    private final long[] nodeIds;
+    private final long[] inDegrees;
+    private final long[] outDegrees;
+
+    public DegreeCounter(final BaseGraph graph, final boolean parallel) {
+        long[] ids = new long[(int) Math.max(graph.getNumberOfNodes(), 0)];
+        int count = 0;
+        for (final Node node : graph.getNodes()) {
+            if (count == ids.length)
+                ids = Arrays.copyOf(ids, Math.max(16, count * 2));
+            ids[count++] = node.getId();
+        }
+        nodeIds = Arrays.copyOf(ids, count);
+        Arrays.sort(nodeIds);
+        if (parallel) {
+            final AtomicLongArray in = new AtomicLongArray(nodeIds.length);
+            final AtomicLongArray out = new AtomicLongArray(nodeIds.length);
+            StreamSupport.stream(graph.getEdges().spliterator(), true).forEach(edge -> {
+                final int fromIndex = Arrays.binarySearch(nodeIds, edge.getFromId());
+                final int toIndex = Arrays.binarySearch(nodeIds, edge.getToId());
+                if (fromIndex >= 0)
+                    out.incrementAndGet(fromIndex);
+                if (toIndex >= 0)
+                    in.incrementAndGet(toIndex);
+            });
+            inDegrees = new long[nodeIds.length];
+            outDegrees = new long[nodeIds.length];
+            for (int i = 0; i < nodeIds.length; i++) {
+                inDegrees[i] = in.get(i);
+                outDegrees[i] = out.get(i);
+            }
+        } else {
+            inDegrees = new long[nodeIds.length];
+            outDegrees = new long[nodeIds.length];
+            for (final Edge edge : graph.getEdges()) {
+                final int fromIndex = Arrays.binarySearch(nodeIds, edge.getFromId());
+                final int toIndex = Arrays.binarySearch(nodeIds, edge.getToId());
+                if (fromIndex >= 0)
+                    outDegrees[fromIndex]++;
+                if (toIndex >= 0)
+                    inDegrees[toIndex]++;
+            }
+        }
+    }
+
+    public int getNumberOfNodes() {
+        return nodeIds.length;
+    }
+
+    public long getNodeId(final int index) {
+        return nodeIds[index];
+    }
+
+    public long getInDegree(final int index) {
+        return inDegrees[index];
+    }
+
+    public long getOutDegree(final int index) {
+        return outDegrees[index];
+    }
+
+    /**
+     * Returns the total degree, i.e. all incoming and outgoing edges (self loops are counted twice).
+     */
+    public long getDegree(final int index) {
+        return inDegrees[index] + outDegrees[index];
+    }
+
+    /**
+     * Counts the nodes for each degree value.
+     * @param degrees Degree by node index
+     * @return Array whose entry d holds the number of nodes with degree d
+     */
+    public static long[] histogram(final long[] degrees) {
+        long maxDegree = 0;
+        for (final long degree : degrees)
+            maxDegree = Math.max(maxDegree, degree);
+        final long[] histogram = new long[(int) maxDegree + 1];
+        for (final long degree : degrees)
+            histogram[(int) degree]++;
+        return histogram;
+    }
+
+    public long[] getInDegrees() {
+        return inDegrees;
+    }
+
+    public long[] getOutDegrees() {
+        return outDegrees;
+    }
+
+    /**
+     * Returns the total degree of all nodes by index.
+     */
+    public long[] getDegrees() {
+        final long[] degrees = new long[nodeIds.length];
+        for (int i = 0; i < nodeIds.length; i++)
+            degrees[i] = inDegrees[i] + outDegrees[i];
+        return degrees;
+    }
+}
@@ -0,0 +1,342 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.BaseGraph;
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Hop distances from a fixed subset of source nodes to all nodes of a graph, stored as a memory-mapped file with one
+ * unsigned byte per entry. The rows are computed by parallel breadth-first searches directly into the mapped file and
+ * are read without copying them onto the heap.
+ * <p>
+ * File layout (big endian): magic, version, mode, {@link GraphStamp fingerprint} of the graph at build time, number of
+ * nodes n, number of sources k, n node ids (ascending), k source ids, k saturation flags, followed by k rows of n
+ * bytes. The graph's fingerprint is checked when the file is opened. Registered matrices are used by
+ * {@link ShortestPathFinder} for single source queries of their unsaturated source nodes.
+ * <p>
+ * Distances of {@value #SATURATED} hops and more do not fit into a byte and are stored as {@value #SATURATED}. Rows
+ * containing such entries are flagged as saturated, their entries of {@value #SATURATED} are only lower bounds.
+ */
+public class DistanceMatrix implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DistanceMatrix.class);
+    private static final int MAGIC = 0x44534D58;
+    private static final int VERSION = 3;
+    /**
+     * Entry value of nodes not reachable from the source
+     */
+    private static final int UNREACHABLE = 255;
+    /**
+     * Entry value of nodes with a distance of at least this value
+     */
+    public static final int SATURATED = 254;
+
+    private final GraphMode mode;
+    private final GraphStamp graphStamp;
+    private final long[] nodeIds;
+    /**
+     * Source node ids in row order
+     */
+    private final long[] sourceIds;
+    private final Map<Long, Integer> rows;
+    /**
+     * Whether a row contains saturated entries, in row order
+     */
+    private final boolean[] saturated;
+    /**
+     * Row data split into segments of whole rows, each segment below 2 GiB
+     */
+    private final MappedByteBuffer[] segments;
+    private final int rowsPerSegment;
+    private volatile boolean closed;
+
+    private DistanceMatrix(final GraphMode mode, final GraphStamp graphStamp, final long[] nodeIds,
+                           final long[] sourceIds, final boolean[] saturated, final MappedByteBuffer[] segments,
+                           final int rowsPerSegment) {
+        this.mode = mode;
+        this.graphStamp = graphStamp;
+        this.nodeIds = nodeIds;
+        this.sourceIds = sourceIds;
+        this.saturated = saturated;
+        this.segments = segments;
+        this.rowsPerSegment = rowsPerSegment;
+        rows = new HashMap<>();
+        for (int i = 0; i < sourceIds.length; i++)
+            rows.put(sourceIds[i], i);
+    }
+
+    private static long getHeaderSize(final int n, final int k) {
+        return 4 * Integer.BYTES + GraphStamp.BYTES + 2 * Integer.BYTES + (long) (n + k) * Long.BYTES + k;
+    }
+
+    private static int getRowsPerSegment(final int n) {
+        return Math.max(1, Integer.MAX_VALUE / Math.max(n, 1));
+    }
+
+    /**
+     * Computes the distances from all source nodes in parallel and writes them to a file.
+     * @param graph     Graph to be analyzed
+     * @param mode      Orientation of the graph
+     * @param sourceIds Ids of the source nodes, ids not part of the graph are skipped
+     * @param path      Target file, an existing file is replaced
+     * @return Distance matrix backed by the written file
+     */
+    public static DistanceMatrix compute(final BaseGraph graph, final GraphMode mode, final long[] sourceIds,
+                                         final Path path) throws IOException {
+        final GraphStamp graphStamp = GraphStamp.of(graph);
+        final CSRGraph adjacency = CSRGraph.build(graph, mode);
+        final long[] sources = Arrays.stream(sourceIds).distinct().filter(id -> adjacency.getIndex(id) >= 0)
+                                     .toArray();
+        final int n = adjacency.getNumberOfNodes();
+        final int k = sources.length;
+        LOGGER.info("Computing distances from " + k + " source(s) to " + n + " node(s) ...");
+        final long headerSize = getHeaderSize(n, k);
+        final int rowsPerSegment = getRowsPerSegment(n);
+        final MappedByteBuffer[] segments;
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                          StandardOpenOption.WRITE,
+                                                          StandardOpenOption.TRUNCATE_EXISTING)) {
+            final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, headerSize);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(mode.ordinal());
+            header.putInt(0);
+            graphStamp.write(header);
+            header.putInt(n);
+            header.putInt(k);
+            for (int i = 0; i < n; i++)
+                header.putLong(adjacency.getNodeId(i));
+            for (final long source : sources)
+                header.putLong(source);
+            segments = mapSegments(channel, FileChannel.MapMode.READ_WRITE, headerSize, n, k, rowsPerSegment);
+            final ThreadLocal<int[]> queues = ThreadLocal.withInitial(() -> new int[n]);
+            final ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[n]);
+            final boolean[] saturated = new boolean[k];
+            IntStream.range(0, k).parallel().forEach(row -> {
+                final byte[] distances = buffers.get();
+                saturated[row] = search(adjacency, adjacency.getIndex(sources[row]), distances, queues.get());
+                final ByteBuffer view = segments[row / rowsPerSegment].duplicate();
+                view.position((row % rowsPerSegment) * n);
+                view.put(distances, 0, n);
+            });
+            for (final boolean flag : saturated)
+                header.put((byte) (flag ? 1 : 0));
+            header.force();
+            for (final MappedByteBuffer segment : segments)
+                segment.force();
+            return new DistanceMatrix(mode, graphStamp, adjacency.getNodeIds(), sources, saturated, segments,
+                                      rowsPerSegment);
+        }
+    }
+
+    /**
+     * Fills a row with the distances from a source node.
+     * @return Whether the row contains saturated entries
+     */
+    private static boolean search(final CSRGraph adjacency, final int source, final byte[] distances,
+                                  final int[] queue) {
+        Arrays.fill(distances, (byte) UNREACHABLE);
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        distances[source] = 0;
+        boolean saturated = false;
+        while (head < tail) {
+            final int u = queue[head++];
+            final int distance = Math.min((distances[u] & 0xFF) + 1, SATURATED);
+            for (int position = adjacency.getStart(u); position < adjacency.getEnd(u); position++) {
+                final int v = adjacency.getTarget(position);
+                if ((distances[v] & 0xFF) == UNREACHABLE) {
+                    saturated |= distance == SATURATED;
+                    distances[v] = (byte) distance;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        return saturated;
+    }
+
+    private static MappedByteBuffer[] mapSegments(final FileChannel channel, final FileChannel.MapMode mapMode,
+                                                  final long headerSize, final int n, final int k,
+                                                  final int rowsPerSegment) throws IOException {
+        final MappedByteBuffer[] segments = new MappedByteBuffer[(k + rowsPerSegment - 1) / rowsPerSegment];
+        for (int i = 0; i < segments.length; i++) {
+            final int segmentRows = Math.min(rowsPerSegment, k - i * rowsPerSegment);
+            segments[i] = channel.map(mapMode, headerSize + (long) i * rowsPerSegment * n, (long) segmentRows * n);
+        }
+        return segments;
+    }
+
+    /**
+     * Opens a distance matrix file created by {@link #compute(BaseGraph, GraphMode, long[], Path)}.
+     * @param graph Graph the matrix was computed for
+     * @param path  Matrix file
+     * @return Distance matrix backed by the file
+     * @throws IOException If the file is invalid or was computed for a different version of the graph
+     */
+    public static DistanceMatrix open(final BaseGraph graph, final Path path) throws IOException {
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, getHeaderSize(0, 0));
+            if (header.getInt() != MAGIC)
+                throw new IOException("Not a distance matrix file: " + path);
+            final int version = header.getInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported distance matrix version " + version);
+            final GraphMode mode = GraphMode.values()[header.getInt()];
+            header.getInt();
+            final GraphStamp graphStamp = GraphStamp.read(header);
+            if (!graphStamp.matches(graph))
+                throw new IOException("The distance matrix " + path + " is outdated for the graph");
+            final int n = header.getInt();
+            final int k = header.getInt();
+            final long headerSize = getHeaderSize(n, k);
+            if (channel.size() != headerSize + (long) n * k)
+                throw new IOException("The distance matrix " + path + " is truncated");
+            final ByteBuffer ids = channel.map(FileChannel.MapMode.READ_ONLY, getHeaderSize(0, 0),
+                                               headerSize - getHeaderSize(0, 0));
+            final long[] nodeIds = new long[n];
+            ids.asLongBuffer().get(nodeIds);
+            final long[] sourceIds = new long[k];
+            ((ByteBuffer) ids.position(n * Long.BYTES)).asLongBuffer().get(sourceIds);
+            final boolean[] saturated = new boolean[k];
+            ids.position((n + k) * Long.BYTES);
+            for (int i = 0; i < k; i++)
+                saturated[i] = ids.get() != 0;
+            final int rowsPerSegment = getRowsPerSegment(n);
+            return new DistanceMatrix(mode, graphStamp, nodeIds, sourceIds, saturated,
+                                      mapSegments(channel, FileChannel.MapMode.READ_ONLY, headerSize, n, k,
+                                                  rowsPerSegment), rowsPerSegment);
+        }
+    }
+
+    /**
+     * Checks whether the matrix contains the distances from a source node.
+     */
+    public boolean hasSource(final long sourceNodeId) {
+        return rows.containsKey(sourceNodeId);
+    }
+
+    /**
+     * Checks whether the distances from a source node contain saturated entries, i.e. nodes at least
+     * {@value #SATURATED} hops away.
+     */
+    public boolean isSaturated(final long sourceNodeId) {
+        final Integer row = rows.get(sourceNodeId);
+        return row != null && saturated[row];
+    }
+
+    /**
+     * Returns the distance between a source node of the matrix and any node.
+     * @return Number of edges on a shortest path ({@value #SATURATED} meaning at least {@value #SATURATED}),
+     * {@link Long#MAX_VALUE} if the target is not reachable or -1 if the source is not part of the matrix or the target
+     * is not part of the graph
+     */
+    public long getDistance(final long sourceNodeId, final long targetNodeId) {
+        if (closed)
+            throw new IllegalStateException("The distance matrix is closed");
+        final Integer row = rows.get(sourceNodeId);
+        final int target = GraphIndexRegistry.indexOf(nodeIds, targetNodeId);
+        if (row == null || target < 0)
+            return -1;
+        final int value = segments[row / rowsPerSegment].get((row % rowsPerSegment) * nodeIds.length + target) & 0xFF;
+        return value == UNREACHABLE ? Long.MAX_VALUE : value;
+    }
+
+    public GraphMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Unmaps the rows of the matrix, so that the file can be deleted or replaced on all platforms. The matrix must not
+     * be used or registered afterwards. If the JVM does not allow unmapping buffers explicitly, the rows are unmapped
+     * once the buffers are garbage collected.
+     */
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        for (int i = 0; i < segments.length; i++) {
+            unmap(segments[i]);
+            segments[i] = null;
+        }
+    }
+
+    private static void unmap(final MappedByteBuffer buffer) {
+        try {
+            // Java 9 and later
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            try {
+                // Java 8
+                final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                final Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null)
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+            } catch (ReflectiveOperationException | RuntimeException ignored) {
+                LOGGER.debug("Mapped distances are released by the garbage collector");
+            }
+        }
+    }
+
+    public long[] getSourceIds() {
+        return sourceIds;
+    }
+
+    public int getNumberOfNodes() {
+        return nodeIds.length;
+    }
+
+    /**
+     * Checks whether the matrix was computed for the current state of a graph, i.e. the graph still has the
+     * {@link GraphStamp fingerprint} the matrix was stamped with.
+     */
+    public boolean isCompatible(final BaseGraph graph) {
+        return graphStamp.matches(graph);
+    }
+
+    private static GraphIndexRegistry.Key<DistanceMatrix> key(final GraphMode mode) {
+        return GraphIndexRegistry.Key.of(DistanceMatrix.class, mode);
+    }
+
+    /**
+     * Registers a matrix for a graph, so that distance queries from its sources in the matrix's mode use the matrix.
+     * The matrix is stamped with the fingerprint of the graph it was computed for.
+     */
+    public static void register(final BaseGraph graph, final DistanceMatrix matrix) {
+        GraphIndexRegistry.register(graph, key(matrix.getMode()), matrix, matrix.graphStamp);
+    }
+
+    /**
+     * Removes all matrices registered for a graph.
+     */
+    public static void unregister(final BaseGraph graph) {
+        GraphIndexRegistry.unregister(graph, DistanceMatrix.class);
+    }
+
+    /**
+     * Returns the matrix registered for a graph and mode.
+     * @return Registered matrix or null, if there is none or it is stale
+     */
+    public static DistanceMatrix getRegistered(final BaseGraph graph, final GraphMode mode) {
+        return GraphIndexRegistry.get(graph, key(mode));
+    }
+}
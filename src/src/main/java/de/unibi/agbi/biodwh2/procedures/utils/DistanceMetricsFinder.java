@@ -0,0 +1,115 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.BaseGraph;
+import de.unibi.agbi.biodwh2.procedures.model.DistanceMetrics;
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Derives closeness, harmonic centrality, eccentricity and reach count from a single breadth-first search per source
+ * node, instead of running a separate shortest path search for each metric.
+ */
+public class DistanceMetricsFinder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DistanceMetricsFinder.class);
+
+    private final CSRGraph adjacency;
+
+    public DistanceMetricsFinder(final CSRGraph adjacency) {
+        this.adjacency = adjacency;
+    }
+
+    /**
+     * Computes the distance metrics of a single node directly on the graph, without building an adjacency snapshot.
+     * @param graph  Graph in which the node resides
+     * @param nodeId Source node
+     * @param mode   Orientation of the graph
+     * @return Distance metrics of the source node
+     */
+    public static DistanceMetrics compute(final BaseGraph graph, final long nodeId, final GraphMode mode) {
+        final Map<Long, Long> distances = new HashMap<>();
+        final Queue<Long> queue = new ArrayDeque<>();
+        distances.put(nodeId, 0L);
+        queue.add(nodeId);
+        long distanceSum = 0;
+        double harmonicSum = 0;
+        long maxDistance = 0;
+        while (!queue.isEmpty()) {
+            final long currentId = queue.poll();
+            final long distance = distances.get(currentId) + 1;
+            for (final Long neighborId : GraphProcedureUtils.getNeighbors(graph, currentId, mode)) {
+                if (!distances.containsKey(neighborId)) {
+                    distances.put(neighborId, distance);
+                    queue.add(neighborId);
+                    distanceSum += distance;
+                    harmonicSum += 1.0 / distance;
+                    maxDistance = distance;
+                }
+            }
+        }
+        return new DistanceMetrics(distances.size() - 1, distanceSum, harmonicSum, maxDistance);
+    }
+
+    /**
+     * Computes the distance metrics for all nodes of the snapshot, running the per-source searches in parallel.
+     * @return Distance metrics by node index
+     */
+    public DistanceMetrics[] computeAll() {
+        final int n = adjacency.getNumberOfNodes();
+        LOGGER.info("Computing distance metrics for " + n + " node(s) ...");
+        final DistanceMetrics[] results = new DistanceMetrics[n];
+        final ThreadLocal<int[][]> scratch = ThreadLocal.withInitial(() -> createScratch(n));
+        IntStream.range(0, n).parallel().forEach(source -> results[source] = compute(source, scratch.get()));
+        return results;
+    }
+
+    /**
+     * Computes the distance metrics of a single node index.
+     */
+    public DistanceMetrics compute(final int source) {
+        return compute(source, createScratch(adjacency.getNumberOfNodes()));
+    }
+
+    private static int[][] createScratch(final int n) {
+        final int[] distances = new int[n];
+        Arrays.fill(distances, -1);
+        return new int[][]{distances, new int[n]};
+    }
+
+    /**
+     * Breadth-first search over the snapshot. The distance array is expected to be filled with -1 and is reset
+     * afterwards by walking the queue, so the cost only depends on the reached part of the graph.
+     */
+    private DistanceMetrics compute(final int source, final int[][] scratch) {
+        final int[] distances = scratch[0];
+        final int[] queue = scratch[1];
+        int head = 0;
+        int tail = 0;
+        distances[source] = 0;
+        queue[tail++] = source;
+        long distanceSum = 0;
+        double harmonicSum = 0;
+        int maxDistance = 0;
+        while (head < tail) {
+            final int current = queue[head++];
+            final int distance = distances[current] + 1;
+            for (int position = adjacency.getStart(current); position < adjacency.getEnd(current); position++) {
+                final int neighbor = adjacency.getTarget(position);
+                if (distances[neighbor] < 0) {
+                    distances[neighbor] = distance;
+                    queue[tail++] = neighbor;
+                    distanceSum += distance;
+                    harmonicSum += 1.0 / distance;
+                    maxDistance = distance;
+                }
+            }
+        }
+        for (int i = 0; i < tail; i++)
+            distances[queue[i]] = -1;
+        return new DistanceMetrics(tail - 1, distanceSum, harmonicSum, maxDistance);
+    }
+}
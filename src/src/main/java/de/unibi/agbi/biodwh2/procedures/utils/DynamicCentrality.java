@@ -0,0 +1,374 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.BaseGraph;
+import de.unibi.agbi.biodwh2.core.model.graph.Edge;
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Maintains closeness and betweenness centrality of all nodes under edge insertions. The hop distances of all sources
+ * are kept as one unsigned byte per node pair (n * n bytes, so at most {@value #MAX_NODES} nodes are supported), so
+ * that after inserting an edge (u, v) only the sources whose breadth-first search DAG changes are processed again:
+ * <ul>
+ *     <li>if |d(s, u) - d(s, v)| &gt;= 2, distances from s shrink, so closeness and betweenness contributions of s
+ *     change</li>
+ *     <li>if |d(s, u) - d(s, v)| = 1, the edge adds shortest paths without changing distances, so only the betweenness
+ *     contributions of s change</li>
+ *     <li>otherwise the DAG of s is unchanged</li>
+ * </ul>
+ * (in directed mode only d(s, v) - d(s, u) is considered). The betweenness contributions of an affected source are
+ * recomputed with Brandes' dependency accumulation on the old and the new snapshot, the difference is applied to the
+ * scores. In sparse biological networks a single insertion usually affects a small fraction of all sources.
+ * Distances of {@value #SATURATED} hops and more are stored as {@value #SATURATED}, sources for which an endpoint of a
+ * new edge is that far away are always treated as affected.
+ * <p>
+ * Closeness is the number of reached nodes divided by the sum of their distances, like {@link
+ * de.unibi.agbi.biodwh2.procedures.model.DistanceMetrics#getCloseness()}. Betweenness is the unnormalized Brandes score,
+ * halved in undirected mode so that each node pair is counted once.
+ * <p>
+ * Centralities are registered per graph and mode by {@link #update(BaseGraph, GraphMode)}, which applies edges added
+ * to the graph since the last call incrementally.
+ */
+public class DynamicCentrality {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DynamicCentrality.class);
+    /**
+     * Maximum number of nodes, the distance rows take 4 GiB at this size
+     */
+    public static final int MAX_NODES = 1 << 16;
+    /**
+     * Stored distance of nodes not reachable from the source
+     */
+    private static final int UNREACHABLE = 255;
+    /**
+     * Stored distance of nodes with a distance of at least this value
+     */
+    public static final int SATURATED = 254;
+
+    private CSRGraph adjacency;
+    private final boolean undirected;
+    /**
+     * Hop distances by source and node index as unsigned bytes
+     */
+    private final byte[][] distances;
+    private final long[] reached;
+    private final long[] distanceSums;
+    private final double[] betweenness;
+    private int recomputedSources;
+
+    /**
+     * Calculates the initial centralities with one breadth-first search per source.
+     * @param adjacency Adjacency snapshot
+     */
+    public DynamicCentrality(final CSRGraph adjacency) {
+        final int n = adjacency.getNumberOfNodes();
+        if (n > MAX_NODES)
+            throw new IllegalArgumentException(
+                    "Dynamic centrality supports at most " + MAX_NODES + " nodes, the graph has " + n);
+        this.adjacency = adjacency;
+        undirected = adjacency.getMode() == GraphMode.UNDIRECTED;
+        distances = new byte[n][];
+        reached = new long[n];
+        distanceSums = new long[n];
+        betweenness = new double[n];
+        final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(() -> new Workspace(n));
+        IntStream.range(0, n).parallel().forEach(s -> {
+            final Workspace workspace = workspaces.get();
+            distances[s] = new byte[n];
+            accumulate(adjacency, s, workspace);
+            storeDistances(s, workspace);
+            addDependencies(workspace, s, 1);
+        });
+        LOGGER.info("Calculated closeness and betweenness of " + n + " node(s)");
+    }
+
+    /**
+     * Buffers of a single breadth-first search with dependency accumulation
+     */
+    private static final class Workspace {
+        final int[] distance;
+        final int[] queue;
+        final long[] sigma;
+        final double[] delta;
+        int visited;
+
+        Workspace(final int n) {
+            distance = new int[n];
+            Arrays.fill(distance, -1);
+            queue = new int[n];
+            sigma = new long[n];
+            delta = new double[n];
+        }
+    }
+
+    /**
+     * Runs a breadth-first search from a source and accumulates the dependencies of the source on all nodes. The
+     * distances of the visited nodes are left in the workspace until the next search.
+     */
+    private static void accumulate(final CSRGraph adjacency, final int source, final Workspace workspace) {
+        final int[] distance = workspace.distance;
+        // only the nodes visited by the previous search need to be reset
+        for (int i = 0; i < workspace.visited; i++)
+            distance[workspace.queue[i]] = -1;
+        final int[] queue = workspace.queue;
+        final long[] sigma = workspace.sigma;
+        final double[] delta = workspace.delta;
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        distance[source] = 0;
+        sigma[source] = 1;
+        delta[source] = 0;
+        while (head < tail) {
+            final int u = queue[head++];
+            for (int position = adjacency.getStart(u); position < adjacency.getEnd(u); position++) {
+                final int v = adjacency.getTarget(position);
+                if (distance[v] < 0) {
+                    distance[v] = distance[u] + 1;
+                    sigma[v] = 0;
+                    delta[v] = 0;
+                    queue[tail++] = v;
+                }
+                if (distance[v] == distance[u] + 1)
+                    sigma[v] += sigma[u];
+            }
+        }
+        // nodes in reverse BFS order, successors are found through the distance levels
+        for (int i = tail - 1; i >= 0; i--) {
+            final int u = queue[i];
+            for (int position = adjacency.getStart(u); position < adjacency.getEnd(u); position++) {
+                final int v = adjacency.getTarget(position);
+                if (distance[v] == distance[u] + 1)
+                    delta[u] += (double) sigma[u] / sigma[v] * (1 + delta[v]);
+            }
+        }
+        workspace.visited = tail;
+    }
+
+    /**
+     * Stores the distances of the last search as the row of the source and updates its distance sums from the exact
+     * distances.
+     */
+    private void storeDistances(final int source, final Workspace workspace) {
+        final byte[] row = distances[source];
+        Arrays.fill(row, (byte) UNREACHABLE);
+        long sum = 0;
+        for (int i = 0; i < workspace.visited; i++) {
+            final int v = workspace.queue[i];
+            final int distance = workspace.distance[v];
+            row[v] = (byte) Math.min(distance, SATURATED);
+            sum += distance;
+        }
+        reached[source] = workspace.visited - 1;
+        distanceSums[source] = sum;
+    }
+
+    /**
+     * Adds the dependencies of the last search (weighted by sign) to the betweenness scores.
+     */
+    private void addDependencies(final Workspace workspace, final int source, final int sign) {
+        final double factor = undirected ? sign * 0.5 : sign;
+        synchronized (betweenness) {
+            for (int i = 0; i < workspace.visited; i++) {
+                final int v = workspace.queue[i];
+                if (v != source)
+                    betweenness[v] += factor * workspace.delta[v];
+            }
+        }
+    }
+
+    /**
+     * Inserts a batch of edges and updates the centralities of all affected sources. Edges with nodes outside the
+     * snapshot are ignored.
+     * @param edgeIds Ids of the new edges
+     * @param fromIds Source node ids of the new edges
+     * @param toIds   Target node ids of the new edges
+     * @return Number of sources that were recomputed
+     */
+    public int insertEdges(final long[] edgeIds, final long[] fromIds, final long[] toIds) {
+        final int n = adjacency.getNumberOfNodes();
+        final int[] from = new int[edgeIds.length];
+        final int[] to = new int[edgeIds.length];
+        final long[] ids = new long[edgeIds.length];
+        int count = 0;
+        for (int i = 0; i < edgeIds.length; i++) {
+            from[count] = adjacency.getIndex(fromIds[i]);
+            to[count] = adjacency.getIndex(toIds[i]);
+            ids[count] = edgeIds[i];
+            if (from[count] >= 0 && to[count] >= 0)
+                count++;
+        }
+        final int edgeCount = count;
+        final int[] affected = IntStream.range(0, n).parallel().filter(s -> {
+            for (int i = 0; i < edgeCount; i++)
+                if (isAffected(distances[s], from[i], to[i]))
+                    return true;
+            return false;
+        }).toArray();
+        final CSRGraph previous = adjacency;
+        final CSRGraph next = merge(previous, from, to, ids, edgeCount);
+        final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(() -> new Workspace(n));
+        Arrays.stream(affected).parallel().forEach(s -> {
+            final Workspace workspace = workspaces.get();
+            accumulate(previous, s, workspace);
+            addDependencies(workspace, s, -1);
+            accumulate(next, s, workspace);
+            addDependencies(workspace, s, 1);
+            storeDistances(s, workspace);
+        });
+        adjacency = next;
+        recomputedSources += affected.length;
+        LOGGER.info("Inserted " + edgeCount + " edge(s), recomputed " + affected.length + " of " + n + " source(s)");
+        return affected.length;
+    }
+
+    private boolean isAffected(final byte[] distance, final int u, final int v) {
+        return createsShortestPath(distance, u, v) || undirected && createsShortestPath(distance, v, u);
+    }
+
+    /**
+     * Checks whether an edge u -&gt; v lies on a shortest path from the source, i.e. v is not closer than u. Saturated
+     * distances cannot be compared and count as affected.
+     */
+    private static boolean createsShortestPath(final byte[] distance, final int u, final int v) {
+        final int distanceU = distance[u] & 0xFF;
+        final int distanceV = distance[v] & 0xFF;
+        return distanceU != UNREACHABLE && (distanceV > distanceU || distanceU == SATURATED);
+    }
+
+    private CSRGraph merge(final CSRGraph previous, final int[] newFrom, final int[] newTo, final long[] newIds,
+                           final int newCount) {
+        final int capacity = previous.getNumberOfEntries() + 2 * newCount;
+        final int[] from = new int[capacity];
+        final int[] to = new int[capacity];
+        final long[] ids = new long[capacity];
+        int count = 0;
+        // entries are stored per direction already, so they are re-inserted as directed edges
+        for (int u = 0; u < previous.getNumberOfNodes(); u++)
+            for (int position = previous.getStart(u); position < previous.getEnd(u); position++) {
+                from[count] = u;
+                to[count] = previous.getTarget(position);
+                ids[count++] = previous.getEdgeId(position);
+            }
+        for (int i = 0; i < newCount; i++) {
+            from[count] = newFrom[i];
+            to[count] = newTo[i];
+            ids[count++] = newIds[i];
+            if (undirected && newFrom[i] != newTo[i]) {
+                from[count] = newTo[i];
+                to[count] = newFrom[i];
+                ids[count++] = newIds[i];
+            }
+        }
+        final CSRGraph directed = CSRGraph.fromEdges(GraphMode.DIRECTED, previous.getNodeIds(), from, to, ids,
+                                                     count);
+        return new CSRGraph(previous.getMode(), directed.getNodeIds(), directed.getOffsets(), directed.getTargets(),
+                            directed.getEdgeIds());
+    }
+
+    private static GraphIndexRegistry.Key<DynamicCentrality> key(final GraphMode mode) {
+        return GraphIndexRegistry.Key.of(DynamicCentrality.class, mode);
+    }
+
+    /**
+     * Returns the centralities of a graph registered in the {@link GraphIndexRegistry}. If the graph only gained edges
+     * since they were registered, the new edges are inserted incrementally, otherwise the centralities are calculated
+     * from scratch. The result is registered for the current state of the graph.
+     * @param graph Graph to be analyzed
+     * @param mode  Orientation of the graph
+     * @return Up-to-date centralities
+     */
+    public static synchronized DynamicCentrality update(final BaseGraph graph, final GraphMode mode) {
+        final GraphIndexRegistry.Key<DynamicCentrality> key = key(mode);
+        DynamicCentrality centrality = GraphIndexRegistry.get(graph, key);
+        if (centrality != null)
+            return centrality;
+        centrality = GraphIndexRegistry.getLatest(graph, key);
+        if (centrality == null || !centrality.insertNewEdges(graph))
+            centrality = new DynamicCentrality(CSRGraph.build(graph, mode));
+        GraphIndexRegistry.register(graph, key, centrality);
+        return centrality;
+    }
+
+    /**
+     * Removes all centralities registered for a graph.
+     */
+    public static void unregister(final BaseGraph graph) {
+        GraphIndexRegistry.unregister(graph, DynamicCentrality.class);
+    }
+
+    /**
+     * Inserts the edges of a graph that are not part of the snapshot yet. Each edge of the graph is looked up in the
+     * snapshot by id and end points, the snapshot is the record of all applied edges: if not every entry of the
+     * snapshot is matched by an edge of the graph, edges were removed or their end points changed.
+     * @return False, if the graph also changed otherwise (nodes added, removed or replaced, edges removed or changed),
+     * so that the centralities have to be recalculated
+     */
+    private boolean insertNewEdges(final BaseGraph graph) {
+        if (!Arrays.equals(adjacency.getNodeIds(), CSRGraph.collectNodeIds(graph)))
+            return false;
+        long[] ids = new long[16];
+        long[] fromIds = new long[16];
+        long[] toIds = new long[16];
+        int count = 0;
+        long matchedEntries = 0;
+        for (final Edge edge : graph.getEdges()) {
+            final int from = adjacency.getIndex(edge.getFromId());
+            final int to = adjacency.getIndex(edge.getToId());
+            if (from < 0 || to < 0)
+                continue;
+            if (adjacency.findEntry(from, to, edge.getId()) >= 0) {
+                matchedEntries += undirected && from != to ? 2 : 1;
+                continue;
+            }
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+                fromIds = Arrays.copyOf(fromIds, count * 2);
+                toIds = Arrays.copyOf(toIds, count * 2);
+            }
+            ids[count] = edge.getId();
+            fromIds[count] = edge.getFromId();
+            toIds[count++] = edge.getToId();
+        }
+        if (matchedEntries != adjacency.getNumberOfEntries())
+            return false;
+        insertEdges(Arrays.copyOf(ids, count), Arrays.copyOf(fromIds, count), Arrays.copyOf(toIds, count));
+        return true;
+    }
+
+    /**
+     * Returns the closeness of a node restricted to the nodes it reaches.
+     */
+    public double getCloseness(final int index) {
+        return distanceSums[index] == 0 ? 0 : (double) reached[index] / distanceSums[index];
+    }
+
+    public double getBetweenness(final int index) {
+        return betweenness[index];
+    }
+
+    /**
+     * Returns the hop distance between two node indices.
+     * @return Distance ({@value #SATURATED} meaning at least {@value #SATURATED}) or {@link Integer#MAX_VALUE} if the
+     * target is not reachable
+     */
+    public int getDistance(final int source, final int target) {
+        final int distance = distances[source][target] & 0xFF;
+        return distance == UNREACHABLE ? Integer.MAX_VALUE : distance;
+    }
+
+    /**
+     * Returns the number of sources recomputed by all insertions so far.
+     */
+    public int getRecomputedSources() {
+        return recomputedSources;
+    }
+
+    public CSRGraph getAdjacency() {
+        return adjacency;
+    }
+}
@@ -0,0 +1,156 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+
+/**
+ * Computes the exact eccentricity of all nodes and the diameter of an adjacency snapshot. Undirected snapshots use the
+ * bound propagation algorithm of Takes and Kosters. Every BFS from a node v with eccentricity e(v) bounds the
+ * eccentricity of every other node w by max(e(v) - d(v, w), d(v, w)) &lt;= e(w) &lt;= e(v) + d(v, w). Sources
+ * alternate between the candidates with the largest upper and the smallest lower bound, and nodes whose bounds
+ * coincide are resolved without a search of their own, so real-world graphs typically need only a handful of BFS runs.
+ * <p>
+ * The bounds rely on symmetric distances and do not hold for directed snapshots, whose eccentricities are therefore
+ * resolved with one BFS per node along the outgoing edges.
+ * <p>
+ * The eccentricity of a node is the distance to the farthest node it reaches (in undirected mode the farthest node in
+ * its connected component), the diameter is the largest eccentricity of all nodes. Parallel edges and self loops do
+ * not change the result.
+ */
+public class EccentricityFinder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EccentricityFinder.class);
+
+    private final CSRGraph adjacency;
+    private final int[] eccentricities;
+    private int diameter;
+    private int searches;
+
+    public EccentricityFinder(final CSRGraph adjacency) {
+        this.adjacency = adjacency;
+        eccentricities = new int[adjacency.getNumberOfNodes()];
+        if (adjacency.getMode() == GraphMode.UNDIRECTED)
+            init();
+        else
+            initDirected();
+        for (final int eccentricity : eccentricities)
+            diameter = Math.max(diameter, eccentricity);
+        LOGGER.info("Eccentricities of " + eccentricities.length + " node(s) resolved with " + searches +
+                    " BFS run(s)");
+    }
+
+    private void init() {
+        final int n = adjacency.getNumberOfNodes();
+        final int[] lower = new int[n];
+        final int[] upper = new int[n];
+        Arrays.fill(upper, Integer.MAX_VALUE);
+        final boolean[] resolved = new boolean[n];
+        final int[] distances = new int[n];
+        Arrays.fill(distances, -1);
+        final int[] queue = new int[n];
+        int unresolved = n;
+        boolean pickUpper = true;
+        while (unresolved > 0) {
+            final int source = selectSource(lower, upper, resolved, pickUpper);
+            pickUpper = !pickUpper;
+            final int reached = bfs(source, distances, queue);
+            searches++;
+            final int eccentricity = distances[queue[reached - 1]];
+            for (int i = 0; i < reached; i++) {
+                final int w = queue[i];
+                if (resolved[w])
+                    continue;
+                final int distance = distances[w];
+                lower[w] = Math.max(lower[w], Math.max(eccentricity - distance, distance));
+                upper[w] = Math.min(upper[w], eccentricity + distance);
+                if (lower[w] == upper[w]) {
+                    resolved[w] = true;
+                    eccentricities[w] = lower[w];
+                    unresolved--;
+                }
+            }
+            for (int i = 0; i < reached; i++)
+                distances[queue[i]] = -1;
+        }
+    }
+
+    private void initDirected() {
+        final int n = adjacency.getNumberOfNodes();
+        final int[] distances = new int[n];
+        Arrays.fill(distances, -1);
+        final int[] queue = new int[n];
+        for (int source = 0; source < n; source++) {
+            final int reached = bfs(source, distances, queue);
+            searches++;
+            eccentricities[source] = distances[queue[reached - 1]];
+            for (int i = 0; i < reached; i++)
+                distances[queue[i]] = -1;
+        }
+    }
+
+    /**
+     * Selects the unresolved node with the largest upper bound (or smallest lower bound), ties are broken by the
+     * larger degree.
+     */
+    private int selectSource(final int[] lower, final int[] upper, final boolean[] resolved, final boolean pickUpper) {
+        int best = -1;
+        for (int v = 0; v < resolved.length; v++) {
+            if (resolved[v])
+                continue;
+            if (best == -1) {
+                best = v;
+                continue;
+            }
+            final int compare = pickUpper ? Integer.compare(upper[v], upper[best]) : Integer.compare(lower[best],
+                                                                                                     lower[v]);
+            if (compare > 0 || (compare == 0 && adjacency.getDegree(v) > adjacency.getDegree(best)))
+                best = v;
+        }
+        return best;
+    }
+
+    /**
+     * Runs a BFS and returns the number of reached nodes, which are stored in the queue in order of their distance.
+     */
+    private int bfs(final int source, final int[] distances, final int[] queue) {
+        int head = 0;
+        int tail = 0;
+        distances[source] = 0;
+        queue[tail++] = source;
+        while (head < tail) {
+            final int current = queue[head++];
+            for (int position = adjacency.getStart(current); position < adjacency.getEnd(current); position++) {
+                final int neighbor = adjacency.getTarget(position);
+                if (distances[neighbor] < 0) {
+                    distances[neighbor] = distances[current] + 1;
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * Returns the eccentricity (longest shortest path within the component) for a node index.
+     */
+    public int getEccentricity(final int index) {
+        return eccentricities[index];
+    }
+
+    /**
+     * Returns the diameter, i.e. the largest eccentricity of all nodes.
+     */
+    public int getDiameter() {
+        return diameter;
+    }
+
+    /**
+     * Returns the number of BFS runs needed to resolve all eccentricities.
+     */
+    public int getSearches() {
+        return searches;
+    }
+}
@@ -0,0 +1,121 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.BaseGraph;
+import de.unibi.agbi.biodwh2.core.model.graph.Edge;
+
+import java.util.Arrays;
+
+/**
+ * Edge existence index mapping a (from, to) node id pair to the id of a connecting edge. The index is a primitive
+ * open-addressing hash table with linear probing that is built once per graph snapshot, lookups run in expected O(1)
+ * without allocation. For parallel edges the first edge encountered is stored.
+ * <p>
+ * Indices are registered per graph by {@link #get(BaseGraph)}, so repeated analyses of the same graph share one index
+ * until the graph changes.
+ */
+public class EdgeIndex {
+
+    /**
+     * Returned by lookups if no edge connects the node pair
+     */
+    public static final long NO_EDGE = -1;
+
+    private final long[] fromIds;
+    private final long[] toIds;
+    private final long[] edgeIds;
+    private final int mask;
+    private int size;
+
+    private EdgeIndex(final long expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2 && capacity < (1 << 30))
+            capacity <<= 1;
+        fromIds = new long[capacity];
+        toIds = new long[capacity];
+        edgeIds = new long[capacity];
+        Arrays.fill(edgeIds, NO_EDGE);
+        mask = capacity - 1;
+    }
+
+    /**
+     * Creates an edge index with a single pass over all edges of the graph.
+     * @param graph Graph to index
+     * @return Edge index for the current state of the graph
+     */
+    public static EdgeIndex build(final BaseGraph graph) {
+        final EdgeIndex index = new EdgeIndex(graph.getNumberOfEdges());
+        for (final Edge edge : graph.getEdges())
+            index.put(edge.getFromId(), edge.getToId(), edge.getId());
+        return index;
+    }
+
+    /**
+     * Returns the edge index of a graph registered in the {@link GraphIndexRegistry}, building and registering it if
+     * there is none or it is stale.
+     */
+    public static EdgeIndex get(final BaseGraph graph) {
+        return GraphIndexRegistry.getOrBuild(graph, GraphIndexRegistry.Key.of(EdgeIndex.class), EdgeIndex::build);
+    }
+
+    private static int hash(final long fromId, final long toId) {
+        long h = fromId * 0x9E3779B97F4A7C15L + toId;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private void put(final long fromId, final long toId, final long edgeId) {
+        if (size >= mask)
+            throw new IllegalStateException("Edge index capacity exceeded");
+        int slot = hash(fromId, toId) & mask;
+        while (edgeIds[slot] != NO_EDGE) {
+            if (fromIds[slot] == fromId && toIds[slot] == toId)
+                return;
+            slot = (slot + 1) & mask;
+        }
+        fromIds[slot] = fromId;
+        toIds[slot] = toId;
+        edgeIds[slot] = edgeId;
+        size++;
+    }
+
+    /**
+     * Finds an edge directed from one node to another.
+     * @param fromId Source node id
+     * @param toId   Target node id
+     * @return Edge id or {@link #NO_EDGE}, if there is no such edge
+     */
+    public long find(final long fromId, final long toId) {
+        int slot = hash(fromId, toId) & mask;
+        while (edgeIds[slot] != NO_EDGE) {
+            if (fromIds[slot] == fromId && toIds[slot] == toId)
+                return edgeIds[slot];
+            slot = (slot + 1) & mask;
+        }
+        return NO_EDGE;
+    }
+
+    /**
+     * Checks whether there is an edge from one node to another.
+     */
+    public boolean contains(final long fromId, final long toId) {
+        return find(fromId, toId) != NO_EDGE;
+    }
+
+    /**
+     * Checks whether two nodes are connected by an edge in either direction.
+     */
+    public boolean isAdjacent(final long firstId, final long secondId) {
+        return contains(firstId, secondId) || contains(secondId, firstId);
+    }
+
+    /**
+     * Returns the number of distinct (from, to) pairs in the index.
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,293 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.BaseGraph;
+import de.unibi.agbi.biodwh2.core.model.graph.Edge;
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Adjacency snapshot partitioned by edge label. All edges are stored in a single CSR layout in which the neighbor range
+ * of each node is grouped by edge label, and each node keeps one (label, start) pair per label among its edges. Memory
+ * is therefore linear in the number of nodes and edges, independent of the number of labels.
+ * <p>
+ * A traversal restricted to a set of edge labels resolves the labels once into a {@link #getLabelMask(String...) label
+ * mask} and per node only iterates the ranges of the allowed labels, so edges of other labels are never touched.
+ * Partitions are registered per graph and mode by {@link #get(BaseGraph, GraphMode)} and rebuilt once they are stale.
+ */
+public class EdgeLabelPartitions {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EdgeLabelPartitions.class);
+
+    private final GraphMode mode;
+    private final long[] nodeIds;
+    private final String[] labels;
+    private final Map<String, Integer> labelIds;
+    private final int[] offsets;
+    private final int[] targets;
+    /**
+     * Label ranges of node u are rangeOffsets[u] (inclusive) to rangeOffsets[u + 1] (exclusive)
+     */
+    private final int[] rangeOffsets;
+    private final int[] rangeLabels;
+    private final int[] rangeStarts;
+
+    private EdgeLabelPartitions(final GraphMode mode, final long[] nodeIds, final String[] labels, final int[] offsets,
+                                final int[] targets, final int[] rangeOffsets, final int[] rangeLabels,
+                                final int[] rangeStarts) {
+        this.mode = mode;
+        this.nodeIds = nodeIds;
+        this.labels = labels;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.rangeOffsets = rangeOffsets;
+        this.rangeLabels = rangeLabels;
+        this.rangeStarts = rangeStarts;
+        labelIds = new HashMap<>();
+        for (int i = 0; i < labels.length; i++)
+            labelIds.put(labels[i], i);
+    }
+
+    /**
+     * Builds the partitions of a graph with one pass over the edges of each label.
+     * @param graph Graph to snapshot
+     * @param mode  Orientation of the graph, in undirected mode each edge is inserted in both directions
+     * @return Partitioned adjacency snapshot
+     */
+    public static EdgeLabelPartitions build(final BaseGraph graph, final GraphMode mode) {
+        final long[] nodeIds = CSRGraph.collectNodeIds(graph);
+        // collect the edges grouped by label
+        final List<String> labels = new ArrayList<>();
+        int[] from = new int[16];
+        int[] to = new int[16];
+        int[] edgeLabels = new int[16];
+        int edgeCount = 0;
+        for (final String label : graph.getEdgeLabels()) {
+            final int labelCount = edgeCount;
+            for (final Edge edge : graph.getEdges(label)) {
+                final int fromIndex = Arrays.binarySearch(nodeIds, edge.getFromId());
+                final int toIndex = Arrays.binarySearch(nodeIds, edge.getToId());
+                if (fromIndex < 0 || toIndex < 0)
+                    continue;
+                if (edgeCount == from.length) {
+                    from = Arrays.copyOf(from, edgeCount * 2);
+                    to = Arrays.copyOf(to, edgeCount * 2);
+                    edgeLabels = Arrays.copyOf(edgeLabels, edgeCount * 2);
+                }
+                from[edgeCount] = fromIndex;
+                to[edgeCount] = toIndex;
+                edgeLabels[edgeCount++] = labels.size();
+            }
+            if (edgeCount > labelCount)
+                labels.add(label);
+        }
+        final EdgeLabelPartitions partitions = fromEdges(mode, nodeIds, labels.toArray(new String[0]), from, to,
+                                                         edgeLabels, edgeCount);
+        LOGGER.info("Partitioned the adjacency of " + nodeIds.length + " node(s) into " + labels.size() +
+                    " edge label(s)");
+        return partitions;
+    }
+
+    /**
+     * Creates the partitions from edges ordered by label id. The stable counting sort by source keeps the entries of
+     * each node grouped by label.
+     */
+    private static EdgeLabelPartitions fromEdges(final GraphMode mode, final long[] nodeIds, final String[] labels,
+                                                 final int[] from, final int[] to, final int[] edgeLabels,
+                                                 final int edgeCount) {
+        final boolean undirected = mode == GraphMode.UNDIRECTED;
+        final int n = nodeIds.length;
+        final int[] offsets = new int[n + 1];
+        for (int i = 0; i < edgeCount; i++) {
+            offsets[from[i] + 1]++;
+            if (undirected && from[i] != to[i])
+                offsets[to[i] + 1]++;
+        }
+        for (int i = 0; i < n; i++)
+            offsets[i + 1] += offsets[i];
+        final int[] targets = new int[offsets[n]];
+        final int[] entryLabels = new int[offsets[n]];
+        final int[] positions = Arrays.copyOf(offsets, n);
+        for (int i = 0; i < edgeCount; i++) {
+            int position = positions[from[i]]++;
+            targets[position] = to[i];
+            entryLabels[position] = edgeLabels[i];
+            if (undirected && from[i] != to[i]) {
+                position = positions[to[i]]++;
+                targets[position] = from[i];
+                entryLabels[position] = edgeLabels[i];
+            }
+        }
+        // one range per node and label
+        final int[] rangeOffsets = new int[n + 1];
+        for (int u = 0; u < n; u++) {
+            int ranges = 0;
+            for (int position = offsets[u]; position < offsets[u + 1]; position++)
+                if (position == offsets[u] || entryLabels[position] != entryLabels[position - 1])
+                    ranges++;
+            rangeOffsets[u + 1] = rangeOffsets[u] + ranges;
+        }
+        final int[] rangeLabels = new int[rangeOffsets[n]];
+        final int[] rangeStarts = new int[rangeOffsets[n]];
+        for (int u = 0, range = 0; u < n; u++)
+            for (int position = offsets[u]; position < offsets[u + 1]; position++)
+                if (position == offsets[u] || entryLabels[position] != entryLabels[position - 1]) {
+                    rangeLabels[range] = entryLabels[position];
+                    rangeStarts[range++] = position;
+                }
+        return new EdgeLabelPartitions(mode, nodeIds, labels, offsets, targets, rangeOffsets, rangeLabels,
+                                       rangeStarts);
+    }
+
+    /**
+     * Returns the partitions of a graph registered in the {@link GraphIndexRegistry}, building and registering them if
+     * there are none or they are stale.
+     */
+    public static EdgeLabelPartitions get(final BaseGraph graph, final GraphMode mode) {
+        return GraphIndexRegistry.getOrBuild(graph, GraphIndexRegistry.Key.of(EdgeLabelPartitions.class, mode),
+                                             key -> build(graph, mode));
+    }
+
+    /**
+     * Resolves edge labels once for repeated traversals, labels without edges are skipped.
+     * @return Mask by label id, true for the allowed labels
+     */
+    public boolean[] getLabelMask(final String... allowedLabels) {
+        final boolean[] mask = new boolean[labels.length];
+        for (final String label : allowedLabels) {
+            final Integer labelId = labelIds.get(label);
+            if (labelId != null)
+                mask[labelId] = true;
+        }
+        return mask;
+    }
+
+    /**
+     * Collects the neighbors of a node reachable via edges with one of the given labels.
+     * @return Neighbor node ids, parallel edges yield duplicate ids
+     */
+    public List<Long> getNeighbors(final long nodeId, final String... allowedLabels) {
+        return getNeighbors(nodeId, getLabelMask(allowedLabels));
+    }
+
+    /**
+     * Collects the neighbors of a node reachable via edges with one of the labels of a {@link #getLabelMask label
+     * mask}.
+     * @return Neighbor node ids, parallel edges yield duplicate ids
+     */
+    public List<Long> getNeighbors(final long nodeId, final boolean[] labelMask) {
+        final List<Long> neighbors = new ArrayList<>();
+        final int index = getIndex(nodeId);
+        if (index < 0)
+            return neighbors;
+        for (int range = rangeOffsets[index]; range < rangeOffsets[index + 1]; range++)
+            if (labelMask[rangeLabels[range]])
+                for (int position = rangeStarts[range]; position < getRangeEnd(index, range); position++)
+                    neighbors.add(nodeIds[targets[position]]);
+        return neighbors;
+    }
+
+    private int getRangeEnd(final int index, final int range) {
+        return range + 1 < rangeOffsets[index + 1] ? rangeStarts[range + 1] : offsets[index + 1];
+    }
+
+    /**
+     * Calculates the hop distances from a source node following only edges with one of the labels of a
+     * {@link #getLabelMask label mask}.
+     * @param source    Index of the source node
+     * @param parents   Optional array of length n receiving the predecessor of each reached node (-1 for the source)
+     * @param target    Index of a node at which the search stops, -1 to search all reachable nodes
+     * @param labelMask Allowed edge labels
+     * @return Distance by node index, -1 for nodes that were not reached
+     */
+    public int[] breadthFirstSearch(final int source, final int[] parents, final int target,
+                                    final boolean[] labelMask) {
+        final int n = nodeIds.length;
+        final int[] distances = new int[n];
+        Arrays.fill(distances, -1);
+        final int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        distances[source] = 0;
+        if (parents != null)
+            parents[source] = -1;
+        while (head < tail && (target < 0 || distances[target] < 0)) {
+            final int u = queue[head++];
+            for (int range = rangeOffsets[u]; range < rangeOffsets[u + 1]; range++) {
+                if (!labelMask[rangeLabels[range]])
+                    continue;
+                final int end = getRangeEnd(u, range);
+                for (int position = rangeStarts[range]; position < end; position++) {
+                    final int v = targets[position];
+                    if (distances[v] < 0) {
+                        distances[v] = distances[u] + 1;
+                        if (parents != null)
+                            parents[v] = u;
+                        queue[tail++] = v;
+                    }
+                }
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Finds a shortest path between two nodes following only edges with one of the labels of a
+     * {@link #getLabelMask label mask}.
+     * @return Node indices from source to target or null, if the target is not reachable
+     */
+    public int[] findShortestPath(final int source, final int target, final boolean[] labelMask) {
+        final int[] parents = new int[nodeIds.length];
+        final int[] distances = breadthFirstSearch(source, parents, target, labelMask);
+        if (distances[target] < 0)
+            return null;
+        final int[] path = new int[distances[target] + 1];
+        for (int i = path.length - 1, node = target; i >= 0; i--, node = parents[node])
+            path[i] = node;
+        return path;
+    }
+
+    /**
+     * Returns the labels with at least one edge.
+     */
+    public Set<String> getLabels() {
+        return Collections.unmodifiableSet(labelIds.keySet());
+    }
+
+    public GraphMode getMode() {
+        return mode;
+    }
+
+    public int getNumberOfNodes() {
+        return nodeIds.length;
+    }
+
+    /**
+     * Returns the number of adjacency entries (edges are counted twice in undirected mode, except self loops).
+     */
+    public int getNumberOfEntries() {
+        return targets.length;
+    }
+
+    /**
+     * Returns the number of (node, label) ranges, which is at most the number of entries.
+     */
+    public int getNumberOfRanges() {
+        return rangeLabels.length;
+    }
+
+    /**
+     * Finds the dense index for a node id.
+     * @return Index of the node or -1, if the node is not part of the snapshot
+     */
+    public int getIndex(final long nodeId) {
+        return GraphIndexRegistry.indexOf(nodeIds, nodeId);
+    }
+
+    public long getNodeId(final int index) {
+        return nodeIds[index];
+    }
+}
@@ -6,10 +6,8 @@ import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Objects;
+import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * Finds cliques in a given graph.
@@ -26,6 +24,10 @@ public class GraphCliqueFinder {
      * Target graph
      */
     private BaseGraph graph;
+    /**
+     * Edge existence index of the target graph, used for neighbor filtering
+     */
+    private EdgeIndex edgeIndex;
 
     public GraphCliqueFinder(final BaseGraph graph) {
         this.cliques = new ArrayList<>();
@@ -57,9 +59,8 @@ public class GraphCliqueFinder {
 
         while(iterator.hasNext()) {
 
-            // obtain node an neighbor list
+            // obtain next node
             final Long node = iterator.next();
-            final List<Long> neighbors = GraphProcedureUtils.getNeighbors(graph, node, GraphMode.UNDIRECTED);
 
             // add node to clique
             List<Long> newPotentialClique = potentialClique;
@@ -68,7 +69,7 @@ public class GraphCliqueFinder {
             // update list of remaining nodes
             final List<Long> remainingNew = new ArrayList<>();
             for(final Long nodeRemaining : remaining) {
-                if(containsNode(nodeRemaining, neighbors)) {
+                if(isNeighbor(node, nodeRemaining)) {
                     remainingNew.add(nodeRemaining);
                 }
             }
@@ -76,7 +77,7 @@ public class GraphCliqueFinder {
             // update list of nodes to skip
             final List<Long> skipNew = new ArrayList<>();
             for(final Long nodeSkip : skip) {
-                if(containsNode(nodeSkip, neighbors)) {
+                if(isNeighbor(node, nodeSkip)) {
                     skipNew.add(nodeSkip);
                 }
             }
@@ -109,6 +110,106 @@ public class GraphCliqueFinder {
         return cliquesForNode;
     }
 
+    /**
+     * Finds all maximal cliques containing a specific node without enumerating the cliques of the whole graph. Every
+     * maximal clique containing the node lies inside its closed neighborhood N[v], so Bron-Kerbosch is started with the
+     * node already in the clique and the open neighborhood as candidates. Adjacency between neighbors is stored as one
+     * bit set per neighbor, so each recursion step only intersects bit sets of the local degree's size.
+     * @param graph  Graph in which the node resides
+     * @param nodeId Target node
+     * @return List containing all maximal cliques with target node (target node is always the first element)
+     */
+    public static List<List<Long>> findCliquesForNodeId(final BaseGraph graph, final long nodeId) {
+        // collect distinct neighbors (self loops are not part of any clique)
+        final Set<Long> neighborSet = new LinkedHashSet<>(GraphProcedureUtils.getNeighbors(graph, nodeId,
+                                                                                             GraphMode.UNDIRECTED));
+        neighborSet.remove(nodeId);
+        final long[] neighborIds = new long[neighborSet.size()];
+        final Map<Long, Integer> localIndex = new HashMap<>();
+        int index = 0;
+        for (final Long neighborId : neighborSet) {
+            neighborIds[index] = neighborId;
+            localIndex.put(neighborId, index++);
+        }
+
+        // adjacency of the open neighborhood, restricted to neighborhood members
+        final BitSet[] adjacency = new BitSet[neighborIds.length];
+        for (int i = 0; i < neighborIds.length; i++) {
+            adjacency[i] = new BitSet(neighborIds.length);
+            for (final Long otherId : GraphProcedureUtils.getNeighbors(graph, neighborIds[i], GraphMode.UNDIRECTED)) {
+                final Integer otherIndex = localIndex.get(otherId);
+                if (otherIndex != null && otherIndex != i)
+                    adjacency[i].set(otherIndex);
+            }
+        }
+
+        final List<List<Long>> cliques = new ArrayList<>();
+        final BitSet candidates = new BitSet(neighborIds.length);
+        candidates.set(0, neighborIds.length);
+        final List<Integer> clique = new ArrayList<>();
+        findLocalCliques(adjacency, clique, candidates, new BitSet(neighborIds.length), localClique -> {
+            final List<Long> result = new ArrayList<>(localClique.size() + 1);
+            result.add(nodeId);
+            for (final int member : localClique)
+                result.add(neighborIds[member]);
+            cliques.add(result);
+        });
+        return cliques;
+    }
+
+    /**
+     * Bron-Kerbosch algorithm with pivoting on bit set adjacencies of a local neighborhood.
+     * @param adjacency  Bit set adjacency for each local node
+     * @param clique     Current clique (local indices)
+     * @param candidates Local nodes that may still extend the clique
+     * @param skip       Local nodes that have already been processed
+     * @param consumer   Receives each maximal clique
+     */
+    private static void findLocalCliques(final BitSet[] adjacency, final List<Integer> clique, final BitSet candidates,
+                                         final BitSet skip, final Consumer<List<Integer>> consumer) {
+        if (candidates.isEmpty()) {
+            if (skip.isEmpty())
+                consumer.accept(clique);
+            return;
+        }
+        // choose the pivot with the most candidate neighbors to minimize branching
+        int pivot = -1;
+        int pivotDegree = -1;
+        for (final BitSet set : new BitSet[]{candidates, skip}) {
+            for (int u = set.nextSetBit(0); u >= 0; u = set.nextSetBit(u + 1)) {
+                final BitSet intersection = (BitSet) adjacency[u].clone();
+                intersection.and(candidates);
+                if (intersection.cardinality() > pivotDegree) {
+                    pivotDegree = intersection.cardinality();
+                    pivot = u;
+                }
+            }
+        }
+        final BitSet branches = (BitSet) candidates.clone();
+        branches.andNot(adjacency[pivot]);
+        for (int u = branches.nextSetBit(0); u >= 0; u = branches.nextSetBit(u + 1)) {
+            final BitSet newCandidates = (BitSet) candidates.clone();
+            newCandidates.and(adjacency[u]);
+            final BitSet newSkip = (BitSet) skip.clone();
+            newSkip.and(adjacency[u]);
+            clique.add(u);
+            findLocalCliques(adjacency, clique, newCandidates, newSkip, consumer);
+            clique.remove(clique.size() - 1);
+            candidates.clear(u);
+            skip.set(u);
+        }
+    }
+
+    /**
+     * Check whether two distinct nodes are connected by an edge in either direction (auxiliary function)
+     * @param nodeId  First node id
+     * @param otherId Second node id
+     * @return Determines whether the nodes are adjacent
+     */
+    private boolean isNeighbor(final long nodeId, final long otherId) {
+        return nodeId != otherId && edgeIndex.isAdjacent(nodeId, otherId);
+    }
+
     /**
      * Check whether a list contains a node id (auxiliary function)
      * @param nodeId Target node id
@@ -128,6 +229,7 @@ public class GraphCliqueFinder {
      */
     private void init(final BaseGraph graph) {
         LOGGER.info("Initializing clique detection ...");
+        edgeIndex = EdgeIndex.get(graph);
         final List<Long> nodesInitial = new ArrayList<>();
         // add all graph nodes to "remaining" list
         for(final Node node : graph.getNodes()) {
@@ -0,0 +1,182 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.BaseGraph;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Registry of indices derived from a graph, such as adjacency snapshots, compressed snapshots, distance indices or
+ * label partitions. Indices are registered per graph under a typed {@link Key} and are held weakly by their graph.
+ * <p>
+ * All indices share a single staleness rule: each registration is stamped with the {@link GraphStamp fingerprint} of
+ * the graph the index was built for, and an index is stale as soon as the graph's fingerprint differs from the stamp.
+ * Stale indices are never returned by {@link #get(BaseGraph, Key)}, {@link #getOrBuild} rebuilds them. Checking a
+ * registration scans the graph once (see {@link GraphStamp}), looking up a key without registration does not.
+ */
+public final class GraphIndexRegistry {
+
+    private static final Map<BaseGraph, Map<Key<?>, Registration>> REGISTERED = Collections.synchronizedMap(
+            new WeakHashMap<>());
+
+    /**
+     * Identifies an index of a certain type and variant (e.g. mode) of a graph.
+     */
+    public static final class Key<T> {
+        private final Class<T> type;
+        private final List<Object> variant;
+
+        private Key(final Class<T> type, final Object... variant) {
+            this.type = type;
+            this.variant = Arrays.asList(variant);
+        }
+
+        /**
+         * Creates a key for an index type and variant.
+         * @param type    Type of the index
+         * @param variant Values distinguishing indices of the same type, e.g. the graph mode
+         */
+        public static <T> Key<T> of(final Class<T> type, final Object... variant) {
+            return new Key<>(type, variant);
+        }
+
+        public Class<T> getType() {
+            return type;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            final Key<?> key = (Key<?>) o;
+            return type.equals(key.type) && variant.equals(key.variant);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type.hashCode() + variant.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return type.getSimpleName() + variant;
+        }
+    }
+
+    /**
+     * Registered index with the fingerprint of the graph it was built for
+     */
+    private static final class Registration {
+        final Object index;
+        final GraphStamp stamp;
+
+        Registration(final Object index, final GraphStamp stamp) {
+            this.index = index;
+            this.stamp = stamp;
+        }
+    }
+
+    private GraphIndexRegistry() {
+    }
+
+    private static Map<Key<?>, Registration> getRegistrations(final BaseGraph graph) {
+        return REGISTERED.computeIfAbsent(graph, key -> new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Registers an index that was built from the current state of the graph.
+     */
+    public static <T> void register(final BaseGraph graph, final Key<T> key, final T index) {
+        register(graph, key, index, GraphStamp.of(graph));
+    }
+
+    /**
+     * Registers an index that was built for a graph with the given fingerprint, e.g. an index read from a file. If the
+     * fingerprint differs from the graph's current one, the index is stale right away.
+     */
+    public static <T> void register(final BaseGraph graph, final Key<T> key, final T index, final GraphStamp stamp) {
+        getRegistrations(graph).put(key, new Registration(index, stamp));
+    }
+
+    /**
+     * Returns the index registered for a graph and key.
+     * @return Registered index or null, if there is none or it is stale
+     */
+    public static <T> T get(final BaseGraph graph, final Key<T> key) {
+        final Map<Key<?>, Registration> registrations = REGISTERED.get(graph);
+        final Registration registration = registrations != null ? registrations.get(key) : null;
+        if (registration == null || !registration.stamp.matches(graph))
+            return null;
+        return key.getType().cast(registration.index);
+    }
+
+    /**
+     * Returns the index registered for a graph and key, even if it is stale. Meant for indices that can be brought up
+     * to date incrementally instead of being rebuilt.
+     * @return Registered index or null, if there is none
+     */
+    public static <T> T getLatest(final BaseGraph graph, final Key<T> key) {
+        final Map<Key<?>, Registration> registrations = REGISTERED.get(graph);
+        final Registration registration = registrations != null ? registrations.get(key) : null;
+        return registration != null ? key.getType().cast(registration.index) : null;
+    }
+
+    /**
+     * Returns the index registered for a graph and key or builds and registers it, if there is none or it is stale.
+     * Concurrent callers for the same graph wait for a single build.
+     */
+    public static <T> T getOrBuild(final BaseGraph graph, final Key<T> key, final Function<BaseGraph, T> builder) {
+        return getOrUpdate(graph, key, (target, stale) -> builder.apply(target));
+    }
+
+    /**
+     * Returns the index registered for a graph and key or builds and registers it, if there is none or it is stale. A
+     * stale index is passed to the updater, so that it can be brought up to date incrementally instead of being rebuilt.
+     * Concurrent callers for the same graph wait for a single update.
+     * @param updater Function of the graph and the stale index (null, if there is none) returning the current index
+     */
+    public static <T> T getOrUpdate(final BaseGraph graph, final Key<T> key,
+                                    final BiFunction<BaseGraph, T, T> updater) {
+        final Map<Key<?>, Registration> registrations = getRegistrations(graph);
+        synchronized (registrations) {
+            // the fingerprint is taken before the update, so changes made meanwhile leave the index stale
+            final GraphStamp stamp = GraphStamp.of(graph);
+            final Registration registration = registrations.get(key);
+            if (registration != null && registration.stamp.equals(stamp))
+                return key.getType().cast(registration.index);
+            final T stale = registration != null ? key.getType().cast(registration.index) : null;
+            final T index = updater.apply(graph, stale);
+            register(graph, key, index, stamp);
+            return index;
+        }
+    }
+
+    /**
+     * Removes all indices of a type registered for a graph.
+     */
+    public static void unregister(final BaseGraph graph, final Class<?> type) {
+        final Map<Key<?>, Registration> registrations = REGISTERED.get(graph);
+        if (registrations != null)
+            registrations.keySet().removeIf(key -> key.getType().equals(type));
+    }
+
+    /**
+     * Removes all indices registered for a graph.
+     */
+    public static void unregister(final BaseGraph graph) {
+        REGISTERED.remove(graph);
+    }
+
+    /**
+     * Finds the dense index of a node id in the ascending node ids of an index.
+     * @return Index of the node or -1, if the node is not part of the index
+     */
+    public static int indexOf(final long[] nodeIds, final long nodeId) {
+        final int index = Arrays.binarySearch(nodeIds, nodeId);
+        return index >= 0 ? index : -1;
+    }
+}
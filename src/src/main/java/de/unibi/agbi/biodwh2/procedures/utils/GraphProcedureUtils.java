@@ -6,6 +6,7 @@ import de.unibi.agbi.biodwh2.core.model.graph.Graph;
 import de.unibi.agbi.biodwh2.core.model.graph.Node;
 import de.unibi.agbi.biodwh2.procedures.model.BFSResult;
 import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import de.unibi.agbi.biodwh2.procedures.model.NeighborhoodSubgraph;
 
 import java.io.IOException;
 import java.util.*;
@@ -24,9 +25,25 @@ public class GraphProcedureUtils {
      * @param startNodeId Node from which the search is initiated
      */
     public static BFSResult breadthFirstSearch(final BaseGraph graph, final long startNodeId, final GraphMode mode) {
+        return breadthFirstSearch(graph, null, startNodeId, mode);
+    }
+
+    /**
+     * Performs a breadth-first search in the course of which all connected nodes starting from a single source are
+     * marked as visited. Edge paths are resolved via a prebuilt edge index instead of property index lookups.
+     * <p>
+     * @param graph       The graph in which the source node resides
+     * @param edgeIndex   Edge existence index of the graph (optional, may be null)
+     * @param startNodeId Node from which the search is initiated
+     */
+    public static BFSResult breadthFirstSearch(final BaseGraph graph, final EdgeIndex edgeIndex,
+                                               final long startNodeId, final GraphMode mode) {
+        final CompressedGraph compressed = CompressedGraph.getRegistered(graph, mode);
+        if (compressed != null && compressed.getIndex(startNodeId) >= 0)
+            return breadthFirstSearch(graph, edgeIndex, compressed, compressed.getIndex(startNodeId));
 
         final Queue<Long> queue = new PriorityQueue<>();
-        final List<Long> edgePathIds = new ArrayList<>();
+        final Set<Long> edgePathIds = new LinkedHashSet<>();
 
         // add all nodes and mark as unvisited
         final Map<Long, Boolean> visited = new HashMap<>();
@@ -52,18 +69,14 @@ public class GraphProcedureUtils {
                 }
 
                 // collect edge paths between current node and each neighbor
-                Edge edgeOut = graph.findEdge(Edge.FROM_ID_FIELD, currentNodeId, Edge.TO_ID_FIELD, neighborId);
-                if(edgeOut != null) {
-                    if(!edgePathIds.contains(edgeOut.getId())) {
-                        edgePathIds.add(edgeOut.getId());
-                    }
+                final long edgeOutId = findEdgeId(graph, edgeIndex, currentNodeId, neighborId);
+                if (edgeOutId != EdgeIndex.NO_EDGE) {
+                    edgePathIds.add(edgeOutId);
                 }
                 if(mode == GraphMode.UNDIRECTED) {
-                    Edge edgeIn = graph.findEdge(Edge.FROM_ID_FIELD, neighborId, Edge.TO_ID_FIELD, currentNodeId);
-                    if(edgeIn != null) {
-                        if(!edgePathIds.contains(edgeIn.getId())) {
-                            edgePathIds.add(edgeIn.getId());
-                        }
+                    final long edgeInId = findEdgeId(graph, edgeIndex, neighborId, currentNodeId);
+                    if (edgeInId != EdgeIndex.NO_EDGE) {
+                        edgePathIds.add(edgeInId);
                     }
                 }
             }
@@ -76,7 +89,64 @@ public class GraphProcedureUtils {
             }
         }
 
-        return new BFSResult(edgePathIds, nodeIds);
+        return new BFSResult(new ArrayList<>(edgePathIds), nodeIds);
+    }
+
+    /**
+     * Performs a breadth-first search on a compressed adjacency snapshot, decoding the neighbor lists on the fly. As for
+     * the search on the graph, the edge paths contain one edge per direction and pair of adjacent nodes, parallel
+     * edges are resolved to the same edge.
+     */
+    private static BFSResult breadthFirstSearch(final BaseGraph graph, final EdgeIndex edgeIndex,
+                                                final CompressedGraph compressed, final int start) {
+        final Set<Long> edgePathIds = new LinkedHashSet<>();
+        final List<Long> nodeIds = new ArrayList<>();
+        final boolean[] visited = new boolean[compressed.getNumberOfNodes()];
+        final int[] queue = new int[compressed.getNumberOfNodes()];
+        final CompressedGraph.NeighborCursor cursor = compressed.cursor();
+        int head = 0;
+        int tail = 0;
+        visited[start] = true;
+        queue[tail++] = start;
+        while (head < tail) {
+            final int current = queue[head++];
+            nodeIds.add(compressed.getNodeId(current));
+            final long currentNodeId = compressed.getNodeId(current);
+            cursor.reset(current);
+            int previous = -1;
+            while (cursor.next()) {
+                // parallel edges share their target, which is only resolved once
+                if (cursor.getTarget() != previous) {
+                    previous = cursor.getTarget();
+                    final long neighborId = compressed.getNodeId(previous);
+                    final long edgeOutId = findEdgeId(graph, edgeIndex, currentNodeId, neighborId);
+                    if (edgeOutId != EdgeIndex.NO_EDGE)
+                        edgePathIds.add(edgeOutId);
+                    if (compressed.getMode() == GraphMode.UNDIRECTED) {
+                        final long edgeInId = findEdgeId(graph, edgeIndex, neighborId, currentNodeId);
+                        if (edgeInId != EdgeIndex.NO_EDGE)
+                            edgePathIds.add(edgeInId);
+                    }
+                }
+                if (!visited[cursor.getTarget()]) {
+                    visited[cursor.getTarget()] = true;
+                    queue[tail++] = cursor.getTarget();
+                }
+            }
+        }
+        return new BFSResult(new ArrayList<>(edgePathIds), nodeIds);
+    }
+
+    /**
+     * Finds the id of an edge directed from one node to another, using the edge index if present.
+     * @return Edge id or {@link EdgeIndex#NO_EDGE}, if there is no such edge
+     */
+    private static long findEdgeId(final BaseGraph graph, final EdgeIndex edgeIndex, final long fromId,
+                                   final long toId) {
+        if (edgeIndex != null)
+            return edgeIndex.find(fromId, toId);
+        final Edge edge = graph.findEdge(Edge.FROM_ID_FIELD, fromId, Edge.TO_ID_FIELD, toId);
+        return edge != null ? edge.getId() : EdgeIndex.NO_EDGE;
     }
 
     /**
@@ -102,6 +172,23 @@ public class GraphProcedureUtils {
         return adjacencyList;
     }
 
+    /**
+     * Collects all neighbors of a node that are adjacent via edges with one of the given labels. The neighbors are
+     * read from the cached {@link EdgeLabelPartitions} of the graph, so edges with other labels are not visited.
+     *
+     * @param graph      Graph in which the node resides
+     * @param nodeId     Source node id
+     * @param mode       Orientation of the graph, determines which edges are considered
+     * @param edgeLabels Allowed edge labels, all edges are followed if empty
+     * @return List with all adjacent neighbors for the node
+     */
+    public static List<Long> getNeighbors(final BaseGraph graph, final long nodeId, final GraphMode mode,
+                                          final String... edgeLabels) {
+        if (edgeLabels == null || edgeLabels.length == 0)
+            return getNeighbors(graph, nodeId, mode);
+        return EdgeLabelPartitions.get(graph, mode).getNeighbors(nodeId, edgeLabels);
+    }
+
     /**
      * Creates a subgraph from the open neighborhood of a source node, i.e. the subgraph of all nodes adjacent to the node.
      * The induced subgraph contains all neighbors of the source node, but not the source node itself, as well as all
@@ -113,6 +200,21 @@ public class GraphProcedureUtils {
      * @return A subgraph containing the open neighborhood
      */
     public static BaseGraph getOpenNeighborhoodAsSubgraph(final BaseGraph graph, final long nodeId, final GraphMode mode) throws IOException {
+        return getOpenNeighborhoodAsSubgraph(graph, null, nodeId, mode);
+    }
+
+    /**
+     * Creates a subgraph from the open neighborhood of a source node, i.e. the subgraph of all nodes adjacent to the node.
+     * Connecting edges between neighbor pairs are resolved via a prebuilt edge index.
+     *
+     * @param graph     Graph in which the node resides
+     * @param edgeIndex Edge existence index of the graph (optional, may be null)
+     * @param nodeId    Source node (not included in result)
+     * @param mode      Orientation of the graph, determines which nodes and edges are included
+     * @return A subgraph containing the open neighborhood
+     */
+    public static BaseGraph getOpenNeighborhoodAsSubgraph(final BaseGraph graph, final EdgeIndex edgeIndex,
+                                                          final long nodeId, final GraphMode mode) throws IOException {
 
         final Graph openNeighborhoodSubgraph = Graph.createTempGraph();
         ArrayList<Long> ids = new ArrayList<>();
@@ -141,45 +243,77 @@ public class GraphProcedureUtils {
         for(Node node : openNeighborhoodSubgraph.getNodes()) {
             long currentNodeId = node.getId();
             for(long candidateID : ids) {
-                Edge edgeIn = graph.findEdge(Edge.FROM_ID_FIELD, candidateID, Edge.TO_ID_FIELD, currentNodeId);
-                if(edgeIn != null) {
-                    openNeighborhoodSubgraph.update(edgeIn);
+                final long edgeInId = findEdgeId(graph, edgeIndex, candidateID, currentNodeId);
+                if(edgeInId != EdgeIndex.NO_EDGE) {
+                    openNeighborhoodSubgraph.update(graph.getEdge(edgeInId));
                 }
-                Edge edgeOut = graph.findEdge(Edge.TO_ID_FIELD, candidateID, Edge.FROM_ID_FIELD, currentNodeId);
-                if(edgeOut != null) {
-                    openNeighborhoodSubgraph.update(edgeOut);
+                final long edgeOutId = findEdgeId(graph, edgeIndex, currentNodeId, candidateID);
+                if(edgeOutId != EdgeIndex.NO_EDGE) {
+                    openNeighborhoodSubgraph.update(graph.getEdge(edgeOutId));
                 }
             }
         }
         return openNeighborhoodSubgraph;
     }
 
+    /**
+     * Builds the subgraph induced by the open neighborhood of a source node as a lightweight in-memory structure. In
+     * contrast to {@link #getOpenNeighborhoodAsSubgraph(BaseGraph, long, GraphMode)} no temporary graph is created and
+     * the edges between neighbors are collected from the neighbors' outgoing edges instead of pairwise lookups.
+     *
+     * @param graph  Graph in which the node resides
+     * @param nodeId Source node (not included in result)
+     * @param mode   Orientation of the graph, determines which nodes are included
+     * @return Open neighborhood subgraph
+     */
+    public static NeighborhoodSubgraph getOpenNeighborhood(final BaseGraph graph, final long nodeId,
+                                                           final GraphMode mode) {
+        // gather all distinct neighbors except the source node itself
+        final Map<Long, Integer> localIndex = new LinkedHashMap<>();
+        for (final Long neighborId : getNeighbors(graph, nodeId, mode))
+            if (neighborId != nodeId && !localIndex.containsKey(neighborId))
+                localIndex.put(neighborId, localIndex.size());
+        final long[] nodeIds = new long[localIndex.size()];
+        for (final Map.Entry<Long, Integer> entry : localIndex.entrySet())
+            nodeIds[entry.getValue()] = entry.getKey();
+
+        // every edge between two neighbors is an outgoing edge of exactly one of them
+        int edgeCount = 0;
+        int[] edgeFrom = new int[nodeIds.length];
+        int[] edgeTo = new int[nodeIds.length];
+        long[] edgeIds = new long[nodeIds.length];
+        for (int i = 0; i < nodeIds.length; i++) {
+            for (final Edge edge : graph.findEdges(Edge.FROM_ID_FIELD, nodeIds[i])) {
+                final Integer target = localIndex.get(edge.getToId());
+                if (target == null)
+                    continue;
+                if (edgeCount == edgeIds.length) {
+                    final int capacity = Math.max(4, edgeCount * 2);
+                    edgeFrom = Arrays.copyOf(edgeFrom, capacity);
+                    edgeTo = Arrays.copyOf(edgeTo, capacity);
+                    edgeIds = Arrays.copyOf(edgeIds, capacity);
+                }
+                edgeFrom[edgeCount] = i;
+                edgeTo[edgeCount] = target;
+                edgeIds[edgeCount] = edge.getId();
+                edgeCount++;
+            }
+        }
+        return new NeighborhoodSubgraph(nodeIds, Arrays.copyOf(edgeFrom, edgeCount), Arrays.copyOf(edgeTo, edgeCount),
+                                        Arrays.copyOf(edgeIds, edgeCount));
+    }
+
     /**
      * Finds the largest connected component in a graph inside from the neighborhood of a specified node.
      *
      * @param graph  Graph in which the node resides
      * @param nodeId Node to be analyzed
      * @param mode   Orientation of the graph
-     * @return Largest connected component in the open neighborhood of the node
+     * @return Largest connected component in the open neighborhood of the node or null, if the node has no neighbors
      */
     public static BFSResult getMaximumConnectedComponent(final BaseGraph graph, final long nodeId,
-                                                         final GraphMode mode) throws IOException {
-
-        // calculate open neighborhood (i.e. neighborhood not containing node)
-        final BaseGraph openNeighborHood = GraphProcedureUtils.getOpenNeighborhoodAsSubgraph(graph, nodeId, mode);
-        final List<BFSResult> neighborHoodComponents = GraphProcedureUtils.findComponentsUndirected(openNeighborHood);
-
-        int size = 0;
-        BFSResult largest = null;
-        // compare number of nodes in components
-        for (final BFSResult component : neighborHoodComponents) {
-            int componentSize = component.getNodeIds().size();
-            if (componentSize > size) {
-                size = componentSize;
-                largest = component;
-            }
-        }
-        return largest;
+                                                         final GraphMode mode) {
+        return getOpenNeighborhood(graph, nodeId, mode).getMaximumComponent();
     }
 
     /**
@@ -193,6 +327,7 @@ public class GraphProcedureUtils {
         final List<BFSResult> results = new ArrayList<>();
         final Map<Long, Boolean> nodesVisitedInfo = new HashMap<>();
         final Queue<Long> nodesToVisit = new PriorityQueue<>();
+        final EdgeIndex edgeIndex = EdgeIndex.get(graph);
 
         // enqueue all nodes and mark them as unvisited
         for (final Node node : graph.getNodes()) {
@@ -204,7 +339,8 @@ public class GraphProcedureUtils {
             final Long currentNodeId = nodesToVisit.poll();
             if (!nodesVisitedInfo.get(currentNodeId)) {
                 // do bfs if node has not been visited yet
-                BFSResult result = GraphProcedureUtils.breadthFirstSearch(graph, currentNodeId, GraphMode.UNDIRECTED);
+                BFSResult result = GraphProcedureUtils.breadthFirstSearch(graph, edgeIndex, currentNodeId,
+                                                                          GraphMode.UNDIRECTED);
                 results.add(result);
                 // mark all nodes that were visited in course of this search
                 for (final long id : result.getNodeIds()) {
@@ -227,6 +363,7 @@ public class GraphProcedureUtils {
         final List<BFSResult> results = new ArrayList<>();
         final Map<Long, Boolean> nodesVisitedInfo = new HashMap<>();
         final Queue<Long> nodesToVisit = new PriorityQueue<>();
+        final EdgeIndex edgeIndex = EdgeIndex.get(graph);
 
         // enqueue all seed nodes and mark them as unvisited
         for(final long id : seedNodeIds) {
@@ -238,7 +375,8 @@ public class GraphProcedureUtils {
             final Long currentNodeId = nodesToVisit.poll();
             if (!nodesVisitedInfo.get(currentNodeId)) {
                 // do bfs if node has not been visited yet
-                BFSResult result = GraphProcedureUtils.breadthFirstSearch(graph, currentNodeId, GraphMode.UNDIRECTED);
+                BFSResult result = GraphProcedureUtils.breadthFirstSearch(graph, edgeIndex, currentNodeId,
+                                                                          GraphMode.UNDIRECTED);
                 results.add(result);
                 // mark all nodes that were visited in course of this search
                 for (final long id : result.getNodeIds()) {
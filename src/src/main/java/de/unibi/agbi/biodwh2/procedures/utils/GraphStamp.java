@@ -0,0 +1,129 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.BaseGraph;
+import de.unibi.agbi.biodwh2.core.model.graph.Edge;
+import de.unibi.agbi.biodwh2.core.model.graph.Node;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Fingerprint of the structure of a graph: the number of nodes and edges and an order-independent checksum over the id
+ * and label of every node and the id, end points and label of every edge. Indices derived from a graph are stamped
+ * with the graph's fingerprint at build time and are stale as soon as the fingerprint of the graph differs, which also
+ * detects edits that keep both counts, such as replacing or rewiring an edge or relabelling a node. Properties other
+ * than the end points of edges are not covered.
+ * <p>
+ * The core graph exposes no modification counter, so computing a fingerprint scans all nodes and edges once. The
+ * counts are compared first, so graphs with other counts are told apart without a scan.
+ */
+public final class GraphStamp {
+
+    /**
+     * Size of a serialized fingerprint
+     */
+    public static final int BYTES = 3 * Long.BYTES;
+
+    private final long nodes;
+    private final long edges;
+    private final long checksum;
+
+    private GraphStamp(final long nodes, final long edges, final long checksum) {
+        this.nodes = nodes;
+        this.edges = edges;
+        this.checksum = checksum;
+    }
+
+    /**
+     * Computes the fingerprint of the current state of a graph with one pass over all nodes and edges.
+     */
+    public static GraphStamp of(final BaseGraph graph) {
+        long nodes = 0;
+        long checksum = 0;
+        for (final Node node : graph.getNodes()) {
+            checksum += mix(mix(node.getId()) + hash(node.getLabel()));
+            nodes++;
+        }
+        long edges = 0;
+        for (final Edge edge : graph.getEdges()) {
+            final long endPoints = mix(mix(edge.getFromId()) + edge.getToId());
+            checksum += mix(mix(mix(edge.getId()) ^ endPoints) + hash(edge.getLabel()) + 1);
+            edges++;
+        }
+        return new GraphStamp(nodes, edges, checksum);
+    }
+
+    private static long hash(final String label) {
+        return label != null ? label.hashCode() : 0;
+    }
+
+    /**
+     * Finalizer of the SplitMix64 generator, spreads every input bit over the whole value.
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * Checks whether the graph still has this fingerprint. Only scans the graph if the node and edge counts match.
+     */
+    public boolean matches(final BaseGraph graph) {
+        return graph.getNumberOfNodes() == nodes && graph.getNumberOfEdges() == edges && equals(of(graph));
+    }
+
+    public long getNumberOfNodes() {
+        return nodes;
+    }
+
+    public long getNumberOfEdges() {
+        return edges;
+    }
+
+    public void write(final ByteBuffer buffer) {
+        buffer.putLong(nodes).putLong(edges).putLong(checksum);
+    }
+
+    public void write(final DataOutput output) throws IOException {
+        output.writeLong(nodes);
+        output.writeLong(edges);
+        output.writeLong(checksum);
+    }
+
+    /**
+     * Reads a fingerprint written by {@link #write(ByteBuffer)}.
+     */
+    public static GraphStamp read(final ByteBuffer buffer) {
+        return new GraphStamp(buffer.getLong(), buffer.getLong(), buffer.getLong());
+    }
+
+    /**
+     * Reads a fingerprint written by {@link #write(DataOutput)}.
+     */
+    public static GraphStamp read(final DataInput input) throws IOException {
+        return new GraphStamp(input.readLong(), input.readLong(), input.readLong());
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof GraphStamp))
+            return false;
+        final GraphStamp stamp = (GraphStamp) o;
+        return nodes == stamp.nodes && edges == stamp.edges && checksum == stamp.checksum;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(mix(nodes) + mix(edges) + checksum);
+    }
+
+    @Override
+    public String toString() {
+        return nodes + " node(s), " + edges + " edge(s), checksum " + Long.toHexString(checksum);
+    }
+}
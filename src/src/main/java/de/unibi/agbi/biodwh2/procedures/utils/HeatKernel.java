@@ -0,0 +1,173 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+
+import java.util.stream.IntStream;
+
+/**
+ * Applies the heat kernel exp(-tL) of an undirected graph to a vector without forming any dense matrix. The
+ * combinatorial Laplacian L = D - A is evaluated directly on the CSR arrays (self loops are ignored) and the matrix
+ * exponential is approximated by a Chebyshev expansion. The spectrum of L lies in [0, b] with the Anderson-Morley bound
+ * b = max(d(u) + d(v)) over all edges (u, v), so M = 2L / b - I has its spectrum in [-1, 1] and
+ * <pre>
+ *     exp(-tL) = e^-a (I_0(a) + 2 * sum_k (-1)^k I_k(a) T_k(M)),  a = t * b / 2
+ * </pre>
+ * with the modified Bessel functions I_k and the Chebyshev polynomials T_k. The scaled coefficients e^-a I_k(a)
+ * decay like exp(-k^2 / 2a), so the number of products with L grows with sqrt(t * b) instead of linearly with the
+ * maximum degree, which keeps hubs cheap. Every product with L runs in parallel over all nodes.
+ */
+public class HeatKernel {
+
+    private final CSRGraph adjacency;
+    /**
+     * Degree of each node without self loops
+     */
+    private final int[] degrees;
+    /**
+     * Upper bound of the largest Laplacian eigenvalue
+     */
+    private final long spectralBound;
+    private int multiplications;
+
+    /**
+     * @param adjacency Undirected adjacency snapshot
+     */
+    public HeatKernel(final CSRGraph adjacency) {
+        if (adjacency.getMode() != GraphMode.UNDIRECTED)
+            throw new IllegalArgumentException("The heat kernel requires an undirected adjacency snapshot");
+        this.adjacency = adjacency;
+        final int n = adjacency.getNumberOfNodes();
+        degrees = new int[n];
+        IntStream.range(0, n).parallel().forEach(v -> {
+            int degree = 0;
+            for (int position = adjacency.getStart(v); position < adjacency.getEnd(v); position++)
+                if (adjacency.getTarget(position) != v)
+                    degree++;
+            degrees[v] = degree;
+        });
+        spectralBound = IntStream.range(0, n).parallel().mapToLong(u -> {
+            long bound = 0;
+            for (int position = adjacency.getStart(u); position < adjacency.getEnd(u); position++) {
+                final int v = adjacency.getTarget(position);
+                if (v != u)
+                    bound = Math.max(bound, (long) degrees[u] + degrees[v]);
+            }
+            return bound;
+        }).max().orElse(0);
+    }
+
+    /**
+     * Computes y = Lx.
+     */
+    public void multiplyLaplacian(final double[] x, final double[] y) {
+        IntStream.range(0, x.length).parallel().forEach(v -> {
+            double sum = degrees[v] * x[v];
+            for (int position = adjacency.getStart(v); position < adjacency.getEnd(v); position++) {
+                final int target = adjacency.getTarget(position);
+                if (target != v)
+                    sum -= x[target];
+            }
+            y[v] = sum;
+        });
+        multiplications++;
+    }
+
+    /**
+     * Computes exp(-tL)v.
+     * @param vector    Initial heat by node index, not modified
+     * @param time      Diffusion time t &gt;= 0
+     * @param tolerance Tolerance of the truncated expansion relative to the norm of the vector
+     * @return Heat by node index after time t, the total heat is preserved up to the tolerance
+     */
+    public double[] apply(final double[] vector, final double time, final double tolerance) {
+        if (vector.length != adjacency.getNumberOfNodes())
+            throw new IllegalArgumentException("Expected one value per node");
+        if (time < 0)
+            throw new IllegalArgumentException("Time must not be negative");
+        final double alpha = time * spectralBound / 2;
+        if (alpha == 0 || norm(vector) == 0)
+            return vector.clone();
+        final double[] coefficients = getCoefficients(alpha, Math.max(tolerance, 1e-16));
+        final double scale = 2.0 / spectralBound;
+        // T_0 = v, T_1 = Mv, T_k+1 = 2M T_k - T_k-1 with M = scale * L - I
+        double[] previous = vector.clone();
+        double[] current = new double[vector.length];
+        double[] next = new double[vector.length];
+        final double[] result = new double[vector.length];
+        multiplyLaplacian(previous, current);
+        for (int v = 0; v < vector.length; v++) {
+            current[v] = scale * current[v] - previous[v];
+            result[v] = coefficients[0] * previous[v] + coefficients[1] * current[v];
+        }
+        for (int k = 2; k < coefficients.length; k++) {
+            multiplyLaplacian(current, next);
+            final double coefficient = coefficients[k];
+            final double[] before = previous;
+            final double[] now = current;
+            final double[] after = next;
+            IntStream.range(0, vector.length).parallel().forEach(v -> {
+                after[v] = 2 * (scale * after[v] - now[v]) - before[v];
+                result[v] += coefficient * after[v];
+            });
+            next = previous;
+            previous = current;
+            current = after;
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the Chebyshev coefficients c_0 = e^-a I_0(a) and c_k = 2 (-1)^k e^-a I_k(a) with Miller's backward
+     * recurrence I_k-1 = 2k / a * I_k + I_k+1, normalized by I_0 + 2 * sum_k I_k = e^a. The expansion is truncated
+     * once the sum of the remaining coefficients is below the tolerance, since |T_k| &lt;= 1 on the spectrum of M.
+     * @return At least two coefficients
+     */
+    static double[] getCoefficients(final double alpha, final double tolerance) {
+        // the scaled Bessel functions fall below the tolerance after about sqrt(2a ln(1 / tolerance)) terms, the
+        // recurrence starts well beyond that
+        final int estimate = (int) Math.ceil(Math.sqrt(2 * (alpha + 1) * Math.log(1 / tolerance))) + 2;
+        final int start = 2 * estimate + 30;
+        final double[] bessel = new double[start + 1];
+        double following = 0;
+        double current = 1e-300;
+        for (int k = start; k > 0; k--) {
+            bessel[k] = current;
+            final double previous = 2 * k / alpha * current + following;
+            following = current;
+            current = previous;
+            if (current > 1e250) {
+                // rescale to prevent overflow, tiny high order values may underflow to zero
+                for (int j = k; j <= start; j++)
+                    bessel[j] *= 1e-250;
+                following *= 1e-250;
+                current *= 1e-250;
+            }
+        }
+        bessel[0] = current;
+        double sum = bessel[0];
+        for (int k = 1; k <= start; k++)
+            sum += 2 * bessel[k];
+        int terms = start + 1;
+        double tail = 0;
+        while (terms > 2 && tail + 2 * bessel[terms - 1] / sum <= tolerance) {
+            tail += 2 * bessel[terms - 1] / sum;
+            terms--;
+        }
+        final double[] coefficients = new double[terms];
+        coefficients[0] = bessel[0] / sum;
+        for (int k = 1; k < terms; k++)
+            coefficients[k] = (k % 2 == 0 ? 2 : -2) * bessel[k] / sum;
+        return coefficients;
+    }
+
+    private static double norm(final double[] vector) {
+        return IntStream.range(0, vector.length).parallel().mapToDouble(v -> Math.abs(vector[v])).sum();
+    }
+
+    /**
+     * Returns the number of sparse Laplacian products performed so far.
+     */
+    public int getMultiplications() {
+        return multiplications;
+    }
+}
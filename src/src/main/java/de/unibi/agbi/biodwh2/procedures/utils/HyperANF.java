@@ -0,0 +1,194 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+/**
+ * Approximates the neighbourhood function N(t), i.e. the number of node pairs (x, y) with d(x, y) &lt;= t, with
+ * HyperLogLog counters (HyperANF, Boldi et al.). Each node holds 2^log2m byte registers estimating the set of nodes
+ * reachable within t hops. In iteration t + 1 the counter of a node becomes the register-wise maximum of its own and
+ * its neighbors' counters, which runs in parallel over all nodes with two register arrays. Memory is linear in n.
+ * <p>
+ * The registers are stored in pages of at most 2^30 bytes, each holding a whole number of counters, so that the
+ * number of nodes times registers is not limited by the maximum array length.
+ */
+public class HyperANF {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HyperANF.class);
+    private static final int PAGE_SHIFT = 30;
+
+    private final CSRGraph adjacency;
+    private final int log2m;
+    private final int registers;
+    private final double alpha;
+    /**
+     * Base-2 logarithm of the number of counters per register page
+     */
+    private final int counterShift;
+    /**
+     * Estimated N(t) by hop t, starting with N(0) = n
+     */
+    private final double[] neighbourhoodFunction;
+
+    /**
+     * @param adjacency Adjacency snapshot, reachable sets follow its edges
+     * @param log2m     Base-2 logarithm of the number of registers per counter (4 to 16), the relative standard
+     *                  deviation of each counter is about 1.04 / sqrt(2^log2m)
+     * @param maxHops   Maximum number of iterations, non-positive values iterate until all counters are stable
+     * @param seed      Seed of the node hash function
+     */
+    public HyperANF(final CSRGraph adjacency, final int log2m, final int maxHops, final long seed) {
+        if (log2m < 4 || log2m > 16)
+            throw new IllegalArgumentException("log2m must be between 4 and 16");
+        this.adjacency = adjacency;
+        this.log2m = log2m;
+        registers = 1 << log2m;
+        counterShift = PAGE_SHIFT - log2m;
+        alpha = registers == 16 ? 0.673 : registers == 32 ? 0.697 : registers == 64 ? 0.709 : 0.7213 / (1 +
+                                                                                                        1.079 / registers);
+        neighbourhoodFunction = run(maxHops, seed);
+    }
+
+    private double[] run(final int maxHops, final long seed) {
+        final int n = adjacency.getNumberOfNodes();
+        LOGGER.info("Running HyperANF for " + n + " node(s) with " + registers + " register(s) per counter ...");
+        final int counterMask = (1 << counterShift) - 1;
+        final byte[][] initial = allocatePages(n);
+
+        // each counter initially holds its own node
+        IntStream.range(0, n).parallel().forEach(v -> {
+            final long hash = mix(v + seed * 0x9E3779B97F4A7C15L);
+            final int register = (int) (hash >>> (Long.SIZE - log2m));
+            final int rank = Math.min(Long.numberOfLeadingZeros((hash << log2m) | (1L << (log2m - 1))) + 1, 64);
+            initial[v >>> counterShift][((v & counterMask) << log2m) + register] = (byte) rank;
+        });
+        byte[][] current = initial;
+        byte[][] next = allocatePages(n);
+        final List<Double> values = new ArrayList<>();
+        values.add((double) n);
+
+        final AtomicBoolean changed = new AtomicBoolean(true);
+        for (int hop = 1; changed.get() && (maxHops <= 0 || hop <= maxHops); hop++) {
+            changed.set(false);
+            final byte[][] source = current;
+            final byte[][] target = next;
+            final double estimate = IntStream.range(0, n).parallel().mapToDouble(v -> {
+                final byte[] sourcePage = source[v >>> counterShift];
+                final byte[] targetPage = target[v >>> counterShift];
+                final int base = (v & counterMask) << log2m;
+                System.arraycopy(sourcePage, base, targetPage, base, registers);
+                boolean modified = false;
+                for (int position = adjacency.getStart(v); position < adjacency.getEnd(v); position++) {
+                    final int neighbor = adjacency.getTarget(position);
+                    final byte[] neighborPage = source[neighbor >>> counterShift];
+                    final int neighborBase = (neighbor & counterMask) << log2m;
+                    for (int j = 0; j < registers; j++) {
+                        if (neighborPage[neighborBase + j] > targetPage[base + j]) {
+                            targetPage[base + j] = neighborPage[neighborBase + j];
+                            modified = true;
+                        }
+                    }
+                }
+                if (modified)
+                    changed.set(true);
+                return estimate(targetPage, base);
+            }).sum();
+            if (!changed.get())
+                break;
+            values.add(estimate);
+            current = target;
+            next = source;
+        }
+        final double[] result = new double[values.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = values.get(i);
+        return result;
+    }
+
+    /**
+     * Allocates the register pages for n counters, only the last page may be smaller than 2^30 bytes.
+     */
+    private byte[][] allocatePages(final int n) {
+        final int countersPerPage = 1 << counterShift;
+        final byte[][] pages = new byte[(int) (((long) n + countersPerPage - 1) >>> counterShift)][];
+        for (int page = 0; page < pages.length; page++) {
+            final int counters = Math.min(countersPerPage, n - page * countersPerPage);
+            pages[page] = new byte[counters << log2m];
+        }
+        return pages;
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /**
+     * HyperLogLog cardinality estimate of one counter with linear counting for small cardinalities.
+     */
+    private double estimate(final byte[] counters, final int base) {
+        double sum = 0;
+        int zeros = 0;
+        for (int j = 0; j < registers; j++) {
+            sum += Double.longBitsToDouble((1023L - counters[base + j]) << 52);
+            if (counters[base + j] == 0)
+                zeros++;
+        }
+        final double estimate = alpha * registers * registers / sum;
+        if (estimate <= 2.5 * registers && zeros > 0)
+            return registers * Math.log((double) registers / zeros);
+        return estimate;
+    }
+
+    /**
+     * Returns the estimated neighbourhood function, entry t holds the number of pairs within distance t (including
+     * the n pairs (x, x) at distance 0). The last entry is the estimated number of reachable pairs.
+     */
+    public double[] getNeighbourhoodFunction() {
+        return neighbourhoodFunction;
+    }
+
+    /**
+     * Estimates the average distance of all reachable pairs of distinct nodes.
+     */
+    public double getAverageDistance() {
+        final double reachablePairs = neighbourhoodFunction[neighbourhoodFunction.length - 1] -
+                                      neighbourhoodFunction[0];
+        if (reachablePairs <= 0)
+            return 0;
+        double sum = 0;
+        for (int t = 1; t < neighbourhoodFunction.length; t++)
+            sum += t * Math.max(0, neighbourhoodFunction[t] - neighbourhoodFunction[t - 1]);
+        return sum / reachablePairs;
+    }
+
+    /**
+     * Estimates the effective diameter, i.e. the (interpolated) smallest distance within which the given fraction of
+     * all reachable pairs of distinct nodes lies.
+     * @param fraction Fraction of pairs, usually 0.9
+     */
+    public double getEffectiveDiameter(final double fraction) {
+        final double reachablePairs = neighbourhoodFunction[neighbourhoodFunction.length - 1] -
+                                      neighbourhoodFunction[0];
+        if (reachablePairs <= 0)
+            return 0;
+        final double threshold = fraction * reachablePairs;
+        for (int t = 1; t < neighbourhoodFunction.length; t++) {
+            final double pairs = neighbourhoodFunction[t] - neighbourhoodFunction[0];
+            if (pairs >= threshold) {
+                final double previous = neighbourhoodFunction[t - 1] - neighbourhoodFunction[0];
+                return pairs == previous ? t : t - 1 + (threshold - previous) / (pairs - previous);
+            }
+        }
+        return neighbourhoodFunction.length - 1;
+    }
+}
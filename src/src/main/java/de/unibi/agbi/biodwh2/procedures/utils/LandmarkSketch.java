@@ -0,0 +1,307 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.BaseGraph;
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Approximate distance sketch from breadth-first searches of k landmarks with the highest degree. The distance of every
+ * node to and from each landmark is stored as one unsigned byte per node and landmark column, so the sketch needs k * n
+ * bytes (2 * k * n in directed mode). A query combines the columns with the triangle inequality:
+ * <pre>
+ *     max |d(l, t) - d(l, s)| &lt;= d(s, t) &lt;= min d(s, l) + d(l, t)
+ * </pre>
+ * (in directed mode the lower bound uses d(l, t) - d(l, s) and d(s, l) - d(t, l)). The upper bound is used as the
+ * estimate, it is exact whenever a landmark lies on a shortest path. Pairs without a common landmark have no upper
+ * bound, {@link #queryAll(long, long[])} resolves them with one exact breadth-first search from the source.
+ * <p>
+ * Sketches are registered per graph and mode by {@link #get(BaseGraph, GraphMode, int)}, i.e. at most one sketch per
+ * mode is kept. It is rebuilt once it is stale or a different number of landmarks is requested.
+ */
+public class LandmarkSketch {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LandmarkSketch.class);
+    /**
+     * Column value of nodes not reachable from or to a landmark
+     */
+    private static final int UNREACHABLE = 255;
+    /**
+     * Column value of nodes with a distance of at least this value, such entries carry no usable bound
+     */
+    private static final int SATURATED = 254;
+
+    private final CSRGraph forward;
+    /**
+     * Number of landmarks the sketch was requested with, may exceed the number of nodes
+     */
+    private final int requestedLandmarks;
+    private final int[] landmarks;
+    /**
+     * d(l, v) by landmark and node index
+     */
+    private final byte[][] fromLandmarks;
+    /**
+     * d(v, l) by landmark and node index, identical to fromLandmarks in undirected mode
+     */
+    private final byte[][] toLandmarks;
+
+    /**
+     * Distance bounds of a single query. Infinite distances are represented by {@link Long#MAX_VALUE}.
+     */
+    public static final class Bounds {
+        private final long lower;
+        private final long upper;
+        private final boolean resolved;
+
+        Bounds(final long lower, final long upper) {
+            this(lower, upper, false);
+        }
+
+        private Bounds(final long lower, final long upper, final boolean resolved) {
+            this.lower = lower;
+            this.upper = upper;
+            this.resolved = resolved;
+        }
+
+        public long getLower() {
+            return lower;
+        }
+
+        public long getUpper() {
+            return upper;
+        }
+
+        /**
+         * Returns the estimated distance, i.e. the upper bound. Pairs without a common landmark, e.g. in different
+         * components, have no upper bound and an infinite estimate, as the lower bound alone is no distance estimate.
+         */
+        public long getEstimate() {
+            return upper;
+        }
+
+        /**
+         * Checks whether the sketch bounds the distance from above or proved that the target is not reachable. Pairs
+         * without a common landmark are not covered, their estimate is infinite although they may be connected.
+         */
+        public boolean isCovered() {
+            return upper != Long.MAX_VALUE || lower == Long.MAX_VALUE;
+        }
+
+        /**
+         * Checks whether the bounds were resolved by an exact search, as the sketch did not cover the pair. Both bounds
+         * are the exact distance then.
+         */
+        public boolean isResolved() {
+            return resolved;
+        }
+    }
+
+    /**
+     * @param graph     Graph to be sketched
+     * @param mode      Orientation of the graph
+     * @param landmarks Number of landmarks
+     */
+    public LandmarkSketch(final BaseGraph graph, final GraphMode mode, final int landmarks) {
+        this(CSRGraph.build(graph, mode), mode == GraphMode.DIRECTED ? CSRGraph.buildIncoming(graph) : null,
+             landmarks);
+    }
+
+    /**
+     * @param forward   Adjacency snapshot
+     * @param backward  Snapshot of the incoming edges in directed mode, null in undirected mode
+     * @param landmarks Number of landmarks
+     */
+    public LandmarkSketch(final CSRGraph forward, final CSRGraph backward, final int landmarks) {
+        if (landmarks <= 0)
+            throw new IllegalArgumentException("At least one landmark is required");
+        this.forward = forward;
+        requestedLandmarks = landmarks;
+        final int n = forward.getNumberOfNodes();
+        this.landmarks = selectLandmarks(forward, backward, Math.min(landmarks, n));
+        LOGGER.info("Creating landmark sketch with " + this.landmarks.length + " landmark(s) for " + n + " node(s)");
+        fromLandmarks = new byte[this.landmarks.length][];
+        IntStream.range(0, this.landmarks.length).parallel().forEach(
+                i -> fromLandmarks[i] = search(forward, this.landmarks[i]));
+        if (backward != null) {
+            toLandmarks = new byte[this.landmarks.length][];
+            IntStream.range(0, this.landmarks.length).parallel().forEach(
+                    i -> toLandmarks[i] = search(backward, this.landmarks[i]));
+        } else
+            toLandmarks = fromLandmarks;
+    }
+
+    /**
+     * Returns the given number of node indices with the highest degree by descending degree.
+     */
+    private static int[] selectLandmarks(final CSRGraph forward, final CSRGraph backward, final int count) {
+        // pack (inverted degree, index) into one long, so that a primitive sort orders by descending degree
+        final long[] order = new long[forward.getNumberOfNodes()];
+        for (int i = 0; i < order.length; i++) {
+            final long degree = (long) forward.getDegree(i) + (backward != null ? backward.getDegree(i) : 0);
+            order[i] = (Integer.MAX_VALUE - Math.min(degree, Integer.MAX_VALUE)) << 32 | i;
+        }
+        Arrays.sort(order);
+        final int[] landmarks = new int[count];
+        for (int i = 0; i < count; i++)
+            landmarks[i] = (int) order[i];
+        return landmarks;
+    }
+
+    /**
+     * Returns the sketch of a graph registered in the {@link GraphIndexRegistry}, building and registering it if there
+     * is none, it is stale or it has a different number of landmarks. Only one sketch per mode is registered, so
+     * alternating numbers of landmarks rebuild the sketch each time.
+     * @param graph     Sketched graph
+     * @param mode      Orientation of the graph
+     * @param landmarks Number of landmarks
+     */
+    public static LandmarkSketch get(final BaseGraph graph, final GraphMode mode, final int landmarks) {
+        final GraphIndexRegistry.Key<LandmarkSketch> key = GraphIndexRegistry.Key.of(LandmarkSketch.class, mode);
+        final LandmarkSketch sketch = GraphIndexRegistry.getOrBuild(graph, key,
+                                                                    target -> new LandmarkSketch(graph, mode,
+                                                                                                 landmarks));
+        if (sketch.requestedLandmarks == landmarks)
+            return sketch;
+        final LandmarkSketch rebuilt = new LandmarkSketch(graph, mode, landmarks);
+        GraphIndexRegistry.register(graph, key, rebuilt);
+        return rebuilt;
+    }
+
+    /**
+     * Removes all sketches registered for a graph.
+     */
+    public static void unregister(final BaseGraph graph) {
+        GraphIndexRegistry.unregister(graph, LandmarkSketch.class);
+    }
+
+    private static byte[] search(final CSRGraph adjacency, final int landmark) {
+        final byte[] column = new byte[adjacency.getNumberOfNodes()];
+        Arrays.fill(column, (byte) UNREACHABLE);
+        final int[] queue = new int[adjacency.getNumberOfNodes()];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = landmark;
+        column[landmark] = 0;
+        for (int distance = 1; head < tail; distance++) {
+            final byte value = (byte) Math.min(distance, SATURATED);
+            final int levelEnd = tail;
+            while (head < levelEnd) {
+                final int u = queue[head++];
+                for (int position = adjacency.getStart(u); position < adjacency.getEnd(u); position++) {
+                    final int v = adjacency.getTarget(position);
+                    if ((column[v] & 0xFF) == UNREACHABLE) {
+                        column[v] = value;
+                        queue[tail++] = v;
+                    }
+                }
+            }
+        }
+        return column;
+    }
+
+    /**
+     * Calculates the distance bounds between two nodes.
+     * @return Bounds or null, if a node is not part of the graph
+     */
+    public Bounds query(final long sourceNodeId, final long targetNodeId) {
+        final int source = forward.getIndex(sourceNodeId);
+        final int target = forward.getIndex(targetNodeId);
+        return source < 0 || target < 0 ? null : queryIndex(source, target);
+    }
+
+    /**
+     * Calculates the distance bounds between two node indices.
+     */
+    public Bounds queryIndex(final int source, final int target) {
+        if (source == target)
+            return new Bounds(0, 0);
+        long lower = 1;
+        long upper = Long.MAX_VALUE;
+        for (int i = 0; i < landmarks.length; i++) {
+            final int sourceTo = toLandmarks[i][source] & 0xFF;
+            final int targetTo = toLandmarks[i][target] & 0xFF;
+            final int sourceFrom = fromLandmarks[i][source] & 0xFF;
+            final int targetFrom = fromLandmarks[i][target] & 0xFF;
+            if (sourceTo < SATURATED && targetFrom < SATURATED)
+                upper = Math.min(upper, sourceTo + targetFrom);
+            // l reaches s but not t, or t reaches l but s does not, so t is not reachable from s
+            if (sourceFrom != UNREACHABLE && targetFrom == UNREACHABLE ||
+                targetTo != UNREACHABLE && sourceTo == UNREACHABLE)
+                return new Bounds(Long.MAX_VALUE, Long.MAX_VALUE);
+            if (sourceFrom < SATURATED && targetFrom < SATURATED)
+                lower = Math.max(lower, targetFrom - sourceFrom);
+            if (sourceTo < SATURATED && targetTo < SATURATED)
+                lower = Math.max(lower, sourceTo - targetTo);
+        }
+        return new Bounds(lower, upper);
+    }
+
+    /**
+     * Calculates the distance bounds from a source node to several target nodes. Pairs the sketch does not
+     * {@link Bounds#isCovered() cover} are resolved with a single breadth-first search from the source on the sketched
+     * snapshot, their bounds are the exact distance and flagged as {@link Bounds#isResolved() resolved}.
+     * @return Bounds in target order, null for targets that are not part of the graph, or null if the source is not
+     * part of the graph
+     */
+    public Bounds[] queryAll(final long sourceNodeId, final long[] targetNodeIds) {
+        final int source = forward.getIndex(sourceNodeId);
+        if (source < 0)
+            return null;
+        final Bounds[] bounds = new Bounds[targetNodeIds.length];
+        int[] exact = null;
+        for (int i = 0; i < targetNodeIds.length; i++) {
+            final int target = forward.getIndex(targetNodeIds[i]);
+            if (target < 0)
+                continue;
+            bounds[i] = queryIndex(source, target);
+            if (!bounds[i].isCovered()) {
+                if (exact == null)
+                    exact = searchExact(source);
+                final long distance = exact[target] < 0 ? Long.MAX_VALUE : exact[target];
+                bounds[i] = new Bounds(distance, distance, true);
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * Calculates the exact hop distances from a node on the sketched snapshot.
+     * @return Distance by node index, -1 for nodes that were not reached
+     */
+    private int[] searchExact(final int source) {
+        final int n = forward.getNumberOfNodes();
+        final int[] distances = new int[n];
+        Arrays.fill(distances, -1);
+        final int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        distances[source] = 0;
+        while (head < tail) {
+            final int u = queue[head++];
+            for (int position = forward.getStart(u); position < forward.getEnd(u); position++) {
+                final int v = forward.getTarget(position);
+                if (distances[v] < 0) {
+                    distances[v] = distances[u] + 1;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Returns the node indices of the landmarks by descending degree.
+     */
+    public int[] getLandmarks() {
+        return landmarks;
+    }
+
+    public CSRGraph getAdjacency() {
+        return forward;
+    }
+}
@@ -0,0 +1,175 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Adjacency snapshot backed by a memory-mapped snapshot file written by {@link CSRGraphSnapshot}. The arrays are read
+ * through int and long buffer views of the mapped file, so loading a snapshot only maps the file and nothing is copied
+ * onto the heap. Each array is mapped in chunks of 1 GiB, as a single buffer is limited to 2 GiB.
+ */
+final class MappedCSRGraph extends CSRGraph {
+
+    /**
+     * Number of elements per chunk, 2^28 ints or 2^27 longs make 1 GiB
+     */
+    private static final int INT_SHIFT = 28;
+    private static final int LONG_SHIFT = 27;
+    private static final int INT_MASK = (1 << INT_SHIFT) - 1;
+    private static final int LONG_MASK = (1 << LONG_SHIFT) - 1;
+
+    private final int n;
+    private final int entries;
+    private final LongBuffer[] nodeIds;
+    private final IntBuffer[] offsets;
+    private final IntBuffer[] targets;
+    private final LongBuffer[] edgeIds;
+
+    /**
+     * Maps the arrays of a snapshot file. The mapping stays valid after the channel is closed.
+     * @param channel  Snapshot file
+     * @param position Position of the node ids, directly followed by the offsets, targets and edge ids
+     * @param mode     Orientation of the snapshot
+     * @param n        Number of nodes
+     * @param entries  Number of adjacency entries
+     */
+    MappedCSRGraph(final FileChannel channel, long position, final GraphMode mode, final int n,
+                   final int entries) throws IOException {
+        super(mode);
+        this.n = n;
+        this.entries = entries;
+        nodeIds = mapLongs(channel, position, n);
+        position += (long) n * Long.BYTES;
+        offsets = mapInts(channel, position, n + 1);
+        position += (long) (n + 1) * Integer.BYTES;
+        targets = mapInts(channel, position, entries);
+        position += (long) entries * Integer.BYTES;
+        edgeIds = mapLongs(channel, position, entries);
+    }
+
+    private static IntBuffer[] mapInts(final FileChannel channel, final long position,
+                                       final int length) throws IOException {
+        final IntBuffer[] chunks = new IntBuffer[Math.max(1, (int) (((long) length + INT_MASK) >>> INT_SHIFT))];
+        for (int i = 0; i < chunks.length; i++) {
+            final long start = (long) i << INT_SHIFT;
+            final long chunkLength = Math.min(INT_MASK + 1L, length - start);
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + start * Integer.BYTES,
+                                    chunkLength * Integer.BYTES).asIntBuffer();
+        }
+        return chunks;
+    }
+
+    private static LongBuffer[] mapLongs(final FileChannel channel, final long position,
+                                         final int length) throws IOException {
+        final LongBuffer[] chunks = new LongBuffer[Math.max(1, (int) (((long) length + LONG_MASK) >>> LONG_SHIFT))];
+        for (int i = 0; i < chunks.length; i++) {
+            final long start = (long) i << LONG_SHIFT;
+            final long chunkLength = Math.min(LONG_MASK + 1L, length - start);
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + start * Long.BYTES,
+                                    chunkLength * Long.BYTES).asLongBuffer();
+        }
+        return chunks;
+    }
+
+    private static int getInt(final IntBuffer[] chunks, final int index) {
+        return chunks[index >>> INT_SHIFT].get(index & INT_MASK);
+    }
+
+    private static long getLong(final LongBuffer[] chunks, final int index) {
+        return chunks[index >>> LONG_SHIFT].get(index & LONG_MASK);
+    }
+
+    @Override
+    public int getNumberOfNodes() {
+        return n;
+    }
+
+    @Override
+    public int getNumberOfEntries() {
+        return entries;
+    }
+
+    @Override
+    public int getIndex(final long nodeId) {
+        int low = 0;
+        int high = n - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final long value = getLong(nodeIds, middle);
+            if (value < nodeId)
+                low = middle + 1;
+            else if (value > nodeId)
+                high = middle - 1;
+            else
+                return middle;
+        }
+        return -1;
+    }
+
+    @Override
+    public long getNodeId(final int index) {
+        return getLong(nodeIds, index);
+    }
+
+    @Override
+    public int getDegree(final int index) {
+        return getEnd(index) - getStart(index);
+    }
+
+    @Override
+    public int getStart(final int index) {
+        return getInt(offsets, index);
+    }
+
+    @Override
+    public int getEnd(final int index) {
+        return getInt(offsets, index + 1);
+    }
+
+    @Override
+    public int getTarget(final int position) {
+        return getInt(targets, position);
+    }
+
+    @Override
+    public long getEdgeId(final int position) {
+        return getLong(edgeIds, position);
+    }
+
+    @Override
+    public long[] getNodeIds() {
+        final long[] values = new long[n];
+        for (int i = 0; i < nodeIds.length; i++)
+            nodeIds[i].duplicate().get(values, i << LONG_SHIFT, nodeIds[i].limit());
+        return values;
+    }
+
+    @Override
+    public int[] getOffsets() {
+        return copyInts(offsets, n + 1);
+    }
+
+    @Override
+    public int[] getTargets() {
+        return copyInts(targets, entries);
+    }
+
+    @Override
+    public long[] getEdgeIds() {
+        final long[] values = new long[entries];
+        for (int i = 0; i < edgeIds.length; i++)
+            edgeIds[i].duplicate().get(values, i << LONG_SHIFT, edgeIds[i].limit());
+        return values;
+    }
+
+    private static int[] copyInts(final IntBuffer[] chunks, final int length) {
+        final int[] values = new int[length];
+        for (int i = 0; i < chunks.length; i++)
+            chunks[i].duplicate().get(values, i << INT_SHIFT, chunks[i].limit());
+        return values;
+    }
+}
@@ -0,0 +1,147 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.procedures.model.DistanceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * Bit-parallel multi-source breadth-first search (MS-BFS) over an adjacency snapshot. Up to 64 sources share one
+ * traversal: every node holds a long word whose bit i marks whether the node has been seen or is in the frontier of
+ * source i, so the neighbor scans of a level are amortized over all sources of a batch. Batches are processed in
+ * parallel, each worker thread reuses its own frontier words.
+ */
+public class MultiSourceBFS {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MultiSourceBFS.class);
+
+    /**
+     * Number of sources per traversal (bits of a long word)
+     */
+    public static final int BATCH_SIZE = Long.SIZE;
+
+    private final CSRGraph adjacency;
+
+    public MultiSourceBFS(final CSRGraph adjacency) {
+        this.adjacency = adjacency;
+    }
+
+    /**
+     * Computes the distance metrics for all nodes of the snapshot.
+     * @return Distance metrics by node index
+     */
+    public DistanceMetrics[] computeAll() {
+        final int n = adjacency.getNumberOfNodes();
+        final int[] sources = new int[n];
+        for (int i = 0; i < n; i++)
+            sources[i] = i;
+        return compute(sources);
+    }
+
+    /**
+     * Computes the distance metrics for a set of source nodes.
+     * @param sources Source node indices
+     * @return Distance metrics in the order of the sources
+     */
+    public DistanceMetrics[] compute(final int[] sources) {
+        final DistanceMetrics[] results = new DistanceMetrics[sources.length];
+        run(sources, results, null, null);
+        return results;
+    }
+
+    /**
+     * Accumulates the distances from a set of source nodes at the target side, i.e. for every node the sum of its
+     * distances from all sources that reach it and the number of these sources.
+     * @param sources      Source node indices
+     * @param distanceSums Receives the sum of distances by target node index
+     * @param counts       Receives the number of sources reaching each target node (sources do not count themselves)
+     */
+    public void accumulateTargets(final int[] sources, final AtomicLongArray distanceSums,
+                                  final AtomicLongArray counts) {
+        run(sources, null, distanceSums, counts);
+    }
+
+    private void run(final int[] sources, final DistanceMetrics[] results, final AtomicLongArray targetSums,
+                     final AtomicLongArray targetCounts) {
+        final int n = adjacency.getNumberOfNodes();
+        final int batches = (sources.length + BATCH_SIZE - 1) / BATCH_SIZE;
+        LOGGER.info("Running multi-source BFS for " + sources.length + " source(s) in " + batches + " batch(es) ...");
+        final ThreadLocal<long[][]> scratch = ThreadLocal.withInitial(() -> new long[][]{
+                new long[n], new long[n], new long[n]
+        });
+        IntStream.range(0, batches).parallel().forEach(batch -> {
+            final int start = batch * BATCH_SIZE;
+            final int end = Math.min(start + BATCH_SIZE, sources.length);
+            runBatch(sources, start, end, scratch.get(), results, targetSums, targetCounts);
+        });
+    }
+
+    private void runBatch(final int[] sources, final int start, final int end, final long[][] scratch,
+                          final DistanceMetrics[] results, final AtomicLongArray targetSums,
+                          final AtomicLongArray targetCounts) {
+        final int n = adjacency.getNumberOfNodes();
+        final long[] seen = scratch[0];
+        long[] visit = scratch[1];
+        long[] visitNext = scratch[2];
+        Arrays.fill(seen, 0);
+        Arrays.fill(visit, 0);
+        Arrays.fill(visitNext, 0);
+
+        final int size = end - start;
+        final long[] distanceSums = new long[size];
+        final double[] harmonicSums = new double[size];
+        final long[] reached = new long[size];
+        final int[] maxDistances = new int[size];
+        for (int i = 0; i < size; i++) {
+            seen[sources[start + i]] |= 1L << i;
+            visit[sources[start + i]] |= 1L << i;
+        }
+
+        boolean active = true;
+        for (int level = 1; active; level++) {
+            // push the frontier words of all active nodes to their neighbors
+            for (int v = 0; v < n; v++) {
+                final long bits = visit[v];
+                if (bits == 0)
+                    continue;
+                for (int position = adjacency.getStart(v); position < adjacency.getEnd(v); position++)
+                    visitNext[adjacency.getTarget(position)] |= bits;
+            }
+            // keep only the sources that reach a node for the first time
+            active = false;
+            final double reciprocal = 1.0 / level;
+            for (int u = 0; u < n; u++) {
+                final long next = visitNext[u] & ~seen[u];
+                visitNext[u] = 0;
+                visit[u] = next;
+                if (next == 0)
+                    continue;
+                active = true;
+                seen[u] |= next;
+                if (targetSums != null) {
+                    final int sourceCount = Long.bitCount(next);
+                    targetSums.addAndGet(u, (long) level * sourceCount);
+                    targetCounts.addAndGet(u, sourceCount);
+                }
+                if (results == null)
+                    continue;
+                long remaining = next;
+                while (remaining != 0) {
+                    final int i = Long.numberOfTrailingZeros(remaining);
+                    remaining &= remaining - 1;
+                    distanceSums[i] += level;
+                    harmonicSums[i] += reciprocal;
+                    reached[i]++;
+                    maxDistances[i] = level;
+                }
+            }
+        }
+        if (results == null)
+            return;
+        for (int i = 0; i < size; i++)
+            results[start + i] = new DistanceMetrics(reached[i], distanceSums[i], harmonicSums[i], maxDistances[i]);
+    }
+}
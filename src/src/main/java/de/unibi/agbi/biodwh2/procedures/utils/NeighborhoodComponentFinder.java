@@ -0,0 +1,155 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Finds the maximum neighborhood component (MNC) of every node of an adjacency snapshot in one parallel sweep. For
+ * each node the subgraph induced by its open neighborhood is partitioned with a union-find, and the size and edge count
+ * of the largest component are stored. Each worker thread reuses its own scratch buffers.
+ */
+public class NeighborhoodComponentFinder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NeighborhoodComponentFinder.class);
+
+    private final CSRGraph adjacency;
+    /**
+     * Number of nodes in the maximum neighborhood component by node index
+     */
+    private final int[] componentSizes;
+    /**
+     * Number of edges in the maximum neighborhood component by node index
+     */
+    private final int[] componentEdgeCounts;
+
+    public NeighborhoodComponentFinder(final CSRGraph adjacency) {
+        this.adjacency = adjacency;
+        componentSizes = new int[adjacency.getNumberOfNodes()];
+        componentEdgeCounts = new int[adjacency.getNumberOfNodes()];
+        init();
+    }
+
+    private void init() {
+        LOGGER.info("Computing maximum neighborhood components for " + adjacency.getNumberOfNodes() + " node(s) ...");
+        final int n = adjacency.getNumberOfNodes();
+        final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(() -> new Scratch(n));
+        IntStream.range(0, n).parallel().forEach(index -> compute(index, scratch.get()));
+    }
+
+    /**
+     * Computes the maximum neighborhood component of a single node.
+     * @param index   Node index
+     * @param scratch Buffers of the current worker thread
+     */
+    private void compute(final int index, final Scratch scratch) {
+        final int marker = index + 1;
+
+        // collect distinct neighbors (neighbor ranges are sorted, so duplicates are adjacent)
+        int count = 0;
+        for (int position = adjacency.getStart(index); position < adjacency.getEnd(index); position++) {
+            final int neighbor = adjacency.getTarget(position);
+            if (neighbor == index || scratch.marks[neighbor] == marker)
+                continue;
+            scratch.marks[neighbor] = marker;
+            scratch.localIndices[neighbor] = count;
+            scratch.ensureCapacity(count + 1);
+            scratch.neighbors[count++] = neighbor;
+        }
+        if (count == 0)
+            return;
+
+        // merge neighbors connected by an edge and count the edges starting at each neighbor
+        final boolean undirected = adjacency.getMode() == GraphMode.UNDIRECTED;
+        scratch.unionFind.reset(count);
+        Arrays.fill(scratch.edgeCounts, 0, count, 0);
+        for (int i = 0; i < count; i++) {
+            final int neighbor = scratch.neighbors[i];
+            for (int position = adjacency.getStart(neighbor); position < adjacency.getEnd(neighbor); position++) {
+                final int other = adjacency.getTarget(position);
+                if (scratch.marks[other] != marker)
+                    continue;
+                final int j = scratch.localIndices[other];
+                // undirected snapshots store each edge at both endpoints
+                if (undirected && j < i)
+                    continue;
+                scratch.unionFind.union(i, j);
+                scratch.edgeCounts[i]++;
+            }
+        }
+
+        // accumulate edge counts per component root and select the largest component
+        for (int i = 0; i < count; i++) {
+            final int root = scratch.unionFind.find(i);
+            if (root != i) {
+                scratch.edgeCounts[root] += scratch.edgeCounts[i];
+                scratch.edgeCounts[i] = 0;
+            }
+        }
+        int bestSize = 0;
+        int bestEdges = 0;
+        for (int i = 0; i < count; i++) {
+            if (scratch.unionFind.find(i) != i)
+                continue;
+            final int size = scratch.unionFind.getSize(i);
+            if (size > bestSize || (size == bestSize && scratch.edgeCounts[i] > bestEdges)) {
+                bestSize = size;
+                bestEdges = scratch.edgeCounts[i];
+            }
+        }
+        componentSizes[index] = bestSize;
+        componentEdgeCounts[index] = bestEdges;
+    }
+
+    /**
+     * Returns the maximum neighborhood component size (MNC) for a node index.
+     */
+    public int getComponentSize(final int index) {
+        return componentSizes[index];
+    }
+
+    /**
+     * Returns the number of edges in the maximum neighborhood component for a node index.
+     */
+    public int getComponentEdgeCount(final int index) {
+        return componentEdgeCounts[index];
+    }
+
+    /**
+     * Calculates the density of the maximum neighborhood component (DMNC) for a node index.
+     * @param epsilon Exponent applied to the component size
+     */
+    public double getDensity(final int index, final double epsilon) {
+        return componentSizes[index] == 0 ? 0 : componentEdgeCounts[index] / Math.pow(componentSizes[index], epsilon);
+    }
+
+    /**
+     * Per-thread buffers. Marks and local indices are addressed by node index and never need to be cleared, since each
+     * node uses its own marker value.
+     */
+    private static final class Scratch {
+        final int[] marks;
+        final int[] localIndices;
+        int[] neighbors;
+        int[] edgeCounts;
+        final UnionFind unionFind;
+
+        Scratch(final int n) {
+            marks = new int[n];
+            localIndices = new int[n];
+            neighbors = new int[16];
+            edgeCounts = new int[16];
+            unionFind = new UnionFind(16);
+        }
+
+        void ensureCapacity(final int capacity) {
+            if (capacity > neighbors.length) {
+                neighbors = Arrays.copyOf(neighbors, Math.max(capacity, neighbors.length * 2));
+                edgeCounts = new int[neighbors.length];
+            }
+        }
+    }
+}
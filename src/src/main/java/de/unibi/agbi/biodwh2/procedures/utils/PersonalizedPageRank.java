@@ -0,0 +1,255 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import java.util.Arrays;
+
+/**
+ * Approximates the personalized PageRank vector (random walk with restart) for a set of seed nodes with the forward
+ * push algorithm of Andersen, Chung and Lang. Each node holds an estimate p and a residual r; a node whose residual
+ * exceeds epsilon times its degree keeps the restart share of it and pushes the rest evenly to its neighbors. The work
+ * is bounded by 1 / (restart * epsilon) pushes independent of the graph size and only touched nodes are stored.
+ * <p>
+ * Every estimate is a lower bound of the exact score and the error of node v is at most epsilon * deg(v). The walk
+ * restarts at the seeds when it reaches a node without outgoing edges.
+ * <p>
+ * Estimates and residuals of the touched nodes are kept in primitive open addressing maps and the push queue is an int
+ * ring buffer, so a push does not allocate.
+ */
+public class PersonalizedPageRank {
+
+    private final CSRGraph adjacency;
+    private final IntDoubleMap estimates = new IntDoubleMap();
+    private int pushes;
+
+    /**
+     * @param adjacency Adjacency snapshot, the walk follows its edges
+     * @param seeds     Indices of the seed nodes, the walk restarts uniformly at one of them
+     * @param restart   Probability of restarting at the seeds in each step
+     * @param epsilon   Residual tolerance per unit of degree
+     */
+    public PersonalizedPageRank(final CSRGraph adjacency, final int[] seeds, final double restart,
+                                final double epsilon) {
+        if (restart <= 0 || restart >= 1)
+            throw new IllegalArgumentException("Restart probability must be in (0, 1)");
+        if (epsilon <= 0)
+            throw new IllegalArgumentException("Epsilon must be positive");
+        this.adjacency = adjacency;
+        if (seeds.length > 0)
+            push(seeds, restart, epsilon);
+    }
+
+    private void push(final int[] seeds, final double restart, final double epsilon) {
+        final IntDoubleMap residuals = new IntDoubleMap();
+        final IntQueue queue = new IntQueue();
+        for (final int seed : seeds)
+            if (residuals.add(seed, 1.0 / seeds.length) == 0)
+                queue.add(seed);
+        while (!queue.isEmpty()) {
+            final int u = queue.poll();
+            final int degree = adjacency.getDegree(u);
+            final double residual = residuals.get(u);
+            if (residual < epsilon * Math.max(degree, 1))
+                continue;
+            pushes++;
+            residuals.put(u, 0);
+            estimates.add(u, restart * residual);
+            final double remaining = (1 - restart) * residual;
+            if (degree == 0) {
+                // dead end, the walk continues at the seeds
+                for (final int seed : seeds)
+                    enqueue(residuals, queue, seed, remaining / seeds.length, epsilon);
+            } else {
+                final double share = remaining / degree;
+                for (int position = adjacency.getStart(u); position < adjacency.getEnd(u); position++)
+                    enqueue(residuals, queue, adjacency.getTarget(position), share, epsilon);
+            }
+        }
+    }
+
+    private void enqueue(final IntDoubleMap residuals, final IntQueue queue, final int v, final double mass,
+                         final double epsilon) {
+        final double threshold = epsilon * Math.max(adjacency.getDegree(v), 1);
+        final double previous = residuals.add(v, mass);
+        // only enqueue when crossing the threshold, nodes above it are already queued
+        if (previous < threshold && previous + mass >= threshold)
+            queue.add(v);
+    }
+
+    /**
+     * Map from non-negative int keys to doubles with linear probing, missing keys have the value 0
+     */
+    private static final class IntDoubleMap {
+        private static final int EMPTY = -1;
+
+        private int[] keys = newKeys(16);
+        private double[] values = new double[16];
+        private int size;
+
+        private static int[] newKeys(final int capacity) {
+            final int[] keys = new int[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+
+        private int slot(final int key) {
+            final int mask = keys.length - 1;
+            final int hash = key * 0x9E3779B9;
+            int slot = (hash ^ hash >>> 16) & mask;
+            while (keys[slot] != EMPTY && keys[slot] != key)
+                slot = (slot + 1) & mask;
+            return slot;
+        }
+
+        double get(final int key) {
+            final int slot = slot(key);
+            return keys[slot] == key ? values[slot] : 0;
+        }
+
+        void put(final int key, final double value) {
+            final int slot = slot(key);
+            if (keys[slot] == key)
+                values[slot] = value;
+            else
+                insert(slot, key, value);
+        }
+
+        /**
+         * Adds a value to the value of a key.
+         * @return Previous value of the key
+         */
+        double add(final int key, final double value) {
+            final int slot = slot(key);
+            if (keys[slot] != key) {
+                insert(slot, key, value);
+                return 0;
+            }
+            final double previous = values[slot];
+            values[slot] = previous + value;
+            return previous;
+        }
+
+        private void insert(final int slot, final int key, final double value) {
+            keys[slot] = key;
+            values[slot] = value;
+            if (++size * 2 > keys.length)
+                grow();
+        }
+
+        private void grow() {
+            final int[] oldKeys = keys;
+            final double[] oldValues = values;
+            keys = newKeys(oldKeys.length * 2);
+            values = new double[keys.length];
+            for (int i = 0; i < oldKeys.length; i++)
+                if (oldKeys[i] != EMPTY) {
+                    final int slot = slot(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+        }
+
+        int[] keys() {
+            final int[] result = new int[size];
+            int count = 0;
+            for (final int key : keys)
+                if (key != EMPTY)
+                    result[count++] = key;
+            return result;
+        }
+    }
+
+    /**
+     * Growable FIFO queue of ints backed by a ring buffer
+     */
+    private static final class IntQueue {
+        private int[] elements = new int[16];
+        private int head;
+        private int size;
+
+        void add(final int value) {
+            if (size == elements.length) {
+                final int[] grown = new int[elements.length * 2];
+                for (int i = 0; i < size; i++)
+                    grown[i] = elements[(head + i) & (elements.length - 1)];
+                elements = grown;
+                head = 0;
+            }
+            elements[(head + size++) & (elements.length - 1)] = value;
+        }
+
+        int poll() {
+            final int value = elements[head];
+            head = (head + 1) & (elements.length - 1);
+            size--;
+            return value;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+
+    /**
+     * Returns the estimated score of a node or 0, if the node was not reached.
+     */
+    public double getScore(final int index) {
+        return estimates.get(index);
+    }
+
+    /**
+     * Returns the indices of all nodes with a non-zero estimate.
+     */
+    public int[] getReachedNodes() {
+        return estimates.keys();
+    }
+
+    /**
+     * Returns the k nodes with the highest estimates in descending order.
+     * @param k Number of nodes, fewer are returned if fewer nodes were reached
+     * @return Node indices sorted by descending score, ties broken by index
+     */
+    public int[] getTopNodes(final int k) {
+        if (k < 0)
+            throw new IllegalArgumentException("The number of nodes must not be negative, but " + k + " was given");
+        return rank(k);
+    }
+
+    /**
+     * Returns all reached nodes in descending order of their estimates.
+     * @return Node indices sorted by descending score, ties broken by index
+     */
+    public int[] getRankedNodes() {
+        return rank(Integer.MAX_VALUE);
+    }
+
+    private int[] rank(final int limit) {
+        final int[] nodes = estimates.keys();
+        // positive scores sort like their bit patterns, the rank among the distinct scores is packed with the index
+        final long[] distinct = new long[nodes.length];
+        for (int i = 0; i < nodes.length; i++)
+            distinct[i] = Double.doubleToLongBits(estimates.get(nodes[i]));
+        Arrays.sort(distinct);
+        int distinctCount = 0;
+        for (int i = 0; i < distinct.length; i++)
+            if (i == 0 || distinct[i] != distinct[i - 1])
+                distinct[distinctCount++] = distinct[i];
+        final long[] order = new long[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            final long bits = Double.doubleToLongBits(estimates.get(nodes[i]));
+            final int rank = Arrays.binarySearch(distinct, 0, distinctCount, bits);
+            order[i] = ((long) (distinctCount - 1 - rank) << 32) | nodes[i];
+        }
+        Arrays.sort(order);
+        final int count = Math.min(limit, nodes.length);
+        final int[] result = new int[count];
+        for (int i = 0; i < count; i++)
+            result[i] = (int) order[i];
+        return result;
+    }
+
+    /**
+     * Returns the number of push operations performed.
+     */
+    public int getPushes() {
+        return pushes;
+    }
+}
@@ -0,0 +1,369 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.BaseGraph;
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Exact distance oracle for unweighted graphs based on pruned landmark labeling (Akiba et al.). Every node stores a
+ * label of (hub, distance) pairs such that for each pair of nodes s, t some hub on a shortest path from s to t is
+ * contained in both the out label of s and the in label of t (2-hop cover). Labels are created by one breadth-first
+ * search per node in descending degree order, each search is pruned at nodes whose distance is already covered by the
+ * labels of previous hubs, which keeps the labels small on real-world networks.
+ * <p>
+ * A distance query is a merge of two sorted label ranges. The labels are stored in flat primitive arrays and can be
+ * written to and read from a file. In undirected mode in and out labels are identical and stored only once.
+ * <p>
+ * Built or loaded indices may be registered for a graph, {@link ShortestPathFinder} then answers distance queries from
+ * the index instead of traversing the graph. An index is not updated when the graph changes.
+ */
+public class PrunedLandmarkLabeling {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrunedLandmarkLabeling.class);
+    private static final int MAGIC = 0x504C4C58;
+    private static final int VERSION = 2;
+    private static final int INFINITE = Integer.MAX_VALUE;
+
+    private final GraphMode mode;
+    /**
+     * Fingerprint of the graph at build time, used to detect outdated indices
+     */
+    private final GraphStamp graphStamp;
+    /**
+     * Original node ids by index (ascending)
+     */
+    private final long[] nodeIds;
+    /**
+     * Label ranges of each node, hubs are node ranks in ascending order
+     */
+    private final int[] inOffsets;
+    private final int[] inHubs;
+    private final int[] inDistances;
+    private final int[] outOffsets;
+    private final int[] outHubs;
+    private final int[] outDistances;
+
+    private PrunedLandmarkLabeling(final GraphMode mode, final GraphStamp graphStamp, final long[] nodeIds, final int[] inOffsets, final int[] inHubs,
+                                   final int[] inDistances, final int[] outOffsets, final int[] outHubs,
+                                   final int[] outDistances) {
+        this.mode = mode;
+        this.graphStamp = graphStamp;
+        this.nodeIds = nodeIds;
+        this.inOffsets = inOffsets;
+        this.inHubs = inHubs;
+        this.inDistances = inDistances;
+        this.outOffsets = outOffsets;
+        this.outHubs = outHubs;
+        this.outDistances = outDistances;
+    }
+
+    /**
+     * Builds the labels of all nodes of a graph.
+     * @param graph Graph to be indexed
+     * @param mode  Orientation of the graph
+     * @return Distance oracle
+     */
+    public static PrunedLandmarkLabeling build(final BaseGraph graph, final GraphMode mode) {
+        final GraphStamp graphStamp = GraphStamp.of(graph);
+        final CSRGraph forward = CSRGraph.build(graph, mode);
+        final CSRGraph backward = mode == GraphMode.DIRECTED ? CSRGraph.buildIncoming(graph) : forward;
+        return build(forward, backward, graphStamp);
+    }
+
+    private static PrunedLandmarkLabeling build(final CSRGraph forward, final CSRGraph backward,
+                                                final GraphStamp graphStamp) {
+        final int n = forward.getNumberOfNodes();
+        final boolean directed = forward != backward;
+        LOGGER.info("Building pruned landmark labels for " + n + " node(s) ...");
+        // hubs are processed by descending degree, ties by index: (max - degree, index) pairs are packed into longs
+        final long[] order = new long[n];
+        for (int i = 0; i < n; i++) {
+            final long degree = forward.getDegree(i) + (directed ? (long) backward.getDegree(i) : 0);
+            order[i] = ((Integer.MAX_VALUE - degree) << 32) | i;
+        }
+        Arrays.parallelSort(order);
+        final Labels in = new Labels(n);
+        final Labels out = directed ? new Labels(n) : in;
+        final int[] hubDistances = new int[n];
+        Arrays.fill(hubDistances, INFINITE);
+        final int[] distances = new int[n];
+        Arrays.fill(distances, INFINITE);
+        final int[] queue = new int[n];
+        for (int rank = 0; rank < n; rank++) {
+            final int root = (int) order[rank];
+            // d(root, u) is stored in the in label of u, d(u, root) in the out label of u
+            prunedSearch(forward, root, rank, out, in, hubDistances, distances, queue);
+            if (directed)
+                prunedSearch(backward, root, rank, in, out, hubDistances, distances, queue);
+        }
+        final PrunedLandmarkLabeling index;
+        if (directed) {
+            final int[] inOffsets = in.getOffsets();
+            final int[] outOffsets = out.getOffsets();
+            index = new PrunedLandmarkLabeling(GraphMode.DIRECTED, graphStamp, forward.getNodeIds(),
+                                               inOffsets, in.getHubs(inOffsets), in.getDistances(inOffsets),
+                                               outOffsets, out.getHubs(outOffsets), out.getDistances(outOffsets));
+        } else {
+            final int[] offsets = in.getOffsets();
+            final int[] hubs = in.getHubs(offsets);
+            final int[] labelDistances = in.getDistances(offsets);
+            index = new PrunedLandmarkLabeling(GraphMode.UNDIRECTED, graphStamp, forward.getNodeIds(),
+                                               offsets, hubs, labelDistances, offsets, hubs, labelDistances);
+        }
+        LOGGER.info("Created " + index.getNumberOfEntries() + " label entries");
+        return index;
+    }
+
+    /**
+     * Breadth-first search from the root that adds (rank, distance) to the target labels of all reached nodes, unless
+     * the distance is already covered by the root's source label and the node's target label.
+     */
+    private static void prunedSearch(final CSRGraph adjacency, final int root, final int rank, final Labels source,
+                                     final Labels target, final int[] hubDistances, final int[] distances,
+                                     final int[] queue) {
+        for (int i = 0; i < source.sizes[root]; i++)
+            hubDistances[source.hubs[root][i]] = source.distances[root][i];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = root;
+        distances[root] = 0;
+        while (head < tail) {
+            final int u = queue[head++];
+            final int distance = distances[u];
+            if (isCovered(target, u, distance, hubDistances))
+                continue;
+            target.add(u, rank, distance);
+            for (int position = adjacency.getStart(u); position < adjacency.getEnd(u); position++) {
+                final int v = adjacency.getTarget(position);
+                if (distances[v] == INFINITE) {
+                    distances[v] = distance + 1;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        for (int i = 0; i < tail; i++)
+            distances[queue[i]] = INFINITE;
+        for (int i = 0; i < source.sizes[root]; i++)
+            hubDistances[source.hubs[root][i]] = INFINITE;
+    }
+
+    private static boolean isCovered(final Labels labels, final int u, final int distance, final int[] hubDistances) {
+        for (int i = 0; i < labels.sizes[u]; i++) {
+            final int hubDistance = hubDistances[labels.hubs[u][i]];
+            if (hubDistance != INFINITE && hubDistance + labels.distances[u][i] <= distance)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Growable labels used during construction
+     */
+    private static final class Labels {
+        final int[][] hubs;
+        final int[][] distances;
+        final int[] sizes;
+
+        Labels(final int n) {
+            hubs = new int[n][];
+            distances = new int[n][];
+            sizes = new int[n];
+        }
+
+        void add(final int node, final int hub, final int distance) {
+            if (hubs[node] == null) {
+                hubs[node] = new int[4];
+                distances[node] = new int[4];
+            } else if (sizes[node] == hubs[node].length) {
+                hubs[node] = Arrays.copyOf(hubs[node], sizes[node] * 2);
+                distances[node] = Arrays.copyOf(distances[node], sizes[node] * 2);
+            }
+            hubs[node][sizes[node]] = hub;
+            distances[node][sizes[node]] = distance;
+            sizes[node]++;
+        }
+
+        int[] getOffsets() {
+            final int[] offsets = new int[sizes.length + 1];
+            for (int i = 0; i < sizes.length; i++)
+                offsets[i + 1] = offsets[i] + sizes[i];
+            return offsets;
+        }
+
+        int[] getHubs(final int[] offsets) {
+            return flatten(hubs, offsets);
+        }
+
+        int[] getDistances(final int[] offsets) {
+            return flatten(distances, offsets);
+        }
+
+        private int[] flatten(final int[][] values, final int[] offsets) {
+            final int[] result = new int[offsets[sizes.length]];
+            for (int i = 0; i < sizes.length; i++)
+                if (sizes[i] > 0)
+                    System.arraycopy(values[i], 0, result, offsets[i], sizes[i]);
+            return result;
+        }
+    }
+
+    /**
+     * Returns the exact distance between two nodes.
+     * @return Number of edges on a shortest path or -1, if the target is not reachable
+     */
+    public int queryIndex(final int source, final int target) {
+        int i = outOffsets[source];
+        int j = inOffsets[target];
+        final int endI = outOffsets[source + 1];
+        final int endJ = inOffsets[target + 1];
+        int best = INFINITE;
+        while (i < endI && j < endJ) {
+            if (outHubs[i] == inHubs[j]) {
+                best = Math.min(best, outDistances[i] + inDistances[j]);
+                i++;
+                j++;
+            } else if (outHubs[i] < inHubs[j])
+                i++;
+            else
+                j++;
+        }
+        return best == INFINITE ? -1 : best;
+    }
+
+    /**
+     * Returns the exact distance between two nodes.
+     * @return Number of edges on a shortest path or -1, if the target is not reachable or a node is not indexed
+     */
+    public long query(final long sourceNodeId, final long targetNodeId) {
+        final int source = getIndex(sourceNodeId);
+        final int target = getIndex(targetNodeId);
+        return source < 0 || target < 0 ? -1 : queryIndex(source, target);
+    }
+
+    /**
+     * Finds the dense index for a node id.
+     * @return Index of the node or -1, if the node is not part of the index
+     */
+    public int getIndex(final long nodeId) {
+        return GraphIndexRegistry.indexOf(nodeIds, nodeId);
+    }
+
+    public GraphMode getMode() {
+        return mode;
+    }
+
+    public int getNumberOfNodes() {
+        return nodeIds.length;
+    }
+
+    /**
+     * Returns the total number of (hub, distance) pairs of all in and out labels.
+     */
+    public long getNumberOfEntries() {
+        return mode == GraphMode.DIRECTED ? (long) inHubs.length + outHubs.length : inHubs.length;
+    }
+
+    /**
+     * Checks whether the index was built for the current state of a graph, i.e. the graph still has the
+     * {@link GraphStamp fingerprint} the index was stamped with.
+     */
+    public boolean isCompatible(final BaseGraph graph) {
+        return graphStamp.matches(graph);
+    }
+
+    /**
+     * Writes the index to a binary file.
+     */
+    public void write(final Path path) throws IOException {
+        try (final DataOutputStream stream = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path)))) {
+            stream.writeInt(MAGIC);
+            stream.writeInt(VERSION);
+            stream.writeInt(mode.ordinal());
+            graphStamp.write(stream);
+            stream.writeInt(nodeIds.length);
+            for (final long nodeId : nodeIds)
+                stream.writeLong(nodeId);
+            writeArray(stream, inOffsets);
+            writeArray(stream, inHubs);
+            writeArray(stream, inDistances);
+            if (mode == GraphMode.DIRECTED) {
+                writeArray(stream, outOffsets);
+                writeArray(stream, outHubs);
+                writeArray(stream, outDistances);
+            }
+        }
+    }
+
+    private static void writeArray(final DataOutputStream stream, final int[] values) throws IOException {
+        stream.writeInt(values.length);
+        for (final int value : values)
+            stream.writeInt(value);
+    }
+
+    /**
+     * Reads an index from a binary file created by {@link #write(Path)}.
+     */
+    public static PrunedLandmarkLabeling read(final Path path) throws IOException {
+        try (final DataInputStream stream = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (stream.readInt() != MAGIC)
+                throw new IOException("Not a pruned landmark labeling file: " + path);
+            final int version = stream.readInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported pruned landmark labeling version " + version);
+            final GraphMode mode = GraphMode.values()[stream.readInt()];
+            final GraphStamp graphStamp = GraphStamp.read(stream);
+            final long[] nodeIds = new long[stream.readInt()];
+            for (int i = 0; i < nodeIds.length; i++)
+                nodeIds[i] = stream.readLong();
+            final int[] inOffsets = readArray(stream);
+            final int[] inHubs = readArray(stream);
+            final int[] inDistances = readArray(stream);
+            if (mode == GraphMode.DIRECTED)
+                return new PrunedLandmarkLabeling(mode, graphStamp, nodeIds, inOffsets, inHubs, inDistances,
+                                                  readArray(stream), readArray(stream), readArray(stream));
+            return new PrunedLandmarkLabeling(mode, graphStamp, nodeIds, inOffsets, inHubs, inDistances, inOffsets,
+                                              inHubs, inDistances);
+        }
+    }
+
+    private static int[] readArray(final DataInputStream stream) throws IOException {
+        final int[] values = new int[stream.readInt()];
+        for (int i = 0; i < values.length; i++)
+            values[i] = stream.readInt();
+        return values;
+    }
+
+    private static GraphIndexRegistry.Key<PrunedLandmarkLabeling> key(final GraphMode mode) {
+        return GraphIndexRegistry.Key.of(PrunedLandmarkLabeling.class, mode);
+    }
+
+    /**
+     * Registers an index for a graph, so that distance queries on the graph in the index's mode use the index. The
+     * index is stamped with the fingerprint of the graph it was built for.
+     */
+    public static void register(final BaseGraph graph, final PrunedLandmarkLabeling index) {
+        GraphIndexRegistry.register(graph, key(index.getMode()), index, index.graphStamp);
+    }
+
+    /**
+     * Removes all indices registered for a graph.
+     */
+    public static void unregister(final BaseGraph graph) {
+        GraphIndexRegistry.unregister(graph, PrunedLandmarkLabeling.class);
+    }
+
+    /**
+     * Returns the index registered for a graph and mode.
+     * @return Registered index or null, if there is none or it is stale
+     */
+    public static PrunedLandmarkLabeling getRegistered(final BaseGraph graph, final GraphMode mode) {
+        return GraphIndexRegistry.get(graph, key(mode));
+    }
+}
@@ -8,10 +8,26 @@ import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
 
 import java.sql.Array;
 import java.util.*;
+import java.util.function.LongUnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 /**
  * Finds shortest paths in a graph
  * <p>
+ * Distance queries are answered from the first applicable index registered for the graph and mode in the
+ * {@link GraphIndexRegistry}, the registered indices are resolved once when the finder is created:
+ * <ol>
+ *     <li>{@link SubgraphView}, if the finder is restricted to a registered view (all other indices cover the whole
+ *     graph and are ignored)</li>
+ *     <li>{@link EdgeLabelPartitions}, if the finder is restricted to edge labels (all other indices cover all
+ *     edges and are ignored)</li>
+ *     <li>{@link DistanceMatrix}, for single source queries from one of its sources without saturated distances</li>
+ *     <li>{@link PrunedLandmarkLabeling}</li>
+ *     <li>{@link CompressedGraph}, if source and target are part of the snapshot</li>
+ *     <li>Dijkstra's algorithm on the graph</li>
+ * </ol>
+ * <p>
  * TODO:
  *  - create result containers instead of hash maps (distance mappings, hop nodes, ...)
  */
@@ -20,18 +36,73 @@ public class ShortestPathFinder {
     private HashMap<Long, Long> shortestPaths;
     private GraphMode mode;
     private boolean useEdgeWeights;
+    /**
+     * Allowed edge labels, all edges are followed if empty
+     */
+    private final String[] edgeLabels;
+    private final EdgeLabelPartitions partitions;
+    private final boolean[] labelMask;
+    private final DistanceMatrix matrix;
+    private final PrunedLandmarkLabeling index;
+    private final CompressedGraph compressed;
+    /**
+     * Registered subgraph view the finder is restricted to, null for the whole graph
+     */
+    private final SubgraphView view;
 
     public ShortestPathFinder(final BaseGraph graph, final GraphMode mode, final boolean useEdgeWeights) {
+        this(graph, mode, useEdgeWeights, new String[0]);
+    }
+
+    /**
+     * Creates a finder that only follows edges with one of the given labels, e.g. to prevent shortcuts through
+     * annotation or publication edges of a merged graph. Restricted searches run on the graph's
+     * {@link EdgeLabelPartitions} and ignore registered distance indices, which cover all edges. The partitions and
+     * labels are resolved once, so a finder should be reused for several queries.
+     */
+    public ShortestPathFinder(final BaseGraph graph, final GraphMode mode, final String... edgeLabels) {
+        this(graph, mode, false, edgeLabels);
+    }
+
+    private ShortestPathFinder(final BaseGraph graph, final GraphMode mode, final boolean useEdgeWeights,
+                               final String[] edgeLabels) {
+        this(graph, mode, useEdgeWeights, edgeLabels, null);
+    }
+
+    private ShortestPathFinder(final BaseGraph graph, final GraphMode mode, final boolean useEdgeWeights,
+                               final String[] edgeLabels, final SubgraphView view) {
         this.graph = graph;
         this.mode = mode;
         this.useEdgeWeights = useEdgeWeights;
+        this.edgeLabels = edgeLabels != null ? edgeLabels : new String[0];
         this.shortestPaths = new HashMap<>();
+        this.view = view;
+        final boolean labeled = this.edgeLabels.length > 0;
+        final boolean indexed = !labeled && view == null;
+        partitions = labeled ? EdgeLabelPartitions.get(graph, mode) : null;
+        labelMask = labeled ? partitions.getLabelMask(this.edgeLabels) : null;
+        matrix = indexed ? DistanceMatrix.getRegistered(graph, mode) : null;
+        index = indexed ? PrunedLandmarkLabeling.getRegistered(graph, mode) : null;
+        compressed = indexed ? CompressedGraph.getRegistered(graph, mode) : null;
     }
 
     public ShortestPathFinder(final BaseGraph graph, final GraphMode mode) {
         this(graph, mode, false);
     }
 
+    /**
+     * Creates a finder restricted to the {@link SubgraphView} registered for the graph under a name, e.g. to search
+     * only the protein-protein interactions of a merged graph. Searches run on the view and ignore registered distance
+     * indices, which cover the whole graph. Without a name, the finder covers the whole graph.
+     * @param view Name of a registered view, null or empty for the whole graph
+     * @throws IllegalArgumentException if no view is registered under the name
+     */
+    public static ShortestPathFinder forView(final BaseGraph graph, final GraphMode mode, final String view) {
+        if (view == null || view.isEmpty())
+            return new ShortestPathFinder(graph, mode);
+        return new ShortestPathFinder(graph, mode, false, null, SubgraphView.get(graph, view, mode));
+    }
+
     public ShortestPathFinder(final BaseGraph graph) {
         this(graph, GraphMode.UNDIRECTED, false);
     }
@@ -43,6 +114,14 @@ public class ShortestPathFinder {
      * @return Maps the path length from source to target
      */
     public DijkstraResult dijkstra(final long sourceNodeId, final long targetNodeId) {
+        if (view != null)
+            return searchView(sourceNodeId, targetNodeId);
+        if (partitions != null)
+            return searchPartitions(sourceNodeId, targetNodeId);
+        if (index != null)
+            return queryIndex(sourceNodeId, targetNodeId);
+        if (compressed != null && compressed.getIndex(sourceNodeId) >= 0 && compressed.getIndex(targetNodeId) >= 0)
+            return searchCompressed(sourceNodeId, targetNodeId);
 
         final Map<Long, Long> distances = new HashMap<>();
         final Map<Long, Long> predecessors = new HashMap<>();
@@ -68,7 +147,7 @@ public class ShortestPathFinder {
             if (currentId == targetNodeId)
                 break;
 
-            final List<Long> neighbors = GraphProcedureUtils.getNeighbors(graph, currentId, mode);
+            final List<Long> neighbors = getNeighbors(currentId);
             for (final Long neighborId : neighbors) {
                 if (distances.get(neighborId) > (distanceCurrent + 1)) {
                     distances.put(neighborId, distanceCurrent + 1);
@@ -93,6 +172,34 @@ public class ShortestPathFinder {
      * @return A mapping showing all nodes and their shortest paths from source node
      */
     public DijkstraResult dijkstra(final long sourceNodeId, final boolean setSelfInfinity, final String... labels) {
+        if (view != null) {
+            final int source = view.getIndex(sourceNodeId);
+            final int[] distances = source >= 0 ? view.breadthFirstSearch(source, null, -1) : null;
+            return queryDistances(target -> {
+                final int targetIndex = view.getIndex(target);
+                return distances != null && targetIndex >= 0 ? distances[targetIndex] : -1;
+            }, sourceNodeId, setSelfInfinity, labels);
+        }
+        if (partitions != null) {
+            final int source = partitions.getIndex(sourceNodeId);
+            final int[] distances = source >= 0 ? partitions.breadthFirstSearch(source, null, -1, labelMask) : null;
+            return queryDistances(target -> {
+                final int targetIndex = partitions.getIndex(target);
+                return distances != null && targetIndex >= 0 ? distances[targetIndex] : -1;
+            }, sourceNodeId, setSelfInfinity, labels);
+        }
+        if (matrix != null && matrix.hasSource(sourceNodeId) && !matrix.isSaturated(sourceNodeId))
+            return queryDistances(target -> matrix.getDistance(sourceNodeId, target), sourceNodeId, setSelfInfinity,
+                                  labels);
+        if (index != null)
+            return queryDistances(target -> index.query(sourceNodeId, target), sourceNodeId, setSelfInfinity, labels);
+        if (compressed != null && compressed.getIndex(sourceNodeId) >= 0) {
+            final int[] distances = compressed.breadthFirstSearch(compressed.getIndex(sourceNodeId), null, -1);
+            return queryDistances(target -> {
+                final int targetIndex = compressed.getIndex(target);
+                return targetIndex >= 0 ? distances[targetIndex] : -1;
+            }, sourceNodeId, setSelfInfinity, labels);
+        }
 
         // init distance mapping and node queue
         final HashMap<Long, Long> distances = new HashMap<>();
@@ -115,7 +222,7 @@ public class ShortestPathFinder {
             long currentNodeId = current.getNodeId();
 
             long currentDistance = current.getDistance();
-            final List<Long> neighbors = GraphProcedureUtils.getNeighbors(graph, currentNodeId, mode);
+            final List<Long> neighbors = getNeighbors(currentNodeId);
 
             // For each adjacent neighbor: Update distance if required
             for (final Long neighborId : neighbors) {
@@ -140,6 +247,129 @@ public class ShortestPathFinder {
         return new DijkstraResult(distances);
     }
 
+    /**
+     * Collects the neighbors of a node, only within the view or via the allowed edge labels if the finder is
+     * restricted.
+     */
+    private List<Long> getNeighbors(final long nodeId) {
+        if (view != null) {
+            final List<Long> neighbors = new ArrayList<>();
+            final int index = view.getIndex(nodeId);
+            final int end = index >= 0 ? view.getEnd(index) : 0;
+            for (int position = index >= 0 ? view.getStart(index) : 0; position < end; position++)
+                neighbors.add(view.getNodeId(view.getTarget(position)));
+            return neighbors;
+        }
+        return partitions != null ? partitions.getNeighbors(nodeId, labelMask) : GraphProcedureUtils.getNeighbors(
+                graph, nodeId, mode);
+    }
+
+    /**
+     * Answers a single-target query from the distance index. The path is reconstructed by repeatedly moving to a
+     * neighbor that is one step closer to the target.
+     */
+    private DijkstraResult queryIndex(final long sourceNodeId, final long targetNodeId) {
+        final Map<Long, Long> distances = new HashMap<>();
+        final ArrayList<Long> path = new ArrayList<>();
+        long distance = index.query(sourceNodeId, targetNodeId);
+        distances.put(targetNodeId, distance < 0 ? Long.MAX_VALUE : distance);
+        if (distance < 0) {
+            path.add(targetNodeId);
+            return new DijkstraResult(distances, path);
+        }
+        long nodeId = sourceNodeId;
+        path.add(nodeId);
+        while (distance > 0) {
+            for (final Long neighborId : GraphProcedureUtils.getNeighbors(graph, nodeId, mode)) {
+                if (index.query(neighborId, targetNodeId) == distance - 1) {
+                    nodeId = neighborId;
+                    break;
+                }
+            }
+            path.add(nodeId);
+            distance--;
+        }
+        return new DijkstraResult(distances, path);
+    }
+
+    /**
+     * Answers a single-target query with a breadth-first search on the partitions of the allowed edge labels.
+     */
+    private DijkstraResult searchPartitions(final long sourceNodeId, final long targetNodeId) {
+        final int source = partitions.getIndex(sourceNodeId);
+        final int target = partitions.getIndex(targetNodeId);
+        final int[] pathIndices = source >= 0 && target >= 0 ?
+                                  partitions.findShortestPath(source, target, labelMask) : null;
+        final Map<Long, Long> distances = new HashMap<>();
+        final ArrayList<Long> path = new ArrayList<>();
+        if (pathIndices == null) {
+            distances.put(targetNodeId, Long.MAX_VALUE);
+            path.add(targetNodeId);
+        } else {
+            distances.put(targetNodeId, (long) pathIndices.length - 1);
+            for (final int index : pathIndices)
+                path.add(partitions.getNodeId(index));
+        }
+        return new DijkstraResult(distances, path);
+    }
+
+    /**
+     * Answers a single-target query with a breadth-first search on the subgraph view.
+     */
+    private DijkstraResult searchView(final long sourceNodeId, final long targetNodeId) {
+        final int source = view.getIndex(sourceNodeId);
+        final int target = view.getIndex(targetNodeId);
+        final int[] pathIndices = source >= 0 && target >= 0 ? view.findShortestPath(source, target) : null;
+        final Map<Long, Long> distances = new HashMap<>();
+        final ArrayList<Long> path = new ArrayList<>();
+        if (pathIndices == null) {
+            distances.put(targetNodeId, Long.MAX_VALUE);
+            path.add(targetNodeId);
+        } else {
+            distances.put(targetNodeId, (long) pathIndices.length - 1);
+            for (final int index : pathIndices)
+                path.add(view.getNodeId(index));
+        }
+        return new DijkstraResult(distances, path);
+    }
+
+    /**
+     * Answers a single-target query with a breadth-first search on a compressed adjacency snapshot.
+     */
+    private DijkstraResult searchCompressed(final long sourceNodeId, final long targetNodeId) {
+        final int[] pathIndices = compressed.findShortestPath(compressed.getIndex(sourceNodeId),
+                                                              compressed.getIndex(targetNodeId));
+        final Map<Long, Long> distances = new HashMap<>();
+        final ArrayList<Long> path = new ArrayList<>();
+        if (pathIndices == null) {
+            distances.put(targetNodeId, Long.MAX_VALUE);
+            path.add(targetNodeId);
+        } else {
+            distances.put(targetNodeId, (long) pathIndices.length - 1);
+            for (final int index : pathIndices)
+                path.add(compressed.getNodeId(index));
+        }
+        return new DijkstraResult(distances, path);
+    }
+
+    /**
+     * Answers a single-source query from a precomputed distance lookup, only nodes with the given labels are queried.
+     * Negative distances of the lookup are treated as unreachable.
+     */
+    private DijkstraResult queryDistances(final LongUnaryOperator distanceTo, final long sourceNodeId,
+                                          final boolean setSelfInfinity, final String... labels) {
+        final HashMap<Long, Long> distances = new HashMap<>();
+        final Iterable<Node> nodes = labels.length == 0 ? graph.getNodes() : Arrays.stream(labels).flatMap(
+                label -> StreamSupport.stream(graph.getNodes(label).spliterator(), false)).collect(Collectors.toList());
+        for (final Node node : nodes) {
+            final long distance = distanceTo.applyAsLong(node.getId());
+            distances.put(node.getId(), distance < 0 ? Long.MAX_VALUE : distance);
+        }
+        if (setSelfInfinity && distances.containsKey(sourceNodeId))
+            distances.put(sourceNodeId, Long.MAX_VALUE);
+        return new DijkstraResult(distances);
+    }
+
     /**
      * Modified version of dijkstra's algorithm to find all possible shortest paths between a source node and a target node.
      * @param sourceNodeId Source node ID
@@ -173,7 +403,7 @@ public class ShortestPathFinder {
             final DistancePair current = queue.poll();
             long currentNodeId = current.getNodeId();
             long currentDistance = current.getDistance();
-            final List<Long> neighbors = GraphProcedureUtils.getNeighbors(graph, currentNodeId, mode);
+            final List<Long> neighbors = getNeighbors(currentNodeId);
 
             for(long neighborId : neighbors) {
                 if(distances.get(neighborId) > (currentDistance + 1)) {
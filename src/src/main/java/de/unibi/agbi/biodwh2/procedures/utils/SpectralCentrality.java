@@ -0,0 +1,201 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.BaseGraph;
+import de.unibi.agbi.biodwh2.core.model.graph.Edge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Power iteration for PageRank and eigenvector centrality on an adjacency snapshot of the incoming edges of each node
+ * ({@link CSRGraph#buildIncoming(BaseGraph)} for directed graphs, the undirected snapshot otherwise). Each iteration
+ * pulls the scores of a node's predecessors, so the nodes are updated in parallel without synchronization and only two
+ * score vectors of length n are held in memory.
+ */
+public class SpectralCentrality {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpectralCentrality.class);
+
+    private final CSRGraph incoming;
+    /**
+     * Weight of each adjacency entry or null, if all edges have weight 1
+     */
+    private final double[] weights;
+    private int iterations;
+    private boolean converged;
+
+    /**
+     * @param incoming Adjacency snapshot listing the predecessors of each node
+     * @param weights  Non-negative weight of each adjacency entry or null for an unweighted graph
+     */
+    public SpectralCentrality(final CSRGraph incoming, final double[] weights) {
+        if (weights != null && weights.length != incoming.getNumberOfEntries())
+            throw new IllegalArgumentException("Expected one weight per adjacency entry");
+        this.incoming = incoming;
+        this.weights = weights;
+    }
+
+    /**
+     * Reads the weight of each adjacency entry from a numeric edge property. Edges without the property or with a
+     * non-numeric value get weight 1.
+     * @param graph     Graph the snapshot was built from
+     * @param adjacency Adjacency snapshot
+     * @param property  Edge property name, null or empty for an unweighted graph
+     * @return Weights aligned with the adjacency entries or null, if no property was given
+     */
+    public static double[] loadWeights(final BaseGraph graph, final CSRGraph adjacency, final String property) {
+        if (property == null || property.isEmpty())
+            return null;
+        // a single pass over the edges, sorted by id for the lookup of each entry
+        long[] ids = new long[(int) Math.max(graph.getNumberOfEdges(), 0)];
+        double[] values = new double[ids.length];
+        int count = 0;
+        for (final Edge edge : graph.getEdges()) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(16, count * 2));
+                values = Arrays.copyOf(values, ids.length);
+            }
+            final Object value = edge.getProperty(property);
+            ids[count] = edge.getId();
+            values[count] = value instanceof Number ? ((Number) value).doubleValue() : 1;
+            count++;
+        }
+        // edge ids are unique, so each value is moved to the position of its id after a primitive sort of the ids
+        final long[] sortedIds = Arrays.copyOf(ids, count);
+        Arrays.parallelSort(sortedIds);
+        final double[] sortedValues = new double[count];
+        for (int i = 0; i < count; i++)
+            sortedValues[Arrays.binarySearch(sortedIds, ids[i])] = values[i];
+        final double[] weights = new double[adjacency.getNumberOfEntries()];
+        IntStream.range(0, adjacency.getNumberOfEntries()).parallel().forEach(position -> {
+            final int index = Arrays.binarySearch(sortedIds, adjacency.getEdgeId(position));
+            final double weight = index >= 0 ? sortedValues[index] : 1;
+            if (weight < 0 || Double.isNaN(weight))
+                throw new IllegalArgumentException(
+                        "Edge " + adjacency.getEdgeId(position) + " has an invalid weight " + weight);
+            weights[position] = weight;
+        });
+        return weights;
+    }
+
+    private double getWeight(final int position) {
+        return weights == null ? 1 : weights[position];
+    }
+
+    /**
+     * Calculates the PageRank of all nodes. The score of nodes without outgoing edges is distributed uniformly.
+     * @param damping       Probability of following an edge instead of jumping to a random node
+     * @param tolerance     Iteration stops once the L1 norm of the change falls below this value
+     * @param maxIterations Maximum number of iterations
+     * @return PageRank by node index, summing up to 1
+     */
+    public double[] computePageRank(final double damping, final double tolerance, final int maxIterations) {
+        if (damping < 0 || damping >= 1)
+            throw new IllegalArgumentException("Damping must be in [0, 1)");
+        final int n = incoming.getNumberOfNodes();
+        if (n == 0)
+            return new double[0];
+        // total outgoing weight of each node, i.e. the sum of its entries in the incoming lists of other nodes
+        final double[] outWeights = new double[n];
+        for (int position = 0; position < incoming.getNumberOfEntries(); position++)
+            outWeights[incoming.getTarget(position)] += getWeight(position);
+        LOGGER.info("Calculating PageRank for " + n + " node(s) ...");
+        double[] current = new double[n];
+        Arrays.fill(current, 1.0 / n);
+        double[] next = new double[n];
+        final double[] contribution = new double[n];
+        converged = false;
+        iterations = 0;
+        while (!converged && iterations < maxIterations) {
+            final double[] source = current;
+            final double[] target = next;
+            final double danglingMass = IntStream.range(0, n).parallel().mapToDouble(u -> {
+                if (outWeights[u] > 0) {
+                    contribution[u] = source[u] / outWeights[u];
+                    return 0;
+                }
+                contribution[u] = 0;
+                return source[u];
+            }).sum();
+            final double base = (1 - damping + damping * danglingMass) / n;
+            final double delta = IntStream.range(0, n).parallel().mapToDouble(v -> {
+                double sum = 0;
+                for (int position = incoming.getStart(v); position < incoming.getEnd(v); position++)
+                    sum += contribution[incoming.getTarget(position)] * getWeight(position);
+                target[v] = base + damping * sum;
+                return Math.abs(target[v] - source[v]);
+            }).sum();
+            current = target;
+            next = source;
+            iterations++;
+            converged = delta < tolerance;
+        }
+        logResult("PageRank");
+        return current;
+    }
+
+    /**
+     * Calculates the eigenvector centrality of all nodes, i.e. the principal eigenvector of the transposed adjacency
+     * matrix. The iteration is run on A + I, which has the same eigenvectors but converges on bipartite graphs, too.
+     * @param tolerance     Iteration stops once the L1 norm of the change per node falls below this value
+     * @param maxIterations Maximum number of iterations
+     * @return Centrality by node index with unit Euclidean norm
+     */
+    public double[] computeEigenvector(final double tolerance, final int maxIterations) {
+        final int n = incoming.getNumberOfNodes();
+        if (n == 0)
+            return new double[0];
+        LOGGER.info("Calculating eigenvector centrality for " + n + " node(s) ...");
+        double[] current = new double[n];
+        Arrays.fill(current, 1.0 / Math.sqrt(n));
+        double[] next = new double[n];
+        converged = false;
+        iterations = 0;
+        while (!converged && iterations < maxIterations) {
+            final double[] source = current;
+            final double[] target = next;
+            final double norm = Math.sqrt(IntStream.range(0, n).parallel().mapToDouble(v -> {
+                double sum = source[v];
+                for (int position = incoming.getStart(v); position < incoming.getEnd(v); position++)
+                    sum += source[incoming.getTarget(position)] * getWeight(position);
+                target[v] = sum;
+                return sum * sum;
+            }).sum());
+            if (norm == 0)
+                break;
+            final double delta = IntStream.range(0, n).parallel().mapToDouble(v -> {
+                target[v] /= norm;
+                return Math.abs(target[v] - source[v]);
+            }).sum();
+            current = target;
+            next = source;
+            iterations++;
+            converged = delta < n * tolerance;
+        }
+        logResult("Eigenvector centrality");
+        return current;
+    }
+
+    private void logResult(final String name) {
+        if (converged)
+            LOGGER.info(name + " converged after " + iterations + " iteration(s)");
+        else
+            LOGGER.warn(name + " did not converge after " + iterations + " iteration(s)");
+    }
+
+    /**
+     * Returns the number of iterations of the last computation.
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Returns whether the last computation reached the tolerance within the maximum number of iterations.
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+}
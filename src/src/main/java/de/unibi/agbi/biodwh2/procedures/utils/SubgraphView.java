@@ -0,0 +1,326 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.BaseGraph;
+import de.unibi.agbi.biodwh2.core.model.graph.Edge;
+import de.unibi.agbi.biodwh2.core.model.graph.Node;
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Filtered view of an adjacency snapshot restricted to nodes and edges with certain labels. The view shares the arrays
+ * of the graph's registered {@link CSRGraph} snapshot and only stores two bitsets: one over the node indices and one
+ * over the adjacency entries. An entry is part of the view if its edge has an allowed label and both of its nodes are
+ * part of the view.
+ * <p>
+ * The view is an adjacency snapshot itself with dense node indices and entry positions, so every algorithm and
+ * procedure that accepts a {@link CSRGraph} runs on it unchanged. Indices and positions are translated on access with
+ * rank and select over the bitsets: the number of set bits before each 64-bit word is stored, so a rank takes constant
+ * time and a select a binary search over the words. Nothing of the base snapshot is copied, except by the array
+ * getters.
+ * <p>
+ * Views are registered for a graph under a name by their labels with {@link #register}. The views of each mode are
+ * created over the graph's cached snapshots on first use and are recreated once the graph changes.
+ */
+public class SubgraphView extends CSRGraph {
+
+    private final CSRGraph base;
+    private final boolean incoming;
+    private final RankedBits nodes;
+    private final RankedBits entries;
+
+    /**
+     * @param graph      Graph of the snapshot
+     * @param base       Unfiltered adjacency snapshot of the graph
+     * @param incoming   Whether the snapshot follows incoming edges
+     * @param nodeLabels Allowed node labels, null or empty to keep all nodes
+     * @param edgeLabels Allowed edge labels, null or empty to keep all edges
+     */
+    public SubgraphView(final BaseGraph graph, final CSRGraph base, final boolean incoming, final String[] nodeLabels,
+                        final String[] edgeLabels) {
+        super(base.getMode());
+        this.base = base;
+        this.incoming = incoming;
+        final int n = base.getNumberOfNodes();
+        final BitSet nodeBits = new BitSet(n);
+        if (nodeLabels == null || nodeLabels.length == 0)
+            nodeBits.set(0, n);
+        else
+            for (final String label : nodeLabels)
+                for (final Node node : graph.getNodes(label)) {
+                    final int index = base.getIndex(node.getId());
+                    if (index >= 0)
+                        nodeBits.set(index);
+                }
+        final long[] edgeIds = edgeLabels == null || edgeLabels.length == 0 ? null : getEdgeIds(graph, edgeLabels);
+        final BitSet entryBits = new BitSet(base.getNumberOfEntries());
+        for (int u = nodeBits.nextSetBit(0); u >= 0; u = nodeBits.nextSetBit(u + 1))
+            for (int position = base.getStart(u); position < base.getEnd(u); position++)
+                if (nodeBits.get(base.getTarget(position)) &&
+                    (edgeIds == null || Arrays.binarySearch(edgeIds, base.getEdgeId(position)) >= 0))
+                    entryBits.set(position);
+        nodes = new RankedBits(nodeBits, n);
+        entries = new RankedBits(entryBits, base.getNumberOfEntries());
+    }
+
+    /**
+     * Creates a view of the outgoing (directed mode) or all (undirected mode) edges of a graph over the graph's
+     * registered snapshot, which is built and registered if necessary.
+     */
+    public static SubgraphView create(final BaseGraph graph, final GraphMode mode, final String[] nodeLabels,
+                                      final String[] edgeLabels) {
+        return new SubgraphView(graph, CSRGraph.buildCached(graph, mode), false, nodeLabels, edgeLabels);
+    }
+
+    /**
+     * Creates a view of the incoming edges of a directed graph over the graph's registered snapshot of incoming edges,
+     * which is built and registered if necessary.
+     */
+    public static SubgraphView createIncoming(final BaseGraph graph, final String[] nodeLabels,
+                                              final String[] edgeLabels) {
+        return new SubgraphView(graph, CSRGraph.buildIncomingCached(graph), true, nodeLabels, edgeLabels);
+    }
+
+    private static long[] getEdgeIds(final BaseGraph graph, final String[] labels) {
+        long[] ids = new long[16];
+        int count = 0;
+        for (final String label : labels)
+            for (final Edge edge : graph.getEdges(label)) {
+                if (count == ids.length)
+                    ids = Arrays.copyOf(ids, count * 2);
+                ids[count++] = edge.getId();
+            }
+        ids = Arrays.copyOf(ids, count);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    public CSRGraph getBase() {
+        return base;
+    }
+
+    /**
+     * Checks whether the view follows incoming edges.
+     */
+    public boolean isIncoming() {
+        return incoming;
+    }
+
+    /**
+     * Returns the index in the base snapshot of a node of the view.
+     */
+    public int getBaseIndex(final int index) {
+        return nodes.select(index);
+    }
+
+    /**
+     * Returns the position in the base snapshot of an entry of the view.
+     */
+    public int getBasePosition(final int position) {
+        return entries.select(position);
+    }
+
+    @Override
+    public int getNumberOfNodes() {
+        return nodes.count;
+    }
+
+    @Override
+    public int getNumberOfEntries() {
+        return entries.count;
+    }
+
+    @Override
+    public int getIndex(final long nodeId) {
+        final int index = base.getIndex(nodeId);
+        return index >= 0 && nodes.get(index) ? nodes.rank(index) : -1;
+    }
+
+    @Override
+    public long getNodeId(final int index) {
+        return base.getNodeId(nodes.select(index));
+    }
+
+    @Override
+    public int getDegree(final int index) {
+        final int baseIndex = nodes.select(index);
+        return entries.rank(base.getEnd(baseIndex)) - entries.rank(base.getStart(baseIndex));
+    }
+
+    @Override
+    public int getStart(final int index) {
+        return entries.rank(base.getStart(nodes.select(index)));
+    }
+
+    @Override
+    public int getEnd(final int index) {
+        return entries.rank(base.getEnd(nodes.select(index)));
+    }
+
+    @Override
+    public int getTarget(final int position) {
+        return nodes.rank(base.getTarget(entries.select(position)));
+    }
+
+    @Override
+    public long getEdgeId(final int position) {
+        return base.getEdgeId(entries.select(position));
+    }
+
+    @Override
+    public long[] getNodeIds() {
+        final long[] values = new long[nodes.count];
+        for (int i = 0; i < values.length; i++)
+            values[i] = getNodeId(i);
+        return values;
+    }
+
+    @Override
+    public int[] getOffsets() {
+        final int[] values = new int[nodes.count + 1];
+        for (int i = 0; i < nodes.count; i++)
+            values[i + 1] = getEnd(i);
+        return values;
+    }
+
+    @Override
+    public int[] getTargets() {
+        final int[] values = new int[entries.count];
+        for (int i = 0; i < values.length; i++)
+            values[i] = getTarget(i);
+        return values;
+    }
+
+    @Override
+    public long[] getEdgeIds() {
+        final long[] values = new long[entries.count];
+        for (int i = 0; i < values.length; i++)
+            values[i] = getEdgeId(i);
+        return values;
+    }
+
+    /**
+     * Bits of a bitset together with the number of set bits before each 64-bit word.
+     */
+    private static final class RankedBits {
+        private final long[] words;
+        private final int[] ranks;
+        private final int count;
+
+        RankedBits(final BitSet bits, final int length) {
+            words = Arrays.copyOf(bits.toLongArray(), (length + 63) >>> 6);
+            ranks = new int[words.length + 1];
+            for (int i = 0; i < words.length; i++)
+                ranks[i + 1] = ranks[i] + Long.bitCount(words[i]);
+            count = ranks[words.length];
+        }
+
+        boolean get(final int index) {
+            return (words[index >>> 6] & (1L << index)) != 0;
+        }
+
+        /**
+         * Counts the set bits before an index, the index may be the length of the bitset.
+         */
+        int rank(final int index) {
+            final int word = index >>> 6;
+            return word == words.length ? count : ranks[word] + Long.bitCount(words[word] & ((1L << index) - 1));
+        }
+
+        /**
+         * Finds the index of the set bit with the given rank.
+         */
+        int select(final int rank) {
+            int low = 0;
+            int high = words.length - 1;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (ranks[middle + 1] > rank)
+                    high = middle;
+                else
+                    low = middle + 1;
+            }
+            long word = words[low];
+            for (int i = rank - ranks[low]; i > 0; i--)
+                word &= word - 1;
+            return (low << 6) + Long.numberOfTrailingZeros(word);
+        }
+    }
+
+    /**
+     * Labels of a registered view, views of each mode are created from them on first use.
+     */
+    private static final class Definition {
+        private final String[] nodeLabels;
+        private final String[] edgeLabels;
+
+        Definition(final String[] nodeLabels, final String[] edgeLabels) {
+            this.nodeLabels = nodeLabels;
+            this.edgeLabels = edgeLabels;
+        }
+    }
+
+    private static GraphIndexRegistry.Key<Definition> definitionKey(final String name) {
+        return GraphIndexRegistry.Key.of(Definition.class, name);
+    }
+
+    /**
+     * Registers a view for a graph under a name. The definition is kept when the graph changes, only the views
+     * created from it are recreated. A previous view of the same name is replaced.
+     * @param nodeLabels Allowed node labels, null or empty to keep all nodes
+     * @param edgeLabels Allowed edge labels, null or empty to keep all edges
+     */
+    public static void register(final BaseGraph graph, final String name, final String[] nodeLabels,
+                                final String[] edgeLabels) {
+        GraphIndexRegistry.unregister(graph, SubgraphView.class);
+        GraphIndexRegistry.register(graph, definitionKey(name), new Definition(nodeLabels, edgeLabels));
+    }
+
+    /**
+     * Removes all views registered for a graph, the graph's snapshots are kept.
+     */
+    public static void unregister(final BaseGraph graph) {
+        GraphIndexRegistry.unregister(graph, Definition.class);
+        GraphIndexRegistry.unregister(graph, SubgraphView.class);
+    }
+
+    /**
+     * Checks whether a view is registered for a graph under a name.
+     */
+    public static boolean isRegistered(final BaseGraph graph, final String name) {
+        return GraphIndexRegistry.getLatest(graph, definitionKey(name)) != null;
+    }
+
+    /**
+     * Returns the view registered for a graph under a name over the graph's outgoing (directed mode) or all
+     * (undirected mode) edges. The view is created on first use and after the graph changed.
+     * @throws IllegalArgumentException if no view is registered under the name
+     */
+    public static SubgraphView get(final BaseGraph graph, final String name, final GraphMode mode) {
+        return get(graph, name, mode, false);
+    }
+
+    /**
+     * Returns the view registered for a graph under a name over the graph's incoming edges, see
+     * {@link #get(BaseGraph, String, GraphMode)}.
+     * @throws IllegalArgumentException if no view is registered under the name
+     */
+    public static SubgraphView getIncoming(final BaseGraph graph, final String name) {
+        return get(graph, name, GraphMode.DIRECTED, true);
+    }
+
+    private static SubgraphView get(final BaseGraph graph, final String name, final GraphMode mode,
+                                    final boolean incoming) {
+        final Definition definition = GraphIndexRegistry.getLatest(graph, definitionKey(name));
+        if (definition == null)
+            throw new IllegalArgumentException("No subgraph view '" + name + "' is registered for the current graph");
+        final GraphIndexRegistry.Key<SubgraphView> key = GraphIndexRegistry.Key.of(SubgraphView.class, definition,
+                                                                                   mode, incoming);
+        return GraphIndexRegistry.getOrBuild(graph, key, target -> incoming ? createIncoming(target,
+                                                                                            definition.nodeLabels,
+                                                                                            definition.edgeLabels) :
+                                                                   create(target, mode, definition.nodeLabels,
+                                                                          definition.edgeLabels));
+    }
+}
@@ -0,0 +1,201 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Finds the k nodes with the highest closeness following the pruned BFS approach of Bergamini et al. Sources are
+ * processed in order of decreasing degree, and each BFS is cut as soon as an upper bound on the source's closeness can
+ * no longer beat the current k-th best value.
+ * <p>
+ * Closeness is normalized after Wasserman and Faust, i.e. r / (n - 1) * r / s for a node reaching r other nodes with
+ * a distance sum of s. On connected graphs this equals (n - 1) / s, the closeness of a single node, and nodes of small
+ * components are not ranked above the nodes of large ones.
+ * <p>
+ * In {@link GraphMode#UNDIRECTED} mode the number of reachable nodes is known from the connected components, and the
+ * farness of the unvisited nodes is bounded from below with the level-based cutoff: at most as many nodes as there are
+ * edges leaving the current level lie on the next level, all others are at least one level further away. In
+ * {@link GraphMode#DIRECTED} mode the size of the weakly connected component bounds the number of reachable nodes, and
+ * every further node is at least one level beyond the current one. The closeness is quasi-convex in the number of
+ * further nodes, so its maximum over all possible numbers is taken at either end.
+ */
+public class TopKClosenessFinder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TopKClosenessFinder.class);
+
+    private final CSRGraph adjacency;
+    private final int k;
+    private int[] topNodes;
+    private double[] topCloseness;
+    private long visitedEdges;
+    private int completedSearches;
+
+    public TopKClosenessFinder(final CSRGraph adjacency, final int k) {
+        this.adjacency = adjacency;
+        this.k = Math.max(0, Math.min(k, adjacency.getNumberOfNodes()));
+        init();
+    }
+
+    private void init() {
+        final int n = adjacency.getNumberOfNodes();
+        final int[] reachable = getComponentSizes();
+
+        // process sources in order of decreasing degree
+        final long[] packed = new long[n];
+        for (int i = 0; i < n; i++)
+            packed[i] = ((long) (Integer.MAX_VALUE - adjacency.getDegree(i)) << 32) | i;
+        Arrays.sort(packed);
+
+        final PriorityQueue<double[]> top = new PriorityQueue<>((a, b) -> Double.compare(a[0], b[0]));
+        final int[] distances = new int[n];
+        Arrays.fill(distances, -1);
+        final int[] queue = new int[n];
+        for (final long entry : packed) {
+            if (k == 0)
+                break;
+            final int source = (int) entry;
+            final double threshold = top.size() == k ? top.peek()[0] : -1;
+            final double closeness = search(source, reachable, threshold, distances, queue);
+            if (closeness > threshold) {
+                top.add(new double[]{closeness, source});
+                if (top.size() > k)
+                    top.poll();
+            }
+        }
+        topNodes = new int[top.size()];
+        topCloseness = new double[top.size()];
+        for (int i = top.size() - 1; i >= 0; i--) {
+            final double[] best = top.poll();
+            topCloseness[i] = best[0];
+            topNodes[i] = (int) best[1];
+        }
+        LOGGER.info("Top-" + k + " closeness: " + completedSearches + " of " + n + " BFS run(s) completed, " +
+                    visitedEdges + " edge(s) visited");
+    }
+
+    /**
+     * Counts the other nodes of the (weakly) connected component of each node. In undirected mode these are exactly the
+     * reachable nodes, in directed mode they are an upper bound.
+     */
+    private int[] getComponentSizes() {
+        final int n = adjacency.getNumberOfNodes();
+        final int[] reachable = new int[n];
+        final UnionFind unionFind = new UnionFind(n);
+        for (int v = 0; v < n; v++)
+            for (int position = adjacency.getStart(v); position < adjacency.getEnd(v); position++)
+                unionFind.union(v, adjacency.getTarget(position));
+        for (int v = 0; v < n; v++)
+            reachable[v] = unionFind.getSize(v) - 1;
+        return reachable;
+    }
+
+    /**
+     * Runs a level-synchronous BFS from the source that stops once the closeness bound drops to the threshold.
+     * @return Exact closeness of the source or -1, if the search was cut
+     */
+    private double search(final int source, final int[] reachable, final double threshold, final int[] distances,
+                          final int[] queue) {
+        int head = 0;
+        int tail = 0;
+        distances[source] = 0;
+        queue[tail++] = source;
+        long distanceSum = 0;
+        boolean cut = false;
+        int level = 0;
+        while (head < tail) {
+            // all nodes up to the current level have been discovered
+            final int levelEnd = tail;
+            if (threshold >= 0 && upperBound(reachable[source], tail - 1, distanceSum, level, head, levelEnd,
+                                             queue) <= threshold) {
+                cut = true;
+                break;
+            }
+            for (; head < levelEnd; head++) {
+                final int current = queue[head];
+                visitedEdges += adjacency.getDegree(current);
+                for (int position = adjacency.getStart(current); position < adjacency.getEnd(current); position++) {
+                    final int neighbor = adjacency.getTarget(position);
+                    if (distances[neighbor] < 0) {
+                        distances[neighbor] = level + 1;
+                        distanceSum += level + 1;
+                        queue[tail++] = neighbor;
+                    }
+                }
+            }
+            level++;
+        }
+        for (int i = 0; i < tail; i++)
+            distances[queue[i]] = -1;
+        if (cut)
+            return -1;
+        completedSearches++;
+        return closeness(tail - 1, distanceSum);
+    }
+
+    /**
+     * Calculates the closeness normalized after Wasserman and Faust.
+     * @param reached     Number of reached nodes without the source
+     * @param distanceSum Sum of the distances of the reached nodes
+     */
+    private double closeness(final long reached, final long distanceSum) {
+        final int n = adjacency.getNumberOfNodes();
+        return distanceSum == 0 ? 0 : (double) reached / (n - 1) * reached / distanceSum;
+    }
+
+    /**
+     * Calculates an upper bound of the closeness for a partially completed search.
+     * @param reachable   Number of reachable nodes (undirected mode) or an upper bound of it (directed mode)
+     * @param visited     Number of visited nodes without the source
+     * @param distanceSum Sum of the distances of all visited nodes
+     * @param level       Distance of the current frontier
+     */
+    private double upperBound(final int reachable, final int visited, final long distanceSum, final int level,
+                              final int frontierStart, final int frontierEnd, final int[] queue) {
+        final long remaining = reachable - visited;
+        if (remaining <= 0)
+            return closeness(visited, distanceSum);
+        if (adjacency.getMode() != GraphMode.UNDIRECTED) {
+            final double all = closeness(reachable, distanceSum + (long) (level + 1) * remaining);
+            return visited == 0 ? all : Math.max(closeness(visited, distanceSum), all);
+        }
+        long nextLevelCapacity = 0;
+        for (int i = frontierStart; i < frontierEnd; i++)
+            nextLevelCapacity += adjacency.getDegree(queue[i]);
+        final long nextLevel = Math.min(nextLevelCapacity, remaining);
+        final long farnessBound = distanceSum + (long) (level + 1) * nextLevel + (long) (level + 2) * (remaining -
+                                                                                                      nextLevel);
+        return closeness(reachable, farnessBound);
+    }
+
+    /**
+     * Returns the node indices of the top-k nodes in order of decreasing closeness.
+     */
+    public int[] getTopNodes() {
+        return topNodes;
+    }
+
+    /**
+     * Returns the closeness values of the top-k nodes in order of decreasing closeness.
+     */
+    public double[] getTopCloseness() {
+        return topCloseness;
+    }
+
+    /**
+     * Returns the number of adjacency entries scanned over all searches.
+     */
+    public long getVisitedEdges() {
+        return visitedEdges;
+    }
+
+    /**
+     * Returns the number of searches that were not cut.
+     */
+    public int getCompletedSearches() {
+        return completedSearches;
+    }
+}
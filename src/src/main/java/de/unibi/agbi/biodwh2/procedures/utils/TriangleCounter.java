@@ -0,0 +1,216 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * Counts triangles for every node of an adjacency snapshot in parallel.
+ * <p>
+ * In {@link GraphMode#UNDIRECTED} mode the forward algorithm is used: every edge of the simple graph is oriented from
+ * the endpoint with lower (degree, index) rank to the higher one, and each triangle is found exactly once by
+ * intersecting the sorted forward neighbor lists of an edge's endpoints. In {@link GraphMode#DIRECTED} mode the
+ * triangles of a node are the edges between its out-neighbors, i.e. transitive triangles counted at their source.
+ * Self loops and parallel edges are ignored in both modes.
+ */
+public class TriangleCounter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TriangleCounter.class);
+
+    private final CSRGraph adjacency;
+    /**
+     * Number of distinct neighbors (without the node itself) by node index
+     */
+    private final int[] degrees;
+    /**
+     * Number of triangles by node index
+     */
+    private final long[] triangles;
+
+    public TriangleCounter(final CSRGraph adjacency) {
+        this.adjacency = adjacency;
+        degrees = new int[adjacency.getNumberOfNodes()];
+        triangles = new long[adjacency.getNumberOfNodes()];
+        init();
+    }
+
+    private void init() {
+        LOGGER.info("Counting triangles for " + adjacency.getNumberOfNodes() + " node(s) ...");
+        final int n = adjacency.getNumberOfNodes();
+        IntStream.range(0, n).parallel().forEach(index -> {
+            int degree = 0;
+            final int start = adjacency.getStart(index);
+            for (int position = start; position < adjacency.getEnd(index); position++) {
+                final int neighbor = adjacency.getTarget(position);
+                if (neighbor != index && (position == start || adjacency.getTarget(position - 1) != neighbor))
+                    degree++;
+            }
+            degrees[index] = degree;
+        });
+        if (adjacency.getMode() == GraphMode.UNDIRECTED)
+            countUndirected();
+        else
+            countDirected();
+    }
+
+    /**
+     * Checks whether node a precedes node b in the degree ordering.
+     */
+    private boolean precedes(final int a, final int b) {
+        return degrees[a] < degrees[b] || (degrees[a] == degrees[b] && a < b);
+    }
+
+    private void countUndirected() {
+        final int n = adjacency.getNumberOfNodes();
+
+        // build the oriented simple graph, keeping each forward list sorted by index
+        final int[] forwardOffsets = new int[n + 1];
+        for (int index = 0; index < n; index++) {
+            int count = 0;
+            final int start = adjacency.getStart(index);
+            for (int position = start; position < adjacency.getEnd(index); position++) {
+                final int neighbor = adjacency.getTarget(position);
+                if (precedes(index, neighbor) && (position == start || adjacency.getTarget(position - 1) != neighbor))
+                    count++;
+            }
+            forwardOffsets[index + 1] = forwardOffsets[index] + count;
+        }
+        final int[] forwardTargets = new int[forwardOffsets[n]];
+        IntStream.range(0, n).parallel().forEach(index -> {
+            int next = forwardOffsets[index];
+            final int start = adjacency.getStart(index);
+            for (int position = start; position < adjacency.getEnd(index); position++) {
+                final int neighbor = adjacency.getTarget(position);
+                if (precedes(index, neighbor) && (position == start || adjacency.getTarget(position - 1) != neighbor))
+                    forwardTargets[next++] = neighbor;
+            }
+        });
+
+        // intersect forward lists of each oriented edge
+        final AtomicLongArray counts = new AtomicLongArray(n);
+        IntStream.range(0, n).parallel().forEach(v -> {
+            long found = 0;
+            for (int i = forwardOffsets[v]; i < forwardOffsets[v + 1]; i++) {
+                final int u = forwardTargets[i];
+                int a = forwardOffsets[v];
+                int b = forwardOffsets[u];
+                final int endA = forwardOffsets[v + 1];
+                final int endB = forwardOffsets[u + 1];
+                long shared = 0;
+                while (a < endA && b < endB) {
+                    final int targetA = forwardTargets[a];
+                    final int targetB = forwardTargets[b];
+                    if (targetA < targetB) {
+                        a++;
+                    } else if (targetA > targetB) {
+                        b++;
+                    } else {
+                        counts.incrementAndGet(targetA);
+                        shared++;
+                        a++;
+                        b++;
+                    }
+                }
+                if (shared > 0)
+                    counts.addAndGet(u, shared);
+                found += shared;
+            }
+            if (found > 0)
+                counts.addAndGet(v, found);
+        });
+        for (int index = 0; index < n; index++)
+            triangles[index] = counts.get(index);
+    }
+
+    private void countDirected() {
+        final int n = adjacency.getNumberOfNodes();
+        final ThreadLocal<int[]> marks = ThreadLocal.withInitial(() -> new int[n]);
+        IntStream.range(0, n).parallel().forEach(v -> {
+            final int[] mark = marks.get();
+            final int marker = v + 1;
+            final int start = adjacency.getStart(v);
+            final int end = adjacency.getEnd(v);
+            for (int position = start; position < end; position++)
+                if (adjacency.getTarget(position) != v)
+                    mark[adjacency.getTarget(position)] = marker;
+            long found = 0;
+            for (int position = start; position < end; position++) {
+                final int u = adjacency.getTarget(position);
+                if (u == v || (position > start && adjacency.getTarget(position - 1) == u))
+                    continue;
+                final int otherStart = adjacency.getStart(u);
+                for (int other = otherStart; other < adjacency.getEnd(u); other++) {
+                    final int w = adjacency.getTarget(other);
+                    if (w != u && mark[w] == marker && (other == otherStart || adjacency.getTarget(other - 1) != w))
+                        found++;
+                }
+            }
+            triangles[v] = found;
+        });
+    }
+
+    /**
+     * Returns the number of triangles for a node index.
+     */
+    public long getTriangles(final int index) {
+        return triangles[index];
+    }
+
+    /**
+     * Returns the number of distinct neighbors for a node index.
+     */
+    public int getDegree(final int index) {
+        return degrees[index];
+    }
+
+    /**
+     * Returns the number of neighbor pairs that could be connected, i.e. the denominator of the local clustering
+     * coefficient.
+     */
+    public long getPossibleTriangles(final int index) {
+        final long degree = degrees[index];
+        final long pairs = degree * (degree - 1);
+        return adjacency.getMode() == GraphMode.UNDIRECTED ? pairs / 2 : pairs;
+    }
+
+    /**
+     * Calculates the local clustering coefficient for a node index (0 for nodes with less than two neighbors).
+     */
+    public double getClustering(final int index) {
+        final long possible = getPossibleTriangles(index);
+        return possible == 0 ? 0 : (double) triangles[index] / possible;
+    }
+
+    /**
+     * Returns the total number of triangles in the graph.
+     */
+    public long getTotalTriangles() {
+        final long sum = Arrays.stream(triangles).sum();
+        return adjacency.getMode() == GraphMode.UNDIRECTED ? sum / 3 : sum;
+    }
+
+    /**
+     * Calculates the average of all local clustering coefficients.
+     */
+    public double getAverageClustering() {
+        final int n = adjacency.getNumberOfNodes();
+        return n == 0 ? 0 : IntStream.range(0, n).mapToDouble(this::getClustering).sum() / n;
+    }
+
+    /**
+     * Calculates the global clustering coefficient (transitivity), i.e. the ratio of closed to all connected triplets.
+     */
+    public double getTransitivity() {
+        long closed = 0;
+        long possible = 0;
+        for (int index = 0; index < adjacency.getNumberOfNodes(); index++) {
+            closed += triangles[index];
+            possible += getPossibleTriangles(index);
+        }
+        return possible == 0 ? 0 : (double) closed / possible;
+    }
+}
@@ -0,0 +1,79 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import java.util.Arrays;
+
+/**
+ * Disjoint-set forest over dense indices with path halving and union by size. The backing arrays can be reused for
+ * several problems via {@link #reset(int)}.
+ */
+public class UnionFind {
+
+    private int[] parents;
+    private int[] sizes;
+    private int size;
+
+    public UnionFind(final int size) {
+        parents = new int[size];
+        sizes = new int[size];
+        reset(size);
+    }
+
+    /**
+     * Re-initializes the structure with singleton sets, growing the backing arrays if required.
+     * @param size Number of elements
+     */
+    public void reset(final int size) {
+        if (size > parents.length) {
+            final int capacity = Math.max(size, parents.length * 2);
+            parents = new int[capacity];
+            sizes = new int[capacity];
+        }
+        this.size = size;
+        for (int i = 0; i < size; i++)
+            parents[i] = i;
+        Arrays.fill(sizes, 0, size, 1);
+    }
+
+    /**
+     * Finds the representative of the set containing an element.
+     * @param element Element index
+     * @return Index of the set representative
+     */
+    public int find(int element) {
+        while (parents[element] != element) {
+            parents[element] = parents[parents[element]];
+            element = parents[element];
+        }
+        return element;
+    }
+
+    /**
+     * Merges the sets containing two elements.
+     * @return True, if the elements were in different sets before
+     */
+    public boolean union(final int first, final int second) {
+        int rootFirst = find(first);
+        int rootSecond = find(second);
+        if (rootFirst == rootSecond)
+            return false;
+        if (sizes[rootFirst] < sizes[rootSecond]) {
+            final int swap = rootFirst;
+            rootFirst = rootSecond;
+            rootSecond = swap;
+        }
+        parents[rootSecond] = rootFirst;
+        sizes[rootFirst] += sizes[rootSecond];
+        return true;
+    }
+
+    /**
+     * Returns the size of the set containing an element.
+     */
+    public int getSize(final int element) {
+        return sizes[find(element)];
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -1,11 +1,14 @@
 package de.unibi.agbi.biodwh2.procedures.procedures;
 
+import de.unibi.agbi.biodwh2.core.model.graph.Edge;
 import de.unibi.agbi.biodwh2.core.model.graph.Graph;
 import de.unibi.agbi.biodwh2.core.model.graph.Node;
 
+import de.unibi.agbi.biodwh2.procedures.ResultRow;
 import de.unibi.agbi.biodwh2.procedures.ResultSet;
 import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
 import de.unibi.agbi.biodwh2.procedures.model.IdPair;
+import de.unibi.agbi.biodwh2.procedures.utils.DynamicCentrality;
 import org.jsoup.select.Evaluator;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -13,6 +16,8 @@ import org.junit.jupiter.api.TestInstance;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -91,6 +96,34 @@ class GraphCentralityProceduresTest {
                                                         .getRow(0).getValue(1));
     }
 
+    @Test
+    void degreeAllTest() {
+        for (final boolean parallel : new boolean[]{false, true}) {
+            final ResultSet result = GraphCentralityProcedures.degreeAll(graphDisconnected, parallel);
+            assertEquals(7, result.getRowCount());
+            for (final ResultRow row : result) {
+                final Node node = graphDisconnected.getNode((long) row.getValue("id"));
+                assertEquals(GraphCentralityProcedures.degree(graphDisconnected, node).getRow(0).getValue(1),
+                             row.getValue("degree"));
+                assertEquals(GraphCentralityProcedures.degreeIn(graphDisconnected, node).getRow(0).getValue(1),
+                             row.getValue("in degree"));
+                assertEquals(GraphCentralityProcedures.degreeOut(graphDisconnected, node).getRow(0).getValue(1),
+                             row.getValue("out degree"));
+            }
+        }
+    }
+
+    @Test
+    void degreeHistogramTest() {
+        final ResultSet result = GraphCentralityProcedures.degreeHistogram(graphDisconnected, false);
+        long nodes = 0;
+        for (final ResultRow row : result)
+            nodes += (long) row.getValue("nodes");
+        assertEquals(7, nodes);
+        assertEquals(0L, result.getRow(0).getValue("degree"));
+        assertEquals(1L, result.getRow(0).getValue("nodes"));
+    }
+
     @Test
     void closenessTest() throws IOException {
         final Graph graph = Graph.createTempGraph();
@@ -120,6 +153,29 @@ class GraphCentralityProceduresTest {
         assertTrue(degD > degA);
     }
 
+    @Test
+    void closenessApproximateTest() {
+        // with epsilon small enough every node is a pivot and the estimate is exact
+        final ResultSet exact = GraphCentralityProcedures.closenessAll(graphConnected, GraphMode.UNDIRECTED, null);
+        final ResultSet estimated = GraphCentralityProcedures.closenessApproximate(graphConnected,
+                                                                                   GraphMode.UNDIRECTED, 0.1, 42, null);
+        assertEquals(exact.getRowCount(), estimated.getRowCount());
+        for (int i = 0; i < exact.getRowCount(); i++) {
+            assertEquals(7, estimated.getRow(i).getValue("samples"));
+            assertEquals((double) exact.getRow(i).getValue("closeness"),
+                         (double) estimated.getRow(i).getValue("closeness"), 1e-12);
+        }
+
+        // seeded estimates are deterministic
+        final ResultSet first = GraphCentralityProcedures.closenessApproximate(graphConnected, GraphMode.DIRECTED, 1.5,
+                                                                               7, null);
+        final ResultSet second = GraphCentralityProcedures.closenessApproximate(graphConnected, GraphMode.DIRECTED,
+                                                                                1.5, 7, null);
+        assertEquals(1, first.getRow(0).getValue("samples"));
+        for (int i = 0; i < first.getRowCount(); i++)
+            assertEquals(first.getRow(i).getValue("closeness"), second.getRow(i).getValue("closeness"));
+    }
+
     @Test
     void eccentricityTest() {
         assertEquals(1.0 / 3, (double) GraphCentralityProcedures.eccentricity(graphConnected,
@@ -136,6 +192,122 @@ class GraphCentralityProceduresTest {
                                                                 .getValue(1));
     }
 
+    @Test
+    void distanceMetricsTest() {
+        final ResultSet resultA = GraphCentralityProcedures.distanceMetrics(graphConnected, graphConnected.findNode("A"),
+                                                                            GraphMode.UNDIRECTED);
+        assertEquals(GraphCentralityProcedures.eccentricity(graphConnected, graphConnected.findNode("A"),
+                                                            GraphMode.UNDIRECTED).getRow(0).getValue(1),
+                     resultA.getRow(0).getValue("eccentricity"));
+        assertEquals(6L, resultA.getRow(0).getValue("reach"));
+        assertEquals(6.0 / 10, resultA.getRow(0).getValue("closeness"));
+        assertEquals(3 + 2 * 0.5 + 1.0 / 3, (double) resultA.getRow(0).getValue("harmonic"), 1e-12);
+
+        // harmonic centrality stays finite on disconnected graphs
+        final ResultSet resultG = GraphCentralityProcedures.distanceMetrics(graphDisconnected,
+                                                                            graphDisconnected.findNode("G"),
+                                                                            GraphMode.UNDIRECTED);
+        assertEquals(0L, resultG.getRow(0).getValue("reach"));
+        assertEquals(0.0, resultG.getRow(0).getValue("harmonic"));
+
+        for (final Graph graph : new Graph[]{graphConnected, graphDisconnected}) {
+            for (final ResultRow row : GraphCentralityProcedures.distanceMetricsAll(graph, GraphMode.UNDIRECTED, null)) {
+                final Node node = graph.getNode((long) row.getValue("id"));
+                final ResultRow expected = GraphCentralityProcedures.distanceMetrics(graph, node, GraphMode.UNDIRECTED)
+                                                                    .getRow(0);
+                for (final String column : new String[]{"closeness", "eccentricity", "reach"})
+                    assertEquals(expected.getValue(column), row.getValue(column));
+                assertEquals((double) expected.getValue("harmonic"), (double) row.getValue("harmonic"), 1e-12);
+            }
+        }
+    }
+
+    @Test
+    void eccentricityAllTest() {
+        final ResultSet result = GraphCentralityProcedures.eccentricityAll(graphConnected, GraphMode.UNDIRECTED, null);
+        assertEquals(7, result.getRowCount());
+        for (final ResultRow row : result) {
+            final Node node = graphConnected.getNode((long) row.getValue("id"));
+            assertEquals(GraphCentralityProcedures.eccentricity(graphConnected, node, GraphMode.UNDIRECTED).getRow(0)
+                                                  .getValue(1), row.getValue("eccentricity"));
+        }
+        final ResultSet diameter = GraphCentralityProcedures.diameter(graphConnected, GraphMode.UNDIRECTED, null);
+        assertEquals(3, diameter.getRow(0).getValue("diameter"));
+        assertTrue((int) diameter.getRow(0).getValue("searches") <= 7);
+        assertEquals(3, GraphCentralityProcedures.diameter(graphDisconnected, GraphMode.UNDIRECTED, null).getRow(0)
+                                                 .getValue("diameter"));
+
+        // directed eccentricities only consider the nodes reached along outgoing edges
+        final ResultSet directed = GraphCentralityProcedures.eccentricityAll(graphConnected, GraphMode.DIRECTED, null);
+        final ResultSet metrics = GraphCentralityProcedures.distanceMetricsAll(graphConnected, GraphMode.DIRECTED, null);
+        assertEquals(7, directed.getRowCount());
+        for (int i = 0; i < directed.getRowCount(); i++) {
+            assertEquals(metrics.getRow(i).getValue("id"), directed.getRow(i).getValue("id"));
+            assertEquals(metrics.getRow(i).getValue("eccentricity"), directed.getRow(i).getValue("eccentricity"));
+        }
+        assertEquals(0, directed.getRow(6).getValue("distance"));
+        assertEquals(3, GraphCentralityProcedures.diameter(graphConnected, GraphMode.DIRECTED, null).getRow(0)
+                                                 .getValue("diameter"));
+    }
+
+    @Test
+    void pageRankTest() throws IOException {
+        final ResultSet result = GraphCentralityProcedures.pageRank(graphConnected, GraphMode.DIRECTED, 0.85, 1e-10,
+                                                                    100, null, null);
+        assertEquals(7, result.getRowCount());
+        double sum = 0;
+        double minimum = Double.MAX_VALUE;
+        for (final ResultRow row : result) {
+            assertTrue((boolean) row.getValue("converged"));
+            sum += (double) row.getValue("pagerank");
+            minimum = Math.min(minimum, (double) row.getValue("pagerank"));
+        }
+        assertEquals(1, sum, 1e-9);
+        // A has no incoming edges and only receives the random jump probability
+        assertEquals(minimum, (double) result.getRow(0).getValue("pagerank"), 1e-12);
+
+        final Graph weighted = Graph.createTempGraph();
+        final Node nodeA = weighted.addNode("A");
+        final Node nodeB = weighted.addNode("B");
+        final Node nodeC = weighted.addNode("C");
+        weighted.addEdge(nodeA, nodeB, "eAB", "weight", 3);
+        weighted.addEdge(nodeA, nodeC, "eAC", "weight", 1);
+        weighted.addEdge(nodeB, nodeA, "eBA");
+        weighted.addEdge(nodeC, nodeA, "eCA");
+        final ResultSet weightedResult = GraphCentralityProcedures.pageRank(weighted, GraphMode.DIRECTED, 0.85, 1e-12,
+                                                                            200, "weight", null);
+        final double base = 0.15 / 3;
+        assertEquals(3, ((double) weightedResult.getRow(1).getValue("pagerank") - base) /
+                        ((double) weightedResult.getRow(2).getValue("pagerank") - base), 1e-6);
+    }
+
+    @Test
+    void eigenvectorTest() {
+        final ResultSet result = GraphCentralityProcedures.eigenvector(graphConnected, GraphMode.UNDIRECTED, 1e-12,
+                                                                       1000, null, null);
+        assertEquals(7, result.getRowCount());
+        final Map<Long, Double> scores = new HashMap<>();
+        for (final ResultRow row : result) {
+            assertTrue((boolean) row.getValue("converged"));
+            scores.put((long) row.getValue("id"), (double) row.getValue("eigenvector"));
+        }
+        // every node's score is proportional to the sum of its neighbors' scores
+        Double eigenvalue = null;
+        for (final Node node : graphConnected.getNodes()) {
+            double sum = 0;
+            for (final Edge edge : graphConnected.getEdges()) {
+                if (edge.getFromId().equals(node.getId()))
+                    sum += scores.get(edge.getToId());
+                else if (edge.getToId().equals(node.getId()))
+                    sum += scores.get(edge.getFromId());
+            }
+            final double ratio = sum / scores.get(node.getId());
+            if (eigenvalue == null)
+                eigenvalue = ratio;
+            assertEquals(eigenvalue, ratio, 1e-6);
+        }
+    }
+
     @Test
     void betweennessTest() throws IOException {
         Graph graph = Graph.createTempGraph();
@@ -167,6 +339,31 @@ class GraphCentralityProceduresTest {
         assertEquals(15.0, GraphCentralityProcedures.betweenness(graph, node4.getId(), GraphMode.UNDIRECTED).getRow(0).getValue("betweenness"));
     }
 
+    @Test
+    void dynamicCentralityTest() throws IOException {
+        Graph graph = Graph.createTempGraph();
+        Node[] nodes = new Node[6];
+        for (int i = 0; i < nodes.length; i++)
+            nodes[i] = graph.addNode("N");
+        for (int i = 1; i < nodes.length; i++)
+            graph.addEdge(nodes[i - 1], nodes[i], "E");
+        assertDynamicCentrality(graph);
+        // the registered distances are updated with the new edge only
+        graph.addEdge(nodes[0], nodes[5], "E");
+        assertDynamicCentrality(graph);
+        DynamicCentrality.unregister(graph);
+    }
+
+    private static void assertDynamicCentrality(final Graph graph) {
+        ResultSet result = GraphCentralityProcedures.dynamicCentrality(graph, GraphMode.UNDIRECTED);
+        assertEquals(graph.getNumberOfNodes(), result.getRowCount());
+        for (ResultRow row : result) {
+            long id = (long) row.getValue("id");
+            assertEquals((double) GraphCentralityProcedures.betweenness(graph, id, GraphMode.UNDIRECTED).getRow(0).getValue("betweenness"), (double) row.getValue("betweenness"), 1e-9);
+            assertEquals(GraphCentralityProcedures.distanceMetrics(graph, graph.getNode(id), GraphMode.UNDIRECTED).getRow(0).getValue("closeness"), row.getValue("closeness"));
+        }
+    }
+
     @Test
     void maximumNeighborhoodComponentTest() throws IOException {
         Graph graph = Graph.createTempGraph();
@@ -211,6 +408,114 @@ class GraphCentralityProceduresTest {
         assertEquals(0.3077861033362291, result.getRow(0).getValue(1));
     }
 
+    @Test
+    void neighborhoodComponentsAllTest() throws IOException {
+        Graph graph = Graph.createTempGraph();
+        Node node1 = graph.addNode("1");
+        Node node2 = graph.addNode("2");
+        Node node3 = graph.addNode("3");
+        Node node4 = graph.addNode("4");
+        Node node5 = graph.addNode("5");
+        Node node6 = graph.addNode("6");
+        graph.addEdge(node1, node2, "e1-2");
+        graph.addEdge(node1, node5, "e1-5");
+        graph.addEdge(node2, node3, "e2-3");
+        graph.addEdge(node2, node5, "e2-5");
+        graph.addEdge(node3, node4, "e3-4");
+        graph.addEdge(node4, node5, "e4-5");
+        graph.addEdge(node4, node6, "e4-6");
+        final ResultSet result = GraphCentralityProcedures.neighborhoodComponentsAll(graph, GraphMode.UNDIRECTED, 1.7, null);
+        assertEquals(6, result.getRowCount());
+        for (final ResultRow row : result) {
+            final Node node = graph.getNode((long) row.getValue("id"));
+            assertEquals(GraphCentralityProcedures.maximumNeighborhoodComponent(graph, node, GraphMode.UNDIRECTED)
+                                                  .getRow(0).getValue(1), row.getValue("mnc"));
+            assertEquals(GraphCentralityProcedures.densityOfMaximumNeighborhoodComponent(graph, node,
+                                                                                         GraphMode.UNDIRECTED, 1.7)
+                                                  .getRow(0).getValue(1), row.getValue("dmnc"));
+        }
+    }
+
+    @Test
+    void clusteringTest() throws IOException {
+        Graph graph = Graph.createTempGraph();
+        Node nodeA = graph.addNode("A");
+        Node nodeB = graph.addNode("B");
+        Node nodeC = graph.addNode("C");
+        Node nodeD = graph.addNode("D");
+        Node nodeE = graph.addNode("E");
+        graph.addEdge(nodeA, nodeB, "eAB");
+        graph.addEdge(nodeA, nodeC, "eAC");
+        graph.addEdge(nodeB, nodeC, "eBC");
+        graph.addEdge(nodeC, nodeD, "eCD");
+        graph.addEdge(nodeB, nodeD, "eBD");
+        graph.addEdge(nodeD, nodeE, "eDE");
+        graph.addEdge(nodeE, nodeE, "eEE");
+
+        assertEquals(1.0, GraphCentralityProcedures.clustering(graph, nodeA, GraphMode.UNDIRECTED).getRow(0)
+                                                   .getValue("clustering"));
+        assertEquals(2.0 / 3, GraphCentralityProcedures.clustering(graph, nodeB, GraphMode.UNDIRECTED).getRow(0)
+                                                       .getValue("clustering"));
+        assertEquals(0.0, GraphCentralityProcedures.clustering(graph, nodeE, GraphMode.UNDIRECTED).getRow(0)
+                                                   .getValue("clustering"));
+        assertEquals(0.5, GraphCentralityProcedures.clustering(graph, nodeA, GraphMode.DIRECTED).getRow(0)
+                                                   .getValue("clustering"));
+        assertEquals(0.5, GraphCentralityProcedures.clustering(graph, nodeB, GraphMode.DIRECTED).getRow(0)
+                                                   .getValue("clustering"));
+
+        for (final GraphMode mode : GraphMode.values()) {
+            for (final ResultRow row : GraphCentralityProcedures.clusteringAll(graph, mode, null)) {
+                final Node node = graph.getNode((long) row.getValue("id"));
+                assertEquals(GraphCentralityProcedures.clustering(graph, node, mode).getRow(0).getValue("clustering"),
+                             row.getValue("clustering"));
+            }
+        }
+        assertEquals(2L, GraphCentralityProcedures.triangles(graph, GraphMode.UNDIRECTED, null).getRow(0)
+                                                  .getValue("triangles"));
+        assertEquals(2L, GraphCentralityProcedures.triangles(graph, GraphMode.DIRECTED, null).getRow(0)
+                                                  .getValue("triangles"));
+        assertEquals(6.0 / 10, GraphCentralityProcedures.clusteringGlobal(graph, GraphMode.UNDIRECTED, null).getRow(0)
+                                                        .getValue("transitivity"));
+    }
+
+    @Test
+    void kCoreTest() throws IOException {
+        Graph graph = Graph.createTempGraph();
+        Node nodeA = graph.addNode("A");
+        Node nodeB = graph.addNode("B");
+        Node nodeC = graph.addNode("C");
+        Node nodeD = graph.addNode("D");
+        Node nodeE = graph.addNode("E");
+        Node nodeF = graph.addNode("F");
+        Node nodeG = graph.addNode("G");
+        graph.addEdge(nodeA, nodeB, "eAB");
+        graph.addEdge(nodeA, nodeC, "eAC");
+        graph.addEdge(nodeA, nodeD, "eAD");
+        graph.addEdge(nodeB, nodeC, "eBC");
+        graph.addEdge(nodeB, nodeD, "eBD");
+        graph.addEdge(nodeC, nodeD, "eCD");
+        graph.addEdge(nodeD, nodeE, "eDE");
+        graph.addEdge(nodeE, nodeF, "eEF");
+        graph.addEdge(nodeF, nodeD, "eFD");
+        graph.addEdge(nodeF, nodeF, "eFF");
+
+        final Map<String, Integer> expected = new HashMap<>();
+        expected.put("A", 3);
+        expected.put("B", 3);
+        expected.put("C", 3);
+        expected.put("D", 3);
+        expected.put("E", 2);
+        expected.put("F", 2);
+        expected.put("G", 0);
+        for (final boolean parallel : new boolean[]{false, true}) {
+            final ResultSet result = GraphCentralityProcedures.kCore(graph, parallel, null);
+            assertEquals(7, result.getRowCount());
+            for (final ResultRow row : result)
+                assertEquals(expected.get(graph.getNode((long) row.getValue("id")).getLabel()), row.getValue("core"));
+            assertEquals(3, GraphCentralityProcedures.degeneracy(graph, parallel, null).getRow(0).getValue("degeneracy"));
+        }
+    }
+
     @Test
     void maximalCliqueCentralityTest() throws IOException {
         Graph graph = Graph.createTempGraph();
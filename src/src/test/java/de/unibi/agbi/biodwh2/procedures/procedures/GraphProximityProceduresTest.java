@@ -1,7 +1,9 @@
 package de.unibi.agbi.biodwh2.procedures.procedures;
 
+import de.unibi.agbi.biodwh2.core.model.graph.Edge;
 import de.unibi.agbi.biodwh2.core.model.graph.Graph;
 import de.unibi.agbi.biodwh2.core.model.graph.Node;
+import de.unibi.agbi.biodwh2.procedures.ResultRow;
 import de.unibi.agbi.biodwh2.procedures.ResultSet;
 import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
 import org.junit.jupiter.api.BeforeAll;
@@ -11,7 +13,11 @@ import org.junit.jupiter.api.TestInstance;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 class GraphProximityProceduresTest {
@@ -50,12 +56,171 @@ class GraphProximityProceduresTest {
 
     }
 
-}
-
-
+    @Test
+    void approximateTest() {
+        // with every node as landmark the estimates are exact
+        for (final String[] labels : new String[][]{{"A", "E"}, {"D", "C"}, {"A", "A"}}) {
+            final float closest = (float) GraphProximityProcedures.closest(merged, labels[0], labels[1],
+                                                                           GraphMode.UNDIRECTED, false).getRow(0)
+                                                                  .getValue("d_c");
+            final ResultSet approximate = GraphProximityProcedures.closestApproximate(merged, labels[0], labels[1],
+                                                                                      GraphMode.UNDIRECTED, false, 5);
+            assertEquals(closest, (double) approximate.getRow(0).getValue("d_c"), 1e-6);
+            assertEquals(closest, (double) approximate.getRow(0).getValue("d_c_upper"), 1e-6);
+            final float shortest = (float) GraphProximityProcedures.shortest(merged, labels[0], labels[1],
+                                                                             GraphMode.UNDIRECTED).getRow(0).getValue(
+                    "d_s");
+            assertEquals(shortest, (double) GraphProximityProcedures.shortestApproximate(merged, labels[0], labels[1],
+                                                                                         GraphMode.UNDIRECTED, 5)
+                                                                    .getRow(0).getValue("d_s"), 1e-6);
+        }
+        // a single landmark still brackets the exact value
+        final ResultSet bounds = GraphProximityProcedures.shortestApproximate(merged, "D", "E", GraphMode.UNDIRECTED, 1);
+        assertTrue((double) bounds.getRow(0).getValue("d_s_lower") <= 2);
+        assertTrue((double) bounds.getRow(0).getValue("d_s_upper") >= 2);
+        assertEquals(0L, bounds.getRow(0).getValue("resolved_pairs"));
+    }
 
+    @Test
+    void approximateUncoveredTest() throws IOException {
+        final Graph graph = Graph.createTempGraph();
+        final Node hub = graph.addNode("N");
+        graph.addEdge(hub, graph.addNode("N"), "E");
+        graph.addEdge(hub, graph.addNode("N"), "E");
+        final Node target = graph.addNode("Target");
+        final Node protein = graph.addNode("Disease");
+        graph.addEdge(target, protein, "E");
+
+        // the only landmark is the hub, the pair in the second component is resolved exactly
+        final ResultRow closest = GraphProximityProcedures.closestApproximate(graph, "Target", "Disease",
+                                                                              GraphMode.UNDIRECTED, false, 1).getRow(0);
+        assertEquals(1.0, (double) closest.getValue("d_c"), 1e-9);
+        assertEquals(1.0, (double) closest.getValue("d_c_lower"), 1e-9);
+        assertEquals(1.0, (double) closest.getValue("d_c_upper"), 1e-9);
+        assertEquals(1L, closest.getValue("resolved_pairs"));
+        final ResultRow shortest = GraphProximityProcedures.shortestApproximate(graph, "Target", "Disease",
+                                                                                GraphMode.UNDIRECTED, 1).getRow(0);
+        assertEquals(1.0, (double) shortest.getValue("d_s"), 1e-9);
+        assertEquals(1L, shortest.getValue("resolved_pairs"));
+    }
 
+    @Test
+    void restrictedTest() throws IOException {
+        final Graph labeled = Graph.createTempGraph();
+        final Node t1 = labeled.addNode("Target");
+        final Node t2 = labeled.addNode("Target");
+        final Node x = labeled.addNode("Protein");
+        final Node p1 = labeled.addNode("Disease");
+        final Node p2 = labeled.addNode("Disease");
+        labeled.addEdge(t1, x, "PPI");
+        labeled.addEdge(x, p1, "PPI");
+        labeled.addEdge(t2, p1, "PPI");
+        labeled.addEdge(t2, p2, "PPI");
+        labeled.addEdge(t1, p1, "MENTIONED_IN");
+        labeled.addEdge(t1, p2, "MENTIONED_IN");
+
+        // the publication links are shortcuts from t1 to both disease proteins
+        assertEquals(1.0f, GraphProximityProcedures.closest(labeled, "Target", "Disease", GraphMode.UNDIRECTED,
+                                                            false).getRow(0).getValue("d_c"));
+        assertEquals(1.0f, GraphProximityProcedures.shortest(labeled, "Target", "Disease", GraphMode.UNDIRECTED)
+                                                   .getRow(0).getValue("d_s"));
+        // along interactions only, t1 reaches p1 in 2 and p2 in 4 hops
+        assertEquals(1.5f, GraphProximityProcedures.closest(labeled, "Target", "Disease", GraphMode.UNDIRECTED,
+                                                            false, "PPI").getRow(0).getValue("d_c"));
+        assertEquals(2.0f, GraphProximityProcedures.shortest(labeled, "Target", "Disease", GraphMode.UNDIRECTED,
+                                                             "PPI").getRow(0).getValue("d_s"));
+        // labels without edges are ignored, all labels equal the unrestricted measure
+        assertEquals(2.0f, GraphProximityProcedures.shortest(labeled, "Target", "Disease", GraphMode.UNDIRECTED,
+                                                             "PPI", "UNKNOWN").getRow(0).getValue("d_s"));
+        assertEquals(1.0f, GraphProximityProcedures.closest(labeled, "Target", "Disease", GraphMode.UNDIRECTED,
+                                                            false, "PPI", "MENTIONED_IN").getRow(0).getValue("d_c"));
+    }
 
+    @Test
+    void heatTest() throws IOException {
+        // for a single edge exp(-tL) moves (1 - exp(-2t)) / 2 of the heat to the other node
+        final Graph pair = Graph.createTempGraph();
+        pair.addEdge(pair.addNode("T"), pair.addNode("P"), "t|p");
+        for (final double time : new double[]{0, 0.1, 1, 3}) {
+            final ResultSet result = GraphProximityProcedures.heat(pair, "T", "P", time, 1e-12);
+            assertEquals((1 - Math.exp(-2 * time)) / 2, (double) result.getRow(0).getValue("d_h"), 1e-10);
+        }
+        // heat is preserved and approaches the uniform distribution
+        assertEquals(0.2, (double) GraphProximityProcedures.heat(merged, "A", "E", 50, 1e-12).getRow(0)
+                                                            .getValue("d_h"), 1e-9);
+        final double near = (double) GraphProximityProcedures.heat(merged, "A", "C", 0.5, 1e-12).getRow(0).getValue(
+                "d_h");
+        final double far = (double) GraphProximityProcedures.heat(merged, "A", "E", 0.5, 1e-12).getRow(0).getValue(
+                "d_h");
+        assertTrue(near > far);
+    }
 
+    @Test
+    void randomWalkWithRestartTest() {
+        // exact scores by power iteration of x = restart * e_A + (1 - restart) * P^T x
+        final Map<Long, Double> exact = new HashMap<>();
+        final Map<Long, Integer> degrees = new HashMap<>();
+        for (final Node node : merged.getNodes()) {
+            exact.put(node.getId(), 0.0);
+            degrees.put(node.getId(), 0);
+        }
+        for (final Edge edge : merged.getEdges()) {
+            degrees.merge(edge.getFromId(), 1, Integer::sum);
+            degrees.merge(edge.getToId(), 1, Integer::sum);
+        }
+        final long seedId = merged.findNode("A").getId();
+        for (int iteration = 0; iteration < 200; iteration++) {
+            final Map<Long, Double> next = new HashMap<>();
+            for (final Long id : exact.keySet())
+                next.put(id, id == seedId ? 0.15 : 0.0);
+            for (final Edge edge : merged.getEdges()) {
+                next.merge(edge.getToId(), 0.85 * exact.get(edge.getFromId()) / degrees.get(edge.getFromId()),
+                           Double::sum);
+                next.merge(edge.getFromId(), 0.85 * exact.get(edge.getToId()) / degrees.get(edge.getToId()),
+                           Double::sum);
+            }
+            exact.putAll(next);
+        }
 
+        final ResultSet result = GraphProximityProcedures.randomWalkWithRestart(merged, "A", null,
+                                                                                GraphMode.UNDIRECTED, 0.15, 1e-9, 0);
+        assertEquals(5, result.getRowCount());
+        double previous = Double.MAX_VALUE;
+        for (final ResultRow row : result) {
+            final long id = (long) row.getValue("id");
+            final double score = (double) row.getValue("score");
+            assertTrue(score <= previous);
+            assertTrue(score <= exact.get(id) + 1e-12);
+            assertEquals(exact.get(id), score, 1e-9 * degrees.get(id));
+            previous = score;
+        }
 
+        // top-k rows restricted to a label
+        final ResultSet filtered = GraphProximityProcedures.randomWalkWithRestart(merged, merged.findNode("A"), "E",
+                                                                                  GraphMode.UNDIRECTED, 0.15, 1e-4, 3);
+        assertEquals(1, filtered.getRowCount());
+        assertEquals(merged.findNode("E").getId(), filtered.getRow(0).getValue("id"));
+        assertEquals(1, GraphProximityProcedures.randomWalkWithRestart(merged, "A", null, GraphMode.UNDIRECTED, 0.15,
+                                                                       1e-4, 1).getRowCount());
+
+        // seed sets without a shared label
+        final ResultSet single = GraphProximityProcedures.randomWalkWithRestart(
+                merged, new Node[]{merged.findNode("A")}, null, GraphMode.UNDIRECTED, 0.15, 1e-9, 0);
+        assertEquals(result.getRowCount(), single.getRowCount());
+        for (int i = 0; i < result.getRowCount(); i++) {
+            assertEquals(result.getRow(i).getValue("id"), single.getRow(i).getValue("id"));
+            assertEquals(result.getRow(i).getValue("score"), single.getRow(i).getValue("score"));
+        }
+        final Node[] seeds = {merged.findNode("A"), merged.findNode("E")};
+        final ResultSet multiple = GraphProximityProcedures.randomWalkWithRestart(merged, seeds, null,
+                                                                                  GraphMode.UNDIRECTED, 0.15, 1e-9, 0);
+        double total = 0;
+        final Set<Long> ids = new HashSet<>();
+        for (final ResultRow row : multiple) {
+            total += (double) row.getValue("score");
+            ids.add((long) row.getValue("id"));
+        }
+        assertTrue(ids.contains(seeds[0].getId()) && ids.contains(seeds[1].getId()));
+        assertEquals(1, total, 1e-6);
+    }
+}
@@ -5,6 +5,7 @@ import de.unibi.agbi.biodwh2.core.model.graph.Node;
 import de.unibi.agbi.biodwh2.procedures.ResultRow;
 import de.unibi.agbi.biodwh2.procedures.ResultSet;
 import de.unibi.agbi.biodwh2.procedures.model.BFSResult;
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
@@ -56,4 +57,91 @@ class GraphTraversalProceduresTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    void neighbourhoodFunctionTest() throws IOException {
+        // path 1 - 2 - 3 - 4 - 5: 5 pairs (x, x), 8, 6, 4 and 2 ordered pairs at distance 1, 2, 3 and 4
+        Graph graph = Graph.createTempGraph();
+        Node node1 = graph.addNode("1");
+        Node node2 = graph.addNode("2");
+        Node node3 = graph.addNode("3");
+        Node node4 = graph.addNode("4");
+        Node node5 = graph.addNode("5");
+        graph.addEdge(node1, node2, "e1-2");
+        graph.addEdge(node2, node3, "e2-3");
+        graph.addEdge(node3, node4, "e3-4");
+        graph.addEdge(node4, node5, "e4-5");
+
+        ResultSet results = GraphTraversalProcedures.neighbourhoodFunction(graph, GraphMode.UNDIRECTED, 10, 0, null);
+        assertEquals(5, results.getRowCount());
+        final double[] expected = new double[]{5, 13, 19, 23, 25};
+        for (int hops = 0; hops < expected.length; hops++)
+            assertEquals(expected[hops], (double) results.getRow(hops).getValue("pairs"), 0.5);
+
+        ResultSet statistics = GraphTraversalProcedures.distanceStatistics(graph, GraphMode.UNDIRECTED, 10, null);
+        assertEquals(20, (double) statistics.getRow(0).getValue("pairs"), 0.5);
+        assertEquals(2.0, (double) statistics.getRow(0).getValue("average distance"), 0.1);
+        assertEquals(4, statistics.getRow(0).getValue("hops"));
+    }
+
+    @Test
+    void shortestPathTest() throws IOException {
+        Graph graph = Graph.createTempGraph();
+        Node drug = graph.addNode("Drug");
+        Node protein1 = graph.addNode("Protein");
+        Node protein2 = graph.addNode("Protein");
+        Node annotation = graph.addNode("Annotation");
+        graph.addEdge(drug, protein1, "TARGETS");
+        graph.addEdge(protein1, protein2, "PPI");
+        graph.addEdge(drug, annotation, "ANNOTATED_WITH");
+        graph.addEdge(protein2, annotation, "ANNOTATED_WITH");
+
+        ResultSet all = GraphTraversalProcedures.shortestPath(graph, drug, protein2, GraphMode.UNDIRECTED, null);
+        assertEquals(2L, all.getRow(0).getValue("distance"));
+        ResultSet restricted = GraphTraversalProcedures.shortestPath(graph, drug, annotation, GraphMode.UNDIRECTED,
+                                                                     null, "TARGETS", "PPI");
+        assertNull(restricted.getRow(0).getValue("distance"));
+        restricted = GraphTraversalProcedures.shortestPath(graph, drug, protein2, GraphMode.UNDIRECTED, null, "TARGETS",
+                                                          "PPI");
+        assertEquals(2L, restricted.getRow(0).getValue("distance"));
+        assertEquals(3, ((ArrayList<?>) restricted.getRow(0).getValue("path")).size());
+    }
+
+    @Test
+    void subgraphTest() throws IOException {
+        Graph graph = Graph.createTempGraph();
+        Node p1 = graph.addNode("Protein");
+        Node p2 = graph.addNode("Protein");
+        Node p3 = graph.addNode("Protein");
+        Node publication = graph.addNode("Publication");
+        graph.addEdge(p1, p2, "PPI");
+        graph.addEdge(p2, p3, "PPI");
+        graph.addEdge(p1, publication, "MENTIONED_IN");
+        graph.addEdge(p3, publication, "MENTIONED_IN");
+        graph.addEdge(p1, p3, "CO_MENTIONED");
+
+        ResultSet view = GraphTraversalProcedures.subgraph(graph, "ppi", new String[]{"Protein"}, new String[]{"PPI"});
+        assertEquals(3, view.getRow(0).getValue("nodes"));
+        assertEquals(2, view.getRow(0).getValue("edges"));
+        // procedures given the view's name analyze the view, all others keep analyzing the whole graph
+        ResultSet path = GraphTraversalProcedures.shortestPath(graph, p1, p3, GraphMode.UNDIRECTED, "ppi");
+        assertEquals(2L, path.getRow(0).getValue("distance"));
+        assertEquals(3, ((ArrayList<?>) path.getRow(0).getValue("path")).size());
+        path = GraphTraversalProcedures.shortestPath(graph, p1, p3, GraphMode.UNDIRECTED, null);
+        assertEquals(1L, path.getRow(0).getValue("distance"));
+        path = GraphTraversalProcedures.shortestPath(graph, p1, publication, GraphMode.UNDIRECTED, "ppi");
+        assertNull(path.getRow(0).getValue("distance"));
+        ResultSet closeness = GraphCentralityProcedures.closenessAll(graph, GraphMode.UNDIRECTED, "ppi");
+        assertEquals(3, closeness.getRowCount());
+        for (ResultRow row : closeness)
+            if (row.getValue("id").equals(p1.getId()))
+                assertEquals(1.5, (double) row.getValue("harmonic"), 1e-9);
+        ResultSet statistics = GraphTraversalProcedures.distanceStatistics(graph, GraphMode.UNDIRECTED, 10, "ppi");
+        assertEquals(2, statistics.getRow(0).getValue("hops"));
+        assertThrows(IllegalArgumentException.class,
+                     () -> GraphTraversalProcedures.shortestPath(graph, p1, p3, GraphMode.UNDIRECTED, "ppi", "PPI"));
+
+        GraphTraversalProcedures.clearSubgraph(graph);
+        assertThrows(IllegalArgumentException.class,
+                     () -> GraphTraversalProcedures.shortestPath(graph, p1, p3, GraphMode.UNDIRECTED, "ppi"));
+    }
+}
@@ -0,0 +1,185 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.Edge;
+import de.unibi.agbi.biodwh2.core.model.graph.Graph;
+import de.unibi.agbi.biodwh2.core.model.graph.Node;
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdjacencyOverlayTest {
+
+    @Test
+    void mergedNeighborsTest() throws IOException {
+        for (final GraphMode mode : GraphMode.values()) {
+            final RandomGraph randomGraph = RandomGraph.create(5, 20, 40);
+            final Graph graph = randomGraph.graph;
+            final Node[] nodes = randomGraph.nodes;
+            final AdjacencyOverlay overlay = new AdjacencyOverlay(graph, mode, 0);
+            for (int i = 0; i < 10; i++) {
+                final Edge edge = randomGraph.addRandomEdge();
+                overlay.addEdge(edge.getId(), edge.getFromId(), edge.getToId());
+            }
+            assertEquals(10, overlay.getDeltaSize());
+            final CSRGraph expected = CSRGraph.build(graph, mode);
+            for (final Node node : nodes)
+                assertNeighbors(expected, node.getId(), overlay.getNeighbors(node.getId()));
+            final CSRGraph view = overlay.getView();
+            assertEquals(0, overlay.getDeltaSize());
+            assertEquals(expected.getNumberOfEntries(), view.getNumberOfEntries());
+            for (final Node node : nodes)
+                assertNeighbors(expected, node.getId(), overlay.getNeighbors(node.getId()));
+        }
+    }
+
+    @Test
+    void removeAndCompactTest() throws IOException, InterruptedException {
+        final Graph graph = Graph.createTempGraph();
+        final Node a = graph.addNode("N");
+        final Node b = graph.addNode("N");
+        final Node c = graph.addNode("N");
+        final Edge ab = graph.addEdge(a, b, "E");
+        graph.addEdge(b, c, "E");
+        final AdjacencyOverlay overlay = new AdjacencyOverlay(graph, GraphMode.UNDIRECTED, 3);
+        overlay.removeEdge(ab.getId());
+        overlay.addEdge(1000, a.getId(), 2000);
+        assertArrayEquals(new long[]{2000}, overlay.getNeighbors(a.getId()));
+        assertArrayEquals(new long[]{a.getId()}, overlay.getNeighbors(2000));
+        overlay.removeEdge(1000);
+        overlay.awaitCompaction();
+        assertEquals(0, overlay.getDeltaSize());
+        final CSRGraph view = overlay.getView();
+        assertEquals(3, view.getNumberOfNodes());
+        assertEquals(2, view.getNumberOfEntries());
+        assertArrayEquals(new long[0], overlay.getNeighbors(a.getId()));
+        assertArrayEquals(new long[]{c.getId()}, overlay.getNeighbors(b.getId()));
+    }
+
+    @Test
+    void removeAndAddAgainTest() throws IOException {
+        final Graph graph = Graph.createTempGraph();
+        final Node a = graph.addNode("N");
+        final Node b = graph.addNode("N");
+        final Node c = graph.addNode("N");
+        final Edge ab = graph.addEdge(a, b, "E");
+        final AdjacencyOverlay overlay = new AdjacencyOverlay(graph, GraphMode.DIRECTED, 0);
+        // the end points of an edge change: it is removed and added again with the same id
+        overlay.removeEdge(ab.getId());
+        overlay.addEdge(ab.getId(), a.getId(), c.getId());
+        assertArrayEquals(new long[]{c.getId()}, overlay.getNeighbors(a.getId()));
+        final CSRGraph view = overlay.getView();
+        assertEquals(0, overlay.getDeltaSize());
+        assertEquals(1, view.getNumberOfEntries());
+        assertEquals((long) ab.getId(), view.getEdgeId(view.getStart(view.getIndex(a.getId()))));
+        assertArrayEquals(new long[]{c.getId()}, overlay.getNeighbors(a.getId()));
+    }
+
+    @Test
+    void refreshTest() throws IOException {
+        for (final GraphMode mode : GraphMode.values()) {
+            for (final boolean reverse : new boolean[]{false, true}) {
+                if (reverse && mode == GraphMode.UNDIRECTED)
+                    continue;
+                final RandomGraph randomGraph = RandomGraph.create(7, 60, 200);
+                final Graph graph = randomGraph.graph;
+                final CSRGraph stale = CSRGraph.buildFromGraph(graph, mode, reverse);
+                for (int i = 0; i < 5; i++)
+                    randomGraph.addRandomEdge();
+                final Edge rewired = graph.getEdges().iterator().next();
+                rewired.setProperty(Edge.TO_ID_FIELD, randomGraph.nodes[59].getId());
+                graph.update(rewired);
+                final CSRGraph refreshed = AdjacencyOverlay.refresh(stale, graph, reverse);
+                assertNotNull(refreshed);
+                final CSRGraph expected = CSRGraph.buildFromGraph(graph, mode, reverse);
+                assertEquals(expected.getNumberOfEntries(), refreshed.getNumberOfEntries());
+                for (final Node node : randomGraph.nodes) {
+                    final int index = refreshed.getIndex(node.getId());
+                    final long[] neighbors = new long[refreshed.getDegree(index)];
+                    for (int position = refreshed.getStart(index); position < refreshed.getEnd(index); position++)
+                        neighbors[position - refreshed.getStart(index)] = refreshed.getNodeId(
+                                refreshed.getTarget(position));
+                    assertNeighbors(expected, node.getId(), neighbors);
+                }
+                // a changed node set or a large delta is rebuilt instead
+                for (int i = 0; i < 200; i++)
+                    randomGraph.addRandomEdge();
+                assertNull(AdjacencyOverlay.refresh(stale, graph, reverse));
+                graph.addNode("N");
+                assertNull(AdjacencyOverlay.refresh(expected, graph, reverse));
+            }
+        }
+    }
+
+    @Test
+    void cachedSnapshotRefreshTest() throws IOException {
+        final RandomGraph randomGraph = RandomGraph.create(7, 60, 200);
+        final Graph graph = randomGraph.graph;
+        try {
+            final CSRGraph cached = CSRGraph.buildCached(graph, GraphMode.UNDIRECTED);
+            assertSame(cached, CSRGraph.buildCached(graph, GraphMode.UNDIRECTED));
+            randomGraph.addRandomEdge();
+            final CSRGraph refreshed = CSRGraph.buildCached(graph, GraphMode.UNDIRECTED);
+            assertNotSame(cached, refreshed);
+            assertArrayEquals(CSRGraph.buildFromGraph(graph, GraphMode.UNDIRECTED, false).getTargets(),
+                              refreshed.getTargets());
+            assertSame(refreshed, CSRGraph.buildCached(graph, GraphMode.UNDIRECTED));
+        } finally {
+            GraphIndexRegistry.unregister(graph);
+        }
+    }
+
+    @Test
+    void concurrentCompactionTest() throws Exception {
+        final RandomGraph randomGraph = RandomGraph.create(5, 50, 50);
+        final Graph graph = randomGraph.graph;
+        final AdjacencyOverlay overlay = new AdjacencyOverlay(graph, GraphMode.UNDIRECTED, 8);
+        final Edge[] edges = new Edge[400];
+        for (int i = 0; i < edges.length; i++)
+            edges[i] = randomGraph.addRandomEdge();
+        // writers trigger background compactions while readers compact on their own through getView
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 2; thread++) {
+                final int first = thread;
+                futures.add(executor.submit(() -> {
+                    for (int i = first; i < edges.length; i += 2)
+                        overlay.addEdge(edges[i].getId(), edges[i].getFromId(), edges[i].getToId());
+                }));
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 50; i++)
+                        assertNotNull(overlay.getView());
+                }));
+            }
+            for (final Future<?> future : futures)
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+        overlay.awaitCompaction();
+        final CSRGraph expected = CSRGraph.build(graph, GraphMode.UNDIRECTED);
+        final CSRGraph view = overlay.getView();
+        assertEquals(0, overlay.getDeltaSize());
+        assertEquals(expected.getNumberOfEntries(), view.getNumberOfEntries());
+        for (final Node node : randomGraph.nodes)
+            assertNeighbors(expected, node.getId(), overlay.getNeighbors(node.getId()));
+    }
+
+    private static void assertNeighbors(final CSRGraph expected, final long nodeId, final long[] neighbors) {
+        final int index = expected.getIndex(nodeId);
+        final long[] expectedNeighbors = new long[expected.getDegree(index)];
+        for (int position = expected.getStart(index); position < expected.getEnd(index); position++)
+            expectedNeighbors[position - expected.getStart(index)] = expected.getNodeId(expected.getTarget(position));
+        Arrays.sort(neighbors);
+        assertArrayEquals(expectedNeighbors, neighbors);
+    }
+}
@@ -0,0 +1,124 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.Edge;
+import de.unibi.agbi.biodwh2.core.model.graph.Graph;
+import de.unibi.agbi.biodwh2.core.model.graph.Node;
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CSRGraphSnapshotTest {
+
+    @Test
+    void loadOrBuildTest() throws IOException {
+        final RandomGraph randomGraph = RandomGraph.create(5, 40, 60);
+        final Graph graph = randomGraph.graph;
+        final Node[] nodes = randomGraph.nodes;
+
+        final Path path = Files.createTempFile("csr", ".bin");
+        final Path graphFile = Files.createTempFile("graph", ".db");
+        Files.delete(path);
+        try {
+            for (final boolean incoming : new boolean[]{false, true}) {
+                for (final GraphMode mode : GraphMode.values()) {
+                    final CSRGraph expected = incoming ? CSRGraph.buildIncoming(graph) : CSRGraph.build(graph, mode);
+                    assertSnapshotEquals(expected, CSRGraphSnapshot.loadOrBuild(graph, mode, incoming, path, graphFile));
+                    assertSnapshotEquals(expected, CSRGraphSnapshot.read(path, graph, mode, incoming, graphFile));
+                    Files.delete(path);
+                }
+            }
+
+            CSRGraphSnapshot.loadOrBuild(graph, GraphMode.UNDIRECTED, false, path, graphFile);
+            assertNull(CSRGraphSnapshot.read(path, graph, GraphMode.DIRECTED, false, graphFile));
+            // changes of the graph file make the snapshot stale
+            Files.write(graphFile, new byte[]{1, 2, 3});
+            assertNull(CSRGraphSnapshot.read(path, graph, GraphMode.UNDIRECTED, false, graphFile));
+            graph.addEdge(nodes[0], nodes[1], "E");
+            final CSRGraph rebuilt = CSRGraphSnapshot.loadOrBuild(graph, GraphMode.UNDIRECTED, false, path, graphFile);
+            assertSnapshotEquals(CSRGraph.build(graph, GraphMode.UNDIRECTED), rebuilt);
+            assertNotNull(CSRGraphSnapshot.read(path, graph, GraphMode.UNDIRECTED, false, graphFile));
+
+            // rewiring an edge keeps the node and edge counts, the snapshot is stale nonetheless
+            final Edge edge = graph.addEdge(nodes[2], nodes[3], "E");
+            CSRGraphSnapshot.loadOrBuild(graph, GraphMode.UNDIRECTED, false, path, graphFile);
+            edge.setProperty(Edge.TO_ID_FIELD, nodes[4].getId());
+            graph.update(edge);
+            assertNull(CSRGraphSnapshot.read(path, graph, GraphMode.UNDIRECTED, false, graphFile));
+
+            // registered snapshots are returned by CSRGraph.build and buildCached until the graph or its file changes
+            final CSRGraph registered = CSRGraphSnapshot.loadOrBuild(graph, GraphMode.UNDIRECTED, false, path,
+                                                                     graphFile);
+            CSRGraphSnapshot.register(graph, registered, false, graphFile);
+            try {
+                assertSame(registered, CSRGraph.build(graph, GraphMode.UNDIRECTED));
+                assertSame(registered, CSRGraph.buildCached(graph, GraphMode.UNDIRECTED));
+                assertNotSame(registered, CSRGraph.buildIncoming(graph));
+                Files.write(graphFile, new byte[]{1, 2, 3, 4});
+                assertNotSame(registered, CSRGraph.buildCached(graph, GraphMode.UNDIRECTED));
+                assertNotSame(registered, CSRGraph.build(graph, GraphMode.UNDIRECTED));
+
+                CSRGraphSnapshot.register(graph, registered, false, graphFile);
+                assertSame(registered, CSRGraph.build(graph, GraphMode.UNDIRECTED));
+                graph.addEdge(nodes[2], nodes[3], "E");
+                assertNotSame(registered, CSRGraph.build(graph, GraphMode.UNDIRECTED));
+            } finally {
+                CSRGraphSnapshot.unregister(graph);
+            }
+        } finally {
+            Files.deleteIfExists(path);
+            Files.delete(graphFile);
+        }
+    }
+
+    @Test
+    void mappedTest() throws IOException {
+        final RandomGraph randomGraph = RandomGraph.create(5, 40, 60);
+        final Graph graph = randomGraph.graph;
+        final Path path = Files.createTempFile("csr", ".bin");
+        try {
+            final CSRGraph expected = CSRGraph.build(graph, GraphMode.UNDIRECTED);
+            CSRGraphSnapshot.write(expected, false, path, graph, null);
+            final CSRGraph mapped = CSRGraphSnapshot.read(path, graph, GraphMode.UNDIRECTED, false, null);
+            // the loaded snapshot reads from the mapped file instead of heap arrays
+            assertTrue(mapped instanceof MappedCSRGraph);
+            assertSnapshotEquals(expected, mapped);
+            for (final Node node : randomGraph.nodes)
+                assertEquals(expected.getIndex(node.getId()), mapped.getIndex(node.getId()));
+            assertEquals(-1, mapped.getIndex(-1));
+            final TriangleCounter expectedTriangles = new TriangleCounter(expected);
+            final TriangleCounter mappedTriangles = new TriangleCounter(mapped);
+            assertEquals(expectedTriangles.getTotalTriangles(), mappedTriangles.getTotalTriangles());
+
+            // rewriting the file leaves the loaded snapshot intact
+            graph.addEdge(randomGraph.nodes[0], randomGraph.nodes[1], "E");
+            CSRGraphSnapshot.write(CSRGraph.build(graph, GraphMode.UNDIRECTED), false, path, graph, null);
+            assertSnapshotEquals(expected, mapped);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    private static void assertSnapshotEquals(final CSRGraph expected, final CSRGraph actual) {
+        assertNotNull(actual);
+        assertEquals(expected.getMode(), actual.getMode());
+        assertArrayEquals(expected.getNodeIds(), actual.getNodeIds());
+        assertArrayEquals(expected.getOffsets(), actual.getOffsets());
+        assertArrayEquals(expected.getTargets(), actual.getTargets());
+        assertArrayEquals(expected.getEdgeIds(), actual.getEdgeIds());
+        assertEquals(expected.getNumberOfEntries(), actual.getNumberOfEntries());
+        for (int index = 0; index < expected.getNumberOfNodes(); index++) {
+            assertEquals(expected.getNodeId(index), actual.getNodeId(index));
+            assertEquals(expected.getStart(index), actual.getStart(index));
+            assertEquals(expected.getEnd(index), actual.getEnd(index));
+        }
+        for (int position = 0; position < expected.getNumberOfEntries(); position++) {
+            assertEquals(expected.getTarget(position), actual.getTarget(position));
+            assertEquals(expected.getEdgeId(position), actual.getEdgeId(position));
+        }
+    }
+}
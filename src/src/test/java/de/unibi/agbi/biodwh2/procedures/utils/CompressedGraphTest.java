@@ -0,0 +1,95 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.Graph;
+import de.unibi.agbi.biodwh2.core.model.graph.Node;
+import de.unibi.agbi.biodwh2.procedures.model.BFSResult;
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressedGraphTest {
+
+    @Test
+    void decodeTest() throws IOException {
+        final Graph graph = RandomGraph.create(13, 60, 150).graph;
+        for (final GraphMode mode : GraphMode.values()) {
+            final CSRGraph adjacency = CSRGraph.build(graph, mode);
+            final CompressedGraph compressed = CompressedGraph.build(graph, mode);
+            assertEquals(adjacency.getNumberOfEntries(), compressed.getNumberOfEntries());
+            assertTrue(compressed.getNumberOfBytes() < 12L * adjacency.getNumberOfEntries());
+            final CompressedGraph.NeighborCursor cursor = compressed.cursor();
+            for (int u = 0; u < adjacency.getNumberOfNodes(); u++) {
+                cursor.reset(u);
+                for (int position = adjacency.getStart(u); position < adjacency.getEnd(u); position++) {
+                    assertTrue(cursor.next());
+                    assertEquals(adjacency.getTarget(position), cursor.getTarget());
+                    assertEquals(adjacency.getEdgeId(position), cursor.getEdgeId());
+                }
+                assertFalse(cursor.next());
+            }
+        }
+    }
+
+    @Test
+    void compressionRatioTest() throws IOException {
+        // grid network with locally numbered nodes and edges, as in graphs imported source by source
+        final Graph graph = Graph.createTempGraph();
+        final int width = 40;
+        final Node[] nodes = new Node[width * width];
+        for (int i = 0; i < nodes.length; i++)
+            nodes[i] = graph.addNode("N");
+        for (int i = 0; i < nodes.length; i++) {
+            if (i % width < width - 1)
+                graph.addEdge(nodes[i], nodes[i + 1], "E");
+            if (i + width < nodes.length)
+                graph.addEdge(nodes[i], nodes[i + width], "E");
+        }
+        for (final GraphMode mode : GraphMode.values()) {
+            final CSRGraph adjacency = CSRGraph.build(graph, mode);
+            final CompressedGraph compressed = CompressedGraph.build(graph, mode);
+            final CompressedGraph fromSnapshot = CompressedGraph.build(adjacency);
+            assertEquals(adjacency.getNumberOfEntries(), compressed.getNumberOfEntries());
+            assertEquals(fromSnapshot.getNumberOfBytes(), compressed.getNumberOfBytes());
+            // a CSR entry takes four bytes for the target and eight bytes for the edge id
+            final double ratio = 12.0 * adjacency.getNumberOfEntries() / compressed.getNumberOfBytes();
+            assertTrue(ratio >= 3, "Compression ratio " + ratio + " is below 3");
+        }
+    }
+
+    @Test
+    void registeredTraversalTest() throws IOException {
+        final RandomGraph randomGraph = RandomGraph.create(13, 60, 150);
+        final Graph graph = randomGraph.graph;
+        final Node[] nodes = randomGraph.nodes;
+        for (final GraphMode mode : GraphMode.values()) {
+            final ShortestPathFinder finder = new ShortestPathFinder(graph, mode);
+            final Map<Long, Long> expected = finder.dijkstra(nodes[0].getId(), false).getDistances();
+            final long expectedDistance = finder.dijkstra(nodes[0].getId(), nodes[1].getId()).getDistances().get(
+                    nodes[1].getId());
+            final BFSResult expectedSearch = GraphProcedureUtils.breadthFirstSearch(graph, nodes[0].getId(), mode);
+
+            CompressedGraph.register(graph, CompressedGraph.build(graph, mode));
+            try {
+                final ShortestPathFinder compressed = new ShortestPathFinder(graph, mode);
+                assertEquals(expected, compressed.dijkstra(nodes[0].getId(), false).getDistances());
+                final long distance = compressed.dijkstra(nodes[0].getId(), nodes[1].getId()).getDistances().get(
+                        nodes[1].getId());
+                assertEquals(expectedDistance, distance);
+                if (distance != Long.MAX_VALUE)
+                    assertEquals(distance + 1,
+                                 compressed.dijkstra(nodes[0].getId(), nodes[1].getId()).getPath().size());
+                // the random graph has parallel edges, which are resolved to the same edge as without snapshot
+                final BFSResult search = GraphProcedureUtils.breadthFirstSearch(graph, nodes[0].getId(), mode);
+                assertEquals(new HashSet<>(expectedSearch.getNodeIds()), new HashSet<>(search.getNodeIds()));
+                assertEquals(new HashSet<>(expectedSearch.getEdgePathIds()), new HashSet<>(search.getEdgePathIds()));
+            } finally {
+                CompressedGraph.unregister(graph);
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.Edge;
+import de.unibi.agbi.biodwh2.core.model.graph.Graph;
+import de.unibi.agbi.biodwh2.core.model.graph.Node;
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistanceMatrixTest {
+
+    @Test
+    void computeAndOpenTest() throws IOException {
+        final RandomGraph randomGraph = RandomGraph.create(3, 50, 70, index -> index < 10 ? "S" : "N");
+        final Graph graph = randomGraph.graph;
+        final Node[] nodes = randomGraph.nodes;
+        final long[] sourceIds = new long[10];
+        for (int i = 0; i < sourceIds.length; i++)
+            sourceIds[i] = nodes[i].getId();
+
+        final Path path = Files.createTempFile("distances", ".bin");
+        try {
+            for (final GraphMode mode : GraphMode.values()) {
+                try (final DistanceMatrix computed = DistanceMatrix.compute(graph, mode, sourceIds, path);
+                     final DistanceMatrix opened = DistanceMatrix.open(graph, path)) {
+                    assertMatrix(graph, mode, nodes, sourceIds, computed, opened);
+                }
+            }
+
+            // the matrix is rejected once the graph changes, even if the node and edge counts are kept
+            final Edge edge = graph.getEdges().iterator().next();
+            edge.setProperty(Edge.TO_ID_FIELD, nodes[49].getId());
+            graph.update(edge);
+            assertThrows(IOException.class, () -> DistanceMatrix.open(graph, path));
+            graph.addEdge(nodes[0], nodes[1], "E");
+            assertThrows(IOException.class, () -> DistanceMatrix.open(graph, path));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    private static void assertMatrix(final Graph graph, final GraphMode mode, final Node[] nodes,
+                                     final long[] sourceIds, final DistanceMatrix computed,
+                                     final DistanceMatrix opened) {
+        assertEquals(mode, opened.getMode());
+        assertArrayEquals(sourceIds, opened.getSourceIds());
+        final ShortestPathFinder finder = new ShortestPathFinder(graph, mode);
+        for (final long sourceId : sourceIds) {
+            final Map<Long, Long> expected = finder.dijkstra(sourceId, false).getDistances();
+            for (final Node target : nodes) {
+                assertEquals((long) expected.get(target.getId()), computed.getDistance(sourceId, target.getId()));
+                assertEquals((long) expected.get(target.getId()), opened.getDistance(sourceId, target.getId()));
+            }
+        }
+        assertFalse(opened.hasSource(nodes[20].getId()));
+        assertEquals(-1, opened.getDistance(nodes[20].getId(), nodes[0].getId()));
+
+        // registered matrices answer labeled single source queries, the expected distances are computed before
+        // registration so that they come from Dijkstra's algorithm
+        final Map<Long, Long> expected = finder.dijkstra(sourceIds[0], true, "S").getDistances();
+        DistanceMatrix.register(graph, opened);
+        try {
+            assertSame(opened, DistanceMatrix.getRegistered(graph, mode));
+            assertEquals(expected,
+                         new ShortestPathFinder(graph, mode).dijkstra(sourceIds[0], true, "S").getDistances());
+        } finally {
+            DistanceMatrix.unregister(graph);
+        }
+    }
+
+    @Test
+    void saturationTest() throws IOException {
+        final Graph graph = Graph.createTempGraph();
+        final Node[] nodes = new Node[300];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = graph.addNode("N");
+            if (i > 0)
+                graph.addEdge(nodes[i - 1], nodes[i], "E");
+        }
+        final long[] sourceIds = {nodes[0].getId(), nodes[200].getId()};
+
+        final Path path = Files.createTempFile("distances", ".bin");
+        try {
+            DistanceMatrix.compute(graph, GraphMode.UNDIRECTED, sourceIds, path).close();
+            try (final DistanceMatrix matrix = DistanceMatrix.open(graph, path)) {
+                assertTrue(matrix.isSaturated(nodes[0].getId()));
+                assertFalse(matrix.isSaturated(nodes[200].getId()));
+                assertEquals(253, matrix.getDistance(nodes[0].getId(), nodes[253].getId()));
+                assertEquals(DistanceMatrix.SATURATED, matrix.getDistance(nodes[0].getId(), nodes[299].getId()));
+                assertEquals(200, matrix.getDistance(nodes[200].getId(), nodes[0].getId()));
+
+                // saturated rows are not used for queries
+                DistanceMatrix.register(graph, matrix);
+                try {
+                    final Map<Long, Long> distances = new ShortestPathFinder(graph, GraphMode.UNDIRECTED).dijkstra(
+                            nodes[0].getId(), false).getDistances();
+                    assertEquals(299, (long) distances.get(nodes[299].getId()));
+                } finally {
+                    DistanceMatrix.unregister(graph);
+                }
+            }
+            // closed matrices are unmapped and reject queries
+            final DistanceMatrix closed = DistanceMatrix.open(graph, path);
+            closed.close();
+            assertThrows(IllegalStateException.class, () -> closed.getDistance(nodes[0].getId(), nodes[1].getId()));
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.Edge;
+import de.unibi.agbi.biodwh2.core.model.graph.Graph;
+import de.unibi.agbi.biodwh2.core.model.graph.Node;
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DynamicCentralityTest {
+
+    @Test
+    void pathBetweennessTest() throws IOException {
+        final Graph graph = Graph.createTempGraph();
+        final Node a = graph.addNode("N");
+        final Node b = graph.addNode("N");
+        final Node c = graph.addNode("N");
+        graph.addEdge(a, b, "E");
+        graph.addEdge(b, c, "E");
+        final DynamicCentrality centrality = new DynamicCentrality(CSRGraph.build(graph, GraphMode.UNDIRECTED));
+        final int middle = centrality.getAdjacency().getIndex(b.getId());
+        assertEquals(1, centrality.getBetweenness(middle), 1e-9);
+        assertEquals(1, centrality.getCloseness(middle), 1e-9);
+        // closing the triangle removes b from the only shortest path between a and c
+        final Edge edge = graph.addEdge(a, c, "E");
+        assertEquals(2, centrality.insertEdges(new long[]{edge.getId()}, new long[]{a.getId()},
+                                               new long[]{c.getId()}));
+        assertEquals(0, centrality.getBetweenness(middle), 1e-9);
+        assertEquals(1, centrality.getDistance(centrality.getAdjacency().getIndex(a.getId()),
+                                               centrality.getAdjacency().getIndex(c.getId())));
+    }
+
+    @Test
+    void insertEdgesTest() throws IOException {
+        for (final GraphMode mode : GraphMode.values()) {
+            final RandomGraph randomGraph = RandomGraph.create(17, 40, 60);
+            final Graph graph = randomGraph.graph;
+            final Node[] nodes = randomGraph.nodes;
+            final DynamicCentrality centrality = new DynamicCentrality(CSRGraph.build(graph, mode));
+            for (int batch = 0; batch < 3; batch++) {
+                final long[] ids = new long[4];
+                final long[] fromIds = new long[ids.length];
+                final long[] toIds = new long[ids.length];
+                for (int i = 0; i < ids.length; i++) {
+                    final Edge edge = randomGraph.addRandomEdge();
+                    ids[i] = edge.getId();
+                    fromIds[i] = edge.getFromId();
+                    toIds[i] = edge.getToId();
+                }
+                assertTrue(centrality.insertEdges(ids, fromIds, toIds) <= nodes.length);
+                final DynamicCentrality expected = new DynamicCentrality(CSRGraph.build(graph, mode));
+                for (int i = 0; i < nodes.length; i++) {
+                    assertEquals(expected.getCloseness(i), centrality.getCloseness(i), 1e-9);
+                    assertEquals(expected.getBetweenness(i), centrality.getBetweenness(i), 1e-6);
+                }
+            }
+            assertTrue(centrality.getRecomputedSources() > 0);
+        }
+    }
+
+    @Test
+    void saturatedDistancesTest() throws IOException {
+        final Graph graph = Graph.createTempGraph();
+        final Node[] nodes = new Node[300];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = graph.addNode("N");
+            if (i > 0)
+                graph.addEdge(nodes[i - 1], nodes[i], "E");
+        }
+        final DynamicCentrality centrality = new DynamicCentrality(CSRGraph.build(graph, GraphMode.UNDIRECTED));
+        final CSRGraph adjacency = centrality.getAdjacency();
+        final int first = adjacency.getIndex(nodes[0].getId());
+        final int last = adjacency.getIndex(nodes[299].getId());
+        assertEquals(DynamicCentrality.SATURATED, centrality.getDistance(first, last));
+        // closeness is calculated from the exact distances
+        assertEquals(299.0 / (299 * 300 / 2), centrality.getCloseness(first), 1e-12);
+
+        final Edge edge = graph.addEdge(nodes[0], nodes[299], "E");
+        centrality.insertEdges(new long[]{edge.getId()}, new long[]{nodes[0].getId()}, new long[]{nodes[299].getId()});
+        final DynamicCentrality expected = new DynamicCentrality(CSRGraph.build(graph, GraphMode.UNDIRECTED));
+        for (int i = 0; i < nodes.length; i++) {
+            assertEquals(expected.getCloseness(i), centrality.getCloseness(i), 1e-12);
+            assertEquals(expected.getBetweenness(i), centrality.getBetweenness(i), 1e-6);
+        }
+    }
+
+    @Test
+    void updateTest() throws IOException {
+        final RandomGraph randomGraph = RandomGraph.create(17, 40, 60);
+        final Graph graph = randomGraph.graph;
+        final DynamicCentrality centrality = DynamicCentrality.update(graph, GraphMode.UNDIRECTED);
+        try {
+            assertSame(centrality, DynamicCentrality.update(graph, GraphMode.UNDIRECTED));
+            // added edges are inserted into the registered instance
+            randomGraph.addRandomEdges(3);
+            assertSame(centrality, DynamicCentrality.update(graph, GraphMode.UNDIRECTED));
+            final DynamicCentrality expected = new DynamicCentrality(CSRGraph.build(graph, GraphMode.UNDIRECTED));
+            for (int i = 0; i < randomGraph.nodes.length; i++)
+                assertEquals(expected.getBetweenness(i), centrality.getBetweenness(i), 1e-6);
+            // changing the end points of an edge keeps the node and edge counts, but requires a recalculation
+            final Edge edge = graph.getEdges().iterator().next();
+            edge.setProperty(Edge.TO_ID_FIELD, randomGraph.nodes[39].getId());
+            graph.update(edge);
+            final DynamicCentrality recalculated = DynamicCentrality.update(graph, GraphMode.UNDIRECTED);
+            assertNotSame(centrality, recalculated);
+            final DynamicCentrality rewired = new DynamicCentrality(CSRGraph.build(graph, GraphMode.UNDIRECTED));
+            for (int i = 0; i < randomGraph.nodes.length; i++)
+                assertEquals(rewired.getBetweenness(i), recalculated.getBetweenness(i), 1e-6);
+            // new nodes require a recalculation
+            graph.addNode("N");
+            assertNotSame(recalculated, DynamicCentrality.update(graph, GraphMode.UNDIRECTED));
+        } finally {
+            DynamicCentrality.unregister(graph);
+        }
+    }
+
+    @Test
+    void maxNodesTest() {
+        final int n = DynamicCentrality.MAX_NODES + 1;
+        final long[] nodeIds = new long[n];
+        for (int i = 0; i < n; i++)
+            nodeIds[i] = i;
+        final CSRGraph adjacency = new CSRGraph(GraphMode.UNDIRECTED, nodeIds, new int[n + 1], new int[0], new long[0]);
+        assertThrows(IllegalArgumentException.class, () -> new DynamicCentrality(adjacency));
+    }
+}
@@ -0,0 +1,53 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.Edge;
+import de.unibi.agbi.biodwh2.core.model.graph.Graph;
+import de.unibi.agbi.biodwh2.core.model.graph.Node;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EdgeIndexTest {
+
+    @Test
+    void findTest() throws IOException {
+        final Graph graph = Graph.createTempGraph();
+        final Node nodeA = graph.addNode("A");
+        final Node nodeB = graph.addNode("B");
+        final Node nodeC = graph.addNode("C");
+        final Edge edgeAB = graph.addEdge(nodeA, nodeB, "eAB");
+        final Edge edgeCC = graph.addEdge(nodeC, nodeC, "eCC");
+
+        final EdgeIndex edgeIndex = EdgeIndex.build(graph);
+        assertEquals(2, edgeIndex.size());
+        assertEquals((long) edgeAB.getId(), edgeIndex.find(nodeA.getId(), nodeB.getId()));
+        assertEquals(EdgeIndex.NO_EDGE, edgeIndex.find(nodeB.getId(), nodeA.getId()));
+        assertEquals((long) edgeCC.getId(), edgeIndex.find(nodeC.getId(), nodeC.getId()));
+        assertTrue(edgeIndex.isAdjacent(nodeB.getId(), nodeA.getId()));
+        assertFalse(edgeIndex.isAdjacent(nodeA.getId(), nodeC.getId()));
+    }
+
+    @Test
+    void registeredTest() throws IOException {
+        final Graph graph = Graph.createTempGraph();
+        final Node nodeA = graph.addNode("A");
+        final Node nodeB = graph.addNode("B");
+        graph.addEdge(nodeA, nodeB, "eAB");
+        try {
+            final EdgeIndex edgeIndex = EdgeIndex.get(graph);
+            assertSame(edgeIndex, EdgeIndex.get(graph));
+            assertFalse(edgeIndex.contains(nodeB.getId(), nodeA.getId()));
+
+            // the registered index is rebuilt once the graph changes
+            final Edge edgeBA = graph.addEdge(nodeB, nodeA, "eBA");
+            final EdgeIndex rebuilt = EdgeIndex.get(graph);
+            assertNotSame(edgeIndex, rebuilt);
+            assertEquals((long) edgeBA.getId(), rebuilt.find(nodeB.getId(), nodeA.getId()));
+        } finally {
+            GraphIndexRegistry.unregister(graph);
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.Graph;
+import de.unibi.agbi.biodwh2.core.model.graph.Node;
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EdgeLabelPartitionsTest {
+
+    @Test
+    void layoutTest() throws IOException {
+        final Graph graph = Graph.createTempGraph();
+        final Node a = graph.addNode("Protein");
+        final Node b = graph.addNode("Protein");
+        final Node c = graph.addNode("Publication");
+        graph.addEdge(a, b, "PPI");
+        graph.addEdge(b, a, "PPI");
+        graph.addEdge(a, c, "MENTIONED_IN");
+        graph.addEdge(b, c, "MENTIONED_IN");
+        graph.addEdge(a, a, "SELF");
+
+        final EdgeLabelPartitions directed = EdgeLabelPartitions.build(graph, GraphMode.DIRECTED);
+        assertEquals(3, directed.getLabels().size());
+        assertEquals(5, directed.getNumberOfEntries());
+        // a has one range per label, b two, c none
+        assertEquals(5, directed.getNumberOfRanges());
+        final List<Long> neighbors = directed.getNeighbors(a.getId(), "PPI", "SELF", "UNKNOWN");
+        Collections.sort(neighbors);
+        assertEquals(Arrays.asList(Math.min(a.getId(), b.getId()), Math.max(a.getId(), b.getId())), neighbors);
+        assertTrue(directed.getNeighbors(c.getId(), "MENTIONED_IN").isEmpty());
+
+        final EdgeLabelPartitions undirected = EdgeLabelPartitions.build(graph, GraphMode.UNDIRECTED);
+        // self loops are stored once
+        assertEquals(9, undirected.getNumberOfEntries());
+        assertEquals(2, undirected.getNeighbors(c.getId(), "MENTIONED_IN").size());
+        final boolean[] mask = undirected.getLabelMask("MENTIONED_IN");
+        final int[] path = undirected.findShortestPath(undirected.getIndex(a.getId()),
+                                                       undirected.getIndex(b.getId()), mask);
+        assertEquals(3, path.length);
+        assertEquals((long) c.getId(), undirected.getNodeId(path[1]));
+        assertNull(undirected.findShortestPath(undirected.getIndex(a.getId()), undirected.getIndex(b.getId()),
+                                               undirected.getLabelMask("UNKNOWN")));
+    }
+
+    @Test
+    void randomGraphTest() throws IOException {
+        // with all labels allowed, distances match the unpartitioned snapshot
+        final RandomGraph random = RandomGraph.create(7, 200, 600);
+        for (int i = 0; i < 300; i++)
+            random.graph.addEdge(random.nodes[random.random.nextInt(200)], random.nodes[random.random.nextInt(200)],
+                                 i % 2 == 0 ? "F" : "G");
+        for (final GraphMode mode : GraphMode.values()) {
+            final EdgeLabelPartitions partitions = EdgeLabelPartitions.build(random.graph, mode);
+            final CSRGraph adjacency = CSRGraph.buildFromGraph(random.graph, mode, false);
+            assertEquals(adjacency.getNumberOfEntries(), partitions.getNumberOfEntries());
+            final boolean[] mask = partitions.getLabelMask("E", "F", "G");
+            for (int source = 0; source < 200; source += 20) {
+                final int[] distances = partitions.breadthFirstSearch(source, null, -1, mask);
+                final int start = adjacency.getIndex(partitions.getNodeId(source));
+                final int[] expected = adjacency.breadthFirstSearch(start, null, -1);
+                for (int i = 0; i < distances.length; i++)
+                    assertEquals(expected[adjacency.getIndex(partitions.getNodeId(i))], distances[i]);
+            }
+            // restricted to one label, distances can only grow
+            final int[] restricted = partitions.breadthFirstSearch(0, null, -1, partitions.getLabelMask("F"));
+            final int[] unrestricted = partitions.breadthFirstSearch(0, null, -1, mask);
+            for (int i = 0; i < restricted.length; i++)
+                assertTrue(restricted[i] < 0 || restricted[i] >= unrestricted[i]);
+        }
+    }
+}
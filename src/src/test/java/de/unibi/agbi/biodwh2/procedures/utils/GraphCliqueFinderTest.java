@@ -45,4 +45,37 @@ class GraphCliqueFinderTest {
         assertEquals(4, graphCliqueFinder.getCliques().size());
     }
 
-}
\ No newline at end of file
+    @Test
+    void findCliquesForNodeIdTest() throws IOException {
+        final Graph graph = Graph.createTempGraph();
+        final Node nodeA = graph.addNode("A");
+        final Node nodeB = graph.addNode("B");
+        final Node nodeC = graph.addNode("C");
+        final Node nodeD = graph.addNode("D");
+        final Node nodeE = graph.addNode("E");
+        final Node nodeF = graph.addNode("F");
+        final Node nodeG = graph.addNode("G");
+
+        graph.addEdge(nodeA, nodeB, "eAB");
+        graph.addEdge(nodeA, nodeC, "eAC");
+        graph.addEdge(nodeA, nodeE, "eAE");
+        graph.addEdge(nodeB, nodeC, "eBC");
+        graph.addEdge(nodeB, nodeD, "eBD");
+        graph.addEdge(nodeB, nodeF, "eBF");
+        graph.addEdge(nodeC, nodeD, "eCD");
+        graph.addEdge(nodeC, nodeF, "eCF");
+        graph.addEdge(nodeD, nodeF, "eDF");
+        graph.addEdge(nodeD, nodeE, "eDE");
+
+        final List<List<Long>> cliquesD = GraphCliqueFinder.findCliquesForNodeId(graph, nodeD.getId());
+        assertEquals(2, cliquesD.size());
+        for (final List<Long> clique : cliquesD)
+            assertEquals(nodeD.getId(), clique.get(0));
+        assertTrue(cliquesD.stream().anyMatch(clique -> clique.size() == 4));
+
+        final List<List<Long>> cliquesG = GraphCliqueFinder.findCliquesForNodeId(graph, nodeG.getId());
+        assertEquals(1, cliquesG.size());
+        assertEquals(1, cliquesG.get(0).size());
+    }
+
+}
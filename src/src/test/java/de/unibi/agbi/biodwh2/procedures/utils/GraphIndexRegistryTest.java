@@ -0,0 +1,77 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.Edge;
+import de.unibi.agbi.biodwh2.core.model.graph.Graph;
+import de.unibi.agbi.biodwh2.core.model.graph.Node;
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphIndexRegistryTest {
+
+    @Test
+    void stalenessTest() throws IOException {
+        final Graph graph = Graph.createTempGraph();
+        final Node a = graph.addNode("A");
+        final Node b = graph.addNode("B");
+        final Node c = graph.addNode("C");
+        final Edge edge = graph.addEdge(a, b, "a|b");
+
+        final GraphIndexRegistry.Key<CSRGraph> undirected = GraphIndexRegistry.Key.of(CSRGraph.class,
+                                                                                        GraphMode.UNDIRECTED);
+        final CSRGraph snapshot = CSRGraph.build(graph, GraphMode.UNDIRECTED);
+        GraphIndexRegistry.register(graph, undirected, snapshot);
+        final Graph other = Graph.createTempGraph();
+        GraphIndexRegistry.register(graph, GraphIndexRegistry.Key.of(String.class), "outdated",
+                                    GraphStamp.of(other));
+        try {
+            assertSame(snapshot, GraphIndexRegistry.get(graph, GraphIndexRegistry.Key.of(CSRGraph.class,
+                                                                                          GraphMode.UNDIRECTED)));
+            assertNull(GraphIndexRegistry.get(graph, GraphIndexRegistry.Key.of(CSRGraph.class, GraphMode.DIRECTED)));
+            // indices stamped with the fingerprint of another graph are stale right away
+            assertNull(GraphIndexRegistry.get(graph, GraphIndexRegistry.Key.of(String.class)));
+
+            final AtomicInteger builds = new AtomicInteger();
+            final GraphIndexRegistry.Key<CSRGraph> directed = GraphIndexRegistry.Key.of(CSRGraph.class,
+                                                                                      GraphMode.DIRECTED);
+            final CSRGraph built = GraphIndexRegistry.getOrBuild(graph, directed, key -> {
+                builds.incrementAndGet();
+                return CSRGraph.buildFromGraph(graph, GraphMode.DIRECTED, false);
+            });
+            assertSame(built, GraphIndexRegistry.getOrBuild(graph, directed, key -> {
+                builds.incrementAndGet();
+                return null;
+            }));
+            assertEquals(1, builds.get());
+
+            // rewiring an edge keeps the node and edge counts but changes the fingerprint
+            edge.setProperty(Edge.TO_ID_FIELD, c.getId());
+            graph.update(edge);
+            assertNull(GraphIndexRegistry.get(graph, undirected));
+            assertNotSame(built, GraphIndexRegistry.getOrBuild(graph, directed, key -> {
+                builds.incrementAndGet();
+                return CSRGraph.buildFromGraph(graph, GraphMode.DIRECTED, false);
+            }));
+            assertEquals(2, builds.get());
+
+            GraphIndexRegistry.register(graph, GraphIndexRegistry.Key.of(String.class), "current");
+            GraphIndexRegistry.unregister(graph, CSRGraph.class);
+            assertNull(GraphIndexRegistry.get(graph, directed));
+            assertEquals("current", GraphIndexRegistry.get(graph, GraphIndexRegistry.Key.of(String.class)));
+        } finally {
+            GraphIndexRegistry.unregister(graph);
+        }
+    }
+
+    @Test
+    void indexOfTest() {
+        final long[] nodeIds = new long[]{2, 5, 9};
+        assertEquals(0, GraphIndexRegistry.indexOf(nodeIds, 2));
+        assertEquals(2, GraphIndexRegistry.indexOf(nodeIds, 9));
+        assertEquals(-1, GraphIndexRegistry.indexOf(nodeIds, 6));
+    }
+}
@@ -6,6 +6,7 @@ import de.unibi.agbi.biodwh2.core.model.graph.Node;
 
 import de.unibi.agbi.biodwh2.procedures.model.BFSResult;
 import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import de.unibi.agbi.biodwh2.procedures.model.NeighborhoodSubgraph;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
@@ -60,6 +61,18 @@ class GraphProcedureUtilsTest {
                 openNeighborHoodA.getNodeLabels()).sorted().toArray());
     }
 
+    @Test
+    void getOpenNeighborhoodTest() {
+        final NeighborhoodSubgraph openNeighborhoodE = GraphProcedureUtils.getOpenNeighborhood(graph,
+                                                                                              graph.findNode("E")
+                                                                                                   .getId(),
+                                                                                              GraphMode.UNDIRECTED);
+        assertEquals(3, openNeighborhoodE.getNumberOfNodes());
+        assertEquals(1, openNeighborhoodE.getNumberOfEdges());
+        assertEquals(2, openNeighborhoodE.findComponents().size());
+        assertEquals(2, openNeighborhoodE.getMaximumComponent().getNodeIds().size());
+    }
+
     @Test
     void findComponentsUndirectedTest() {
         final List<BFSResult> components = GraphProcedureUtils.findComponentsUndirected(graph);
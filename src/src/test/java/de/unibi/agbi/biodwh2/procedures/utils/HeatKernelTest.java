@@ -0,0 +1,105 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeatKernelTest {
+
+    @Test
+    void applyTest() {
+        // a triangle 0-1-2 with a pendant path 2-3-4, a parallel edge 0-1 and a self loop at 4
+        final int[] from = new int[]{0, 1, 2, 2, 3, 0, 4};
+        final int[] to = new int[]{1, 2, 0, 3, 4, 1, 4};
+        final CSRGraph adjacency = CSRGraph.fromEdges(GraphMode.UNDIRECTED, new long[]{1, 2, 3, 4, 5}, from, to,
+                                                      new long[]{10, 11, 12, 13, 14, 15, 16}, from.length);
+        final double[][] laplacian = new double[5][5];
+        for (int i = 0; i < from.length; i++)
+            if (from[i] != to[i]) {
+                laplacian[from[i]][from[i]]++;
+                laplacian[to[i]][to[i]]++;
+                laplacian[from[i]][to[i]]--;
+                laplacian[to[i]][from[i]]--;
+            }
+        final double[] vector = new double[]{0.5, 0, 0, 0.5, 0};
+        for (final double time : new double[]{0, 0.1, 1, 5}) {
+            final double[] expected = multiply(exponential(laplacian, -time), vector);
+            final double[] actual = new HeatKernel(adjacency).apply(vector, time, 1e-12);
+            assertArrayEquals(expected, actual, 1e-9);
+        }
+    }
+
+    @Test
+    void hubTest() {
+        // a star with a high degree hub would need thousands of Taylor steps with a degree based norm bound
+        final int leaves = 5000;
+        final int[] from = new int[leaves];
+        final int[] to = new int[leaves];
+        final long[] nodeIds = new long[leaves + 1];
+        final long[] edgeIds = new long[leaves];
+        for (int i = 0; i < leaves; i++) {
+            to[i] = i + 1;
+            nodeIds[i + 1] = i + 1;
+            edgeIds[i] = i;
+        }
+        final HeatKernel kernel = new HeatKernel(CSRGraph.fromEdges(GraphMode.UNDIRECTED, nodeIds, from, to, edgeIds,
+                                                                    leaves));
+        final double[] vector = new double[leaves + 1];
+        vector[0] = 1;
+        final double[] heat = kernel.apply(vector, 1, 1e-10);
+        double sum = 0;
+        for (final double value : heat)
+            sum += value;
+        assertEquals(1, sum, 1e-8);
+        // the hub keeps the heat of the smallest eigenvalue 0 of the star plus a vanishing share of the largest one
+        assertEquals(1.0 / (leaves + 1), heat[0], 1e-8);
+        assertTrue(kernel.getMultiplications() < 500);
+    }
+
+    private static double[] multiply(final double[][] matrix, final double[] vector) {
+        final double[] result = new double[vector.length];
+        for (int i = 0; i < vector.length; i++)
+            for (int j = 0; j < vector.length; j++)
+                result[i] += matrix[i][j] * vector[j];
+        return result;
+    }
+
+    /**
+     * Dense exp(factor * matrix) by scaling and squaring of a Taylor series.
+     */
+    private static double[][] exponential(final double[][] matrix, final double factor) {
+        final int n = matrix.length;
+        final int squarings = 12;
+        final double[][] scaled = new double[n][n];
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < n; j++)
+                scaled[i][j] = matrix[i][j] * factor / (1 << squarings);
+        double[][] result = new double[n][n];
+        double[][] term = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            result[i][i] = 1;
+            term[i][i] = 1;
+        }
+        for (int k = 1; k <= 30; k++) {
+            final double[][] next = new double[n][n];
+            for (int i = 0; i < n; i++)
+                for (int j = 0; j < n; j++) {
+                    for (int l = 0; l < n; l++)
+                        next[i][j] += term[i][l] * scaled[l][j];
+                    next[i][j] /= k;
+                    result[i][j] += next[i][j];
+                }
+            term = next;
+        }
+        for (int s = 0; s < squarings; s++) {
+            final double[][] squared = new double[n][n];
+            for (int i = 0; i < n; i++)
+                for (int j = 0; j < n; j++)
+                    for (int l = 0; l < n; l++)
+                        squared[i][j] += result[i][l] * result[l][j];
+            result = squared;
+        }
+        return result;
+    }
+}
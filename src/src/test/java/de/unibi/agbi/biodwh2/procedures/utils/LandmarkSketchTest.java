@@ -0,0 +1,90 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.Graph;
+import de.unibi.agbi.biodwh2.core.model.graph.Node;
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LandmarkSketchTest {
+
+    @Test
+    void queryTest() throws IOException {
+        final RandomGraph randomGraph = RandomGraph.create(11, 60, 80);
+        final Graph graph = randomGraph.graph;
+        final Node[] nodes = randomGraph.nodes;
+
+        for (final GraphMode mode : GraphMode.values()) {
+            final LandmarkSketch sketch = new LandmarkSketch(graph, mode, 4);
+            final LandmarkSketch exactSketch = new LandmarkSketch(graph, mode, nodes.length);
+            final ShortestPathFinder finder = new ShortestPathFinder(graph, mode);
+            for (final Node source : nodes) {
+                final Map<Long, Long> expected = finder.dijkstra(source.getId(), false).getDistances();
+                for (final Node target : nodes) {
+                    final long distance = expected.get(target.getId());
+                    final LandmarkSketch.Bounds bounds = sketch.query(source.getId(), target.getId());
+                    assertTrue(bounds.getLower() <= distance);
+                    assertTrue(bounds.getUpper() >= distance);
+                    // with every node as landmark the source itself gives the exact distance
+                    assertEquals(distance, exactSketch.query(source.getId(), target.getId()).getEstimate());
+                }
+            }
+        }
+    }
+
+    @Test
+    void uncoveredPairTest() throws IOException {
+        final Graph graph = Graph.createTempGraph();
+        final Node hub = graph.addNode("N");
+        final Node first = graph.addNode("N");
+        final Node second = graph.addNode("N");
+        graph.addEdge(hub, first, "E");
+        graph.addEdge(hub, second, "E");
+        final Node isolatedFrom = graph.addNode("N");
+        final Node isolatedTo = graph.addNode("N");
+        graph.addEdge(isolatedFrom, isolatedTo, "E");
+
+        final LandmarkSketch sketch = new LandmarkSketch(graph, GraphMode.UNDIRECTED, 1);
+        assertEquals(2, sketch.query(first.getId(), second.getId()).getEstimate());
+        // the only landmark is the hub, which covers neither node of the second component
+        final LandmarkSketch.Bounds bounds = sketch.query(isolatedFrom.getId(), isolatedTo.getId());
+        assertEquals(1, bounds.getLower());
+        assertEquals(Long.MAX_VALUE, bounds.getUpper());
+        assertEquals(Long.MAX_VALUE, bounds.getEstimate());
+        assertFalse(bounds.isCovered());
+        assertEquals(Long.MAX_VALUE, sketch.query(first.getId(), isolatedTo.getId()).getEstimate());
+        assertTrue(sketch.query(first.getId(), isolatedTo.getId()).isCovered());
+
+        // uncovered pairs are resolved with an exact search, covered pairs keep their bounds
+        final LandmarkSketch.Bounds[] resolved = sketch.queryAll(isolatedFrom.getId(), new long[]{
+                isolatedTo.getId(), first.getId(), -1});
+        assertTrue(resolved[0].isResolved());
+        assertEquals(1, resolved[0].getLower());
+        assertEquals(1, resolved[0].getEstimate());
+        assertFalse(resolved[1].isResolved());
+        assertEquals(Long.MAX_VALUE, resolved[1].getEstimate());
+        assertNull(resolved[2]);
+        assertNull(sketch.queryAll(-1, new long[]{first.getId()}));
+    }
+
+    @Test
+    void registryTest() throws IOException {
+        final RandomGraph randomGraph = RandomGraph.create(11, 30, 40);
+        final Graph graph = randomGraph.graph;
+        final LandmarkSketch sketch = LandmarkSketch.get(graph, GraphMode.UNDIRECTED, 4);
+        assertSame(sketch, LandmarkSketch.get(graph, GraphMode.UNDIRECTED, 4));
+        assertNotSame(sketch, LandmarkSketch.get(graph, GraphMode.DIRECTED, 4));
+        // one sketch per mode is kept, another number of landmarks replaces it
+        final LandmarkSketch larger = LandmarkSketch.get(graph, GraphMode.UNDIRECTED, 8);
+        assertNotSame(sketch, larger);
+        assertSame(larger, LandmarkSketch.get(graph, GraphMode.UNDIRECTED, 8));
+        assertNotSame(sketch, LandmarkSketch.get(graph, GraphMode.UNDIRECTED, 4));
+        final LandmarkSketch current = LandmarkSketch.get(graph, GraphMode.UNDIRECTED, 4);
+        randomGraph.addRandomEdge();
+        assertNotSame(current, LandmarkSketch.get(graph, GraphMode.UNDIRECTED, 4));
+    }
+}
@@ -0,0 +1,33 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.Graph;
+import de.unibi.agbi.biodwh2.procedures.model.DistanceMetrics;
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultiSourceBFSTest {
+
+    @Test
+    void computeAllTest() throws IOException {
+        // more than one batch of sources on a random graph with several components
+        final Graph graph = RandomGraph.create(42, 150, 200).graph;
+
+        for (final GraphMode mode : GraphMode.values()) {
+            final CSRGraph adjacency = CSRGraph.build(graph, mode);
+            final DistanceMetrics[] expected = new DistanceMetricsFinder(adjacency).computeAll();
+            final DistanceMetrics[] actual = new MultiSourceBFS(adjacency).computeAll();
+            assertEquals(expected.length, actual.length);
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i].getReached(), actual[i].getReached());
+                assertEquals(expected[i].getDistanceSum(), actual[i].getDistanceSum());
+                assertEquals(expected[i].getMaxDistance(), actual[i].getMaxDistance());
+                assertEquals(expected[i].getHarmonic(), actual[i].getHarmonic(), 1e-9);
+            }
+        }
+    }
+
+}
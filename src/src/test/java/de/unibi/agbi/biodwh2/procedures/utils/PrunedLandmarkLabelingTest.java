@@ -0,0 +1,91 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.Edge;
+import de.unibi.agbi.biodwh2.core.model.graph.Graph;
+import de.unibi.agbi.biodwh2.core.model.graph.Node;
+import de.unibi.agbi.biodwh2.procedures.model.DijkstraResult;
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrunedLandmarkLabelingTest {
+
+    @Test
+    void queryTest() throws IOException {
+        final RandomGraph randomGraph = RandomGraph.create(7, 80, 120);
+        final Graph graph = randomGraph.graph;
+        final Node[] nodes = randomGraph.nodes;
+
+        for (final GraphMode mode : GraphMode.values()) {
+            final PrunedLandmarkLabeling index = PrunedLandmarkLabeling.build(graph, mode);
+            final Path path = Files.createTempFile("pll", ".bin");
+            index.write(path);
+            final PrunedLandmarkLabeling loaded = PrunedLandmarkLabeling.read(path);
+            Files.delete(path);
+            assertTrue(loaded.isCompatible(graph));
+            assertEquals(index.getNumberOfEntries(), loaded.getNumberOfEntries());
+
+            final ShortestPathFinder finder = new ShortestPathFinder(graph, mode);
+            for (final Node source : nodes) {
+                final Map<Long, Long> expected = finder.dijkstra(source.getId(), false).getDistances();
+                for (final Node target : nodes) {
+                    final long distance = expected.get(target.getId());
+                    assertEquals(distance == Long.MAX_VALUE ? -1 : distance,
+                                 index.query(source.getId(), target.getId()));
+                    assertEquals(distance == Long.MAX_VALUE ? -1 : distance,
+                                 loaded.query(source.getId(), target.getId()));
+                }
+            }
+        }
+    }
+
+    @Test
+    void registeredIndexTest() throws IOException {
+        final Graph graph = Graph.createTempGraph();
+        final Node a = graph.addNode("A");
+        final Node b = graph.addNode("B");
+        final Node c = graph.addNode("C");
+        final Node d = graph.addNode("D");
+        final Node e = graph.addNode("E");
+        graph.addEdge(a, b, "a|b");
+        graph.addEdge(b, c, "b|c");
+        final Edge cd = graph.addEdge(c, d, "c|d");
+        graph.addEdge(a, d, "a|d");
+
+        final ShortestPathFinder finder = new ShortestPathFinder(graph, GraphMode.DIRECTED);
+        final DijkstraResult expected = finder.dijkstra(a.getId(), true, "C", "D", "E");
+        PrunedLandmarkLabeling.register(graph, PrunedLandmarkLabeling.build(graph, GraphMode.DIRECTED));
+        try {
+            assertNull(PrunedLandmarkLabeling.getRegistered(graph, GraphMode.UNDIRECTED));
+            final ShortestPathFinder indexed = new ShortestPathFinder(graph, GraphMode.DIRECTED);
+            assertEquals(expected.getDistances(), indexed.dijkstra(a.getId(), true, "C", "D", "E").getDistances());
+
+            final DijkstraResult pathResult = indexed.dijkstra(a.getId(), c.getId());
+            assertEquals(2L, (long) pathResult.getDistances().get(c.getId()));
+            final ArrayList<Long> path = pathResult.getPath();
+            assertEquals(3, path.size());
+            assertEquals(a.getId(), path.get(0));
+            assertEquals(b.getId(), path.get(1));
+            assertEquals(c.getId(), path.get(2));
+            assertEquals(Long.MAX_VALUE, (long) indexed.dijkstra(c.getId(), a.getId()).getDistances().get(a.getId()));
+
+            // rewiring an edge keeps the node and edge counts, the index is stale nonetheless
+            final PrunedLandmarkLabeling index = PrunedLandmarkLabeling.getRegistered(graph, GraphMode.DIRECTED);
+            cd.setProperty(Edge.TO_ID_FIELD, e.getId());
+            graph.update(cd);
+            assertFalse(index.isCompatible(graph));
+            assertNull(PrunedLandmarkLabeling.getRegistered(graph, GraphMode.DIRECTED));
+            assertEquals(3L, (long) new ShortestPathFinder(graph, GraphMode.DIRECTED).dijkstra(a.getId(), e.getId())
+                                                                                     .getDistances().get(e.getId()));
+        } finally {
+            PrunedLandmarkLabeling.unregister(graph);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.Edge;
+import de.unibi.agbi.biodwh2.core.model.graph.Graph;
+import de.unibi.agbi.biodwh2.core.model.graph.Node;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+/**
+ * Shared test fixture: a temporary graph with uniformly random edges (self loops and parallel edges included),
+ * reproducible by its seed. Further random edges can be added with the same random source.
+ */
+final class RandomGraph {
+
+    final Graph graph;
+    final Node[] nodes;
+    final Random random;
+
+    private RandomGraph(final Graph graph, final Node[] nodes, final Random random) {
+        this.graph = graph;
+        this.nodes = nodes;
+        this.random = random;
+    }
+
+    /**
+     * Creates a graph of nodes labeled "N" with random edges labeled "E".
+     */
+    static RandomGraph create(final long seed, final int nodeCount, final int edgeCount) throws IOException {
+        return create(seed, nodeCount, edgeCount, index -> "N");
+    }
+
+    /**
+     * Creates a graph with random edges labeled "E" and node labels chosen by node index.
+     */
+    static RandomGraph create(final long seed, final int nodeCount, final int edgeCount,
+                              final IntFunction<String> nodeLabels) throws IOException {
+        final Graph graph = Graph.createTempGraph();
+        final Node[] nodes = new Node[nodeCount];
+        for (int i = 0; i < nodes.length; i++)
+            nodes[i] = graph.addNode(nodeLabels.apply(i));
+        final RandomGraph randomGraph = new RandomGraph(graph, nodes, new Random(seed));
+        randomGraph.addRandomEdges(edgeCount);
+        return randomGraph;
+    }
+
+    /**
+     * Connects every node except the first to a random predecessor, so that the graph is connected.
+     */
+    void addRandomTree() {
+        for (int i = 1; i < nodes.length; i++)
+            graph.addEdge(nodes[random.nextInt(i)], nodes[i], "E");
+    }
+
+    void addRandomEdges(final int count) {
+        for (int i = 0; i < count; i++)
+            addRandomEdge();
+    }
+
+    Edge addRandomEdge() {
+        return graph.addEdge(nodes[random.nextInt(nodes.length)], nodes[random.nextInt(nodes.length)], "E");
+    }
+}
@@ -89,4 +89,33 @@ class ShortestPathFinderTest {
         ArrayList<ArrayList<Long>> allShortestPaths = shortestPathFinder.findAllShortestPaths(sourceNodeId, targetNodeId);
         assertEquals(0, allShortestPaths.size());
     }
-}
\ No newline at end of file
+
+    @Test
+    void dijkstraWithEdgeLabelsTest() throws IOException {
+        final Graph labeled = Graph.createTempGraph();
+        final Node p1 = labeled.addNode("Protein");
+        final Node p2 = labeled.addNode("Protein");
+        final Node p3 = labeled.addNode("Protein");
+        final Node publication = labeled.addNode("Publication");
+        labeled.addEdge(p1, p2, "PPI");
+        labeled.addEdge(p2, p3, "PPI");
+        labeled.addEdge(p1, publication, "MENTIONED_IN");
+        labeled.addEdge(publication, p3, "MENTIONED_IN");
+        labeled.addEdge(p1, p3, "PUBLISHED_WITH");
+
+        assertEquals(1, (long) new ShortestPathFinder(labeled, GraphMode.UNDIRECTED).dijkstra(p1.getId(), p3.getId())
+                                                                                      .getDistances().get(p3.getId()));
+        final ShortestPathFinder restricted = new ShortestPathFinder(labeled, GraphMode.UNDIRECTED, "PPI");
+        final DijkstraResult result = restricted.dijkstra(p1.getId(), p3.getId());
+        assertEquals(2, (long) result.getDistances().get(p3.getId()));
+        assertEquals(3, result.getPath().size());
+        assertEquals(p2.getId(), result.getPath().get(1));
+        final Map<Long, Long> distances = restricted.dijkstra(p1.getId(), false).getDistances();
+        assertEquals(0, (long) distances.get(p1.getId()));
+        assertEquals(2, (long) distances.get(p3.getId()));
+        assertEquals(Long.MAX_VALUE, (long) distances.get(publication.getId()));
+        assertEquals(1, restricted.findAllShortestPaths(p1.getId(), p3.getId()).size());
+        assertEquals(2, new ShortestPathFinder(labeled, GraphMode.DIRECTED, "MENTIONED_IN", "PPI").dijkstra(
+                p1.getId(), p3.getId()).getPath().size() - 1);
+    }
+}
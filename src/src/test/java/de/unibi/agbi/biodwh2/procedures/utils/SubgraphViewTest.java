@@ -0,0 +1,110 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.Graph;
+import de.unibi.agbi.biodwh2.core.model.graph.Node;
+import de.unibi.agbi.biodwh2.procedures.model.DistanceMetrics;
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SubgraphViewTest {
+
+    @Test
+    void filterTest() throws IOException {
+        final Graph graph = Graph.createTempGraph();
+        final Node p1 = graph.addNode("Protein");
+        final Node p2 = graph.addNode("Protein");
+        final Node p3 = graph.addNode("Protein");
+        final Node drug = graph.addNode("Drug");
+        final Node publication = graph.addNode("Publication");
+        graph.addEdge(p1, p2, "PPI");
+        graph.addEdge(p2, p3, "PPI");
+        graph.addEdge(drug, p1, "TARGETS");
+        graph.addEdge(p1, publication, "MENTIONED_IN");
+        graph.addEdge(p3, publication, "MENTIONED_IN");
+
+        final SubgraphView proteins = SubgraphView.create(graph, GraphMode.UNDIRECTED, new String[]{"Protein"}, null);
+        assertEquals(3, proteins.getNumberOfNodes());
+        assertEquals(4, proteins.getNumberOfEntries());
+        assertEquals(-1, proteins.getIndex(drug.getId()));
+        assertEquals(2, proteins.getDegree(proteins.getIndex(p2.getId())));
+        final int[] distances = proteins.breadthFirstSearch(proteins.getIndex(p1.getId()), null, -1);
+        assertEquals(3, distances.length);
+        assertEquals(2, distances[proteins.getIndex(p3.getId())]);
+        assertArrayEquals(new long[]{p1.getId(), p2.getId(), p3.getId()}, proteins.getNodeIds());
+        for (int i = 0; i < proteins.getNumberOfNodes(); i++)
+            assertEquals(proteins.getBase().getIndex(proteins.getNodeId(i)), proteins.getBaseIndex(i));
+
+        final SubgraphView interactions = SubgraphView.create(graph, GraphMode.UNDIRECTED, null,
+                                                              new String[]{"PPI", "TARGETS"});
+        assertEquals(5, interactions.getNumberOfNodes());
+        assertEquals(6, interactions.getNumberOfEntries());
+        assertEquals(0, interactions.getDegree(interactions.getIndex(publication.getId())));
+        assertNull(interactions.findShortestPath(interactions.getIndex(p1.getId()),
+                                                 interactions.getIndex(publication.getId())));
+        assertEquals(3, interactions.findShortestPath(interactions.getIndex(drug.getId()),
+                                                      interactions.getIndex(p2.getId())).length);
+    }
+
+    @Test
+    void unfilteredTest() throws IOException {
+        // spans more than one 64-bit word of nodes and entries, so rank and select cross word boundaries
+        final RandomGraph random = RandomGraph.create(11, 300, 900);
+        for (final GraphMode mode : GraphMode.values()) {
+            final CSRGraph adjacency = CSRGraph.buildFromGraph(random.graph, mode, false);
+            final SubgraphView all = new SubgraphView(random.graph, adjacency, false, null, null);
+            assertArrayEquals(adjacency.getNodeIds(), all.getNodeIds());
+            assertArrayEquals(adjacency.getOffsets(), all.getOffsets());
+            assertArrayEquals(adjacency.getTargets(), all.getTargets());
+            assertArrayEquals(adjacency.getEdgeIds(), all.getEdgeIds());
+            final DistanceMetrics[] expected = new MultiSourceBFS(adjacency).computeAll();
+            final DistanceMetrics[] actual = new MultiSourceBFS(all).computeAll();
+            for (int i = 0; i < expected.length; i++)
+                assertEquals(expected[i].getHarmonic(), actual[i].getHarmonic(), 1e-9);
+        }
+    }
+
+    @Test
+    void registerTest() throws IOException {
+        final Graph graph = Graph.createTempGraph();
+        final Node a = graph.addNode("Protein");
+        final Node b = graph.addNode("Protein");
+        final Node c = graph.addNode("Gene");
+        graph.addEdge(a, b, "PPI");
+        graph.addEdge(c, a, "CODES");
+        try {
+            assertThrows(IllegalArgumentException.class, () -> SubgraphView.get(graph, "proteins", GraphMode.DIRECTED));
+            SubgraphView.register(graph, "proteins", new String[]{"Protein"}, null);
+            assertTrue(SubgraphView.isRegistered(graph, "proteins"));
+            assertFalse(SubgraphView.isRegistered(graph, "genes"));
+
+            // the views share the registered snapshots and leave them unfiltered
+            final SubgraphView view = SubgraphView.get(graph, "proteins", GraphMode.DIRECTED);
+            assertSame(view, SubgraphView.get(graph, "proteins", GraphMode.DIRECTED));
+            assertSame(view, CSRGraph.build(graph, GraphMode.DIRECTED, "proteins"));
+            assertSame(CSRGraph.buildCached(graph, GraphMode.DIRECTED), view.getBase());
+            assertEquals(3, CSRGraph.build(graph, GraphMode.DIRECTED, null).getNumberOfNodes());
+            final SubgraphView incoming = SubgraphView.getIncoming(graph, "proteins");
+            assertTrue(incoming.isIncoming());
+            assertSame(CSRGraph.buildIncomingCached(graph), incoming.getBase());
+            assertEquals(1, incoming.getDegree(incoming.getIndex(b.getId())));
+
+            // the definition outlives graph changes, the views are recreated
+            graph.addEdge(b, graph.addNode("Protein"), "PPI");
+            final SubgraphView rebuilt = SubgraphView.get(graph, "proteins", GraphMode.DIRECTED);
+            assertNotSame(view, rebuilt);
+            assertEquals(3, rebuilt.getNumberOfNodes());
+            assertEquals(2, rebuilt.getNumberOfEntries());
+
+            SubgraphView.unregister(graph);
+            assertFalse(SubgraphView.isRegistered(graph, "proteins"));
+            assertThrows(IllegalArgumentException.class, () -> CSRGraph.build(graph, GraphMode.DIRECTED, "proteins"));
+            assertEquals(4, CSRGraph.build(graph, GraphMode.DIRECTED, "").getNumberOfNodes());
+        } finally {
+            GraphIndexRegistry.unregister(graph);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package de.unibi.agbi.biodwh2.procedures.utils;
+
+import de.unibi.agbi.biodwh2.core.model.graph.Graph;
+import de.unibi.agbi.biodwh2.procedures.model.GraphMode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopKClosenessFinderTest {
+
+    @Test
+    void topKTest() throws IOException {
+        final RandomGraph randomGraph = RandomGraph.create(7, 120, 0);
+        randomGraph.addRandomTree();
+        randomGraph.addRandomEdges(40);
+        final Graph graph = randomGraph.graph;
+
+        for (final GraphMode mode : GraphMode.values()) {
+            final CSRGraph adjacency = CSRGraph.build(graph, mode);
+            final int n = adjacency.getNumberOfNodes();
+            final double[] closeness = Arrays.stream(new DistanceMetricsFinder(adjacency).computeAll()).mapToDouble(
+                    metrics -> metrics.getDistanceSum() == 0 ? 0 : (double) metrics.getReached() / (n - 1) *
+                                                                   metrics.getReached() / metrics.getDistanceSum())
+                                             .toArray();
+            final double[] expected = Arrays.stream(closeness).map(c -> -c).sorted().map(c -> -c).limit(10)
+                                            .toArray();
+            final TopKClosenessFinder finder = new TopKClosenessFinder(adjacency, 10);
+            assertArrayEquals(expected, finder.getTopCloseness(), 1e-12);
+            for (int i = 0; i < finder.getTopNodes().length; i++)
+                assertEquals(closeness[finder.getTopNodes()[i]], finder.getTopCloseness()[i], 1e-12);
+
+            // with k = n the threshold is never set, so no search is cut
+            final TopKClosenessFinder unpruned = new TopKClosenessFinder(adjacency, n);
+            assertEquals(n, unpruned.getCompletedSearches());
+            assertTrue(finder.getCompletedSearches() < unpruned.getCompletedSearches());
+            assertTrue(finder.getVisitedEdges() < unpruned.getVisitedEdges());
+        }
+    }
+
+    @Test
+    void connectedTest() throws IOException {
+        final RandomGraph randomGraph = RandomGraph.create(11, 40, 0);
+        randomGraph.addRandomTree();
+        randomGraph.addRandomEdges(20);
+        final Graph graph = randomGraph.graph;
+        final CSRGraph adjacency = CSRGraph.build(graph, GraphMode.UNDIRECTED);
+        final TopKClosenessFinder finder = new TopKClosenessFinder(adjacency, 5);
+        // on connected graphs the closeness equals (n - 1) / sum of distances
+        final ShortestPathFinder shortestPathFinder = new ShortestPathFinder(graph, GraphMode.UNDIRECTED);
+        for (int i = 0; i < finder.getTopNodes().length; i++) {
+            final Map<Long, Long> distances = shortestPathFinder.dijkstra(adjacency.getNodeId(finder.getTopNodes()[i]),
+                                                                          false).getDistances();
+            final long sum = distances.values().stream().mapToLong(Long::longValue).sum();
+            assertEquals((double) (graph.getNumberOfNodes() - 1) / sum, finder.getTopCloseness()[i], 1e-12);
+        }
+    }
+}